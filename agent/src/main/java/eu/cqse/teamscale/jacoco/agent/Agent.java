@@ -7,10 +7,8 @@ package eu.cqse.teamscale.jacoco.agent;
 
 import eu.cqse.teamscale.report.jacoco.dump.Dump;
 import eu.cqse.teamscale.report.jacoco.JaCoCoXmlReportGenerator;
-import eu.cqse.teamscale.jacoco.util.Benchmark;
 import eu.cqse.teamscale.jacoco.util.Timer;
 
-import java.io.IOException;
 import java.time.Duration;
 
 import static eu.cqse.teamscale.client.EReportFormat.JACOCO;
@@ -25,6 +23,9 @@ public class Agent extends AgentBase {
 	/** Converts binary data to XML. */
 	private JaCoCoXmlReportGenerator generator;
 
+	/** Tracks the coverage of previous dumps if only new coverage should be stored, null otherwise. */
+	private final CoverageDeltaTracker deltaTracker;
+
 	/** Regular dump task. */
 	private final Timer timer;
 
@@ -34,7 +35,13 @@ public class Agent extends AgentBase {
 
 		generator = new JaCoCoXmlReportGenerator(options.getClassDirectoriesOrZips(),
 				options.getLocationIncludeFilter(),
-				options.shouldIgnoreDuplicateClassFiles(), wrap(logger));
+				options.shouldIgnoreDuplicateClassFiles(), options.isDeltaUpload(), options.shouldCacheClassStructure(),
+				wrap(logger));
+		if (options.isDeltaUpload()) {
+			deltaTracker = new CoverageDeltaTracker();
+		} else {
+			deltaTracker = null;
+		}
 
 		timer = new Timer(this::dumpReport, Duration.ofMinutes(options.getDumpIntervalInMinutes()));
 		timer.start();
@@ -58,14 +65,24 @@ public class Agent extends AgentBase {
 			return;
 		}
 
-		String xml;
-		try (Benchmark benchmark = new Benchmark("Generating the XML report")) {
-			xml = generator.convert(dump);
-		} catch (IOException e) {
-			logger.error("Converting binary dump to XML failed", e);
+		if (deltaTracker == null) {
+			storeReport(dump);
 			return;
 		}
 
-		store.store(xml, JACOCO);
+		Dump delta = deltaTracker.computeDelta(dump);
+		if (delta == null) {
+			logger.info("No new coverage since the last dump. Skipping the upload.");
+			return;
+		}
+		// Failed reports are not committed, so their coverage is reported again once it is hit again
+		if (storeReport(delta)) {
+			deltaTracker.commit(delta);
+		}
+	}
+
+	/** Converts the given dump to XML and streams it to the store. Returns whether this was successful. */
+	private boolean storeReport(Dump dump) {
+		return store.store(output -> generator.convertToReport(output, dump), JACOCO);
 	}
 }
@@ -62,6 +62,7 @@ public abstract class AgentBase {
 	public void registerShutdownHook() {
 		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
 			prepareShutdown();
+			store.shutdown();
 			logger.info("CQSE JaCoCo agent successfully shut down.");
 
 			// manually shut down the logging system since we prevented automatic shutdown
@@ -57,6 +57,11 @@ public class AgentOptions {
 	 */
 	/* package */ Path outputDirectory = null;
 
+	/**
+	 * Whether the XML files written to the {@link #outputDirectory} are compressed with gzip.
+	 */
+	/* package */ boolean compressOutput = false;
+
 	/**
 	 * The URL to which to upload coverage zips.
 	 */
@@ -77,6 +82,29 @@ public class AgentOptions {
 	 */
 	/* package */ boolean shouldIgnoreDuplicateClassFiles = true;
 
+	/**
+	 * Whether each dump should only contain the classes that gained coverage since the previous dumps. Dumps without
+	 * any new coverage are skipped entirely.
+	 */
+	/* package */ boolean deltaUpload = false;
+
+	/**
+	 * Whether the coverage of the class files without execution data is kept in memory between dumps, so only the
+	 * executed and changed class files have to be analyzed for each dump.
+	 */
+	/* package */ boolean cacheClassStructure = true;
+
+	/**
+	 * The file in which the analysis results of the class files are persisted between restarts of the agent or null
+	 * if all class files should be analyzed on every start.
+	 */
+	/* package */ File probesIndexFile = null;
+
+	/**
+	 * The number of threads used to analyze the class files on startup.
+	 */
+	/* package */ int analysisParallelism = 1;
+
 	/**
 	 * Include patterns to pass on to JaCoCo.
 	 */
@@ -97,6 +125,16 @@ public class AgentOptions {
 	 */
 	/* package */ TeamscaleServer teamscaleServer = new TeamscaleServer();
 
+	/**
+	 * The maximal size in MB of the reports that wait for their upload to Teamscale in the {@link #outputDirectory}.
+	 */
+	/* package */ int teamscaleSpoolMaxSizeInMb = 1024;
+
+	/**
+	 * Whether the reports uploaded to Teamscale are compressed with gzip.
+	 */
+	/* package */ boolean compressUpload = false;
+
 	/**
 	 * The report artifacts that should be produced and stored.
 	 * Only applies for the Test Impact mode.
@@ -108,6 +146,18 @@ public class AgentOptions {
 	 */
 	/* package */ Integer httpServerPort = null;
 
+	/**
+	 * Whether the HTTP server only takes a snapshot of the coverage and processes the test events in the background.
+	 * Only applies for the Test Impact mode.
+	 */
+	/* package */ boolean httpServerPipelined = false;
+
+	/**
+	 * The maximal number of test events that may wait for their processing in pipelined mode. Further requests
+	 * block until there is room in the queue.
+	 */
+	/* package */ int httpServerQueueSize = 1000;
+
 	/**
 	 * @see #originalOptionsString
 	 */
@@ -196,16 +246,31 @@ public class AgentOptions {
 	 * Creates the store to use for the coverage XMLs.
 	 */
 	public IXmlStore createStore() {
-		TimestampedFileStore fileStore = new TimestampedFileStore(outputDirectory);
+		TimestampedFileStore fileStore = new TimestampedFileStore(outputDirectory, shouldCompressOutput());
 		if (uploadUrl != null) {
 			return new HttpUploadStore(fileStore, uploadUrl, additionalMetaDataFiles);
 		}
 		if (teamscaleServer.hasAllRequiredFieldsSet()) {
-			return new TeamscaleUploadStore(fileStore, teamscaleServer);
+			return new TeamscaleUploadStore(fileStore, teamscaleServer,
+					getTeamscaleSpoolMaxSizeInMb() * 1024L * 1024L, shouldCompressUpload());
 		}
 		return fileStore;
 	}
 
+	/**
+	 * @see #compressUpload
+	 */
+	public boolean shouldCompressUpload() {
+		return compressUpload;
+	}
+
+	/**
+	 * @see #compressOutput
+	 */
+	public boolean shouldCompressOutput() {
+		return compressOutput;
+	}
+
 	/**
 	 * @see #classDirectoriesOrZips
 	 */
@@ -213,6 +278,11 @@ public class AgentOptions {
 		return classDirectoriesOrZips;
 	}
 
+	/** @see #teamscaleSpoolMaxSizeInMb */
+	public int getTeamscaleSpoolMaxSizeInMb() {
+		return teamscaleSpoolMaxSizeInMb;
+	}
+
 	/** @see #teamscaleServer */
 	public TeamscaleServer getTeamscaleServerOptions() {
 		return teamscaleServer;
@@ -239,6 +309,34 @@ public class AgentOptions {
 		return shouldIgnoreDuplicateClassFiles;
 	}
 
+	/**
+	 * @see #deltaUpload
+	 */
+	public boolean isDeltaUpload() {
+		return deltaUpload;
+	}
+
+	/**
+	 * @see #cacheClassStructure
+	 */
+	public boolean shouldCacheClassStructure() {
+		return cacheClassStructure;
+	}
+
+	/**
+	 * @see #probesIndexFile
+	 */
+	public File getProbesIndexFile() {
+		return probesIndexFile;
+	}
+
+	/**
+	 * @see #analysisParallelism
+	 */
+	public int getAnalysisParallelism() {
+		return analysisParallelism;
+	}
+
 	/** Returns whether the config indicates to use Test Impact mode. */
 	private boolean useTestImpactMode() {
 		return httpServerPort != null;
@@ -251,6 +349,16 @@ public class AgentOptions {
 		return httpServerReportFormats;
 	}
 
+	/** @see #httpServerPipelined */
+	public boolean isHttpServerPipelined() {
+		return httpServerPipelined;
+	}
+
+	/** @see #httpServerQueueSize */
+	public int getHttpServerQueueSize() {
+		return httpServerQueueSize;
+	}
+
 	/**
 	 * Returns the port at which the http server should listen for test execution information or null if disabled.
 	 */
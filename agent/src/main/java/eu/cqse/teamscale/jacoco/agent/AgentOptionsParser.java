@@ -114,6 +114,9 @@ public class AgentOptionsParser {
 			case "out":
 				options.outputDirectory = parsePath(key, value);
 				return true;
+			case "compress-out":
+				options.compressOutput = Boolean.parseBoolean(value);
+				return true;
 			case "upload-url":
 				options.uploadUrl = parseUrl(value);
 				if (options.uploadUrl == null) {
@@ -130,6 +133,25 @@ public class AgentOptionsParser {
 			case "ignore-duplicates":
 				options.shouldIgnoreDuplicateClassFiles = Boolean.parseBoolean(value);
 				return true;
+			case "delta-upload":
+				options.deltaUpload = Boolean.parseBoolean(value);
+				return true;
+			case "cache-class-structure":
+				options.cacheClassStructure = Boolean.parseBoolean(value);
+				return true;
+			case "probe-index":
+				options.probesIndexFile = parsePath(key, value).toFile();
+				return true;
+			case "analysis-parallelism":
+				try {
+					options.analysisParallelism = Integer.parseInt(value);
+				} catch (NumberFormatException e) {
+					throw new AgentOptionParseException("Non-numeric value given for option 'analysis-parallelism'");
+				}
+				if (options.analysisParallelism < 1) {
+					throw new AgentOptionParseException("The value of option 'analysis-parallelism' must be at least 1");
+				}
+				return true;
 			case "includes":
 				options.jacocoIncludes = value.replaceAll(";", ":");
 				return true;
@@ -208,6 +230,19 @@ public class AgentOptionsParser {
 			case "teamscale-message":
 				options.teamscaleServer.message = value;
 				return true;
+			case "teamscale-spool-max-mb":
+				try {
+					options.teamscaleSpoolMaxSizeInMb = Integer.parseInt(value);
+				} catch (NumberFormatException e) {
+					throw new AgentOptionParseException("Non-numeric value given for option 'teamscale-spool-max-mb'");
+				}
+				if (options.teamscaleSpoolMaxSizeInMb < 1) {
+					throw new AgentOptionParseException("The value of option 'teamscale-spool-max-mb' must be at least 1");
+				}
+				return true;
+			case "teamscale-compress-upload":
+				options.compressUpload = Boolean.parseBoolean(value);
+				return true;
 			default:
 				return false;
 		}
@@ -251,6 +286,20 @@ public class AgentOptionsParser {
 							"Invalid port number " + value + " given for option 'http-server-port'!");
 				}
 				return true;
+			case "http-server-pipelined":
+				options.httpServerPipelined = Boolean.parseBoolean(value);
+				return true;
+			case "http-server-queue-size":
+				try {
+					options.httpServerQueueSize = Integer.parseInt(value);
+				} catch (NumberFormatException e) {
+					throw new AgentOptionParseException(
+							"Invalid queue size " + value + " given for option 'http-server-queue-size'!");
+				}
+				if (options.httpServerQueueSize < 1) {
+					throw new AgentOptionParseException("The value of option 'http-server-queue-size' must be at least 1!");
+				}
+				return true;
 			default:
 				return false;
 		}
@@ -0,0 +1,73 @@
+package eu.cqse.teamscale.jacoco.agent;
+
+import eu.cqse.teamscale.report.jacoco.dump.Dump;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Remembers which probes of which classes have been hit by any of the previous dumps. Used to upload only the classes
+ * that gained new coverage since then.
+ * <p>
+ * This class is not thread-safe.
+ */
+/* package */ class CoverageDeltaTracker {
+
+	/** The union of all probes hit so far per class ID. */
+	private final Map<Long, boolean[]> hitProbesByClassId = new HashMap<>();
+
+	/**
+	 * Returns a dump that only contains the execution data of the classes for which the given dump hits at least one
+	 * probe that was not hit by any previous dump or null if there are no such classes. The returned coverage is only
+	 * remembered once it is passed to {@link #commit(Dump)}, so this method has no side effects.
+	 */
+	/* package */ Dump computeDelta(Dump dump) {
+		ExecutionDataStore newCoverage = new ExecutionDataStore();
+		for (ExecutionData executionData : dump.store.getContents()) {
+			if (hasNewHits(executionData)) {
+				newCoverage.put(executionData);
+			}
+		}
+
+		if (newCoverage.getContents().isEmpty()) {
+			return null;
+		}
+		return new Dump(dump.info, newCoverage);
+	}
+
+	/**
+	 * Remembers the hit probes of the given dump, so they are not part of the following deltas. Call this only after
+	 * the delta has been stored successfully, otherwise its coverage is lost.
+	 */
+	/* package */ void commit(Dump delta) {
+		for (ExecutionData executionData : delta.store.getContents()) {
+			boolean[] probes = executionData.getProbes();
+			boolean[] knownHits = hitProbesByClassId.get(executionData.getId());
+			if (knownHits == null || knownHits.length != probes.length) {
+				hitProbesByClassId.put(executionData.getId(), probes.clone());
+				continue;
+			}
+			for (int i = 0; i < probes.length; i++) {
+				knownHits[i] |= probes[i];
+			}
+		}
+	}
+
+	/** Returns whether the given execution data hits any probe that is not known yet. */
+	private boolean hasNewHits(ExecutionData executionData) {
+		boolean[] probes = executionData.getProbes();
+		boolean[] knownHits = hitProbesByClassId.get(executionData.getId());
+		if (knownHits == null || knownHits.length != probes.length) {
+			return executionData.hasHits();
+		}
+
+		for (int i = 0; i < probes.length; i++) {
+			if (probes[i] && !knownHits[i]) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
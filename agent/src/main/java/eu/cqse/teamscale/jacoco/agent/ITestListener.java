@@ -2,27 +2,31 @@ package eu.cqse.teamscale.jacoco.agent;
 
 import eu.cqse.teamscale.jacoco.agent.store.IXmlStore;
 import eu.cqse.teamscale.report.jacoco.dump.Dump;
-import spark.Request;
 
-/** Interface for classes that need to react upon test execution events */
+/**
+ * Interface for classes that need to react upon test execution events.
+ * <p>
+ * All methods are called from the same thread, but not necessarily from the HTTP request thread that received the
+ * event.
+ */
 public interface ITestListener {
 
 	/**
 	 * Called when a test is about to start.
 	 *
-	 * @param request The HTTP request that was sent to indicate the test start.
-	 * @param dump    The coverage dump from everything that was collected since the end of the last test
-	 *                or since the system startup (if this is the first test.)
+	 * @param event The snapshot of the HTTP request that was sent to indicate the test start.
+	 * @param dump  The coverage dump from everything that was collected since the end of the last test
+	 *              or since the system startup (if this is the first test.)
 	 */
-	void onTestStart(Request request, Dump dump);
+	void onTestStart(TestEvent event, Dump dump);
 
 	/**
 	 * Called when a test has just ended.
 	 *
-	 * @param request The HTTP request that was sent to indicate the test end.
-	 * @param dump    The coverage dump from everything that was covered since the test has started.
+	 * @param event The snapshot of the HTTP request that was sent to indicate the test end.
+	 * @param dump  The coverage dump from everything that was covered since the test has started.
 	 */
-	void onTestFinish(Request request, Dump dump);
+	void onTestFinish(TestEvent event, Dump dump);
 
 	/**
 	 * Called whenever artifacts should be generated and dumped to the store.
@@ -8,6 +8,9 @@ package eu.cqse.teamscale.jacoco.agent;
 import eu.cqse.teamscale.report.jacoco.dump.Dump;
 import org.jacoco.agent.rt.IAgent;
 import org.jacoco.agent.rt.RT;
+import org.jacoco.agent.rt.internal_c13123e.Agent;
+import org.jacoco.agent.rt.internal_c13123e.core.runtime.RuntimeData;
+import org.jacoco.core.data.ExecutionData;
 import org.jacoco.core.data.ExecutionDataReader;
 import org.jacoco.core.data.ExecutionDataStore;
 import org.jacoco.core.data.ISessionInfoVisitor;
@@ -47,11 +50,46 @@ public class JacocoRuntimeController {
 
 	/**
 	 * Dumps execution data and resets it.
+	 * <p>
+	 * If the agent is JaCoCo's own runtime, the probe arrays are copied directly from its {@link RuntimeData}. This
+	 * avoids serializing all classes to JaCoCo's binary format and parsing them again, which otherwise happens at every
+	 * test start and end.
 	 *
 	 * @throws DumpException if dumping fails. This should never happen in real life. Dumping
 	 *                       should simply be retried later if this ever happens.
 	 */
 	public Dump dumpAndReset() throws DumpException {
+		if (agent instanceof Agent) {
+			return snapshotAndReset(((Agent) agent).getData());
+		}
+		return dumpAndResetSerialized();
+	}
+
+	/**
+	 * Copies the probes of all classes with hits from the given runtime data and resets it. Like JaCoCo's
+	 * {@link org.jacoco.core.data.ExecutionDataWriter}, classes without any hits are omitted.
+	 * <p>
+	 * The copied arrays are not pooled, since the listeners keep the returned {@link Dump} for an unknown time, e.g.
+	 * until it has been converted on a background thread.
+	 */
+	/* package */ static Dump snapshotAndReset(RuntimeData data) {
+		ExecutionDataStore store = new ExecutionDataStore();
+		SessionInfoVisitor sessionInfoVisitor = new SessionInfoVisitor();
+		data.collect(executionData -> {
+			if (executionData.hasHits()) {
+				store.put(new ExecutionData(executionData.getId(), executionData.getName(),
+						executionData.getProbes().clone()));
+			}
+		}, info -> sessionInfoVisitor.visitSessionInfo(
+				new SessionInfo(info.getId(), info.getStartTimeStamp(), info.getDumpTimeStamp())), true);
+		return new Dump(sessionInfoVisitor.sessionInfo, store);
+	}
+
+	/**
+	 * Dumps execution data via JaCoCo's binary format and resets it. Used for agents that do not expose their runtime
+	 * data.
+	 */
+	/* package */ Dump dumpAndResetSerialized() throws DumpException {
 		byte[] binaryData = agent.getExecutionData(true);
 
 		try (ByteArrayInputStream inputStream = new ByteArrayInputStream(binaryData)) {
@@ -0,0 +1,71 @@
+package eu.cqse.teamscale.jacoco.agent;
+
+import spark.Request;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of the HTTP request that signaled a test event. In contrast to the {@link Request} itself it can
+ * safely be processed after the request has been answered, e.g. on a background thread.
+ */
+public class TestEvent {
+
+	/** The path parameters with their keys normalized as done by {@link Request#params(String)}. */
+	private final Map<String, String> pathParameters;
+
+	/** The query parameters. */
+	private final Map<String, String> queryParameters;
+
+	/** The request body. */
+	private final String body;
+
+	/** The time at which the event was received. */
+	private final long timestamp;
+
+	/** Constructor. */
+	public TestEvent(Map<String, String> pathParameters, Map<String, String> queryParameters, String body,
+					 long timestamp) {
+		this.pathParameters = Collections.unmodifiableMap(new HashMap<>(pathParameters));
+		this.queryParameters = Collections.unmodifiableMap(new HashMap<>(queryParameters));
+		this.body = body;
+		this.timestamp = timestamp;
+	}
+
+	/** Creates a snapshot of the given request. */
+	public static TestEvent fromRequest(Request request) {
+		Map<String, String> queryParameters = new HashMap<>();
+		for (String name : request.queryParams()) {
+			queryParameters.put(name, request.queryParams(name));
+		}
+		return new TestEvent(request.params(), queryParameters, request.body(), System.currentTimeMillis());
+	}
+
+	/**
+	 * Returns the value of the given path parameter or null. Same as {@link Request#params(String)}, i.e. the leading
+	 * colon is optional and the name is not case sensitive.
+	 */
+	public String params(String name) {
+		if (!name.startsWith(":")) {
+			name = ":" + name;
+		}
+		return pathParameters.get(name.toLowerCase(Locale.ROOT));
+	}
+
+	/** Returns the value of the given query parameter or null. */
+	public String queryParams(String name) {
+		return queryParameters.get(name);
+	}
+
+	/** @see #body */
+	public String body() {
+		return body;
+	}
+
+	/** @see #timestamp */
+	public long getTimestamp() {
+		return timestamp;
+	}
+}
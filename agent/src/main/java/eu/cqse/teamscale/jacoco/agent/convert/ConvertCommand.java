@@ -55,12 +55,14 @@ public class ConvertCommand implements ICommand {
 	/* package */ List<String> locationExcludeFilters = new ArrayList<>();
 
 	/** The directory to write the XML traces to. */
-	@Parameter(names = {"--in", "-i"}, required = true, description = "" + "The binary .exec file to read.")
+	@Parameter(names = {"--in", "-i"}, required = true, description = ""
+			+ "The binary .exec file to read. May be compressed with gzip.")
 	/* package */ String inputFile = "";
 
 	/** The directory to write the XML traces to. */
 	@Parameter(names = {"--out", "-o"}, required = true, description = ""
-			+ "The file to write the generated XML report to.")
+			+ "The file to write the generated XML report to. The report is compressed with gzip if the file name"
+			+ " ends with .gz.")
 	/* package */ String outputFile = "";
 
 	/** Whether to ignore duplicate, non-identical class files. */
@@ -4,14 +4,17 @@ import eu.cqse.teamscale.report.jacoco.dump.Dump;
 import eu.cqse.teamscale.report.jacoco.JaCoCoXmlReportGenerator;
 import eu.cqse.teamscale.report.util.AntPatternIncludeFilter;
 import eu.cqse.teamscale.jacoco.util.Benchmark;
+import eu.cqse.teamscale.jacoco.util.GzipUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.conqat.lib.commons.filesystem.FileSystemUtils;
 import org.jacoco.core.data.ExecutionDataStore;
 import org.jacoco.core.data.SessionInfo;
 import org.jacoco.core.tools.ExecFileLoader;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 
 import static eu.cqse.teamscale.jacoco.util.LoggingUtils.wrap;
 
@@ -29,7 +32,9 @@ public class Converter {
 	/** Converts one .exec binary coverage file to XML. */
 	public void run() throws IOException {
 		ExecFileLoader loader = new ExecFileLoader();
-		loader.load(arguments.getInputFile());
+		try (InputStream input = GzipUtils.openPossiblyCompressed(arguments.getInputFile().toPath())) {
+			loader.load(input);
+		}
 
 		SessionInfo sessionInfo = loader.getSessionInfoStore().getMerged("dummy");
 		ExecutionDataStore executionDataStore = loader.getExecutionDataStore();
@@ -40,9 +45,11 @@ public class Converter {
 		JaCoCoXmlReportGenerator generator = new JaCoCoXmlReportGenerator(arguments.getClassDirectoriesOrZips(),
 				locationIncludeFilter, arguments.shouldIgnoreDuplicateClassFiles(), wrap(logger));
 
-		try (Benchmark benchmark = new Benchmark("Generating the XML report")) {
-			String xml = generator.convert(new Dump(sessionInfo, executionDataStore));
-			FileSystemUtils.writeFileUTF8(arguments.getOutputFile(), xml);
+		File outputFile = arguments.getOutputFile();
+		boolean compress = outputFile.getName().endsWith(GzipUtils.GZIP_EXTENSION);
+		try (Benchmark benchmark = new Benchmark("Generating the XML report");
+			 OutputStream output = GzipUtils.createOutputStream(outputFile.toPath(), compress)) {
+			generator.convertToReport(output, new Dump(sessionInfo, executionDataStore));
 		}
 	}
 }
@@ -0,0 +1,19 @@
+package eu.cqse.teamscale.jacoco.agent.store;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes a report to an output stream. Allows stores to stream the report directly to its destination instead of
+ * holding it completely in memory.
+ * <p>
+ * A store may call {@link #writeTo(OutputStream)} more than once, e.g. if an upload is retried or the report is written
+ * to a fallback store after a failed upload. Every call must therefore produce the same report.
+ */
+@FunctionalInterface
+public interface IReportWriter {
+
+	/** Writes the report to the given stream. Implementations must not close the stream. */
+	void writeTo(OutputStream output) throws IOException;
+
+}
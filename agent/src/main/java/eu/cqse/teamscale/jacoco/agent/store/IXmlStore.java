@@ -2,11 +2,34 @@ package eu.cqse.teamscale.jacoco.agent.store;
 
 import eu.cqse.teamscale.client.EReportFormat;
 
+import java.nio.charset.StandardCharsets;
+
 /** Stores XML data permanently. */
 public interface IXmlStore {
 
-	/** Stores the given XML permanently. */
-	void store(String xml, EReportFormat format);
+	/**
+	 * Stores the report produced by the given writer permanently. Failures are logged by the store.
+	 *
+	 * @return whether the report has been stored successfully.
+	 */
+	boolean store(IReportWriter report, EReportFormat format);
+
+	/**
+	 * Stores the given XML permanently. Only use this for small reports, large ones should be streamed via
+	 * {@link #store(IReportWriter, EReportFormat)}.
+	 */
+	default boolean store(String xml, EReportFormat format) {
+		byte[] bytes = xml.getBytes(StandardCharsets.UTF_8);
+		return store(output -> output.write(bytes), format);
+	}
+
+	/**
+	 * Called when the agent shuts down after the last report has been stored. Stores that work in the background
+	 * should finish their work here.
+	 */
+	default void shutdown() {
+		// Nothing to do by default
+	}
 
 	/** Human-readable description of the store. */
 	String describe();
@@ -1,31 +1,59 @@
 package eu.cqse.teamscale.jacoco.agent.store.file;
 
 import eu.cqse.teamscale.client.EReportFormat;
+import eu.cqse.teamscale.jacoco.agent.store.IReportWriter;
 import eu.cqse.teamscale.jacoco.agent.store.IXmlStore;
 import eu.cqse.teamscale.jacoco.util.Benchmark;
+import eu.cqse.teamscale.jacoco.util.GzipUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.conqat.lib.commons.filesystem.FileSystemUtils;
+import org.conqat.lib.commons.assertion.CCSMAssert;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Writes XMLs to files in a folder. The files are timestamped with the time of
  * writing the trace to make each file reasonably unique so they don't overwrite
- * each other.
+ * each other. The files can optionally be compressed with gzip, which is
+ * transparently handled by {@link GzipUtils#openPossiblyCompressed(Path)}.
  */
 public class TimestampedFileStore implements IXmlStore {
 
+	/** The extension of files that are still being written. */
+	private static final String TEMPORARY_FILE_EXTENSION = ".tmp";
+
+	/** Matches the names of the written files. Groups are the file prefix, the timestamp and the extension. */
+	private static final Pattern FILE_NAME_PATTERN = Pattern
+			.compile("([a-z-]+)-(\\d+)\\.([a-z]+)(" + Pattern.quote(GzipUtils.GZIP_EXTENSION) + ")?");
+
 	/** The logger. */
 	private final Logger logger = LogManager.getLogger(this);
 
 	/** The directory to which to write the XML files. */
 	private final Path outputDirectory;
 
+	/** Whether the files are compressed with gzip. */
+	private final boolean compress;
+
 	/** Constructor. */
 	public TimestampedFileStore(Path outputDirectory) {
+		this(outputDirectory, false);
+	}
+
+	/** Constructor. */
+	public TimestampedFileStore(Path outputDirectory, boolean compress) {
 		this.outputDirectory = outputDirectory;
+		this.compress = compress;
 	}
 
 	/** @see #outputDirectory */
@@ -35,16 +63,83 @@ public class TimestampedFileStore implements IXmlStore {
 
 	/** {@inheritDoc} */
 	@Override
-	public void store(String xml, EReportFormat format) {
+	public boolean store(IReportWriter report, EReportFormat format) {
 		try (Benchmark benchmark = new Benchmark("Writing the " + format + " report to a file")) {
-			long currentTime = System.currentTimeMillis();
-			Path outputPath = outputDirectory.resolve(format.filePrefix + "-" + currentTime + "." + format.extension);
-			try {
-				FileSystemUtils.writeFile(outputPath.toFile(), xml);
-			} catch (IOException e) {
-				logger.error("Failed to write XML to {}", outputPath, e);
+			write(report, format);
+			return true;
+		} catch (IOException e) {
+			logger.error("Failed to write the {} report to {}", format.readableName, outputDirectory, e);
+			return false;
+		}
+	}
+
+	/**
+	 * Writes the report to a new file and returns its path. The report is written to a temporary file first, so the
+	 * returned file is always complete, even if the agent is killed while writing.
+	 */
+	public Path write(IReportWriter report, EReportFormat format) throws IOException {
+		long currentTime = System.currentTimeMillis();
+		String fileName = format.filePrefix + "-" + currentTime + "." + format.extension;
+		if (compress) {
+			fileName += GzipUtils.GZIP_EXTENSION;
+		}
+		Path outputPath = outputDirectory.resolve(fileName);
+		Path temporaryPath = outputDirectory.resolve(fileName + TEMPORARY_FILE_EXTENSION);
+		try (OutputStream output = GzipUtils.createOutputStream(temporaryPath, compress)) {
+			report.writeTo(output);
+		} catch (IOException e) {
+			deleteIncompleteFile(temporaryPath);
+			throw e;
+		}
+		Files.move(temporaryPath, outputPath, StandardCopyOption.ATOMIC_MOVE);
+		return outputPath;
+	}
+
+	/**
+	 * Returns all reports in the {@link #outputDirectory} that were written by this class, ordered by the time at which
+	 * they were written.
+	 */
+	public List<Path> listReports() throws IOException {
+		List<Path> reports = new ArrayList<>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(outputDirectory)) {
+			for (Path file : files) {
+				if (getFormat(file) != null) {
+					reports.add(file);
+				}
+			}
+		}
+		reports.sort(Comparator.comparingLong(TimestampedFileStore::getTimestamp));
+		return reports;
+	}
+
+	/** Returns the format of the report in the given file or null if the file was not written by this class. */
+	public static EReportFormat getFormat(Path file) {
+		Matcher matcher = FILE_NAME_PATTERN.matcher(file.getFileName().toString());
+		if (!matcher.matches()) {
+			return null;
+		}
+		for (EReportFormat format : EReportFormat.values()) {
+			if (format.filePrefix.equals(matcher.group(1)) && format.extension.equals(matcher.group(3))) {
+				return format;
 			}
 		}
+		return null;
+	}
+
+	/** Returns the time at which the report in the given file was written. */
+	private static long getTimestamp(Path file) {
+		Matcher matcher = FILE_NAME_PATTERN.matcher(file.getFileName().toString());
+		CCSMAssert.isTrue(matcher.matches(), "Not a report file: " + file);
+		return Long.parseLong(matcher.group(2));
+	}
+
+	/** Deletes the given file that could not be written completely. */
+	private void deleteIncompleteFile(Path path) {
+		try {
+			Files.deleteIfExists(path);
+		} catch (IOException e) {
+			logger.warn("Failed to delete incomplete file {}", path, e);
+		}
 	}
 
 	/** {@inheritDoc} */
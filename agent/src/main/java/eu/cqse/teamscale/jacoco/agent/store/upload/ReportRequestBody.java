@@ -0,0 +1,43 @@
+package eu.cqse.teamscale.jacoco.agent.store.upload;
+
+import eu.cqse.teamscale.jacoco.agent.store.IReportWriter;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Request body that streams a report directly into the HTTP request. Since its length is unknown in advance, the
+ * request is sent with chunked transfer encoding.
+ */
+public class ReportRequestBody extends RequestBody {
+
+	/** The content type of the body. */
+	private final MediaType contentType;
+
+	/** Writes the content of the body. */
+	private final IReportWriter report;
+
+	/** Constructor. */
+	public ReportRequestBody(MediaType contentType, IReportWriter report) {
+		this.contentType = contentType;
+		this.report = report;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public MediaType contentType() {
+		return contentType;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void writeTo(BufferedSink sink) throws IOException {
+		// Closing the stream would close the sink, which is up to OkHttp
+		OutputStream output = sink.outputStream();
+		report.writeTo(output);
+		output.flush();
+	}
+}
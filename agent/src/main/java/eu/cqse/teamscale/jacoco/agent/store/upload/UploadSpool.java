@@ -0,0 +1,348 @@
+package eu.cqse.teamscale.jacoco.agent.store.upload;
+
+import eu.cqse.teamscale.client.EReportFormat;
+import eu.cqse.teamscale.jacoco.agent.store.IReportWriter;
+import eu.cqse.teamscale.jacoco.agent.store.file.TimestampedFileStore;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Properties;
+
+/**
+ * Keeps reports on disk until they have been uploaded successfully. The uploads happen one after another in a
+ * background thread, so storing a report never waits for the network. Failed uploads are retried with an exponential
+ * backoff. Reports that are still on disk when the agent starts, e.g. because the server was not reachable before the
+ * application was shut down, are uploaded again.
+ * <p>
+ * Each report is stored together with the metadata of its upload, e.g. the commit to which the coverage belongs, in a
+ * file next to it. Reports from a previous run are uploaded with their own metadata instead of the one of the current
+ * run, which may belong to a different version of the application. Reports without such metadata are neither
+ * uploaded nor changed, since it is unknown to which commit they belong.
+ * <p>
+ * The disk usage is bounded: if the pending reports exceed the maximal size, the oldest ones are deleted.
+ */
+public class UploadSpool {
+
+	/** Uploads a single report. */
+	@FunctionalInterface
+	public interface IUploader {
+
+		/**
+		 * Uploads the report in the given file with the metadata that was stored together with the report.
+		 *
+		 * @throws IOException             if the upload failed, but may succeed later on.
+		 * @throws ReportRejectedException if the server rejected the report, so retrying the upload is pointless.
+		 */
+		void upload(Path file, EReportFormat format, Properties metadata) throws IOException, ReportRejectedException;
+
+	}
+
+	/** Indicates that the server rejected a report. */
+	public static class ReportRejectedException extends Exception {
+
+		/** Serialization ID. */
+		private static final long serialVersionUID = 1L;
+
+		/** Constructor. */
+		public ReportRejectedException(String message) {
+			super(message);
+		}
+
+	}
+
+	/** The extension appended to rejected reports, so they are not uploaded again on the next start. */
+	/* package */ static final String REJECTED_FILE_EXTENSION = ".rejected";
+
+	/** The extension of the files next to the reports that hold the metadata of their upload. */
+	/* package */ static final String METADATA_FILE_EXTENSION = ".metadata";
+
+	/** The delay before the first retry of a failed upload. */
+	private static final Duration INITIAL_BACKOFF = Duration.ofSeconds(30);
+
+	/** The maximal delay between two retries. */
+	private static final Duration MAX_BACKOFF = Duration.ofMinutes(30);
+
+	/** The logger. */
+	private final Logger logger = LogManager.getLogger(this);
+
+	/** The store that writes the reports to the spool directory. */
+	private final TimestampedFileStore spoolStore;
+
+	/** Performs the actual uploads. */
+	private final IUploader uploader;
+
+	/** The maximal total size of the pending reports in bytes. */
+	private final long maxSpoolSizeBytes;
+
+	/** The delay before the first retry of a failed upload. */
+	private final Duration initialBackoff;
+
+	/** The maximal delay between two retries. */
+	private final Duration maxBackoff;
+
+	/** The reports that have not been uploaded yet, oldest first. Guarded by this. */
+	private final Deque<SpooledReport> pendingReports = new ArrayDeque<>();
+
+	/** The total size of the {@link #pendingReports}. Guarded by this. */
+	private long pendingBytes = 0;
+
+	/** The time in milliseconds before which no upload is attempted. Guarded by this. */
+	private long nextAttemptTime = 0;
+
+	/** Whether the agent shuts down. Guarded by this. */
+	private boolean isShuttingDown = false;
+
+	/** The thread that uploads the reports. */
+	private final Thread senderThread = new Thread(this::sendReports, "Teamscale upload spool");
+
+	/** Constructor. */
+	public UploadSpool(TimestampedFileStore spoolStore, IUploader uploader, long maxSpoolSizeBytes) {
+		this(spoolStore, uploader, maxSpoolSizeBytes, INITIAL_BACKOFF, MAX_BACKOFF);
+	}
+
+	/** Constructor. */
+	/* package */ UploadSpool(TimestampedFileStore spoolStore, IUploader uploader, long maxSpoolSizeBytes,
+							  Duration initialBackoff, Duration maxBackoff) {
+		this.spoolStore = spoolStore;
+		this.uploader = uploader;
+		this.maxSpoolSizeBytes = maxSpoolSizeBytes;
+		this.initialBackoff = initialBackoff;
+		this.maxBackoff = maxBackoff;
+		senderThread.setDaemon(true);
+	}
+
+	/** Enqueues the reports left over in the spool directory and starts uploading. */
+	public void start() {
+		try {
+			for (Path file : spoolStore.listReports()) {
+				Path metadataFile = getMetadataFile(file);
+				if (!Files.exists(metadataFile)) {
+					// E.g. a report written by the fallback after a failed upload or a file placed there by the user
+					logger.warn("Found report {} without upload metadata, so the commit to which it belongs is " +
+							"unknown. Leaving it untouched and not uploading it.", file);
+					continue;
+				}
+				logger.info("Found report {} from a previous run. Uploading it again.", file);
+				enqueue(file, TimestampedFileStore.getFormat(file), readMetadata(metadataFile));
+			}
+		} catch (IOException e) {
+			logger.error("Failed to list the reports in {}", spoolStore.getOutputDirectory(), e);
+		}
+		senderThread.start();
+	}
+
+	/**
+	 * Writes the report together with the given metadata to the spool directory and schedules its upload. The
+	 * metadata is passed to the {@link IUploader}, even if the report is only uploaded by a later run.
+	 */
+	public void store(IReportWriter report, EReportFormat format, Properties metadata) throws IOException {
+		Path file = spoolStore.write(report, format);
+		try {
+			writeMetadata(getMetadataFile(file), metadata);
+		} catch (IOException e) {
+			Files.deleteIfExists(file);
+			throw e;
+		}
+		enqueue(file, format, metadata);
+	}
+
+	/** Writes the metadata to the given file. The file is written to a temporary file first, so it is always complete. */
+	private static void writeMetadata(Path metadataFile, Properties metadata) throws IOException {
+		Path temporaryFile = metadataFile.resolveSibling(metadataFile.getFileName() + ".tmp");
+		try (Writer writer = Files.newBufferedWriter(temporaryFile, StandardCharsets.UTF_8)) {
+			metadata.store(writer, null);
+		}
+		Files.move(temporaryFile, metadataFile, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/** Reads the metadata from the given file. */
+	private static Properties readMetadata(Path metadataFile) throws IOException {
+		Properties metadata = new Properties();
+		try (Reader reader = Files.newBufferedReader(metadataFile, StandardCharsets.UTF_8)) {
+			metadata.load(reader);
+		}
+		return metadata;
+	}
+
+	/** Returns the file that holds the metadata of the given report. */
+	/* package */ static Path getMetadataFile(Path file) {
+		return file.resolveSibling(file.getFileName() + METADATA_FILE_EXTENSION);
+	}
+
+	/** Returns the file to which the given report is moved if it should not be uploaded again. */
+	private static Path getRejectedFile(Path file) {
+		return file.resolveSibling(file.getFileName() + REJECTED_FILE_EXTENSION);
+	}
+
+	/** Schedules the upload of the given file, which is deleted after the upload. */
+	private synchronized void enqueue(Path file, EReportFormat format, Properties metadata) throws IOException {
+		SpooledReport report = new SpooledReport(file, format, metadata, Files.size(file));
+		pendingReports.addLast(report);
+		pendingBytes += report.size;
+
+		// The newest report is always kept, even if it exceeds the maximal size on its own
+		while (pendingBytes > maxSpoolSizeBytes && pendingReports.size() > 1) {
+			SpooledReport oldestReport = pendingReports.removeFirst();
+			pendingBytes -= oldestReport.size;
+			logger.warn("The reports waiting for their upload exceed {} bytes. Deleting the oldest report {}",
+					maxSpoolSizeBytes, oldestReport.file);
+			deleteReport(oldestReport);
+		}
+		notifyAll();
+	}
+
+	/** Uploads the pending reports until the agent shuts down. */
+	private void sendReports() {
+		Duration backoff = initialBackoff;
+		while (true) {
+			SpooledReport report;
+			try {
+				report = waitForNextReport();
+			} catch (InterruptedException e) {
+				return;
+			}
+			if (report == null) {
+				return;
+			}
+
+			try {
+				uploader.upload(report.file, report.format, report.metadata);
+				logger.info("Uploaded {}", report.file);
+				deleteReport(report);
+			} catch (ReportRejectedException e) {
+				Path rejectedFile = getRejectedFile(report.file);
+				logger.error("The server rejected {}: {} Keeping it as {}", report.file, e.getMessage(), rejectedFile);
+				moveFile(report.file, rejectedFile);
+				moveFile(getMetadataFile(report.file), getMetadataFile(rejectedFile));
+			} catch (IOException | RuntimeException e) {
+				synchronized (this) {
+					if (isShuttingDown) {
+						logger.warn("Failed to upload {}. Pending reports will be uploaded on the next start",
+								report.file, e);
+						return;
+					}
+					logger.warn("Failed to upload {}. Retrying in {} seconds", report.file, backoff.getSeconds(),
+							e);
+					nextAttemptTime = System.currentTimeMillis() + backoff.toMillis();
+				}
+				backoff = backoff.multipliedBy(2);
+				if (backoff.compareTo(maxBackoff) > 0) {
+					backoff = maxBackoff;
+				}
+				continue;
+			}
+
+			backoff = initialBackoff;
+			synchronized (this) {
+				// The report may have been deleted in the meantime to limit the disk usage
+				if (pendingReports.remove(report)) {
+					pendingBytes -= report.size;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Waits until there is a report to upload and the backoff after a failed upload has elapsed. During the shutdown,
+	 * the backoff is skipped. Returns null if the agent shuts down and all reports have been uploaded.
+	 */
+	private synchronized SpooledReport waitForNextReport() throws InterruptedException {
+		while (true) {
+			if (pendingReports.isEmpty()) {
+				if (isShuttingDown) {
+					return null;
+				}
+				wait();
+				continue;
+			}
+
+			long remainingBackoff = nextAttemptTime - System.currentTimeMillis();
+			if (remainingBackoff <= 0 || isShuttingDown) {
+				return pendingReports.getFirst();
+			}
+			wait(remainingBackoff);
+		}
+	}
+
+	/** Deletes the file of the given report and its metadata. */
+	private void deleteReport(SpooledReport report) {
+		for (Path file : Arrays.asList(report.file, getMetadataFile(report.file))) {
+			try {
+				Files.deleteIfExists(file);
+			} catch (IOException e) {
+				logger.error("Failed to delete {}", file, e);
+			}
+		}
+	}
+
+	/** Renames the given file, e.g. so a rejected report is not uploaded again. */
+	private void moveFile(Path file, Path targetFile) {
+		try {
+			Files.move(file, targetFile);
+		} catch (IOException e) {
+			logger.error("Failed to rename {}", file, e);
+		}
+	}
+
+	/**
+	 * Makes a last attempt to upload the pending reports, ignoring the backoff. Waits at most for the given time.
+	 * Reports that could not be uploaded remain on disk and are uploaded on the next start.
+	 */
+	public void shutdown(Duration timeout) {
+		synchronized (this) {
+			isShuttingDown = true;
+			notifyAll();
+		}
+		try {
+			senderThread.join(timeout.toMillis());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		synchronized (this) {
+			if (!pendingReports.isEmpty()) {
+				logger.warn("{} reports could not be uploaded yet. They will be uploaded on the next start",
+						pendingReports.size());
+			}
+		}
+	}
+
+	/** @see #spoolStore */
+	public TimestampedFileStore getSpoolStore() {
+		return spoolStore;
+	}
+
+	/** A report waiting for its upload. */
+	private static class SpooledReport {
+
+		/** The file that contains the report. */
+		private final Path file;
+
+		/** The format of the report. */
+		private final EReportFormat format;
+
+		/** The metadata of the upload. */
+		private final Properties metadata;
+
+		/** The size of the file in bytes. */
+		private final long size;
+
+		/** Constructor. */
+		private SpooledReport(Path file, EReportFormat format, Properties metadata, long size) {
+			this.file = file;
+			this.format = format;
+			this.metadata = metadata;
+			this.size = size;
+		}
+	}
+}
@@ -1,21 +1,25 @@
 package eu.cqse.teamscale.jacoco.agent.store.upload.http;
 
 import eu.cqse.teamscale.client.EReportFormat;
+import eu.cqse.teamscale.client.SharedHttpClient;
+import eu.cqse.teamscale.jacoco.agent.store.IReportWriter;
 import eu.cqse.teamscale.jacoco.agent.store.IXmlStore;
 import eu.cqse.teamscale.jacoco.agent.store.file.TimestampedFileStore;
+import eu.cqse.teamscale.jacoco.agent.store.upload.ReportRequestBody;
 import eu.cqse.teamscale.jacoco.util.Benchmark;
 import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.MultipartBody;
 import okhttp3.ResponseBody;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.conqat.lib.commons.assertion.CCSMAssert;
-import org.conqat.lib.commons.filesystem.FileSystemUtils;
 import retrofit2.Response;
 import retrofit2.Retrofit;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
+import java.io.OutputStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
 import java.util.zip.ZipEntry;
@@ -47,37 +51,35 @@ public class HttpUploadStore implements IXmlStore {
 		this.uploadUrl = uploadUrl;
 		this.additionalMetaDataFiles = additionalMetaDataFiles;
 
-		Retrofit retrofit = new Retrofit.Builder().baseUrl(uploadUrl).build();
+		// The zip file is already compressed, so there is no point in compressing the request
+		Retrofit retrofit = new Retrofit.Builder().baseUrl(uploadUrl).client(SharedHttpClient.newBuilder(false).build())
+				.build();
 		api = retrofit.create(IHttpUploadApi.class);
 	}
 
 	/** {@inheritDoc} */
 	@Override
-	public void store(String xml, EReportFormat format) {
+	public boolean store(IReportWriter report, EReportFormat format) {
 		CCSMAssert.isTrue(format == EReportFormat.JACOCO, "HTTP upload does only support JaCoCo " +
 				"coverage and cannot be used with Test Impact mode.");
 		try (Benchmark benchmark = new Benchmark("Uploading report via HTTP")) {
-			if (!tryUploading(xml)) {
-				logger.warn("Storing failed upload in {}", failureStore.getOutputDirectory());
-				failureStore.store(xml, format);
+			if (tryUploading(report)) {
+				return true;
 			}
+			logger.warn("Storing failed upload in {}", failureStore.getOutputDirectory());
+			return failureStore.store(report, format);
 		}
 	}
 
 	/** Performs the upload and returns <code>true</code> if successful. */
-	private boolean tryUploading(String xml) {
+	private boolean tryUploading(IReportWriter report) {
 		logger.debug("Uploading coverage to {}", uploadUrl);
 
-		byte[] zipFileBytes;
-		try {
-			zipFileBytes = createZipFile(xml);
-		} catch (IOException e) {
-			logger.error("Failed to compile coverage zip file for upload to {}", uploadUrl, e);
-			return false;
-		}
-
 		try {
-			Response<ResponseBody> response = api.uploadCoverageZip(zipFileBytes);
+			// The part is not created in a default method of the API, since Retrofit fails to call these on Java 9+
+			MultipartBody.Part part = MultipartBody.Part.createFormData("file", "coverage.zip",
+					new ReportRequestBody(MediaType.parse("application/zip"), output -> writeZipFile(output, report)));
+			Response<ResponseBody> response = api.upload(part).execute();
 			if (response.isSuccessful()) {
 				return true;
 			}
@@ -92,36 +94,21 @@ public class HttpUploadStore implements IXmlStore {
 	}
 
 	/**
-	 * Creates the zip file to upload which includes the given coverage XML and all
+	 * Writes the zip file to upload which includes the given coverage XML and all
 	 * {@link #additionalMetaDataFiles}.
 	 */
-	private byte[] createZipFile(String xml) throws IOException {
-		try (ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream()) {
-			try (ZipOutputStream zipOutputStream = new ZipOutputStream(byteArrayOutputStream);
-				 OutputStreamWriter writer = new OutputStreamWriter(zipOutputStream)) {
-				fillZipFile(zipOutputStream, writer, xml);
-			}
-			return byteArrayOutputStream.toByteArray();
-		}
-	}
-
-	/**
-	 * Fills the upload zip file with the given coverage XML and all
-	 * {@link #additionalMetaDataFiles}.
-	 */
-	private void fillZipFile(ZipOutputStream zipOutputStream, OutputStreamWriter writer, String xml)
-			throws IOException {
+	private void writeZipFile(OutputStream output, IReportWriter report) throws IOException {
+		ZipOutputStream zipOutputStream = new ZipOutputStream(output);
 		zipOutputStream.putNextEntry(new ZipEntry("coverage.xml"));
-		writer.write(xml);
-
-		// We flush the writer, but don't close it here, because closing the writer
-		// would also close the zipOutputStream, making further writes impossible.
-		writer.flush();
+		report.writeTo(zipOutputStream);
 
 		for (Path additionalFile : additionalMetaDataFiles) {
 			zipOutputStream.putNextEntry(new ZipEntry(additionalFile.getFileName().toString()));
-			zipOutputStream.write(FileSystemUtils.readFileBinary(additionalFile.toFile()));
+			Files.copy(additionalFile, zipOutputStream);
 		}
+
+		// We finish the zip file, but don't close it here, because closing it would also close the given stream
+		zipOutputStream.finish();
 	}
 
 	/** {@inheritDoc} */
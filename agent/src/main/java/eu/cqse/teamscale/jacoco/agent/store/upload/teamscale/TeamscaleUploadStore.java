@@ -1,80 +1,181 @@
 package eu.cqse.teamscale.jacoco.agent.store.upload.teamscale;
 
+import eu.cqse.teamscale.client.CommitDescriptor;
 import eu.cqse.teamscale.client.ITeamscaleService;
 import eu.cqse.teamscale.client.EReportFormat;
 import eu.cqse.teamscale.client.TeamscaleServer;
 import eu.cqse.teamscale.client.TeamscaleServiceGenerator;
+import eu.cqse.teamscale.jacoco.agent.store.IReportWriter;
 import eu.cqse.teamscale.jacoco.agent.store.IXmlStore;
 import eu.cqse.teamscale.jacoco.agent.store.file.TimestampedFileStore;
+import eu.cqse.teamscale.jacoco.agent.store.upload.ReportRequestBody;
+import eu.cqse.teamscale.jacoco.agent.store.upload.UploadSpool;
+import eu.cqse.teamscale.jacoco.agent.store.upload.UploadSpool.ReportRejectedException;
 import eu.cqse.teamscale.jacoco.util.Benchmark;
+import eu.cqse.teamscale.jacoco.util.GzipUtils;
 import okhttp3.MultipartBody;
-import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.conqat.lib.commons.filesystem.FileSystemUtils;
+import retrofit2.Response;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Properties;
 
-/** Uploads XML Coverage to a Teamscale instance. */
+/**
+ * Uploads XML Coverage to a Teamscale instance. The reports are written to the spool directory first and uploaded
+ * in the background by an {@link UploadSpool}, which also retries failed uploads. The commit, partition and message
+ * are stored together with each report, so reports from a previous run are uploaded to the commit they were recorded
+ * for.
+ */
 public class TeamscaleUploadStore implements IXmlStore {
 
+	/** The metadata key of the project to which the report is uploaded. */
+	private static final String PROJECT_KEY = "project";
+
+	/** The metadata key of the branch of the commit to which the report belongs. */
+	private static final String BRANCH_KEY = "branch";
+
+	/** The metadata key of the timestamp of the commit to which the report belongs. */
+	private static final String TIMESTAMP_KEY = "timestamp";
+
+	/** The metadata key of the partition to which the report is uploaded. */
+	private static final String PARTITION_KEY = "partition";
+
+	/** The metadata key of the message of the upload. */
+	private static final String MESSAGE_KEY = "message";
+
+	/** The maximal time to wait for pending uploads when the agent shuts down. */
+	private static final Duration SHUTDOWN_TIMEOUT = Duration.ofSeconds(30);
+
 	/** The logger. */
 	private final Logger logger = LogManager.getLogger(this);
 
-	/** The store to write failed uploads to. */
-	private final TimestampedFileStore failureStore;
-
 	/** Teamscale server details. */
 	private final TeamscaleServer teamscaleServer;
 
 	/** The API which performs the upload. */
 	private final ITeamscaleService api;
 
-	/** Constructor. */
-	public TeamscaleUploadStore(TimestampedFileStore failureStore, TeamscaleServer teamscaleServer) {
-		this.failureStore = failureStore;
+	/** Holds the reports until they have been uploaded. */
+	private final UploadSpool spool;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param compressRequests whether the uploaded reports are compressed with gzip.
+	 */
+	public TeamscaleUploadStore(TimestampedFileStore spoolStore, TeamscaleServer teamscaleServer,
+								long maxSpoolSizeBytes, boolean compressRequests) {
 		this.teamscaleServer = teamscaleServer;
 
 		api = TeamscaleServiceGenerator.createService(
 				ITeamscaleService.class,
 				teamscaleServer.url,
 				teamscaleServer.userName,
-				teamscaleServer.userAccessToken
+				teamscaleServer.userAccessToken,
+				compressRequests
 		);
-	}
 
-	@Override
-	public void store(String xml, EReportFormat format) {
-		try (Benchmark benchmark = new Benchmark("Uploading report to Teamscale")) {
-			if (!tryUploading(xml, format)) {
-				logger.warn("Storing failed upload in {}", failureStore.getOutputDirectory());
-				failureStore.store(xml, format);
-			}
-		}
+		spool = new UploadSpool(spoolStore, this::upload, maxSpoolSizeBytes);
+		spool.start();
 	}
 
-	/** Performs the upload and returns <code>true</code> if successful. */
-	private boolean tryUploading(String xml, EReportFormat format) {
-		logger.debug("Uploading {} artifact to {}", format.readableName, teamscaleServer);
-
-		try {
-			api.uploadReport(
-					teamscaleServer.project,
-					teamscaleServer.commit,
-					teamscaleServer.partition + format.partitionSuffix,
-					format,
-					teamscaleServer.message + " (" + format.readableName + ")",
-					RequestBody.create(MultipartBody.FORM, xml)
-			);
+	@Override
+	public boolean store(IReportWriter report, EReportFormat format) {
+		try (Benchmark benchmark = new Benchmark("Writing report to the upload spool")) {
+			spool.store(report, format, createMetadata());
 			return true;
 		} catch (IOException e) {
-			logger.error("Failed to upload coverage to {}", teamscaleServer, e);
+			logger.error("Failed to write the {} report to the upload spool {}", format.readableName,
+					spool.getSpoolStore().getOutputDirectory(), e);
 			return false;
 		}
 	}
 
+	/** Returns the upload metadata of the reports stored now. */
+	private Properties createMetadata() {
+		Properties metadata = new Properties();
+		metadata.setProperty(PROJECT_KEY, teamscaleServer.project);
+		metadata.setProperty(BRANCH_KEY, teamscaleServer.commit.branchName);
+		metadata.setProperty(TIMESTAMP_KEY, teamscaleServer.commit.timestamp);
+		metadata.setProperty(PARTITION_KEY, teamscaleServer.partition);
+		metadata.setProperty(MESSAGE_KEY, teamscaleServer.message);
+		return metadata;
+	}
+
+	/** Uploads the report in the given file with the commit, partition and message from the given metadata. */
+	private void upload(Path file, EReportFormat format, Properties metadata) throws IOException,
+			ReportRejectedException {
+		CommitDescriptor commit = new CommitDescriptor(getMetadata(metadata, BRANCH_KEY),
+				getMetadata(metadata, TIMESTAMP_KEY));
+		logger.debug("Uploading {} artifact to {} at {}", format.readableName, teamscaleServer.url, commit);
+
+		Response<ResponseBody> response = api.uploadExternalReport(
+				getMetadata(metadata, PROJECT_KEY),
+				format,
+				commit,
+				true,
+				false,
+				getMetadata(metadata, PARTITION_KEY) + format.partitionSuffix,
+				getMetadata(metadata, MESSAGE_KEY) + " (" + format.readableName + ")",
+				new ReportRequestBody(MultipartBody.FORM, output -> {
+					try (InputStream input = GzipUtils.openPossiblyCompressed(file)) {
+						FileSystemUtils.copy(input, output);
+					}
+				})
+		).execute();
+
+		if (response.isSuccessful()) {
+			return;
+		}
+
+		String message = "Request failed with error code " + response.code() + ". Response body:\n" + readErrorBody(
+				response);
+		if (isRejection(response.code())) {
+			throw new ReportRejectedException(message);
+		}
+		throw new IOException(message);
+	}
+
+	/** Returns the value of the given metadata key. Metadata that cannot be used for an upload is rejected. */
+	private static String getMetadata(Properties metadata, String key) throws ReportRejectedException {
+		String value = metadata.getProperty(key);
+		if (value == null) {
+			throw new ReportRejectedException("The upload metadata does not contain the " + key + ".");
+		}
+		return value;
+	}
+
+	/**
+	 * Returns whether the given HTTP status code indicates that Teamscale rejected the content of the report. Other
+	 * errors, e.g. missing permissions or an unknown project, may be fixed in the configuration before the next start.
+	 */
+	private static boolean isRejection(int statusCode) {
+		return statusCode == 400 || statusCode == 413 || statusCode == 422;
+	}
+
+	/** Returns the error body of the given response. */
+	private static String readErrorBody(Response<ResponseBody> response) throws IOException {
+		ResponseBody errorBody = response.errorBody();
+		if (errorBody == null) {
+			return "<no body>";
+		}
+		return errorBody.string();
+	}
+
+	@Override
+	public void shutdown() {
+		spool.shutdown(SHUTDOWN_TIMEOUT);
+	}
+
 	@Override
 	public String describe() {
-		return "Uploading to " + teamscaleServer + " (fallback in case of network errors to: " + failureStore.describe()
-				+ ")";
+		return "Uploading to " + teamscaleServer + " (reports are kept in " + spool.getSpoolStore()
+				.getOutputDirectory() + " until they have been uploaded)";
 	}
 }
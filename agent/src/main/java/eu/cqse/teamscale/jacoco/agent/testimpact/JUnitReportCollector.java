@@ -2,6 +2,7 @@ package eu.cqse.teamscale.jacoco.agent.testimpact;
 
 import eu.cqse.teamscale.client.TestDetails;
 import eu.cqse.teamscale.jacoco.agent.ITestListener;
+import eu.cqse.teamscale.jacoco.agent.TestEvent;
 import eu.cqse.teamscale.jacoco.agent.store.IXmlStore;
 import eu.cqse.teamscale.report.jacoco.dump.Dump;
 import eu.cqse.teamscale.report.junit.JUnitReport;
@@ -9,13 +10,12 @@ import eu.cqse.teamscale.report.junit.JUnitReport.TestCase;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.conqat.lib.commons.string.StringUtils;
-import spark.Request;
 
 import javax.xml.bind.JAXBException;
 import java.util.Arrays;
 
 import static eu.cqse.teamscale.client.EReportFormat.JUNIT;
-import static eu.cqse.teamscale.jacoco.agent.testimpact.TestImpactAgent.getTestDetailsFromRequest;
+import static eu.cqse.teamscale.jacoco.agent.testimpact.TestImpactAgent.getTestDetailsFromEvent;
 import static eu.cqse.teamscale.report.junit.JUnitReportGenerator.generateJUnitReport;
 
 /**
@@ -39,10 +39,10 @@ public class JUnitReportCollector implements ITestListener {
 	private TestCase currentTestCase = null;
 
 	@Override
-	public void onTestStart(Request request, Dump dump) {
-		startTimestamp = System.currentTimeMillis();
+	public void onTestStart(TestEvent event, Dump dump) {
+		startTimestamp = event.getTimestamp();
 
-		TestDetails testDetails = getTestDetailsFromRequest(request, logger);
+		TestDetails testDetails = getTestDetailsFromEvent(event, logger);
 		if (testDetails == null) {
 			currentTestCase = null;
 			return;
@@ -54,32 +54,32 @@ public class JUnitReportCollector implements ITestListener {
 	}
 
 	@Override
-	public void onTestFinish(Request request, Dump dump) {
+	public void onTestFinish(TestEvent event, Dump dump) {
 		if (currentTestCase == null) {
 			return;
 		}
 
-		long endTimestamp = System.currentTimeMillis();
+		long endTimestamp = event.getTimestamp();
 		currentTestCase.setDurationInSeconds((endTimestamp - startTimestamp) / 1000.0);
 
-		switch (getResult(request)) {
+		switch (getResult(event)) {
 			case PASSED:
 				break;
 			case SKIPPED:
-				currentTestCase.setSkipped(request.body());
+				currentTestCase.setSkipped(event.body());
 			case IGNORED:
 				currentTestCase.setIgnored(true);
 			case ERROR:
-				currentTestCase.setError(request.body());
+				currentTestCase.setError(event.body());
 			case FAILURE:
-				currentTestCase.setFailure(request.body());
+				currentTestCase.setFailure(event.body());
 		}
 		report.add(currentTestCase);
 	}
 
 	/** Parses the result from the query. */
-	private ETestExecutionResult getResult(Request request) {
-		String result = request.params(QUERY_RESULT_PARAM);
+	private ETestExecutionResult getResult(TestEvent event) {
+		String result = event.params(QUERY_RESULT_PARAM);
 		if (result != null) {
 			try {
 				return ETestExecutionResult.valueOf(result);
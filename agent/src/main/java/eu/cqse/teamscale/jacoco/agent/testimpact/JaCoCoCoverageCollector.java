@@ -2,19 +2,17 @@ package eu.cqse.teamscale.jacoco.agent.testimpact;
 
 import eu.cqse.teamscale.jacoco.agent.AgentOptions;
 import eu.cqse.teamscale.jacoco.agent.ITestListener;
+import eu.cqse.teamscale.jacoco.agent.TestEvent;
 import eu.cqse.teamscale.jacoco.agent.store.IXmlStore;
 import eu.cqse.teamscale.report.jacoco.dump.Dump;
 import eu.cqse.teamscale.report.jacoco.JaCoCoXmlReportGenerator;
-import eu.cqse.teamscale.jacoco.util.Benchmark;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.jacoco.core.data.ExecutionData;
 import org.jacoco.core.data.ExecutionDataStore;
 import org.jacoco.core.data.SessionInfo;
 import org.jacoco.core.data.SessionInfoStore;
-import spark.Request;
 
-import java.io.IOException;
 
 import static eu.cqse.teamscale.client.EReportFormat.JACOCO;
 import static eu.cqse.teamscale.jacoco.util.LoggingUtils.wrap;
@@ -40,16 +38,17 @@ public class JaCoCoCoverageCollector implements ITestListener {
 	/** Constructor. */
 	public JaCoCoCoverageCollector(AgentOptions options) {
 		this.generator = new JaCoCoXmlReportGenerator(options.getClassDirectoriesOrZips(),
-				options.getLocationIncludeFilter(), options.shouldIgnoreDuplicateClassFiles(), wrap(logger));
+				options.getLocationIncludeFilter(), options.shouldIgnoreDuplicateClassFiles(), false,
+				options.shouldCacheClassStructure(), wrap(logger));
 	}
 
 	@Override
-	public void onTestStart(Request request, Dump dump) {
+	public void onTestStart(TestEvent event, Dump dump) {
 		appendCoverage(dump);
 	}
 
 	@Override
-	public void onTestFinish(Request request, Dump dump) {
+	public void onTestFinish(TestEvent event, Dump dump) {
 		appendCoverage(dump);
 	}
 
@@ -63,15 +62,8 @@ public class JaCoCoCoverageCollector implements ITestListener {
 
 	@Override
 	public void onDump(IXmlStore store) {
-		String xml;
-		try (Benchmark benchmark = new Benchmark("Generating the XML report")) {
-			SessionInfo sessionInfo = sessionInfoStore.getMerged("merged");
-			xml = generator.convert(new Dump(sessionInfo, executionDataStore));
-		} catch (IOException e) {
-			logger.error("Converting binary dumps to XML failed", e);
-			return;
-		}
-
-		store.store(xml, JACOCO);
+		SessionInfo sessionInfo = sessionInfoStore.getMerged("merged");
+		Dump dump = new Dump(sessionInfo, executionDataStore);
+		store.store(output -> generator.convertToReport(output, dump), JACOCO);
 	}
 }
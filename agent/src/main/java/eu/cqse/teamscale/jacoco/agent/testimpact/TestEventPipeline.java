@@ -0,0 +1,115 @@
+/*-------------------------------------------------------------------------+
+|                                                                          |
+| Copyright (c) 2009-2018 CQSE GmbH                                        |
+|                                                                          |
++-------------------------------------------------------------------------*/
+package eu.cqse.teamscale.jacoco.agent.testimpact;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Processes the test events of the {@link TestImpactAgent} either synchronously within the HTTP request or, in
+ * pipelined mode, in order on a single background thread. The queue of the background thread is bounded and the
+ * HTTP request threads block if it is full, so the test system is slowed down instead of the agent running out of
+ * memory.
+ */
+/* package */ class TestEventPipeline {
+
+	/** The logger. */
+	private final Logger logger = LogManager.getLogger(this);
+
+	/** Processes the test events or null if the events are processed synchronously. */
+	private final ThreadPoolExecutor executor;
+
+	/** Constructor. */
+	private TestEventPipeline(ThreadPoolExecutor executor) {
+		this.executor = executor;
+	}
+
+	/** Creates a pipeline that processes all events directly on the calling thread. */
+	/* package */ static TestEventPipeline synchronous() {
+		return new TestEventPipeline(null);
+	}
+
+	/** Creates a pipeline that processes the events on a background thread with a queue of the given size. */
+	/* package */ static TestEventPipeline pipelined(int queueSize) {
+		ThreadFactory threadFactory = runnable -> {
+			Thread thread = Executors.defaultThreadFactory().newThread(runnable);
+			thread.setName("Test event processor");
+			thread.setDaemon(true);
+			return thread;
+		};
+		RejectedExecutionHandler blockWhenFull = (runnable, executor) -> {
+			if (executor.isShutdown()) {
+				throw new RejectedExecutionException("The agent is shutting down");
+			}
+			try {
+				// Applies backpressure by blocking the HTTP request thread until there is room in the queue
+				executor.getQueue().put(runnable);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RejectedExecutionException("Interrupted while waiting for room in the queue", e);
+			}
+		};
+		return new TestEventPipeline(new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(queueSize), threadFactory, blockWhenFull));
+	}
+
+	/**
+	 * Runs the given task directly or enqueues it. In pipelined mode failures are logged, since there is no request
+	 * anymore to which they could be reported.
+	 */
+	/* package */ void process(Runnable task) {
+		if (executor == null) {
+			task.run();
+			return;
+		}
+		executor.execute(() -> {
+			try {
+				task.run();
+			} catch (Throwable t) {
+				logger.error("Processing a test event failed", t);
+			}
+		});
+	}
+
+	/** Runs the given task directly or enqueues it and waits until it and all earlier tasks have been executed. */
+	/* package */ void processAndWait(Runnable task) throws ExecutionException, InterruptedException {
+		if (executor == null) {
+			task.run();
+		} else {
+			executor.submit(task).get();
+		}
+	}
+
+	/**
+	 * Processes all queued events, then runs the given final task and stops the background thread. Waits at most for
+	 * the given time.
+	 */
+	/* package */ void shutdown(Runnable finalTask, long timeout, TimeUnit unit) {
+		if (executor == null) {
+			finalTask.run();
+			return;
+		}
+		executor.execute(finalTask);
+		executor.shutdown();
+		try {
+			if (!executor.awaitTermination(timeout, unit)) {
+				logger.error("Processing the remaining test events did not finish within {} {}. Some coverage " +
+						"may be lost.", timeout, unit.toString().toLowerCase());
+			}
+		} catch (InterruptedException e) {
+			logger.error("Interrupted while processing the remaining test events.", e);
+		}
+	}
+}
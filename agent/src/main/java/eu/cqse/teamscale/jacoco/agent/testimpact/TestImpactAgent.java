@@ -13,6 +13,7 @@ import eu.cqse.teamscale.jacoco.agent.AgentBase;
 import eu.cqse.teamscale.jacoco.agent.AgentOptions;
 import eu.cqse.teamscale.jacoco.agent.ITestListener;
 import eu.cqse.teamscale.jacoco.agent.JacocoRuntimeController.DumpException;
+import eu.cqse.teamscale.jacoco.agent.TestEvent;
 import eu.cqse.teamscale.report.jacoco.dump.Dump;
 import eu.cqse.teamscale.report.testwise.jacoco.cache.CoverageGenerationException;
 import org.apache.logging.log4j.Logger;
@@ -22,6 +23,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import static eu.cqse.teamscale.client.EReportFormat.JACOCO;
 import static eu.cqse.teamscale.client.EReportFormat.JUNIT;
@@ -39,11 +41,17 @@ public class TestImpactAgent extends AgentBase {
 	/** Path parameter placeholder used in the http requests. */
 	public static final String TEST_ID_PARAMETER = ":testId";
 
+	/** The maximal time to wait for the processing of queued test events on shutdown. */
+	private static final long SHUTDOWN_TIMEOUT_MINUTES = 5;
+
 	/** The agent options. */
 	private AgentOptions options;
 
 	/** Timestamp at which the report was dumped the last time. */
-	private long lastDumpTimestamp = System.currentTimeMillis();
+	private volatile long lastDumpTimestamp = System.currentTimeMillis();
+
+	/** Processes the test events synchronously or, in pipelined mode, on a background thread. */
+	private final TestEventPipeline pipeline;
 
 	/**
 	 * List of tests listeners that produce individual test artifacts.
@@ -63,7 +71,7 @@ public class TestImpactAgent extends AgentBase {
 			testListeners.add(new TestDetailsCollector());
 		}
 		if (reportFormats.contains(TESTWISE_COVERAGE)) {
-			testListeners.add(new TestwiseCoverageCollector(controller, options));
+			testListeners.add(new TestwiseCoverageCollector(options));
 		}
 		if (reportFormats.contains(JACOCO)) {
 			testListeners.add(new JaCoCoCoverageCollector(options));
@@ -73,6 +81,14 @@ public class TestImpactAgent extends AgentBase {
 
 		logger.info("Dumping every {} minutes.", options.getDumpIntervalInMinutes());
 
+		if (options.isHttpServerPipelined()) {
+			logger.info("Processing test events in the background with a queue size of {}.",
+					options.getHttpServerQueueSize());
+			pipeline = TestEventPipeline.pipelined(options.getHttpServerQueueSize());
+		} else {
+			pipeline = TestEventPipeline.synchronous();
+		}
+
 		initServer();
 	}
 
@@ -94,34 +110,49 @@ public class TestImpactAgent extends AgentBase {
 		});
 
 		post("/dump", (request, response) -> {
-			dumpReport();
+			pipeline.processAndWait(this::dumpReport);
 			return "success";
 		});
 	}
 
-	/** Handles the start of a new test case by setting the session ID. */
+	/**
+	 * Handles the start of a new test case by resetting the coverage and setting the session ID. This is always done
+	 * synchronously, so that the recorded coverage belongs to this particular test case.
+	 */
 	private void handleTestStart(Request request) throws DumpException {
-		logger.debug("Start test " + request.params(TEST_ID_PARAMETER));
+		String testId = request.params(TEST_ID_PARAMETER);
+		logger.debug("Start test " + testId);
+		TestEvent event = TestEvent.fromRequest(request);
 		Dump dump = controller.dumpAndReset();
-		for (ITestListener testListener : testListeners) {
-			testListener.onTestStart(request, dump);
+		if (options.getHttpServerReportFormats().contains(TESTWISE_COVERAGE)) {
+			controller.setSessionId(testId);
 		}
+		pipeline.process(() -> {
+			for (ITestListener testListener : testListeners) {
+				testListener.onTestStart(event, dump);
+			}
+		});
 	}
 
-	/** Handles the end of a test case by resetting the session ID. */
+	/**
+	 * Handles the end of a test case by taking a snapshot of the coverage. The listeners are notified in the
+	 * background in pipelined mode.
+	 */
 	private void handleTestEnd(Request request) throws DumpException {
 		logger.debug("End test " + request.params(TEST_ID_PARAMETER));
-
+		TestEvent event = TestEvent.fromRequest(request);
 		Dump dump = controller.dumpAndReset();
-		for (ITestListener testListener : testListeners) {
-			testListener.onTestFinish(request, dump);
-		}
+		pipeline.process(() -> {
+			for (ITestListener testListener : testListeners) {
+				testListener.onTestFinish(event, dump);
+			}
 
-		// If the last dump was longer ago than the specified interval dump report
-		if (lastDumpTimestamp + options.getDumpIntervalInMillis() < System.currentTimeMillis()) {
-			dumpReport();
-			lastDumpTimestamp = System.currentTimeMillis();
-		}
+			// If the last dump was longer ago than the specified interval dump report
+			if (lastDumpTimestamp + options.getDumpIntervalInMillis() < System.currentTimeMillis()) {
+				dumpReport();
+				lastDumpTimestamp = System.currentTimeMillis();
+			}
+		});
 	}
 
 	@Override
@@ -134,14 +165,15 @@ public class TestImpactAgent extends AgentBase {
 	@Override
 	protected void prepareShutdown() {
 		stop();
-		dumpReport();
+		// Process all queued events before the final dump
+		pipeline.shutdown(this::dumpReport, SHUTDOWN_TIMEOUT_MINUTES, TimeUnit.MINUTES);
 	}
 
 	/**
-	 * Returns the test details from the request body or null if no valid test details were given.
+	 * Returns the test details from the event's request body or null if no valid test details were given.
 	 */
-	public static TestDetails getTestDetailsFromRequest(Request request, Logger logger) {
-		String testDetailsString = request.body();
+	public static TestDetails getTestDetailsFromEvent(TestEvent event, Logger logger) {
+		String testDetailsString = event.body();
 		TestDetails testDetails;
 		try {
 			testDetails = new Gson().fromJson(testDetailsString, TestDetails.class);
@@ -153,7 +185,7 @@ public class TestImpactAgent extends AgentBase {
 			logger.error("No or invalid test details '" + testDetailsString + "' given!", e);
 			return null;
 		}
-		String externalId = request.params(TEST_ID_PARAMETER);
+		String externalId = event.params(TEST_ID_PARAMETER);
 		if (!Objects.equals(testDetails.externalId, externalId)) {
 			logger.warn("The externalId '" + externalId + "' given as query parameter does not match with the " +
 					"externalId '" + testDetails.externalId + "' in the test details in the request body. The " +
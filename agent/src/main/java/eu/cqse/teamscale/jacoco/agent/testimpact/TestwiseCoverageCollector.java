@@ -2,25 +2,29 @@ package eu.cqse.teamscale.jacoco.agent.testimpact;
 
 import eu.cqse.teamscale.jacoco.agent.AgentOptions;
 import eu.cqse.teamscale.jacoco.agent.ITestListener;
-import eu.cqse.teamscale.jacoco.agent.JacocoRuntimeController;
+import eu.cqse.teamscale.jacoco.agent.TestEvent;
 import eu.cqse.teamscale.jacoco.agent.store.IXmlStore;
-import eu.cqse.teamscale.jacoco.util.Benchmark;
 import eu.cqse.teamscale.report.jacoco.dump.Dump;
 import eu.cqse.teamscale.report.testwise.jacoco.TestwiseXmlReportGenerator;
 import eu.cqse.teamscale.report.testwise.jacoco.cache.CoverageGenerationException;
+import eu.cqse.teamscale.report.testwise.model.TestwiseCoverage;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import spark.Request;
 
-import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static eu.cqse.teamscale.client.EReportFormat.TESTWISE_COVERAGE;
 import static eu.cqse.teamscale.jacoco.util.LoggingUtils.wrap;
+import static eu.cqse.teamscale.report.testwise.jacoco.TestwiseXmlReportUtils.writeReportToStream;
 
 /**
  * Test listener which is capable of generating testwise coverage reports.
+ * <p>
+ * The dump of each finished test is converted to its {@link eu.cqse.teamscale.report.testwise.model.TestCoverage}
+ * right away on a background thread, so that only the compact line coverage is kept in memory until the next dump
+ * instead of the probe arrays of all executed tests.
  */
 public class TestwiseCoverageCollector implements ITestListener {
 
@@ -28,49 +32,68 @@ public class TestwiseCoverageCollector implements ITestListener {
 	protected final Logger logger = LogManager.getLogger(this);
 
 	/** Generates XML reports from binary execution data. */
-	private TestwiseXmlReportGenerator generator;
+	private final TestwiseXmlReportGenerator generator;
 
-	/** Controls the JaCoCo runtime. */
-	private JacocoRuntimeController controller;
+	/**
+	 * Converts the dumps of finished tests on a single background daemon thread. Since the tasks are executed in
+	 * order, a dump task sees the results of all tests that finished before.
+	 */
+	private final ExecutorService converter = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = Executors.defaultThreadFactory().newThread(runnable);
+		thread.setName("Testwise coverage converter");
+		thread.setDaemon(true);
+		return thread;
+	});
 
-	/** List of dumps, one for each test. */
-	private final List<Dump> dumps = new ArrayList<>();
+	/** The coverage of all tests converted since the last dump. Only accessed from the {@link #converter} thread. */
+	private TestwiseCoverage testwiseCoverage = new TestwiseCoverage();
 
 	/** Constructor. */
-	public TestwiseCoverageCollector(JacocoRuntimeController controller, AgentOptions options) throws CoverageGenerationException {
-		this.controller = controller;
+	public TestwiseCoverageCollector(AgentOptions options) throws CoverageGenerationException {
 		this.generator = new TestwiseXmlReportGenerator(options.getClassDirectoriesOrZips(),
-				options.getLocationIncludeFilter(), options.shouldIgnoreDuplicateClassFiles(), wrap(logger));
+				options.getLocationIncludeFilter(), options.shouldIgnoreDuplicateClassFiles(), options.getProbesIndexFile(),
+				options.getAnalysisParallelism(), wrap(logger));
+	}
+
+	/** Constructor. */
+	/* package */ TestwiseCoverageCollector(TestwiseXmlReportGenerator generator) {
+		this.generator = generator;
 	}
 
 	@Override
-	public void onTestStart(Request request, Dump dump) {
-		// Reset coverage so that we only record coverage that belongs to this particular test case.
-		// Dumps from previous tests are stored in #dumps
-		controller.reset();
-		String testId = request.params(TestImpactAgent.TEST_ID_PARAMETER);
-		controller.setSessionId(testId);
+	public void onTestStart(TestEvent event, Dump dump) {
+		// Nothing to do here, since the TestImpactAgent already resets the coverage and sets the session ID when the
+		// test starts, so that the coverage recorded from now on belongs to this particular test case.
 	}
 
 	@Override
-	public void onTestFinish(Request request, Dump dump) {
-		dumps.add(dump);
+	public void onTestFinish(TestEvent event, Dump dump) {
+		converter.execute(() -> {
+			try {
+				testwiseCoverage.add(generator.convert(dump));
+			} catch (RuntimeException e) {
+				logger.error("Converting the coverage of test " + dump.info.getId() + " failed", e);
+			}
+		});
 	}
 
 	@Override
 	public void onDump(IXmlStore store) {
-		if (dumps.isEmpty()) {
+		TestwiseCoverage coverage;
+		try {
+			coverage = converter.submit(() -> {
+				TestwiseCoverage convertedCoverage = testwiseCoverage;
+				testwiseCoverage = new TestwiseCoverage();
+				return convertedCoverage;
+			}).get();
+		} catch (InterruptedException | ExecutionException e) {
+			logger.error("Waiting for the conversion of the test coverage failed", e);
 			return;
 		}
-		String xml;
-		try (Benchmark benchmark = new Benchmark("Generating the XML report")) {
-			xml = generator.convertToString(dumps);
-		} catch (IOException e) {
-			logger.error("Converting binary dumps to XML failed", e);
+		if (coverage.isEmpty()) {
 			return;
 		}
 
-		store.store(xml, TESTWISE_COVERAGE);
-		dumps.clear();
+		store.store(output -> writeReportToStream(output, coverage), TESTWISE_COVERAGE);
 	}
 }
@@ -0,0 +1,76 @@
+package eu.cqse.teamscale.jacoco.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/** Reads and writes files that are optionally compressed with gzip. */
+public class GzipUtils {
+
+	/** The file extension of gzip compressed files. */
+	public static final String GZIP_EXTENSION = ".gz";
+
+	/** The size of the buffers used for reading and writing. */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Opens the given file for reading. Files compressed with gzip are decompressed transparently, independent of
+	 * their file extension.
+	 */
+	public static InputStream openPossiblyCompressed(Path file) throws IOException {
+		BufferedInputStream input = new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE);
+		try {
+			if (isGzipCompressed(input)) {
+				return new GZIPInputStream(input, BUFFER_SIZE);
+			}
+			return input;
+		} catch (IOException e) {
+			input.close();
+			throw e;
+		}
+	}
+
+	/** Returns whether the stream starts with the gzip magic number. Does not consume any bytes. */
+	private static boolean isGzipCompressed(BufferedInputStream input) throws IOException {
+		input.mark(2);
+		int firstByte = input.read();
+		int secondByte = input.read();
+		input.reset();
+		return firstByte == (GZIPInputStream.GZIP_MAGIC & 0xff) && secondByte == (GZIPInputStream.GZIP_MAGIC >>> 8);
+	}
+
+	/** Creates a buffered stream that writes to the given file and compresses the data if requested. */
+	public static OutputStream createOutputStream(Path file, boolean compress) throws IOException {
+		OutputStream output = Files.newOutputStream(file);
+		if (compress) {
+			try {
+				// Buffer small writes, since the deflater has a considerable overhead per call
+				return new BufferedOutputStream(new FastGzipOutputStream(output), BUFFER_SIZE);
+			} catch (IOException e) {
+				output.close();
+				throw e;
+			}
+		}
+		return new BufferedOutputStream(output, BUFFER_SIZE);
+	}
+
+	/**
+	 * Compresses with the fastest compression level. Reports are highly redundant, so the gain of higher levels is
+	 * small compared to their additional CPU time, which is spent on the profiled application's machine.
+	 */
+	private static class FastGzipOutputStream extends GZIPOutputStream {
+
+		/** Constructor. */
+		private FastGzipOutputStream(OutputStream output) throws IOException {
+			super(output, BUFFER_SIZE);
+			def.setLevel(Deflater.BEST_SPEED);
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package eu.cqse.teamscale.jacoco.agent;
+
+import eu.cqse.teamscale.report.jacoco.dump.Dump;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.SessionInfo;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Tests the {@link CoverageDeltaTracker}. */
+public class CoverageDeltaTrackerTest {
+
+	/** Tests that only classes with newly hit probes are retained. */
+	@Test
+	public void testOnlyNewCoverageIsRetained() {
+		CoverageDeltaTracker tracker = new CoverageDeltaTracker();
+
+		Dump first = retainNewCoverage(tracker, createDump(
+				new ExecutionData(1, "A", new boolean[]{true, false, false}),
+				new ExecutionData(2, "B", new boolean[]{true, true})));
+		assertThat(first.store.getContents()).extracting(ExecutionData::getId).containsExactlyInAnyOrder(1L, 2L);
+
+		assertThat(retainNewCoverage(tracker, createDump(
+				new ExecutionData(1, "A", new boolean[]{true, false, false}),
+				new ExecutionData(2, "B", new boolean[]{false, true})))).isNull();
+
+		Dump third = retainNewCoverage(tracker, createDump(
+				new ExecutionData(1, "A", new boolean[]{false, false, true}),
+				new ExecutionData(2, "B", new boolean[]{true, false}),
+				new ExecutionData(3, "C", new boolean[]{true})));
+		assertThat(third.store.getContents()).extracting(ExecutionData::getId).containsExactlyInAnyOrder(1L, 3L);
+
+		assertThat(retainNewCoverage(tracker, createDump(new ExecutionData(4, "D", new boolean[]{false})))).isNull();
+	}
+
+	/** Tests that the coverage of a delta that was not committed, e.g. because storing it failed, is reported again. */
+	@Test
+	public void testUncommittedCoverageIsReportedAgain() {
+		CoverageDeltaTracker tracker = new CoverageDeltaTracker();
+		Dump dump = createDump(new ExecutionData(1, "A", new boolean[]{true, false}));
+
+		assertThat(tracker.computeDelta(dump).store.getContents()).extracting(ExecutionData::getId).containsExactly(1L);
+		Dump delta = tracker.computeDelta(dump);
+		assertThat(delta.store.getContents()).extracting(ExecutionData::getId).containsExactly(1L);
+
+		tracker.commit(delta);
+		assertThat(tracker.computeDelta(dump)).isNull();
+	}
+
+	/** Computes the delta of the given dump and commits it right away. */
+	private static Dump retainNewCoverage(CoverageDeltaTracker tracker, Dump dump) {
+		Dump delta = tracker.computeDelta(dump);
+		if (delta != null) {
+			tracker.commit(delta);
+		}
+		return delta;
+	}
+
+	/** Creates a dump with the given execution data. */
+	private static Dump createDump(ExecutionData... executionData) {
+		ExecutionDataStore store = new ExecutionDataStore();
+		for (ExecutionData data : executionData) {
+			store.put(data);
+		}
+		return new Dump(new SessionInfo("session", 1, 2), store);
+	}
+}
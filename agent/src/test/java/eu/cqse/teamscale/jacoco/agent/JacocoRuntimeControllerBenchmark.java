@@ -0,0 +1,85 @@
+package eu.cqse.teamscale.jacoco.agent;
+
+import eu.cqse.teamscale.report.jacoco.dump.Dump;
+import org.jacoco.agent.rt.internal_c13123e.Agent;
+import org.jacoco.agent.rt.internal_c13123e.core.runtime.AgentOptions;
+import org.jacoco.agent.rt.internal_c13123e.core.runtime.RuntimeData;
+
+import java.util.Random;
+
+/**
+ * Compares the latency of a dump at a test boundary via JaCoCo's binary format with the direct snapshot of the
+ * runtime data done by {@link JacocoRuntimeController#snapshotAndReset(RuntimeData)}.
+ * <p>
+ * This is not a unit test. Run the main method to print the average time per test boundary.
+ */
+public class JacocoRuntimeControllerBenchmark {
+
+	/** The number of instrumented classes in the synthetic application. */
+	private static final int CLASS_COUNT = 20_000;
+
+	/** The number of probes per class. */
+	private static final int PROBES_PER_CLASS = 40;
+
+	/** The number of classes that are hit by each synthetic test. */
+	private static final int CLASSES_HIT_PER_TEST = 500;
+
+	/** The number of measured test boundaries per variant. */
+	private static final int ITERATIONS = 2_000;
+
+	/** Runs the benchmark. */
+	public static void main(String[] args) throws Exception {
+		AgentOptions options = new AgentOptions();
+		options.setOutput(AgentOptions.OutputMode.none);
+		Agent agent = Agent.getInstance(options);
+		RuntimeData data = agent.getData();
+
+		boolean[][] probes = new boolean[CLASS_COUNT][];
+		for (int i = 0; i < CLASS_COUNT; i++) {
+			probes[i] = data.getExecutionData((long) i, "com/company/Class" + i, PROBES_PER_CLASS).getProbes();
+		}
+
+		JacocoRuntimeController controller = new JacocoRuntimeController(agent);
+		Random random = new Random(0);
+		for (int round = 0; round < 2; round++) {
+			long serialized = 0;
+			long snapshot = 0;
+			for (int i = 0; i < ITERATIONS; i++) {
+				simulateTest(probes, random);
+				long start = System.nanoTime();
+				Dump dump = controller.dumpAndResetSerialized();
+				serialized += System.nanoTime() - start;
+				consume(dump);
+
+				simulateTest(probes, random);
+				start = System.nanoTime();
+				dump = JacocoRuntimeController.snapshotAndReset(data);
+				snapshot += System.nanoTime() - start;
+				consume(dump);
+			}
+			// The first round only warms up the JIT
+			if (round == 1) {
+				System.out.printf("Serialized dump:  %.1f us per test boundary%n", serialized / 1000.0 / ITERATIONS);
+				System.out.printf("Direct snapshot:  %.1f us per test boundary%n", snapshot / 1000.0 / ITERATIONS);
+			}
+		}
+		agent.shutdown();
+	}
+
+	/** Marks some probes of randomly chosen classes as executed. */
+	private static void simulateTest(boolean[][] probes, Random random) {
+		for (int i = 0; i < CLASSES_HIT_PER_TEST; i++) {
+			boolean[] classProbes = probes[random.nextInt(CLASS_COUNT)];
+			for (int probe = 0; probe < PROBES_PER_CLASS; probe += 3) {
+				classProbes[probe] = true;
+			}
+		}
+	}
+
+	/** Checks the dump so that it is not optimized away. */
+	private static void consume(Dump dump) {
+		if (dump.store.getContents().isEmpty()) {
+			throw new IllegalStateException("Expected coverage in the dump");
+		}
+	}
+}
@@ -0,0 +1,82 @@
+package eu.cqse.teamscale.jacoco.agent;
+
+import eu.cqse.teamscale.report.jacoco.dump.Dump;
+import org.jacoco.agent.rt.internal_c13123e.Agent;
+import org.jacoco.agent.rt.internal_c13123e.core.runtime.AgentOptions;
+import org.jacoco.agent.rt.internal_c13123e.core.runtime.RuntimeData;
+import org.jacoco.core.data.ExecutionData;
+import org.junit.Test;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Tests the {@link JacocoRuntimeController}. */
+public class JacocoRuntimeControllerTest {
+
+	/**
+	 * Tests that the direct snapshot of the runtime data yields the same dump as the detour via JaCoCo's binary format
+	 * and resets the probes just like it.
+	 */
+	@Test
+	public void testSnapshotEqualsSerializedDump() throws Exception {
+		AgentOptions options = new AgentOptions();
+		options.setOutput(AgentOptions.OutputMode.none);
+		Agent agent = Agent.getInstance(options);
+		RuntimeData data = agent.getData();
+		JacocoRuntimeController controller = new JacocoRuntimeController(agent);
+
+		boolean[] firstProbes = data.getExecutionData(1L, "com/company/First", 3).getProbes();
+		boolean[] secondProbes = data.getExecutionData(2L, "com/company/Second", 2).getProbes();
+		boolean[] unusedProbes = data.getExecutionData(3L, "com/company/Unused", 4).getProbes();
+
+		simulateTest(data, firstProbes, secondProbes);
+		Dump serialized = controller.dumpAndResetSerialized();
+		assertReset(firstProbes, secondProbes, unusedProbes);
+
+		simulateTest(data, firstProbes, secondProbes);
+		Dump snapshot = JacocoRuntimeController.snapshotAndReset(data);
+		assertReset(firstProbes, secondProbes, unusedProbes);
+
+		assertThat(snapshot.info.getId()).isEqualTo("test").isEqualTo(serialized.info.getId());
+		List<ExecutionData> serializedData = sortedContents(serialized);
+		List<ExecutionData> snapshotData = sortedContents(snapshot);
+		assertThat(snapshotData).extracting(ExecutionData::getId).containsExactly(1L, 2L);
+		assertThat(snapshotData).extracting(ExecutionData::getId)
+				.isEqualTo(serializedData.stream().map(ExecutionData::getId).collect(Collectors.toList()));
+		for (int i = 0; i < snapshotData.size(); i++) {
+			assertThat(snapshotData.get(i).getName()).isEqualTo(serializedData.get(i).getName());
+			assertThat(snapshotData.get(i).getProbes()).isEqualTo(serializedData.get(i).getProbes());
+		}
+
+		// The snapshot must not share the probe arrays with the runtime
+		firstProbes[1] = true;
+		assertThat(snapshotData.get(0).getProbes()).containsExactly(true, false, true);
+		data.reset();
+	}
+
+	/** Sets the session ID and marks some probes of the first two classes as executed. */
+	private static void simulateTest(RuntimeData data, boolean[] firstProbes, boolean[] secondProbes) {
+		data.setSessionId("test");
+		firstProbes[0] = true;
+		firstProbes[2] = true;
+		secondProbes[1] = true;
+	}
+
+	/** Asserts that all given probes have been reset. */
+	private static void assertReset(boolean[]... probes) {
+		for (boolean[] classProbes : probes) {
+			for (boolean probe : classProbes) {
+				assertThat(probe).isFalse();
+			}
+		}
+	}
+
+	/** Returns the execution data of the dump sorted by class ID. */
+	private static List<ExecutionData> sortedContents(Dump dump) {
+		return dump.store.getContents().stream().sorted(Comparator.comparingLong(ExecutionData::getId))
+				.collect(Collectors.toList());
+	}
+}
@@ -1,11 +1,16 @@
 package eu.cqse.teamscale.jacoco.agent.convert;
 
+import eu.cqse.teamscale.jacoco.util.GzipUtils;
 import org.conqat.lib.commons.filesystem.FileSystemUtils;
 import org.conqat.lib.commons.test.CCSMTestCaseBase;
 import org.junit.Test;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -34,4 +39,26 @@ public class ConverterTest extends CCSMTestCaseBase {
 		assertThat(xml).isNotEmpty().contains("<class").contains("<counter").contains("TestClass");
 	}
 
+	/** Ensures that compressed .exec files are read and compressed reports are written. */
+	@Test
+	public void testCompressedInputAndOutput() throws Exception {
+		File execFile = new File(getTmpDirectory(), "coverage.exec.gz");
+		try (OutputStream output = new GZIPOutputStream(new FileOutputStream(execFile))) {
+			output.write(FileSystemUtils.readFileBinary(useTestFile("coverage.exec")));
+		}
+		File outputFile = new File(getTmpDirectory(), "coverage.xml.gz");
+
+		ConvertCommand arguments = new ConvertCommand();
+		arguments.inputFile = execFile.getAbsolutePath();
+		arguments.outputFile = outputFile.getAbsolutePath();
+		arguments.classDirectoriesOrZips = Arrays.asList(useTestFile("TestClass.class").getAbsolutePath());
+
+		new Converter(arguments).run();
+
+		try (InputStream input = GzipUtils.openPossiblyCompressed(outputFile.toPath())) {
+			String xml = FileSystemUtils.readStreamUTF8(input);
+			assertThat(xml).contains("<class").contains("<counter").contains("TestClass");
+		}
+	}
+
 }
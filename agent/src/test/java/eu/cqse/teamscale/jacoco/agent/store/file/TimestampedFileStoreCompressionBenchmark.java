@@ -0,0 +1,116 @@
+package eu.cqse.teamscale.jacoco.agent.store.file;
+
+import eu.cqse.teamscale.client.EReportFormat;
+import eu.cqse.teamscale.jacoco.agent.store.IReportWriter;
+import eu.cqse.teamscale.jacoco.util.LoggingUtils;
+import eu.cqse.teamscale.report.jacoco.JaCoCoXmlReportGenerator;
+import eu.cqse.teamscale.report.jacoco.dump.Dump;
+import eu.cqse.teamscale.report.testwise.jacoco.TestwiseXmlReportGenerator;
+import eu.cqse.teamscale.report.testwise.jacoco.TestwiseXmlReportUtils;
+import eu.cqse.teamscale.report.testwise.model.TestwiseCoverage;
+import eu.cqse.teamscale.report.util.AntPatternIncludeFilter;
+import eu.cqse.teamscale.report.util.ILogger;
+import org.apache.logging.log4j.LogManager;
+import org.conqat.lib.commons.filesystem.FileSystemUtils;
+import org.jacoco.core.tools.ExecFileLoader;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Collections;
+
+/**
+ * Compares the size and write throughput of uncompressed and gzip compressed reports written by the
+ * {@link TimestampedFileStore}. The reports are generated from the cqddl test data of the report generator.
+ * <p>
+ * This is not a unit test. Run the main method from the agent directory or pass the directory that contains the
+ * classes.zip and coverage.exec as the first argument.
+ */
+public class TimestampedFileStoreCompressionBenchmark {
+
+	/** The default location of the test data relative to the agent directory. */
+	private static final String DEFAULT_TEST_DATA_DIRECTORY = "../report-generator/test-data/"
+			+ "eu.cqse.teamscale.report.testwise.jacoco/jacoco/cqddl";
+
+	/** The number of reports written per measurement. */
+	private static final int ITERATIONS = 50;
+
+	/** Runs the benchmark. */
+	public static void main(String[] args) throws Exception {
+		File testDataDirectory = new File(args.length > 0 ? args[0] : DEFAULT_TEST_DATA_DIRECTORY);
+		File classes = new File(testDataDirectory, "classes.zip");
+		File execFile = new File(testDataDirectory, "coverage.exec");
+		AntPatternIncludeFilter includeFilter = new AntPatternIncludeFilter(Collections.emptyList(),
+				Collections.emptyList());
+		ILogger logger = LoggingUtils.wrap(LogManager.getLogger(TimestampedFileStoreCompressionBenchmark.class));
+
+		ExecFileLoader loader = new ExecFileLoader();
+		loader.load(execFile);
+		Dump dump = new Dump(loader.getSessionInfoStore().getMerged("merged"), loader.getExecutionDataStore());
+		byte[] jacocoReport = toBytes(new JaCoCoXmlReportGenerator(Collections.singletonList(classes),
+				includeFilter, true, logger).convert(dump));
+
+		TestwiseCoverage testwiseCoverage = new TestwiseXmlReportGenerator(Collections.singletonList(classes),
+				includeFilter, true, logger).convert(execFile);
+		byte[] testwiseReport = toBytes(TestwiseXmlReportUtils.getReportAsString(testwiseCoverage));
+
+		Path outputDirectory = Files.createTempDirectory("compression-benchmark");
+		try {
+			for (int round = 0; round < 2; round++) {
+				// The first round only warms up the JIT
+				boolean print = round == 1;
+				measure("JaCoCo", EReportFormat.JACOCO, jacocoReport, outputDirectory, print);
+				measure("Testwise", EReportFormat.TESTWISE_COVERAGE, testwiseReport, outputDirectory, print);
+			}
+		} finally {
+			FileSystemUtils.deleteRecursively(outputDirectory.toFile());
+		}
+	}
+
+	/** Writes the report with and without compression and prints the size and throughput. */
+	private static void measure(String name, EReportFormat format, byte[] report, Path outputDirectory,
+								boolean print) throws IOException {
+		IReportWriter reportWriter = output -> output.write(report);
+		for (boolean compress : new boolean[]{false, true}) {
+			Path directory = Files.createTempDirectory(outputDirectory, "store");
+			TimestampedFileStore store = new TimestampedFileStore(directory, compress);
+
+			long start = System.nanoTime();
+			for (int i = 0; i < ITERATIONS; i++) {
+				store.store(reportWriter, format);
+				// The file names only have a resolution of milliseconds
+				deleteFiles(directory, i == ITERATIONS - 1);
+			}
+			double seconds = (System.nanoTime() - start) / 1e9;
+
+			long size = Files.list(directory).findFirst().map(TimestampedFileStoreCompressionBenchmark::size)
+					.orElse(0L);
+			if (print) {
+				System.out.printf("%-9s %-12s %10d bytes  %8.1f MB/s%n", name, compress ? "gzip" : "uncompressed",
+						size, report.length * (double) ITERATIONS / seconds / 1024 / 1024);
+			}
+		}
+	}
+
+	/** Deletes all files in the given directory unless the last one should be kept. */
+	private static void deleteFiles(Path directory, boolean keep) throws IOException {
+		if (keep) {
+			return;
+		}
+		for (File file : directory.toFile().listFiles()) {
+			Files.delete(file.toPath());
+		}
+	}
+
+	/** Returns the size of the given file. */
+	private static long size(Path file) {
+		return file.toFile().length();
+	}
+
+	/** Returns the UTF-8 bytes of the given report. */
+	private static byte[] toBytes(String report) {
+		return report.getBytes(StandardCharsets.UTF_8);
+	}
+}
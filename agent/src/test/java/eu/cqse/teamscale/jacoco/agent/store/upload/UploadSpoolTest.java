@@ -0,0 +1,215 @@
+package eu.cqse.teamscale.jacoco.agent.store.upload;
+
+import eu.cqse.teamscale.client.CommitDescriptor;
+import eu.cqse.teamscale.client.EReportFormat;
+import eu.cqse.teamscale.client.TeamscaleServer;
+import eu.cqse.teamscale.jacoco.agent.store.file.TimestampedFileStore;
+import eu.cqse.teamscale.jacoco.agent.store.upload.UploadSpool.ReportRejectedException;
+import eu.cqse.teamscale.jacoco.agent.store.upload.teamscale.TeamscaleUploadStore;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static eu.cqse.teamscale.client.EReportFormat.JACOCO;
+import static eu.cqse.teamscale.client.EReportFormat.TESTWISE_COVERAGE;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Tests the {@link UploadSpool}. */
+public class UploadSpoolTest {
+
+	/** Holds the spooled reports. */
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	/** Tests that reports left over from a previous run are uploaded in the order in which they were written. */
+	@Test
+	public void testLeftOverReportsAreUploadedInOrder() throws Exception {
+		TimestampedFileStore spoolStore = new TimestampedFileStore(temporaryFolder.getRoot().toPath());
+		writeReport(spoolStore, "first", JACOCO);
+		writeReport(spoolStore, "second", TESTWISE_COVERAGE);
+
+		List<String> uploadedReports = Collections.synchronizedList(new ArrayList<>());
+		UploadSpool spool = new UploadSpool(spoolStore,
+				(file, format, metadata) -> uploadedReports.add(
+						format + ":" + readReport(file) + ":" + metadata.getProperty("content")), Long.MAX_VALUE);
+		spool.start();
+		spool.shutdown(Duration.ofSeconds(10));
+
+		assertThat(uploadedReports).containsExactly("JACOCO:first:first", "TESTWISE_COVERAGE:second:second");
+		assertThat(spoolStore.listReports()).isEmpty();
+	}
+
+	/** Tests that failed uploads are retried until they succeed. */
+	@Test
+	public void testFailedUploadsAreRetried() throws Exception {
+		TimestampedFileStore spoolStore = new TimestampedFileStore(temporaryFolder.getRoot().toPath());
+		AtomicInteger attempts = new AtomicInteger();
+		CountDownLatch uploaded = new CountDownLatch(1);
+		UploadSpool spool = new UploadSpool(spoolStore, (file, format, metadata) -> {
+			if (attempts.incrementAndGet() < 3) {
+				throw new IOException("Server not reachable");
+			}
+			uploaded.countDown();
+		}, Long.MAX_VALUE, Duration.ofMillis(10), Duration.ofMillis(20));
+		spool.start();
+
+		spool.store(output -> output.write('x'), JACOCO, new Properties());
+
+		assertThat(uploaded.await(10, TimeUnit.SECONDS)).isTrue();
+		spool.shutdown(Duration.ofSeconds(10));
+		assertThat(attempts.get()).isEqualTo(3);
+		assertThat(spoolStore.listReports()).isEmpty();
+	}
+
+	/** Tests that the oldest reports are deleted if the pending reports exceed the maximal size. */
+	@Test
+	public void testOldestReportsAreDeletedIfSpoolIsFull() throws Exception {
+		TimestampedFileStore spoolStore = new TimestampedFileStore(temporaryFolder.getRoot().toPath());
+		UploadSpool spool = new UploadSpool(spoolStore, (file, format, metadata) -> {
+			throw new IOException("Server not reachable");
+		}, 10, Duration.ofHours(1), Duration.ofHours(1));
+		spool.start();
+
+		for (int i = 0; i < 3; i++) {
+			spool.store(output -> output.write("report".getBytes(StandardCharsets.UTF_8)), JACOCO,
+					new Properties());
+			// The file names only have a resolution of milliseconds
+			Thread.sleep(5);
+		}
+		spool.shutdown(Duration.ofSeconds(10));
+
+		assertThat(spoolStore.listReports()).hasSize(1);
+	}
+
+	/** Tests that rejected reports are kept, but not uploaded again. */
+	@Test
+	public void testRejectedReportsAreNotUploadedAgain() throws Exception {
+		TimestampedFileStore spoolStore = new TimestampedFileStore(temporaryFolder.getRoot().toPath());
+		Path file = writeReport(spoolStore, "invalid", JACOCO);
+
+		UploadSpool spool = new UploadSpool(spoolStore, (uploadedFile, format, metadata) -> {
+			throw new ReportRejectedException("Invalid report");
+		}, Long.MAX_VALUE);
+		spool.start();
+		spool.shutdown(Duration.ofSeconds(10));
+
+		assertThat(spoolStore.listReports()).isEmpty();
+		assertThat(file.resolveSibling(file.getFileName() + UploadSpool.REJECTED_FILE_EXTENSION)).exists();
+	}
+
+	/** Tests that reports without metadata, e.g. from a previous run or the user, are left untouched and not uploaded. */
+	@Test
+	public void testLeftOverReportsWithoutMetadataAreNotUploaded() throws Exception {
+		TimestampedFileStore spoolStore = new TimestampedFileStore(temporaryFolder.getRoot().toPath());
+		Path file = writeReport(spoolStore, "unknown commit", JACOCO);
+		Files.delete(UploadSpool.getMetadataFile(file));
+
+		List<Path> uploadedFiles = Collections.synchronizedList(new ArrayList<>());
+		UploadSpool spool = new UploadSpool(spoolStore, (uploadedFile, format, metadata) -> uploadedFiles.add(
+				uploadedFile), Long.MAX_VALUE);
+		spool.start();
+		spool.shutdown(Duration.ofSeconds(10));
+
+		assertThat(uploadedFiles).isEmpty();
+		assertThat(spoolStore.listReports()).containsExactly(file);
+		assertThat(file.resolveSibling(file.getFileName() + UploadSpool.REJECTED_FILE_EXTENSION)).doesNotExist();
+	}
+
+	/**
+	 * Tests that a report left over from a previous run is uploaded to the commit for which it was recorded, even if
+	 * the agent has been restarted for a different commit in the meantime.
+	 */
+	@Test
+	public void testLeftOverReportsAreUploadedToTheirOriginalCommit() throws Exception {
+		AtomicBoolean isAvailable = new AtomicBoolean(false);
+		List<String> uploadedCommits = Collections.synchronizedList(new ArrayList<>());
+		MockWebServer server = new MockWebServer();
+		server.setDispatcher(new Dispatcher() {
+			@Override
+			public MockResponse dispatch(RecordedRequest request) {
+				if (!isAvailable.get()) {
+					return new MockResponse().setResponseCode(503);
+				}
+				uploadedCommits.add(request.getRequestUrl().queryParameter("t"));
+				return new MockResponse().setResponseCode(200);
+			}
+		});
+		server.start();
+		try {
+			TimestampedFileStore spoolStore = new TimestampedFileStore(temporaryFolder.getRoot().toPath());
+			TeamscaleServer teamscaleServer = createTeamscaleServer(server);
+
+			TeamscaleUploadStore oldStore = new TeamscaleUploadStore(spoolStore, teamscaleServer, Long.MAX_VALUE,
+					false);
+			oldStore.store("<report/>", JACOCO);
+			assertThat(server.takeRequest(10, TimeUnit.SECONDS)).isNotNull();
+			oldStore.shutdown();
+			assertThat(spoolStore.listReports()).hasSize(1);
+
+			// The application is redeployed for a newer commit
+			teamscaleServer.commit = new CommitDescriptor("master", 67890);
+			isAvailable.set(true);
+			TeamscaleUploadStore newStore = new TeamscaleUploadStore(spoolStore, teamscaleServer, Long.MAX_VALUE,
+					false);
+			newStore.shutdown();
+
+			assertThat(uploadedCommits).containsExactly("master:12345");
+			assertThat(spoolStore.listReports()).isEmpty();
+		} finally {
+			server.shutdown();
+		}
+	}
+
+	/** Returns the details of the given server. */
+	private static TeamscaleServer createTeamscaleServer(MockWebServer server) {
+		TeamscaleServer teamscaleServer = new TeamscaleServer();
+		teamscaleServer.url = server.url("/");
+		teamscaleServer.project = "project";
+		teamscaleServer.userName = "build";
+		teamscaleServer.userAccessToken = "token";
+		teamscaleServer.partition = "Unit Tests";
+		teamscaleServer.commit = new CommitDescriptor("master", 12345);
+		return teamscaleServer;
+	}
+
+	/**
+	 * Writes a report with the given content to the store like a previous run of the spool. The content is also
+	 * stored in the metadata of the report.
+	 */
+	private static Path writeReport(TimestampedFileStore store, String content, EReportFormat format)
+			throws Exception {
+		Path file = store.write(output -> output.write(content.getBytes(StandardCharsets.UTF_8)), format);
+		Properties metadata = new Properties();
+		metadata.setProperty("content", content);
+		try (Writer writer = Files.newBufferedWriter(UploadSpool.getMetadataFile(file), StandardCharsets.UTF_8)) {
+			metadata.store(writer, null);
+		}
+		// The file names only have a resolution of milliseconds
+		Thread.sleep(5);
+		return file;
+	}
+
+	/** Reads the report in the given file. */
+	private static String readReport(Path file) throws IOException {
+		return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,103 @@
+package eu.cqse.teamscale.jacoco.agent.store.upload.http;
+
+import eu.cqse.teamscale.jacoco.agent.store.IReportWriter;
+import eu.cqse.teamscale.jacoco.agent.store.file.TimestampedFileStore;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static eu.cqse.teamscale.client.EReportFormat.JACOCO;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Tests the {@link HttpUploadStore}. */
+public class HttpUploadStoreTest {
+
+	/** The report that is uploaded. */
+	private static final String REPORT = "<?xml version=\"1.0\"?><report name=\"äöü\"/>";
+
+	/** Writes the {@link #REPORT}. */
+	private static final IReportWriter REPORT_WRITER = output -> output
+			.write(REPORT.getBytes(StandardCharsets.UTF_8));
+
+	/** Holds the failed uploads. */
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	/** The server that receives the uploads. */
+	private MockWebServer server;
+
+	/** Starts the server. */
+	@Before
+	public void setUp() throws IOException {
+		server = new MockWebServer();
+		server.start();
+	}
+
+	/** Stops the server. */
+	@After
+	public void tearDown() throws IOException {
+		server.shutdown();
+	}
+
+	/** Tests that the report is streamed as a zipped coverage.xml. */
+	@Test
+	public void testReportIsStreamed() throws Exception {
+		server.enqueue(new MockResponse().setResponseCode(200));
+
+		createStore().store(REPORT_WRITER, JACOCO);
+
+		RecordedRequest request = server.takeRequest();
+		assertThat(request.getHeader("Transfer-Encoding")).isEqualTo("chunked");
+		assertThat(readCoverageXmlFromZip(request.getBody().readByteArray())).isEqualTo(REPORT);
+		assertThat(temporaryFolder.getRoot().listFiles()).isEmpty();
+	}
+
+	/** Tests that the report is written to the failure store if the upload fails. */
+	@Test
+	public void testFailedUploadIsStored() throws Exception {
+		server.enqueue(new MockResponse().setResponseCode(500));
+
+		createStore().store(REPORT_WRITER, JACOCO);
+
+		File[] files = temporaryFolder.getRoot().listFiles();
+		assertThat(files).hasSize(1);
+		assertThat(new String(Files.readAllBytes(files[0].toPath()), StandardCharsets.UTF_8)).isEqualTo(REPORT);
+	}
+
+	/** Creates the store that uploads to the {@link #server}. */
+	private HttpUploadStore createStore() {
+		return new HttpUploadStore(new TimestampedFileStore(temporaryFolder.getRoot().toPath()), server.url("/"),
+				Collections.emptyList());
+	}
+
+	/** Extracts the coverage.xml from the zip file in the given multi-part body. */
+	private static String readCoverageXmlFromZip(byte[] body) throws IOException {
+		int zipStart = new String(body, StandardCharsets.ISO_8859_1).indexOf("PK\u0003\u0004");
+		try (ZipInputStream zipInputStream = new ZipInputStream(
+				new ByteArrayInputStream(body, zipStart, body.length - zipStart))) {
+			ZipEntry entry = zipInputStream.getNextEntry();
+			assertThat(entry.getName()).isEqualTo("coverage.xml");
+			byte[] content = new byte[REPORT.length() * 4];
+			int length = 0;
+			int read;
+			while ((read = zipInputStream.read(content, length, content.length - length)) > 0) {
+				length += read;
+			}
+			return new String(content, 0, length, StandardCharsets.UTF_8);
+		}
+	}
+}
@@ -0,0 +1,106 @@
+package eu.cqse.teamscale.jacoco.agent.store.upload.teamscale;
+
+import eu.cqse.teamscale.client.CommitDescriptor;
+import eu.cqse.teamscale.client.TeamscaleServer;
+import eu.cqse.teamscale.jacoco.agent.store.IReportWriter;
+import eu.cqse.teamscale.jacoco.agent.store.file.TimestampedFileStore;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import okio.GzipSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static eu.cqse.teamscale.client.EReportFormat.JACOCO;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Tests the {@link TeamscaleUploadStore}. */
+public class TeamscaleUploadStoreTest {
+
+	/** The report that is uploaded. */
+	private static final String REPORT = "<?xml version=\"1.0\"?><report name=\"äöü\"/>";
+
+	/** Writes the {@link #REPORT}. */
+	private static final IReportWriter REPORT_WRITER = output -> output
+			.write(REPORT.getBytes(StandardCharsets.UTF_8));
+
+	/** Holds the reports that wait for their upload. */
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	/** The server that receives the uploads. */
+	private MockWebServer server;
+
+	/** Starts the server. */
+	@Before
+	public void setUp() throws IOException {
+		server = new MockWebServer();
+		server.start();
+	}
+
+	/** Stops the server. */
+	@After
+	public void tearDown() throws IOException {
+		server.shutdown();
+	}
+
+	/** Tests that the report is uploaded without compression by default. */
+	@Test
+	public void testUncompressedUpload() throws Exception {
+		RecordedRequest request = upload(false);
+
+		assertThat(request.getHeader("Content-Encoding")).isNull();
+		assertThat(request.getBody().readUtf8()).contains(REPORT);
+	}
+
+	/** Tests that the report is compressed with gzip if requested. */
+	@Test
+	public void testCompressedUpload() throws Exception {
+		RecordedRequest request = upload(true);
+
+		assertThat(request.getHeader("Content-Encoding")).isEqualTo("gzip");
+		Buffer uncompressedBody = new Buffer();
+		try (GzipSource source = new GzipSource(request.getBody())) {
+			while (source.read(uncompressedBody, Long.MAX_VALUE) != -1) {
+				// Read the whole body
+			}
+		}
+		assertThat(uncompressedBody.readUtf8()).contains(REPORT);
+	}
+
+	/** Uploads the {@link #REPORT} to the {@link #server} and returns the received request. */
+	private RecordedRequest upload(boolean compress) throws InterruptedException {
+		server.enqueue(new MockResponse().setResponseCode(200));
+		TeamscaleUploadStore store = new TeamscaleUploadStore(
+				new TimestampedFileStore(temporaryFolder.getRoot().toPath()), createServer(), Long.MAX_VALUE,
+				compress);
+
+		store.store(REPORT_WRITER, JACOCO);
+		RecordedRequest request = server.takeRequest(10, TimeUnit.SECONDS);
+		store.shutdown();
+
+		assertThat(request).isNotNull();
+		assertThat(request.getHeader("Authorization")).startsWith("Basic ");
+		return request;
+	}
+
+	/** Returns the details of the {@link #server}. */
+	private TeamscaleServer createServer() {
+		TeamscaleServer teamscaleServer = new TeamscaleServer();
+		teamscaleServer.url = server.url("/");
+		teamscaleServer.project = "project";
+		teamscaleServer.userName = "build";
+		teamscaleServer.userAccessToken = "token";
+		teamscaleServer.partition = "Unit Tests";
+		teamscaleServer.commit = new CommitDescriptor("master", 12345);
+		return teamscaleServer;
+	}
+}
@@ -0,0 +1,129 @@
+package eu.cqse.teamscale.jacoco.agent.testimpact;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Tests the {@link TestEventPipeline}. */
+public class TestEventPipelineTest {
+
+	/** The events processed so far. */
+	private final List<String> processedEvents = Collections.synchronizedList(new ArrayList<>());
+
+	/** Tests that the synchronous pipeline processes the events on the calling thread. */
+	@Test
+	public void testSynchronousProcessing() throws Exception {
+		TestEventPipeline pipeline = TestEventPipeline.synchronous();
+		Thread caller = Thread.currentThread();
+
+		pipeline.process(() -> processedEvents.add("end:" + (Thread.currentThread() == caller)));
+		pipeline.processAndWait(() -> processedEvents.add("dump"));
+		pipeline.shutdown(() -> processedEvents.add("final dump"), 1, TimeUnit.SECONDS);
+
+		assertThat(processedEvents).containsExactly("end:true", "dump", "final dump");
+	}
+
+	/** Tests that a test end returns before the listeners have processed it in pipelined mode. */
+	@Test
+	public void testProcessReturnsBeforeProcessingFinishes() throws Exception {
+		TestEventPipeline pipeline = TestEventPipeline.pipelined(10);
+		CountDownLatch release = new CountDownLatch(1);
+
+		pipeline.process(() -> {
+			awaitUninterruptibly(release);
+			processedEvents.add("end");
+		});
+		assertThat(processedEvents).isEmpty();
+
+		release.countDown();
+		pipeline.shutdown(() -> processedEvents.add("final dump"), 10, TimeUnit.SECONDS);
+		assertThat(processedEvents).containsExactly("end", "final dump");
+	}
+
+	/** Tests that the caller blocks while the queue is full. */
+	@Test
+	public void testFullQueueBlocksCaller() throws Exception {
+		TestEventPipeline pipeline = TestEventPipeline.pipelined(1);
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		pipeline.process(() -> {
+			started.countDown();
+			awaitUninterruptibly(release);
+			processedEvents.add("first");
+		});
+		assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+		// Fills the queue while the first event is being processed
+		pipeline.process(() -> processedEvents.add("second"));
+
+		Thread caller = new Thread(() -> pipeline.process(() -> processedEvents.add("third")));
+		caller.start();
+		caller.join(200);
+		assertThat(caller.isAlive()).isTrue();
+
+		release.countDown();
+		caller.join(10_000);
+		assertThat(caller.isAlive()).isFalse();
+		pipeline.shutdown(() -> processedEvents.add("final dump"), 10, TimeUnit.SECONDS);
+		assertThat(processedEvents).containsExactly("first", "second", "third", "final dump");
+	}
+
+	/** Tests that a dump waits until all earlier events have been processed. */
+	@Test
+	public void testDumpWaitsForEarlierEvents() throws Exception {
+		TestEventPipeline pipeline = TestEventPipeline.pipelined(10);
+		for (int i = 0; i < 3; i++) {
+			String event = "end " + i;
+			pipeline.process(() -> {
+				sleepUninterruptibly(20);
+				processedEvents.add(event);
+			});
+		}
+
+		pipeline.processAndWait(() -> processedEvents.add("dump"));
+
+		assertThat(processedEvents).containsExactly("end 0", "end 1", "end 2", "dump");
+		pipeline.shutdown(() -> {
+		}, 10, TimeUnit.SECONDS);
+	}
+
+	/** Tests that the shutdown processes all queued events before the final dump. */
+	@Test
+	public void testShutdownDrainsQueueBeforeFinalDump() {
+		TestEventPipeline pipeline = TestEventPipeline.pipelined(10);
+		for (int i = 0; i < 3; i++) {
+			String event = "end " + i;
+			pipeline.process(() -> {
+				sleepUninterruptibly(20);
+				processedEvents.add(event);
+			});
+		}
+
+		pipeline.shutdown(() -> processedEvents.add("final dump"), 10, TimeUnit.SECONDS);
+
+		assertThat(processedEvents).containsExactly("end 0", "end 1", "end 2", "final dump");
+	}
+
+	/** Waits for the given latch and ignores interrupts. */
+	private static void awaitUninterruptibly(CountDownLatch latch) {
+		try {
+			latch.await(10, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/** Sleeps for the given time and ignores interrupts. */
+	private static void sleepUninterruptibly(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,126 @@
+package eu.cqse.teamscale.jacoco.agent.testimpact;
+
+import eu.cqse.teamscale.client.EReportFormat;
+import eu.cqse.teamscale.jacoco.agent.TestEvent;
+import eu.cqse.teamscale.jacoco.agent.store.IReportWriter;
+import eu.cqse.teamscale.jacoco.agent.store.IXmlStore;
+import eu.cqse.teamscale.report.jacoco.dump.Dump;
+import eu.cqse.teamscale.report.testwise.jacoco.TestwiseXmlReportGenerator;
+import eu.cqse.teamscale.report.util.AntPatternIncludeFilter;
+import org.apache.logging.log4j.LogManager;
+import org.conqat.lib.commons.collections.CollectionUtils;
+import org.conqat.lib.commons.test.CCSMTestCaseBase;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataReader;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.SessionInfo;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static eu.cqse.teamscale.jacoco.util.LoggingUtils.wrap;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Tests the background conversion of the {@link TestwiseCoverageCollector}. */
+public class TestwiseCoverageCollectorTest extends CCSMTestCaseBase {
+
+	/** Tests that a dump contains the coverage of all tests that finished before it. */
+	@Test
+	public void testDumpContainsAllFinishedTests() throws Exception {
+		TestwiseCoverageCollector collector = createCollector();
+		ExecutionData executionData = readExecutionData();
+		RecordingStore store = new RecordingStore();
+
+		collector.onTestFinish(createEvent(), createDump("first", executionData));
+		collector.onTestFinish(createEvent(), createDump("second", executionData));
+		collector.onDump(store);
+
+		assertThat(store.reports).hasSize(1);
+		assertThat(store.reports.get(0)).contains("externalId=\"first\"").contains("externalId=\"second\"")
+				.contains("<lines");
+	}
+
+	/** Tests that each dump only contains the tests that finished since the previous dump. */
+	@Test
+	public void testDumpOnlyContainsTestsSinceLastDump() throws Exception {
+		TestwiseCoverageCollector collector = createCollector();
+		ExecutionData executionData = readExecutionData();
+		RecordingStore store = new RecordingStore();
+
+		collector.onTestFinish(createEvent(), createDump("first", executionData));
+		collector.onDump(store);
+		collector.onDump(store);
+		collector.onTestFinish(createEvent(), createDump("second", executionData));
+		collector.onDump(store);
+
+		assertThat(store.reports).hasSize(2);
+		assertThat(store.reports.get(1)).contains("externalId=\"second\"").doesNotContain("externalId=\"first\"");
+	}
+
+	/** Creates a collector for the test class. */
+	private TestwiseCoverageCollector createCollector() throws Exception {
+		return new TestwiseCoverageCollector(new TestwiseXmlReportGenerator(
+				Collections.singletonList(useTestFile("TestClass.class")),
+				new AntPatternIncludeFilter(CollectionUtils.emptyList(), CollectionUtils.emptyList()), true,
+				wrap(LogManager.getLogger(TestwiseCoverageCollectorTest.class))));
+	}
+
+	/** Reads the execution data of the test class. */
+	private ExecutionData readExecutionData() throws IOException {
+		ExecutionDataStore store = new ExecutionDataStore();
+		try (InputStream input = new FileInputStream(useTestFile("coverage.exec"))) {
+			ExecutionDataReader reader = new ExecutionDataReader(input);
+			reader.setExecutionDataVisitor(store);
+			reader.setSessionInfoVisitor(info -> {
+				// Not needed
+			});
+			reader.read();
+		}
+		return store.getContents().iterator().next();
+	}
+
+	/** Creates the dump of the test with the given ID. */
+	private static Dump createDump(String testId, ExecutionData executionData) {
+		ExecutionDataStore store = new ExecutionDataStore();
+		store.put(new ExecutionData(executionData.getId(), executionData.getName(), executionData.getProbes().clone()));
+		return new Dump(new SessionInfo(testId, 1, 2), store);
+	}
+
+	/** Creates a test event without any parameters. */
+	private static TestEvent createEvent() {
+		return new TestEvent(Collections.emptyMap(), Collections.emptyMap(), "", 0);
+	}
+
+	/** Keeps the stored reports in memory. */
+	private static class RecordingStore implements IXmlStore {
+
+		/** The stored reports. */
+		private final List<String> reports = new ArrayList<>();
+
+		/** {@inheritDoc} */
+		@Override
+		public boolean store(IReportWriter report, EReportFormat format) {
+			ByteArrayOutputStream output = new ByteArrayOutputStream();
+			try {
+				report.writeTo(output);
+			} catch (IOException e) {
+				return false;
+			}
+			reports.add(new String(output.toByteArray(), StandardCharsets.UTF_8));
+			return true;
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public String describe() {
+			return "in memory";
+		}
+	}
+}
@@ -8,14 +8,23 @@ import java.lang.instrument.Instrumentation;
 /** Wrapper around JaCoCo's PreMain to ensure the PreMain class name stays the same. */
 public class PreMain {
 
+	/** The file to which the execution data is written or null if the agent was not started by this class. */
+	private static File executionDataFile;
+
 	/** Entry point called by the JVM. */
 	public static void premain(String options, Instrumentation instrumentation) throws Exception {
 		AgentOptions agentOptions = new AgentOptions(options);
 		agentOptions.setOutput(AgentOptions.OutputMode.file);
-		new File(agentOptions.getDestfile()).delete();
+		executionDataFile = new File(agentOptions.getDestfile()).getAbsoluteFile();
+		executionDataFile.delete();
 		agentOptions.setAppend(true);
 		agentOptions.setSessionId("");
 		agentOptions.setDumpOnExit(false);
 		org.jacoco.agent.rt.internal_c13123e.PreMain.premain(agentOptions.toString(), instrumentation);
 	}
+
+	/** @see #executionDataFile */
+	public static File getExecutionDataFile() {
+		return executionDataFile;
+	}
 }
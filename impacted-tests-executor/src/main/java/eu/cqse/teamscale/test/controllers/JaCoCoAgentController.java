@@ -1,38 +1,72 @@
 package eu.cqse.teamscale.test.controllers;
 
+import eu.cqse.teamscale.PreMain;
 import org.jacoco.agent.rt.IAgent;
 import org.jacoco.agent.rt.RT;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.channels.FileLock;
 
 /**
  * Translates test start and finish event into actions for the locally running jacoco agent.
+ * <p>
+ * If the agent was started by {@link PreMain}, the coverage of the tests is collected in memory and appended to the
+ * execution data file in large batches instead of letting the agent open, lock and flush the file after every test.
+ * Processes that may be killed, e.g. parallel workers that exceed their timeout, write the coverage after every test
+ * instead, so the coverage of the finished tests is not lost.
  */
 public class JaCoCoAgentController {
 
+	/** The buffered coverage is written to the execution data file once it exceeds this size. */
+	private static final int FLUSH_THRESHOLD_BYTES = 8 * 1024 * 1024;
+
 	/** Singleton instance for this class. */
 	private static JaCoCoAgentController singleton;
 
 	/** Reference to the jacoco agent. */
 	private final IAgent agent;
 
+	/** The file to which the buffered coverage is written or null if the agent writes the coverage itself. */
+	private final File executionDataFile;
+
+	/**
+	 * The coverage of the tests that has not been written to the {@link #executionDataFile} yet. Each test adds a
+	 * complete execution data stream, which only contains the classes the test hit.
+	 */
+	private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+	/** The buffered coverage is written to the {@link #executionDataFile} once it exceeds this size. */
+	private int flushThresholdBytes = FLUSH_THRESHOLD_BYTES;
+
 	/** Constructor. */
-	private JaCoCoAgentController(IAgent agent) {
+	private JaCoCoAgentController(IAgent agent, File executionDataFile) {
 		this.agent = agent;
+		this.executionDataFile = executionDataFile;
 	}
 
 	/** Returns a singleton instance of the controller. */
 	public static JaCoCoAgentController getInstance() {
 		if (singleton == null) {
 			try {
-				singleton = new JaCoCoAgentController(RT.getAgent());
+				singleton = new JaCoCoAgentController(RT.getAgent(), PreMain.getExecutionDataFile());
 			} catch (Exception | NoClassDefFoundError e) {
 				throw new JacocoControllerError("Unable to access JaCoCo Agent.", e);
 			}
+			if (singleton.executionDataFile != null) {
+				Runtime.getRuntime().addShutdownHook(new Thread(singleton::flush, "Flush testwise coverage"));
+			}
 		}
 		return singleton;
 	}
 
+	/** Writes the coverage of each test to the execution data file as soon as the test finished. */
+	public synchronized void flushAfterEachTest() {
+		flushThresholdBytes = 0;
+	}
+
 	/**
 	 * Called when a test starts.
 	 * Resets coverage and sets the session id.
@@ -45,11 +79,18 @@ public class JaCoCoAgentController {
 
 	/**
 	 * Called when a test finished.
-	 * Dumps the coverage of the test to the output file.
+	 * Dumps the coverage of the test to the buffer or directly to the output file.
 	 */
-	public void onTestFinish(String testId) {
+	public synchronized void onTestFinish(String testId) {
 		try {
-			agent.dump(true);
+			if (executionDataFile == null) {
+				agent.dump(true);
+			} else {
+				buffer.write(agent.getExecutionData(true));
+				if (buffer.size() >= flushThresholdBytes) {
+					flush();
+				}
+			}
 
 			// Set session id to empty string after test case to work around dump on exit
 			// Otherwise the coverage generated after the last test leads to another
@@ -59,4 +100,19 @@ public class JaCoCoAgentController {
 			throw new JacocoControllerError(e);
 		}
 	}
+
+	/** Appends the buffered coverage to the execution data file. */
+	private synchronized void flush() {
+		if (buffer.size() == 0) {
+			return;
+		}
+		// The file is locked like the agent does when it writes to it
+		try (FileOutputStream output = new FileOutputStream(executionDataFile, true);
+			 FileLock ignored = output.getChannel().lock()) {
+			buffer.writeTo(output);
+		} catch (IOException e) {
+			throw new JacocoControllerError("Failed to write coverage to " + executionDataFile, e);
+		}
+		buffer.reset();
+	}
 }
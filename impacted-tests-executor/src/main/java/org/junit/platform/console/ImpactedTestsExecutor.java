@@ -11,13 +11,20 @@
 package org.junit.platform.console;
 
 import com.google.gson.GsonBuilder;
+import eu.cqse.teamscale.client.PollingPolicy;
 import eu.cqse.teamscale.client.TeamscaleClient;
 import eu.cqse.teamscale.client.TestDetails;
+import eu.cqse.teamscale.test.controllers.JaCoCoAgentController;
 import org.junit.platform.console.options.ImpactedTestsExecutorCommandLineOptions;
 import org.junit.platform.console.options.TestExecutorCommandLineOptionsParser;
+import org.junit.platform.console.tasks.DiscoveredTests;
+import org.junit.platform.console.tasks.ImpactedTestsDiscoveryRequestFactory;
+import org.junit.platform.console.tasks.ParallelTestExecutor;
 import org.junit.platform.console.tasks.TestDetailsCollector;
 import org.junit.platform.console.tasks.TestExecutor;
-import org.junit.platform.launcher.listeners.TestExecutionSummary;
+import org.junit.platform.console.tasks.TestShard;
+import org.junit.platform.launcher.Launcher;
+import org.junit.platform.launcher.core.LauncherFactory;
 import retrofit2.Response;
 
 import java.io.BufferedWriter;
@@ -25,7 +32,14 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * The {@code ImpactedTestsExecutor} is a stand-alone application for executing impacted tests
@@ -60,6 +74,9 @@ public class ImpactedTestsExecutor {
 		}
 		logger.setAnsiColorEnabled(!options.isAnsiColorOutputDisabled());
 		try {
+			if (options.workerShard != null) {
+				return executeWorkerShard(options);
+			}
 			return discoverAndExecuteTests(options);
 		} catch (Exception exception) {
 			logger.error(exception);
@@ -67,23 +84,75 @@ public class ImpactedTestsExecutor {
 		}
 	}
 
-	/** Handles test detail collection and execution of the impacted tests. */
-	private ConsoleLauncherExecutionResult discoverAndExecuteTests(ImpactedTestsExecutorCommandLineOptions options) {
-		List<TestDetails> availableTestDetails = getTestDetails(options);
+	/**
+	 * Handles test detail collection and execution of the impacted tests. The test details and the impacted tests are
+	 * both taken from a single discovery with the same launcher that executes the tests. The execution still resolves
+	 * its own discovery request, since JUnit Platform 1.2 cannot execute a discovered test plan. The impacted tests are
+	 * queried as soon as Teamscale accepted the test details and all tests are executed if Teamscale does not answer
+	 * in time.
+	 */
+	private ConsoleLauncherExecutionResult discoverAndExecuteTests(ImpactedTestsExecutorCommandLineOptions options) throws IOException, InterruptedException {
+		Launcher launcher = LauncherFactory.create();
+		TestDetailsCollector testDetailsCollector = new TestDetailsCollector(logger, launcher);
+		DiscoveredTests discoveredTests = testDetailsCollector.discover(options);
+		TestExecutor testExecutor = new TestExecutor(options, logger, launcher, discoveredTests);
+
+		List<TestDetails> availableTestDetails = getTestDetails(testDetailsCollector, discoveredTests, options);
 		if (availableTestDetails.isEmpty()) {
 			return ConsoleLauncherExecutionResult.success();
 		}
 
 		TeamscaleClient client = new TeamscaleClient(options.server.url, options.server.userName,
 				options.server.userAccessToken, options.server.project);
-		uploadTestDetails(options, availableTestDetails, client);
+		CompletableFuture<Void> upload = uploadTestDetails(options, availableTestDetails, client);
 
-		return executeTests(client, options);
+		if (options.runAllTests) {
+			ConsoleLauncherExecutionResult result = executeTests(testExecutor, discoveredTests, null, options);
+			awaitUpload(upload, options);
+			return result;
+		}
+		List<String> impactedTests = getImpactedTests(client, upload, discoveredTests, options);
+		return executeTests(testExecutor, discoveredTests, impactedTests, options);
 	}
 
-	/** Discovers all tests that match the given filters in #options. */
-	private List<TestDetails> getTestDetails(ImpactedTestsExecutorCommandLineOptions options) {
-		List<TestDetails> availableTestDetails = new TestDetailsCollector(logger).collect(options);
+	/** Executes the tests in the shard given in the options in this worker process. */
+	private ConsoleLauncherExecutionResult executeWorkerShard(ImpactedTestsExecutorCommandLineOptions options) throws IOException {
+		TestShard shard = TestShard.readFrom(options.workerShard);
+		// The worker is killed if it exceeds its timeout, which must not lose the coverage of the finished tests
+		JaCoCoAgentController.getInstance().flushAfterEachTest();
+		TestExecutor testExecutor = new TestExecutor(options, logger, LauncherFactory.create(), null);
+		return ConsoleLauncherExecutionResult.forSummary(testExecutor.executeShard(shard));
+	}
+
+	/**
+	 * Executes the given tests or all tests if they are null. The tests are distributed to the number of worker
+	 * processes given in the options.
+	 */
+	private ConsoleLauncherExecutionResult executeTests(TestExecutor testExecutor, DiscoveredTests discoveredTests, List<String> tests, ImpactedTestsExecutorCommandLineOptions options) throws IOException, InterruptedException {
+		if (options.workerCount <= 1) {
+			if (tests == null) {
+				return ConsoleLauncherExecutionResult.forSummary(testExecutor.executeAllTests());
+			}
+			return ConsoleLauncherExecutionResult.forSummary(testExecutor.executeTests(tests));
+		}
+
+		List<TestShard> shards;
+		if (tests == null) {
+			logger.message("Executing all tests...");
+			shards = ImpactedTestsDiscoveryRequestFactory.createShardsForAllTests(discoveredTests, options.workerCount);
+		} else {
+			logger.message("Executing " + tests.size() + " impacted tests...");
+			shards = ImpactedTestsDiscoveryRequestFactory.createShards(tests, discoveredTests, options.workerCount);
+		}
+		if (new ParallelTestExecutor(options, logger).execute(shards)) {
+			return ConsoleLauncherExecutionResult.success();
+		}
+		return ConsoleLauncherExecutionResult.failed();
+	}
+
+	/** Collects the test details of the discovered tests. */
+	private List<TestDetails> getTestDetails(TestDetailsCollector testDetailsCollector, DiscoveredTests discoveredTests, ImpactedTestsExecutorCommandLineOptions options) {
+		List<TestDetails> availableTestDetails = testDetailsCollector.collect(discoveredTests);
 
 		logger.message("Found " + availableTestDetails.size() + " tests");
 
@@ -94,21 +163,52 @@ public class ImpactedTestsExecutor {
 		return availableTestDetails;
 	}
 
-	/** Executes either all tests if set via the command line options or queries Teamscale for the impacted tests and executes those. */
-	private ConsoleLauncherExecutionResult executeTests(TeamscaleClient client, ImpactedTestsExecutorCommandLineOptions options) {
-		TestExecutor testExecutor = new TestExecutor(options, logger);
-		TestExecutionSummary testExecutionSummary;
-		if (options.runAllTests) {
-			testExecutionSummary = testExecutor.executeAllTests();
-		} else {
-			List<String> impactedTests = getImpactedTestsFromTeamscale(client, options);
-			if (impactedTests == null) {
-				testExecutionSummary = testExecutor.executeAllTests();
+	/**
+	 * Queries Teamscale for the impacted tests once the upload of the test details is done.
+	 *
+	 * @return the impacted tests that were discovered or null if all tests should be executed because the impacted
+	 * tests cannot be determined.
+	 */
+	private List<String> getImpactedTests(TeamscaleClient client, CompletableFuture<Void> upload, DiscoveredTests discoveredTests, ImpactedTestsExecutorCommandLineOptions options) {
+		// Teamscale is polled at most as long as the executor waits for the result
+		PollingPolicy pollingPolicy = PollingPolicy.DEFAULT
+				.withDeadline(Duration.ofSeconds(options.impactedTestsTimeoutInSeconds));
+		// Cancelling the future returned by thenCompose does not cancel the polling, so the polling future is kept.
+		// It is replaced by a cancelled future once the executor stops waiting.
+		AtomicReference<CompletableFuture<Response<List<String>>>> polling = new AtomicReference<>();
+		CompletableFuture<Response<List<String>>> impactedTestsResponse = upload.thenCompose(ignored -> {
+			logger.message("Getting impacted tests");
+			CompletableFuture<Response<List<String>>> response = client.getImpactedTestsAsync(options.baseline,
+					options.endCommit, options.partition, pollingPolicy);
+			if (!polling.compareAndSet(null, response)) {
+				response.cancel(true);
+			}
+			return response;
+		});
+
+		List<String> impactedTests = getImpactedTestsFromTeamscale(impactedTestsResponse, options);
+		if (impactedTests == null) {
+			// Stops the polling in case of a timeout, has no effect if the polling is already done
+			impactedTestsResponse.cancel(true);
+			CompletableFuture<Response<List<String>>> stoppedPolling = new CompletableFuture<>();
+			stoppedPolling.cancel(true);
+			CompletableFuture<Response<List<String>>> runningPolling = polling.getAndSet(stoppedPolling);
+			if (runningPolling != null) {
+				runningPolling.cancel(true);
+			}
+			return null;
+		}
+
+		// Tests may have been deleted since Teamscale computed the impacted tests
+		List<String> discoveredImpactedTests = new ArrayList<>();
+		for (String test : impactedTests) {
+			if (discoveredTests.contains(test)) {
+				discoveredImpactedTests.add(test);
 			} else {
-				testExecutionSummary = testExecutor.executeTests(impactedTests);
+				logger.message("Skipping impacted test " + test + ", which was not discovered");
 			}
 		}
-		return ConsoleLauncherExecutionResult.forSummary(testExecutionSummary);
+		return discoveredImpactedTests;
 	}
 
 	/** Writes the given test details to a report file. */
@@ -127,24 +227,46 @@ public class ImpactedTestsExecutor {
 		}
 	}
 
-	/** Uploads the test details to Teamscale. */
-	private void uploadTestDetails(ImpactedTestsExecutorCommandLineOptions options, List<TestDetails> availableTestDetails, TeamscaleClient client) {
+	/**
+	 * Asynchronously uploads the test details to Teamscale. The returned future completes when the upload is done,
+	 * also if it failed.
+	 */
+	private CompletableFuture<Void> uploadTestDetails(ImpactedTestsExecutorCommandLineOptions options, List<TestDetails> availableTestDetails, TeamscaleClient client) {
+		logger.message("Uploading reports to " + options.endCommit.toString() + " (" + options.partition + ")");
+		return client.uploadTestListAsync(availableTestDetails, options.endCommit, options.partition,
+				"Test list upload (" + options.partition + ")").handle((ignored, throwable) -> {
+			if (throwable != null) {
+				logger.error("Test details upload failed (" + throwable.getMessage() + ")");
+				// The test executor will fallback to execute all tests since Teamscale will return no impacted tests in
+				// this case.
+			}
+			return null;
+		});
+	}
+
+	/** Waits for the upload of the test details to finish, so it is not aborted when the executor exits. */
+	private void awaitUpload(CompletableFuture<Void> upload, ImpactedTestsExecutorCommandLineOptions options) {
 		try {
-			logger.message("Uploading reports to " + options.endCommit.toString() + " (" + options.partition + ")");
-			client.uploadTestList(availableTestDetails, options.endCommit,
-					options.partition, "Test list upload (" + options.partition + ")");
-		} catch (IOException e) {
-			logger.error("Test details upload failed (" + e.getMessage() + ")");
-			// The test executor will fallback to execute all tests since Teamscale will return no impacted tests in
-			// this case.
+			upload.get(options.impactedTestsTimeoutInSeconds, TimeUnit.SECONDS);
+		} catch (TimeoutException e) {
+			logger.error("Test details upload did not finish within " + options.impactedTestsTimeoutInSeconds
+					+ " seconds");
+		} catch (ExecutionException e) {
+			// Already logged by the upload
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
 		}
 	}
 
-	/** Queries Teamscale for impacted tests. */
-	private List<String> getImpactedTestsFromTeamscale(TeamscaleClient client, ImpactedTestsExecutorCommandLineOptions options) {
+	/**
+	 * Waits for the impacted tests requested from Teamscale.
+	 *
+	 * @return the impacted tests or null if they could not be determined within the timeout given in the options.
+	 */
+	private List<String> getImpactedTestsFromTeamscale(CompletableFuture<Response<List<String>>> impactedTestsResponse, ImpactedTestsExecutorCommandLineOptions options) {
 		try {
-			Response<List<String>> response = client
-					.getImpactedTests(options.baseline, options.endCommit, options.partition, logger.output);
+			Response<List<String>> response = impactedTestsResponse
+					.get(options.impactedTestsTimeoutInSeconds, TimeUnit.SECONDS);
 			if (response.isSuccessful()) {
 				List<String> testList = response.body();
 				if (testList == null) {
@@ -155,8 +277,14 @@ public class ImpactedTestsExecutor {
 				logger.error("Retrieval of impacted tests failed");
 				logger.error(response.code() + " " + response.message());
 			}
-		} catch (IOException e) {
-			logger.error("Retrieval of impacted tests failed (" + e.getMessage() + ")");
+		} catch (TimeoutException e) {
+			logger.error("Teamscale did not return the impacted tests within " + options.impactedTestsTimeoutInSeconds
+					+ " seconds");
+		} catch (ExecutionException e) {
+			logger.error("Retrieval of impacted tests failed (" + e.getCause().getMessage() + ")");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			logger.error("Interrupted while waiting for the impacted tests");
 		}
 		return null;
 	}
@@ -5,6 +5,8 @@ import org.junit.platform.console.shadow.joptsimple.OptionParser;
 import org.junit.platform.console.shadow.joptsimple.OptionSet;
 import org.junit.platform.console.shadow.joptsimple.OptionSpec;
 
+import java.nio.file.Paths;
+
 import static java.util.Arrays.asList;
 
 /** Helper class to parse command line options. */
@@ -28,6 +30,12 @@ public class AvailableImpactedTestsExecutorCommandLineOptions {
 
 	private final OptionSpec<Void> runAllTests;
 
+	private final OptionSpec<Integer> impactedTestsTimeout;
+
+	private final OptionSpec<Integer> workers;
+	private final OptionSpec<Integer> workerTimeout;
+	private final OptionSpec<String> workerShard;
+
 	/** Constructor. */
 	AvailableImpactedTestsExecutorCommandLineOptions() {
 		jUnitOptions = new AvailableOptions();
@@ -62,6 +70,31 @@ public class AvailableImpactedTestsExecutorCommandLineOptions {
 
 		runAllTests = parser.acceptsAll(asList("all", "run-all-tests"),
 				"Partition of the tests");
+
+		impactedTestsTimeout = parser.accepts("impacted-tests-timeout",
+				"The maximal time in seconds to wait for Teamscale to accept the test list and return the impacted "
+						+ "tests. All tests are executed if it takes longer.")
+				.withRequiredArg()
+				.ofType(Integer.class)
+				.defaultsTo(ImpactedTestsExecutorCommandLineOptions.DEFAULT_IMPACTED_TESTS_TIMEOUT_SECONDS);
+
+		workers = parser.accepts("workers",
+				"The number of worker processes that execute the tests in parallel. Each worker runs in its own JVM "
+						+ "with its own JaCoCo agent, so the coverage can still be attributed to the individual tests.")
+				.withRequiredArg()
+				.ofType(Integer.class)
+				.defaultsTo(1);
+
+		workerTimeout = parser.accepts("worker-timeout",
+				"The maximal time in seconds to wait for the worker processes started via --workers. Workers that "
+						+ "are still running afterwards are killed and their tests count as failed.")
+				.withRequiredArg()
+				.ofType(Integer.class)
+				.defaultsTo(ImpactedTestsExecutorCommandLineOptions.DEFAULT_WORKER_TIMEOUT_SECONDS);
+
+		workerShard = parser.accepts("worker-shard",
+				"Internal: executes the tests in the given file as a worker process started via --workers.")
+				.withRequiredArg();
 	}
 
 	/** Returns an options parser with the available options set. */
@@ -81,9 +114,20 @@ public class AvailableImpactedTestsExecutorCommandLineOptions {
 		result.partition = detectedOptions.valueOf(this.partition);
 
 		result.runAllTests = detectedOptions.has(this.runAllTests);
-
-		result.baseline = CommitDescriptor.parse(detectedOptions.valueOf(this.baseline));
-		result.endCommit = CommitDescriptor.parse(detectedOptions.valueOf(this.end));
+		result.impactedTestsTimeoutInSeconds = detectedOptions.valueOf(this.impactedTestsTimeout);
+		result.workerCount = detectedOptions.valueOf(this.workers);
+		result.workerTimeoutInSeconds = detectedOptions.valueOf(this.workerTimeout);
+		if (detectedOptions.has(this.workerShard)) {
+			result.workerShard = Paths.get(detectedOptions.valueOf(this.workerShard));
+		}
+
+		// Worker processes and --help are started without commits
+		if (detectedOptions.has(this.baseline)) {
+			result.baseline = CommitDescriptor.parse(detectedOptions.valueOf(this.baseline));
+		}
+		if (detectedOptions.has(this.end)) {
+			result.endCommit = CommitDescriptor.parse(detectedOptions.valueOf(this.end));
+		}
 
 		return result;
 	}
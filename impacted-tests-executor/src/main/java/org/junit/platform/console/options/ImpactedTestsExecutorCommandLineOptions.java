@@ -8,6 +8,12 @@ import java.util.Optional;
 /** Holds the actual values of the options configured via command line parameters. */
 public class ImpactedTestsExecutorCommandLineOptions {
 
+	/** The default of {@link #impactedTestsTimeoutInSeconds}. */
+	public static final int DEFAULT_IMPACTED_TESTS_TIMEOUT_SECONDS = 180;
+
+	/** The default of {@link #workerTimeoutInSeconds}. */
+	public static final int DEFAULT_WORKER_TIMEOUT_SECONDS = 7200;
+
 	/** Connection details of the Teamscale server. */
 	public final Server server = new Server();
 
@@ -17,6 +23,27 @@ public class ImpactedTestsExecutorCommandLineOptions {
 	/** Executes all tests, not only impacted ones if set. */
 	public boolean runAllTests;
 
+	/**
+	 * The maximal time to wait for Teamscale to accept the test list and return the impacted tests. All tests are
+	 * executed if it takes longer.
+	 */
+	public int impactedTestsTimeoutInSeconds = DEFAULT_IMPACTED_TESTS_TIMEOUT_SECONDS;
+
+	/** The number of worker processes that execute the tests in parallel. */
+	public int workerCount = 1;
+
+	/**
+	 * The maximal time to wait for the worker processes to execute their tests. Workers that are still running
+	 * afterwards are killed and count as failed.
+	 */
+	public int workerTimeoutInSeconds = DEFAULT_WORKER_TIMEOUT_SECONDS;
+
+	/**
+	 * The file with the shard of tests to execute if this process is a worker started by another executor. Null
+	 * otherwise.
+	 */
+	public Path workerShard;
+
 	/** The baseline commit used for TIA. */
 	public CommitDescriptor baseline;
 
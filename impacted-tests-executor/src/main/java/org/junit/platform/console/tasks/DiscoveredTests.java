@@ -0,0 +1,61 @@
+/*
+ * Copyright 2015-2018 the original author or authors.
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ */
+
+package org.junit.platform.console.tasks;
+
+import org.junit.platform.launcher.LauncherDiscoveryRequest;
+import org.junit.platform.launcher.TestIdentifier;
+import org.junit.platform.launcher.TestPlan;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The result of discovering the tests, which is shared by collecting the test details and selecting the tests to
+ * execute. Executing the tests discovers them again, since JUnit Platform 1.2 can only execute discovery requests.
+ */
+public class DiscoveredTests {
+
+	/** The request with which the tests were discovered. */
+	private final LauncherDiscoveryRequest discoveryRequest;
+
+	/** The discovered tests. */
+	private final TestPlan testPlan;
+
+	/** The unique IDs of all tests and containers in the {@link #testPlan}. */
+	private final Set<String> uniqueIds = new HashSet<>();
+
+	/** Constructor. */
+	public DiscoveredTests(LauncherDiscoveryRequest discoveryRequest, TestPlan testPlan) {
+		this.discoveryRequest = discoveryRequest;
+		this.testPlan = testPlan;
+		for (TestIdentifier root : testPlan.getRoots()) {
+			uniqueIds.add(root.getUniqueId());
+			for (TestIdentifier descendant : testPlan.getDescendants(root)) {
+				uniqueIds.add(descendant.getUniqueId());
+			}
+		}
+	}
+
+	/** @see #discoveryRequest */
+	public LauncherDiscoveryRequest getDiscoveryRequest() {
+		return discoveryRequest;
+	}
+
+	/** @see #testPlan */
+	public TestPlan getTestPlan() {
+		return testPlan;
+	}
+
+	/** Returns whether a test or container with the given unique ID was discovered. */
+	public boolean contains(String uniqueId) {
+		return uniqueIds.contains(uniqueId);
+	}
+}
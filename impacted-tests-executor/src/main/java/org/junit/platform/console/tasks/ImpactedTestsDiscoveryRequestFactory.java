@@ -0,0 +1,229 @@
+/*
+ * Copyright 2015-2018 the original author or authors.
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ */
+
+package org.junit.platform.console.tasks;
+
+import org.junit.platform.engine.DiscoverySelector;
+import org.junit.platform.engine.FilterResult;
+import org.junit.platform.engine.TestDescriptor;
+import org.junit.platform.engine.UniqueId;
+import org.junit.platform.engine.discovery.DiscoverySelectors;
+import org.junit.platform.engine.support.descriptor.ClassSource;
+import org.junit.platform.launcher.LauncherDiscoveryRequest;
+import org.junit.platform.launcher.PostDiscoveryFilter;
+import org.junit.platform.launcher.TestIdentifier;
+import org.junit.platform.launcher.TestPlan;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.platform.launcher.core.LauncherDiscoveryRequestBuilder.request;
+
+/**
+ * Creates the discovery request that selects the impacted tests. Resolving a unique ID selector is expensive for the
+ * test engines, so instead of one selector per impacted test, the classes that contain impacted tests are selected. A
+ * {@link PostDiscoveryFilter} then removes the tests that are not impacted.
+ */
+public class ImpactedTestsDiscoveryRequestFactory {
+
+	/**
+	 * Creates the discovery request for the given impacted tests, which must all be part of the given discovered
+	 * tests.
+	 */
+	public static LauncherDiscoveryRequest createDiscoveryRequest(Collection<String> impactedTests,
+																  DiscoveredTests discoveredTests) {
+		return createDiscoveryRequest(createShards(impactedTests, discoveredTests, 1).get(0));
+	}
+
+	/** Creates the discovery request for the tests in the given shard. */
+	public static LauncherDiscoveryRequest createDiscoveryRequest(TestShard shard) {
+		List<DiscoverySelector> discoverySelectors = new ArrayList<>();
+		for (String selectedUniqueId : shard.getSelectedUniqueIds()) {
+			discoverySelectors.add(DiscoverySelectors.selectUniqueId(selectedUniqueId));
+		}
+		Set<UniqueId> includedUniqueIds = new HashSet<>();
+		for (String includedUniqueId : shard.getIncludedUniqueIds()) {
+			includedUniqueIds.add(UniqueId.parse(includedUniqueId));
+		}
+		return request().selectors(discoverySelectors).filters(new ImpactedTestsFilter(includedUniqueIds)).build();
+	}
+
+	/**
+	 * Distributes the given impacted tests, which must all be part of the given discovered tests, to the given number
+	 * of shards. All tests of a class end up in the same shard, so each class is only initialized in one worker. The
+	 * classes are distributed such that all shards contain about the same number of tests.
+	 */
+	public static List<TestShard> createShards(Collection<String> impactedTests, DiscoveredTests discoveredTests,
+											   int shardCount) {
+		TestPlan testPlan = discoveredTests.getTestPlan();
+		Map<String, TestGroup> impactedTestsByClass = new LinkedHashMap<>();
+		for (String impactedTest : impactedTests) {
+			TestIdentifier testIdentifier = testPlan.getTestIdentifier(impactedTest);
+			TestGroup group = impactedTestsByClass.computeIfAbsent(
+					getEnclosingClass(testPlan, testIdentifier).getUniqueId(), TestGroup::new);
+			group.includedUniqueIds.add(impactedTest);
+			group.testCount++;
+		}
+		return distribute(impactedTestsByClass.values(), shardCount);
+	}
+
+	/**
+	 * Distributes all discovered tests to the given number of shards. Each shard selects whole classes, but only
+	 * includes the tests of the classes that were discovered, so the filters of the original discovery request, e.g.
+	 * for tags, apply to the workers as well. Tests that are only registered during the execution, e.g. dynamic tests,
+	 * are executed as part of their discovered parent.
+	 */
+	public static List<TestShard> createShardsForAllTests(DiscoveredTests discoveredTests, int shardCount) {
+		TestPlan testPlan = discoveredTests.getTestPlan();
+		List<TestGroup> classes = new ArrayList<>();
+		for (TestIdentifier root : testPlan.getRoots()) {
+			collectTopLevelClasses(testPlan, root, classes);
+		}
+		return distribute(classes, shardCount);
+	}
+
+	/**
+	 * Collects the outermost containers that represent classes below the given test identifier together with the
+	 * discovered leaves in them. Tests outside of classes are collected as well.
+	 */
+	private static void collectTopLevelClasses(TestPlan testPlan, TestIdentifier testIdentifier,
+											   List<TestGroup> classes) {
+		if (isClass(testIdentifier) || testIdentifier.isTest()) {
+			TestGroup group = new TestGroup(testIdentifier.getUniqueId());
+			collectLeaves(testPlan, testIdentifier, group.includedUniqueIds);
+			group.testCount = Math.max(1,
+					testPlan.getDescendants(testIdentifier).stream().filter(TestIdentifier::isTest).count());
+			classes.add(group);
+			return;
+		}
+		for (TestIdentifier child : testPlan.getChildren(testIdentifier)) {
+			collectTopLevelClasses(testPlan, child, classes);
+		}
+	}
+
+	/**
+	 * Collects the unique IDs of the discovered tests and containers without discovered children below the given test
+	 * identifier. Containers without children are included, since their children may only be registered during the
+	 * execution, e.g. the invocations of a parameterized test.
+	 */
+	private static void collectLeaves(TestPlan testPlan, TestIdentifier testIdentifier, List<String> leaves) {
+		Set<TestIdentifier> children = testPlan.getChildren(testIdentifier);
+		if (children.isEmpty()) {
+			leaves.add(testIdentifier.getUniqueId());
+			return;
+		}
+		for (TestIdentifier child : children) {
+			collectLeaves(testPlan, child, leaves);
+		}
+	}
+
+	/**
+	 * Distributes the given groups to the given number of shards, largest group first, each to the shard with the
+	 * fewest tests so far. Empty shards are omitted.
+	 */
+	private static List<TestShard> distribute(Collection<TestGroup> groups, int shardCount) {
+		List<TestGroup> sortedGroups = new ArrayList<>(groups);
+		sortedGroups.sort(Comparator.comparingLong((TestGroup group) -> group.testCount).reversed());
+
+		List<TestShard> shards = new ArrayList<>();
+		for (int i = 0; i < shardCount; i++) {
+			shards.add(new TestShard());
+		}
+		long[] shardSizes = new long[shardCount];
+		for (TestGroup group : sortedGroups) {
+			int smallestShard = 0;
+			for (int i = 1; i < shardCount; i++) {
+				if (shardSizes[i] < shardSizes[smallestShard]) {
+					smallestShard = i;
+				}
+			}
+			shards.get(smallestShard).add(group.selectedUniqueId, group.includedUniqueIds);
+			shardSizes[smallestShard] += group.testCount;
+		}
+
+		if (shardCount > 1) {
+			shards.removeIf(TestShard::isEmpty);
+		}
+		return shards;
+	}
+
+	/** Returns whether the given test identifier represents a class. */
+	private static boolean isClass(TestIdentifier testIdentifier) {
+		return testIdentifier.getSource().filter(source -> source instanceof ClassSource).isPresent();
+	}
+
+	/**
+	 * Returns the nearest container of the given test (or the test itself) that represents a class. Returns the test
+	 * itself if there is no such container, e.g. for test engines that are not class based.
+	 */
+	private static TestIdentifier getEnclosingClass(TestPlan testPlan, TestIdentifier testIdentifier) {
+		Optional<TestIdentifier> current = Optional.of(testIdentifier);
+		while (current.isPresent()) {
+			if (isClass(current.get())) {
+				return current.get();
+			}
+			current = testPlan.getParent(current.get());
+		}
+		return testIdentifier;
+	}
+
+	/** Tests that are discovered by selecting the same container. */
+	private static class TestGroup {
+
+		/** The unique ID of the container to select. */
+		private final String selectedUniqueId;
+
+		/** The unique IDs of the tests and containers to execute. */
+		private final List<String> includedUniqueIds = new ArrayList<>();
+
+		/** The number of tests in the group. */
+		private long testCount = 0;
+
+		/** Constructor. */
+		private TestGroup(String selectedUniqueId) {
+			this.selectedUniqueId = selectedUniqueId;
+		}
+	}
+
+	/**
+	 * Includes the tests that are impacted or are part of an impacted container, e.g. the invocations of an impacted
+	 * parameterized test.
+	 */
+	private static class ImpactedTestsFilter implements PostDiscoveryFilter {
+
+		/** The unique IDs of the impacted tests. */
+		private final Set<UniqueId> impactedUniqueIds;
+
+		/** Constructor. */
+		private ImpactedTestsFilter(Set<UniqueId> impactedUniqueIds) {
+			this.impactedUniqueIds = impactedUniqueIds;
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public FilterResult apply(TestDescriptor descriptor) {
+			Optional<TestDescriptor> current = Optional.of(descriptor);
+			while (current.isPresent()) {
+				if (impactedUniqueIds.contains(current.get().getUniqueId())) {
+					return FilterResult.included("Impacted");
+				}
+				current = current.get().getParent();
+			}
+			return FilterResult.excluded("Not impacted");
+		}
+	}
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2015-2018 the original author or authors.
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ */
+
+package org.junit.platform.console.tasks;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.SAXException;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.NumberFormat;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Merges the JUnit XML reports that several worker processes wrote for the same test engine into one report, as if a
+ * single process had executed all tests. The reports contain a single {@code <testsuite>} element, as written by the
+ * {@link XmlReportsWritingListener}. The test cases of all reports are combined in the suite of the first report and
+ * the test counts and times of the suites are added up.
+ */
+/* package */ class JUnitReportMerger {
+
+	/** The attributes of the {@code <testsuite>} element that count the test cases. */
+	private static final String[] COUNT_ATTRIBUTES = {"tests", "skipped", "failures", "errors"};
+
+	/** The attribute of the {@code <testsuite>} element that holds the execution time in seconds. */
+	private static final String TIME_ATTRIBUTE = "time";
+
+	/** The name of the element that holds a test case. */
+	private static final String TESTCASE_ELEMENT = "testcase";
+
+	/** The format of the times, which is the same as the one of the {@link XmlReportsWritingListener}. */
+	private final NumberFormat numberFormat = NumberFormat.getNumberInstance(Locale.US);
+
+	/** The reports to merge. */
+	private final List<Path> reports = new ArrayList<>();
+
+	/** Adds a report to merge. */
+	/* package */ void add(Path report) {
+		reports.add(report);
+	}
+
+	/** Writes the merged report to the given file. */
+	/* package */ void writeTo(Path targetFile) throws IOException {
+		try {
+			DocumentBuilder documentBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+			Document mergedReport = documentBuilder.parse(reports.get(0).toFile());
+			Element mergedSuite = mergedReport.getDocumentElement();
+			for (Path report : reports.subList(1, reports.size())) {
+				Element suite = documentBuilder.parse(report.toFile()).getDocumentElement();
+				mergeSuite(mergedSuite, suite);
+			}
+
+			Transformer transformer = TransformerFactory.newInstance().newTransformer();
+			transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
+			transformer.transform(new DOMSource(mergedReport), new StreamResult(targetFile.toFile()));
+		} catch (ParserConfigurationException | SAXException | TransformerException | ParseException e) {
+			throw new IOException("Failed to merge the JUnit reports " + reports, e);
+		}
+	}
+
+	/** Adds the test cases and counts of the given suite to the merged suite. */
+	private void mergeSuite(Element mergedSuite, Element suite) throws ParseException {
+		for (String attribute : COUNT_ATTRIBUTES) {
+			long count = parse(mergedSuite, attribute).longValue() + parse(suite, attribute).longValue();
+			mergedSuite.setAttribute(attribute, String.valueOf(count));
+		}
+		double time = parse(mergedSuite, TIME_ATTRIBUTE).doubleValue() + parse(suite, TIME_ATTRIBUTE).doubleValue();
+		mergedSuite.setAttribute(TIME_ATTRIBUTE, numberFormat.format(time));
+
+		// The test cases are inserted before the output of the suite, which follows the test cases
+		Node suiteOutput = getFirstSuiteOutput(mergedSuite);
+		for (Node child = suite.getFirstChild(); child != null; child = child.getNextSibling()) {
+			if (child instanceof Element && TESTCASE_ELEMENT.equals(child.getNodeName())) {
+				Node testcase = mergedSuite.getOwnerDocument().importNode(child, true);
+				mergedSuite.insertBefore(testcase, suiteOutput);
+			}
+		}
+	}
+
+	/** Returns the first {@code <system-out>} or {@code <system-err>} element of the given suite or null. */
+	private static Node getFirstSuiteOutput(Element suite) {
+		for (Node child = suite.getFirstChild(); child != null; child = child.getNextSibling()) {
+			if (child instanceof Element && child.getNodeName().startsWith("system-")) {
+				return child;
+			}
+		}
+		return null;
+	}
+
+	/** Returns the value of the given attribute or 0 if it is missing. */
+	private Number parse(Element element, String attribute) throws ParseException {
+		String value = element.getAttribute(attribute);
+		if (value.isEmpty()) {
+			return 0;
+		}
+		return numberFormat.parse(value);
+	}
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright 2015-2018 the original author or authors.
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ */
+
+package org.junit.platform.console.tasks;
+
+import org.junit.platform.console.Logger;
+import org.junit.platform.console.options.ImpactedTestsExecutorCommandLineOptions;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.Charset;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Executes test shards in parallel worker processes. JaCoCo records the coverage of a JVM globally, so the coverage of
+ * tests that run in parallel can only be told apart if they run in separate JVMs. Each worker runs the executor in
+ * worker mode with its own JaCoCo agent that writes to its own execution data file. After all workers finished, their
+ * execution data is appended to the file of the JaCoCo agent of this process, their JUnit reports are merged into one
+ * report per test engine in the reports directory and their console output is printed in order.
+ */
+public class ParallelTestExecutor {
+
+	/** Matches the destfile option of the JaCoCo agent. Group 1 is the path of the file. */
+	private static final Pattern DESTFILE_PATTERN = Pattern.compile("(?<=[=,])destfile=([^,]*)");
+
+	/** The time a worker that exceeded its timeout gets to shut down, e.g. to write its coverage, before it is killed. */
+	private static final long WORKER_SHUTDOWN_GRACE_PERIOD_SECONDS = 10;
+
+	/** The main class of the worker processes. */
+	private static final String MAIN_CLASS = "org.junit.platform.console.ImpactedTestsExecutor";
+
+	/** The logger. */
+	private final Logger logger;
+
+	/** The command line options. */
+	private final ImpactedTestsExecutorCommandLineOptions options;
+
+	/** Constructor. */
+	public ParallelTestExecutor(ImpactedTestsExecutorCommandLineOptions options, Logger logger) {
+		this.options = options;
+		this.logger = logger;
+	}
+
+	/**
+	 * Executes each of the given shards in its own worker process and waits for them. Workers that did not finish
+	 * within the worker timeout given in the options are terminated.
+	 *
+	 * @return whether all tests succeeded.
+	 */
+	public boolean execute(List<TestShard> shards) throws IOException, InterruptedException {
+		List<String> jvmArguments = ManagementFactory.getRuntimeMXBean().getInputArguments();
+		Path executionDataFile = getExecutionDataFile(jvmArguments);
+
+		Path workingDirectory = Files.createTempDirectory("impacted-tests-workers");
+		try {
+			logger.message("Executing tests in " + shards.size() + " worker processes...");
+			List<Worker> workers = new ArrayList<>();
+			for (int i = 0; i < shards.size(); i++) {
+				workers.add(startWorker(i, shards.get(i), jvmArguments, workingDirectory));
+			}
+
+			// The workers run in parallel, so they share the same deadline
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(options.workerTimeoutInSeconds);
+			boolean success = true;
+			for (Worker worker : workers) {
+				success &= worker.awaitAndCollectResults(executionDataFile, deadline);
+			}
+			if (options.getReportsDir().isPresent()) {
+				mergeReports(workers, options.getReportsDir().get());
+			}
+			return success;
+		} finally {
+			deleteRecursively(workingDirectory);
+		}
+	}
+
+	/** Returns the execution data file of the JaCoCo agent given in the JVM arguments of this process. */
+	private static Path getExecutionDataFile(List<String> jvmArguments) throws IOException {
+		for (String jvmArgument : jvmArguments) {
+			Matcher matcher = DESTFILE_PATTERN.matcher(jvmArgument);
+			if (jvmArgument.startsWith("-javaagent:") && matcher.find()) {
+				return Paths.get(matcher.group(1)).toAbsolutePath();
+			}
+		}
+		throw new IOException("Parallel workers require this process to be started with the JaCoCo agent and its "
+				+ "destfile option");
+	}
+
+	/** Starts a worker process that executes the given shard. */
+	private Worker startWorker(int index, TestShard shard, List<String> jvmArguments, Path workingDirectory)
+			throws IOException {
+		Path shardFile = workingDirectory.resolve("worker-" + index + ".json");
+		shard.writeTo(shardFile);
+		Worker worker = new Worker(index, workingDirectory);
+
+		List<String> command = new ArrayList<>();
+		command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+		for (String jvmArgument : jvmArguments) {
+			if (jvmArgument.startsWith("-agentlib:jdwp") || jvmArgument.startsWith("-Xrunjdwp")) {
+				// The debug port is already in use by this process
+				continue;
+			}
+			if (jvmArgument.startsWith("-javaagent:")) {
+				jvmArgument = DESTFILE_PATTERN.matcher(jvmArgument)
+						.replaceFirst(Matcher.quoteReplacement("destfile=" + worker.executionDataFile));
+			}
+			command.add(jvmArgument);
+		}
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(MAIN_CLASS);
+		command.addAll(getWorkerArguments(shardFile, worker));
+
+		worker.process = new ProcessBuilder(command).redirectErrorStream(true)
+				.redirectOutput(worker.outputFile.toFile()).start();
+		return worker;
+	}
+
+	/** Returns the program arguments of the given worker. */
+	private List<String> getWorkerArguments(Path shardFile, Worker worker) {
+		List<String> arguments = new ArrayList<>();
+		arguments.add("--worker-shard");
+		arguments.add(shardFile.toString());
+		arguments.add("--details");
+		arguments.add(options.getDetails().name());
+		arguments.add("--details-theme");
+		arguments.add(options.getTheme().name());
+		if (options.isAnsiColorOutputDisabled()) {
+			arguments.add("--disable-ansi-colors");
+		}
+		if (options.getReportsDir().isPresent()) {
+			arguments.add("--reports-dir");
+			arguments.add(worker.reportsDirectory.toString());
+		}
+		return arguments;
+	}
+
+	/**
+	 * Appends the given execution data file to the target file. The file is locked like the JaCoCo agent does when it
+	 * writes to it, since the agent of this process may write to it as well.
+	 */
+	private static void appendExecutionData(Path source, Path target) throws IOException {
+		try (FileChannel sourceChannel = FileChannel.open(source);
+			 FileChannel targetChannel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					 StandardOpenOption.APPEND);
+			 FileLock ignored = targetChannel.lock()) {
+			long size = sourceChannel.size();
+			long position = 0;
+			while (position < size) {
+				position += sourceChannel.transferTo(position, size - position, targetChannel);
+			}
+		}
+	}
+
+	/**
+	 * Merges the JUnit reports that the workers wrote for the same test engine and writes them to the given
+	 * directory.
+	 */
+	private static void mergeReports(List<Worker> workers, Path targetDirectory) throws IOException {
+		Map<String, JUnitReportMerger> mergersByName = new TreeMap<>();
+		for (Worker worker : workers) {
+			if (!Files.isDirectory(worker.reportsDirectory)) {
+				continue;
+			}
+			try (DirectoryStream<Path> reports = Files.newDirectoryStream(worker.reportsDirectory, "*.xml")) {
+				for (Path report : reports) {
+					mergersByName.computeIfAbsent(report.getFileName().toString(), name -> new JUnitReportMerger())
+							.add(report);
+				}
+			}
+		}
+
+		Files.createDirectories(targetDirectory);
+		for (Map.Entry<String, JUnitReportMerger> entry : mergersByName.entrySet()) {
+			entry.getValue().writeTo(targetDirectory.resolve(entry.getKey()));
+		}
+	}
+
+	/** Deletes the given directory with all its contents. */
+	private void deleteRecursively(Path directory) {
+		File[] files = directory.toFile().listFiles();
+		if (files != null) {
+			for (File file : files) {
+				if (file.isDirectory()) {
+					deleteRecursively(file.toPath());
+				} else if (!file.delete()) {
+					logger.error("Failed to delete " + file);
+				}
+			}
+		}
+		if (!directory.toFile().delete()) {
+			logger.error("Failed to delete " + directory);
+		}
+	}
+
+	/** A worker process. */
+	private class Worker {
+
+		/** The number of the worker. */
+		private final int index;
+
+		/** The file to which the JaCoCo agent of the worker writes. */
+		private final Path executionDataFile;
+
+		/** The file to which the console output of the worker is written. */
+		private final Path outputFile;
+
+		/** The directory to which the worker writes its JUnit reports. */
+		private final Path reportsDirectory;
+
+		/** The process. */
+		private Process process;
+
+		/** Constructor. */
+		private Worker(int index, Path workingDirectory) {
+			this.index = index;
+			this.executionDataFile = workingDirectory.resolve("worker-" + index + ".exec");
+			this.outputFile = workingDirectory.resolve("worker-" + index + ".log");
+			this.reportsDirectory = workingDirectory.resolve("worker-" + index + "-reports");
+		}
+
+		/**
+		 * Waits for the worker and merges its output and execution data into the results of this process. The worker
+		 * is terminated if it is still running at the given deadline and killed if it does not shut down within a
+		 * grace period.
+		 *
+		 * @param deadline the value of {@link System#nanoTime()} after which the worker is terminated.
+		 * @return whether all tests of the worker succeeded.
+		 */
+		private boolean awaitAndCollectResults(Path targetExecutionDataFile, long deadline) throws IOException,
+				InterruptedException {
+			boolean timedOut = !process.waitFor(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+			if (timedOut) {
+				logger.error("Worker " + index + " did not finish within " + options.workerTimeoutInSeconds
+						+ " seconds. Terminating it");
+				// Lets the JVM of the worker run its shutdown hooks, e.g. the one of the JaCoCo agent
+				process.destroy();
+				if (!process.waitFor(WORKER_SHUTDOWN_GRACE_PERIOD_SECONDS, TimeUnit.SECONDS)) {
+					logger.error("Worker " + index + " did not shut down within "
+							+ WORKER_SHUTDOWN_GRACE_PERIOD_SECONDS + " seconds. Killing it");
+					process.destroyForcibly().waitFor();
+				}
+			}
+			int exitCode = process.exitValue();
+
+			logger.message("Output of worker " + index + ":");
+			logger.output.print(new String(Files.readAllBytes(outputFile), Charset.defaultCharset()));
+			logger.output.flush();
+
+			if (Files.exists(executionDataFile)) {
+				appendExecutionData(executionDataFile, targetExecutionDataFile);
+			} else {
+				logger.error("Worker " + index + " did not write any execution data");
+			}
+			if (timedOut) {
+				return false;
+			}
+			if (exitCode != 0) {
+				logger.error("Worker " + index + " failed with exit code " + exitCode);
+				return false;
+			}
+			return true;
+		}
+	}
+}
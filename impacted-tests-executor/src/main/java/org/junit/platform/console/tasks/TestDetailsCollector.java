@@ -19,13 +19,11 @@ import org.junit.platform.launcher.Launcher;
 import org.junit.platform.launcher.LauncherDiscoveryRequest;
 import org.junit.platform.launcher.TestIdentifier;
 import org.junit.platform.launcher.TestPlan;
-import org.junit.platform.launcher.core.LauncherFactory;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
-import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -43,26 +41,29 @@ public class TestDetailsCollector {
 	/** The logger. */
 	private final Logger logger;
 
-	/** A {@link Launcher} factory. */
-	private final Supplier<Launcher> launcherSupplier;
+	/** The launcher used to discover the tests, which is also used to execute them later on. */
+	private final Launcher launcher;
 
 	/** Constructor. */
-	public TestDetailsCollector(Logger logger) {
+	public TestDetailsCollector(Logger logger, Launcher launcher) {
 		this.logger = logger;
-		this.launcherSupplier = LauncherFactory::create;
+		this.launcher = launcher;
+	}
+
+	/** Discovers all tests that match the given options. */
+	public DiscoveredTests discover(ImpactedTestsExecutorCommandLineOptions options) {
+		LauncherDiscoveryRequest discoveryRequest = new DiscoveryRequestCreator()
+				.toDiscoveryRequest(options.toJUnitOptions());
+		return new DiscoveredTests(discoveryRequest, launcher.discover(discoveryRequest));
 	}
 
 	/**
-	 * Starts collecting the test details for the given options.
+	 * Collects the test details of the given discovered tests.
 	 *
-	 * @return Returns a list with all test details or null if an unexpected error occurred.
+	 * @return Returns a list with all test details.
 	 */
-	public List<TestDetails> collect(ImpactedTestsExecutorCommandLineOptions options) {
-		Launcher launcher = launcherSupplier.get();
-		LauncherDiscoveryRequest discoveryRequest = new DiscoveryRequestCreator()
-				.toDiscoveryRequest(options.toJUnitOptions());
-		TestPlan fullTestPlan = launcher.discover(discoveryRequest);
-		return retrieveTestDetailsFromTestPlan(fullTestPlan);
+	public List<TestDetails> collect(DiscoveredTests discoveredTests) {
+		return retrieveTestDetailsFromTestPlan(discoveredTests.getTestPlan());
 	}
 
 	/** Extracts the test details from the JUnit test plan. */
@@ -15,25 +15,18 @@ import org.junit.platform.console.Logger;
 import org.junit.platform.console.options.Details;
 import org.junit.platform.console.options.ImpactedTestsExecutorCommandLineOptions;
 import org.junit.platform.console.options.Theme;
-import org.junit.platform.engine.DiscoverySelector;
-import org.junit.platform.engine.discovery.DiscoverySelectors;
 import org.junit.platform.launcher.Launcher;
 import org.junit.platform.launcher.LauncherDiscoveryRequest;
 import org.junit.platform.launcher.TestExecutionListener;
-import org.junit.platform.launcher.core.LauncherFactory;
 import org.junit.platform.launcher.listeners.SummaryGeneratingListener;
 import org.junit.platform.launcher.listeners.TestExecutionSummary;
 
 import java.io.PrintWriter;
-import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Optional;
-import java.util.function.Supplier;
 
 import static org.junit.platform.console.tasks.ConsoleInterceptor.ignoreOut;
-import static org.junit.platform.launcher.core.LauncherDiscoveryRequestBuilder.request;
-
 /** Runs a set of given tests. */
 public class TestExecutor {
 
@@ -43,31 +36,41 @@ public class TestExecutor {
 	/** The command line options. */
 	private final ImpactedTestsExecutorCommandLineOptions options;
 
-	/** A {@link Launcher} factory. */
-	private final Supplier<Launcher> launcherSupplier;
+	/** The launcher that discovered the tests. It discovers the executed tests again for every execution. */
+	private final Launcher launcher;
+
+	/** The tests discovered by the {@link #launcher} or null in a worker process, which executes a given shard. */
+	private final DiscoveredTests discoveredTests;
 
 	/** Constructor. */
-	public TestExecutor(ImpactedTestsExecutorCommandLineOptions options, Logger logger) {
+	public TestExecutor(ImpactedTestsExecutorCommandLineOptions options, Logger logger, Launcher launcher,
+						DiscoveredTests discoveredTests) {
 		this.options = options;
 		this.logger = logger;
-		this.launcherSupplier = LauncherFactory::create;
+		this.launcher = launcher;
+		this.discoveredTests = discoveredTests;
 	}
 
-	/** Executes the given list of tests. */
+	/** Executes the given list of tests, which must all have been discovered before. */
 	public TestExecutionSummary executeTests(List<String> tests) {
 		logger.message("Executing " + tests.size() + " impacted tests...");
-		return executeRequest(generateImpactedDiscoveryRequest(tests));
+		return executeRequest(ImpactedTestsDiscoveryRequestFactory.createDiscoveryRequest(tests, discoveredTests));
+	}
+
+	/** Executes the tests in the given shard. */
+	public TestExecutionSummary executeShard(TestShard shard) {
+		logger.message("Executing " + shard.getIncludedUniqueIds().size() + " tests or containers...");
+		return executeRequest(ImpactedTestsDiscoveryRequestFactory.createDiscoveryRequest(shard));
 	}
 
 	/** Executes all tests included in {@link #options}. */
 	public TestExecutionSummary executeAllTests() {
 		logger.message("Executing all tests...");
-		return executeRequest(new DiscoveryRequestCreator().toDiscoveryRequest(options.toJUnitOptions()));
+		return executeRequest(discoveredTests.getDiscoveryRequest());
 	}
 
 	/** Executes the tests described by the given discovery request. */
 	private TestExecutionSummary executeRequest(LauncherDiscoveryRequest discoveryRequest) {
-		Launcher launcher = launcherSupplier.get();
 		SummaryGeneratingListener summaryListener = registerTestListeners(launcher);
 		ignoreOut(() -> launcher.execute(discoveryRequest));
 
@@ -76,15 +79,6 @@ public class TestExecutor {
 		return summary;
 	}
 
-	/** Creates a discovery request from the given list of unique test IDs. */
-	private LauncherDiscoveryRequest generateImpactedDiscoveryRequest(List<String> tests) {
-		List<DiscoverySelector> discoverySelectors = new ArrayList<>();
-		for (String impactedTestCase : tests) {
-			discoverySelectors.add(DiscoverySelectors.selectUniqueId(impactedTestCase));
-		}
-		return request().selectors(discoverySelectors).build();
-	}
-
 	/**
 	 * Registers all needed test listeners
 	 *
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2015-2018 the original author or authors.
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ */
+
+package org.junit.platform.console.tasks;
+
+import com.google.gson.Gson;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A part of the tests to execute. The tests are discovered by selecting the {@link #selectedUniqueIds}, which are
+ * usually classes, and only the {@link #includedUniqueIds} and their descendants are executed. Shards are written to
+ * files to pass them to the worker processes.
+ */
+public class TestShard {
+
+	/** The unique IDs of the containers to discover. */
+	private final List<String> selectedUniqueIds = new ArrayList<>();
+
+	/** The unique IDs of the tests and containers to execute. */
+	private final List<String> includedUniqueIds = new ArrayList<>();
+
+	/** Adds the given selected container with the given tests or containers in it to this shard. */
+	/* package */ void add(String selectedUniqueId, List<String> includedUniqueIds) {
+		selectedUniqueIds.add(selectedUniqueId);
+		this.includedUniqueIds.addAll(includedUniqueIds);
+	}
+
+	/** @see #selectedUniqueIds */
+	public List<String> getSelectedUniqueIds() {
+		return selectedUniqueIds;
+	}
+
+	/** @see #includedUniqueIds */
+	public List<String> getIncludedUniqueIds() {
+		return includedUniqueIds;
+	}
+
+	/** Returns whether this shard contains no tests. */
+	public boolean isEmpty() {
+		return includedUniqueIds.isEmpty();
+	}
+
+	/** Writes this shard to the given file. */
+	public void writeTo(Path file) throws IOException {
+		try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			new Gson().toJson(this, writer);
+		}
+	}
+
+	/** Reads a shard from the given file. */
+	public static TestShard readFrom(Path file) throws IOException {
+		try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			return new Gson().fromJson(reader, TestShard.class);
+		}
+	}
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2015-2018 the original author or authors.
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ */
+
+package org.junit.platform.console.tasks;
+
+import org.junit.platform.engine.DiscoverySelector;
+import org.junit.platform.engine.EngineDiscoveryRequest;
+import org.junit.platform.engine.ExecutionRequest;
+import org.junit.platform.engine.TestDescriptor;
+import org.junit.platform.engine.TestEngine;
+import org.junit.platform.engine.TestSource;
+import org.junit.platform.engine.UniqueId;
+import org.junit.platform.engine.discovery.DiscoverySelectors;
+import org.junit.platform.engine.discovery.UniqueIdSelector;
+import org.junit.platform.engine.support.descriptor.AbstractTestDescriptor;
+import org.junit.platform.engine.support.descriptor.ClassSource;
+import org.junit.platform.engine.support.descriptor.EngineDescriptor;
+import org.junit.platform.engine.support.descriptor.MethodSource;
+import org.junit.platform.launcher.Launcher;
+import org.junit.platform.launcher.LauncherDiscoveryRequest;
+import org.junit.platform.launcher.TestIdentifier;
+import org.junit.platform.launcher.TestPlan;
+import org.junit.platform.launcher.core.LauncherFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.platform.launcher.core.LauncherDiscoveryRequestBuilder.request;
+
+/**
+ * Compares the discovery time of the impacted tests when selecting each impacted test by its unique ID with the
+ * grouped selection of the {@link ImpactedTestsDiscoveryRequestFactory}. The tests are provided by a synthetic test
+ * engine that resolves unique IDs like the class based engines: each selector is resolved starting from the engine
+ * descriptor.
+ * <p>
+ * This is not a unit test. Run the main method to print the results.
+ */
+public class ImpactedTestsDiscoveryBenchmark {
+
+	/** The number of tests per class of the synthetic suites. */
+	private static final int TESTS_PER_CLASS = 20;
+
+	/** The share of tests that are impacted. */
+	private static final double IMPACTED_SHARE = 0.4;
+
+	/** The number of measurements per suite and approach. The fastest one is reported. */
+	private static final int REPETITIONS = 3;
+
+	/** Runs the benchmark. */
+	public static void main(String[] args) throws Exception {
+		ClassLoader originalClassLoader = Thread.currentThread().getContextClassLoader();
+		Thread.currentThread().setContextClassLoader(createClassLoaderWithSyntheticEngine());
+		try {
+			Launcher launcher = LauncherFactory.create();
+			for (int testCount : new int[]{10_000, 50_000}) {
+				measure(launcher, testCount);
+			}
+		} finally {
+			Thread.currentThread().setContextClassLoader(originalClassLoader);
+		}
+	}
+
+	/** Measures the discovery of the impacted tests of a synthetic suite with the given number of tests. */
+	private static void measure(Launcher launcher, int testCount) {
+		SyntheticTestEngine.classCount = testCount / TESTS_PER_CLASS;
+		LauncherDiscoveryRequest fullRequest = request()
+				.selectors(DiscoverySelectors.selectUniqueId(UniqueId.forEngine(SyntheticTestEngine.ID))).build();
+		DiscoveredTests discoveredTests = new DiscoveredTests(fullRequest, launcher.discover(fullRequest));
+		List<String> impactedTests = selectImpactedTests(discoveredTests.getTestPlan());
+
+		List<DiscoverySelector> selectors = new ArrayList<>();
+		for (String impactedTest : impactedTests) {
+			selectors.add(DiscoverySelectors.selectUniqueId(impactedTest));
+		}
+		LauncherDiscoveryRequest perTestRequest = request().selectors(selectors).build();
+		LauncherDiscoveryRequest groupedRequest = ImpactedTestsDiscoveryRequestFactory
+				.createDiscoveryRequest(impactedTests, discoveredTests);
+
+		long perTestMillis = measureDiscovery(launcher, perTestRequest, impactedTests.size());
+		long groupedMillis = measureDiscovery(launcher, groupedRequest, impactedTests.size());
+		System.out.printf("%6d tests, %6d impacted: one selector per test %7d ms, grouped by class %5d ms%n",
+				testCount, impactedTests.size(), perTestMillis, groupedMillis);
+	}
+
+	/** Returns the fastest time in milliseconds needed to discover the given request. */
+	private static long measureDiscovery(Launcher launcher, LauncherDiscoveryRequest request, int expectedTestCount) {
+		long fastestMillis = Long.MAX_VALUE;
+		for (int i = 0; i < REPETITIONS; i++) {
+			long start = System.nanoTime();
+			TestPlan testPlan = launcher.discover(request);
+			fastestMillis = Math.min(fastestMillis, (System.nanoTime() - start) / 1_000_000);
+
+			long testCount = testPlan.countTestIdentifiers(TestIdentifier::isTest);
+			if (testCount != expectedTestCount) {
+				throw new AssertionError("Expected " + expectedTestCount + " tests, but discovered " + testCount);
+			}
+		}
+		return fastestMillis;
+	}
+
+	/** Randomly selects the {@link #IMPACTED_SHARE} of all tests in the given plan. */
+	private static List<String> selectImpactedTests(TestPlan testPlan) {
+		Random random = new Random(42);
+		List<String> impactedTests = new ArrayList<>();
+		for (TestIdentifier root : testPlan.getRoots()) {
+			for (TestIdentifier testIdentifier : testPlan.getDescendants(root)) {
+				if (testIdentifier.isTest() && random.nextDouble() < IMPACTED_SHARE) {
+					impactedTests.add(testIdentifier.getUniqueId());
+				}
+			}
+		}
+		Collections.shuffle(impactedTests, random);
+		return impactedTests;
+	}
+
+	/** Creates a class loader that registers the {@link SyntheticTestEngine} via the service loader mechanism. */
+	private static ClassLoader createClassLoaderWithSyntheticEngine() throws IOException {
+		Path directory = Files.createTempDirectory("synthetic-engine");
+		Path servicesDirectory = Files.createDirectories(directory.resolve("META-INF/services"));
+		Path serviceFile = servicesDirectory.resolve(TestEngine.class.getName());
+		Files.write(serviceFile, SyntheticTestEngine.class.getName().getBytes(StandardCharsets.UTF_8));
+		for (File file : new File[]{serviceFile.toFile(), servicesDirectory.toFile(),
+				servicesDirectory.getParent().toFile(), directory.toFile()}) {
+			file.deleteOnExit();
+		}
+		return new URLClassLoader(new URL[]{directory.toUri().toURL()},
+				ImpactedTestsDiscoveryBenchmark.class.getClassLoader());
+	}
+
+	/** A test engine with {@link #classCount} classes of {@link #TESTS_PER_CLASS} tests each. */
+	public static class SyntheticTestEngine implements TestEngine {
+
+		/** The ID of the engine. */
+		private static final String ID = "synthetic";
+
+		/** The number of classes. */
+		private static volatile int classCount;
+
+		/** {@inheritDoc} */
+		@Override
+		public String getId() {
+			return ID;
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public TestDescriptor discover(EngineDiscoveryRequest discoveryRequest, UniqueId uniqueId) {
+			EngineDescriptor engineDescriptor = new EngineDescriptor(uniqueId, "Synthetic");
+			for (UniqueIdSelector selector : discoveryRequest.getSelectorsByType(UniqueIdSelector.class)) {
+				resolve(engineDescriptor, selector.getUniqueId());
+			}
+			return engineDescriptor;
+		}
+
+		/** Adds the descriptors for the given unique ID and its parents to the engine descriptor. */
+		private static void resolve(EngineDescriptor engineDescriptor, UniqueId uniqueId) {
+			List<UniqueId.Segment> segments = uniqueId.getSegments();
+			if (segments.size() == 1) {
+				for (int i = 0; i < classCount; i++) {
+					resolveClass(engineDescriptor, "Class" + i, null);
+				}
+				return;
+			}
+			String methodName = segments.size() > 2 ? segments.get(2).getValue() : null;
+			resolveClass(engineDescriptor, segments.get(1).getValue(), methodName);
+		}
+
+		/**
+		 * Adds the descriptor of the given class and the given method or of all methods if it is null. Like the
+		 * class based engines, the class is looked up from the engine descriptor on every call.
+		 */
+		private static void resolveClass(EngineDescriptor engineDescriptor, String className, String methodName) {
+			UniqueId classId = engineDescriptor.getUniqueId().append("class", className);
+			Optional<? extends TestDescriptor> existingClassDescriptor = engineDescriptor.findByUniqueId(classId);
+			TestDescriptor classDescriptor;
+			if (existingClassDescriptor.isPresent()) {
+				classDescriptor = existingClassDescriptor.get();
+			} else {
+				classDescriptor = new SyntheticTestDescriptor(classId, className, ClassSource.from(className),
+						TestDescriptor.Type.CONTAINER);
+				engineDescriptor.addChild(classDescriptor);
+			}
+			for (int i = 0; i < TESTS_PER_CLASS; i++) {
+				String name = "test" + i;
+				UniqueId methodId = classId.append("method", name);
+				if ((methodName == null || methodName.equals(name)) && !classDescriptor.findByUniqueId(methodId)
+						.isPresent()) {
+					classDescriptor.addChild(new SyntheticTestDescriptor(methodId, name,
+							MethodSource.from(className, name), TestDescriptor.Type.TEST));
+				}
+			}
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public void execute(ExecutionRequest request) {
+			throw new UnsupportedOperationException("The synthetic tests can only be discovered");
+		}
+	}
+
+	/** A class or test of the {@link SyntheticTestEngine}. */
+	private static class SyntheticTestDescriptor extends AbstractTestDescriptor {
+
+		/** Whether this is a class or a test. */
+		private final Type type;
+
+		/** Constructor. */
+		private SyntheticTestDescriptor(UniqueId uniqueId, String displayName, TestSource source, Type type) {
+			super(uniqueId, displayName, source);
+			this.type = type;
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public Type getType() {
+			return type;
+		}
+	}
+}
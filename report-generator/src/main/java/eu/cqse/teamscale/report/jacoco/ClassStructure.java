@@ -0,0 +1,87 @@
+/*-------------------------------------------------------------------------+
+|                                                                          |
+| Copyright (c) 2009-2018 CQSE GmbH                                        |
+|                                                                          |
++-------------------------------------------------------------------------*/
+package eu.cqse.teamscale.report.jacoco;
+
+import org.jacoco.core.analysis.IClassCoverage;
+import org.jacoco.core.internal.analysis.ClassCoverageImpl;
+
+/**
+ * The structure of an analyzed class file from which its coverage can be computed for any probe array without reading
+ * the class file again.
+ */
+/* package */ class ClassStructure {
+
+	/** The ID of the class, i.e. the CRC64 checksum of the class file. */
+	private final long id;
+
+	/** The VM name of the class. */
+	private final String name;
+
+	/** The generic signature of the class or null. */
+	private final String signature;
+
+	/** The VM name of the super class or null. */
+	private final String superName;
+
+	/** The VM names of the implemented interfaces. */
+	private final String[] interfaces;
+
+	/** The name of the source file or null if the class has no debug information. */
+	private final String sourceFileName;
+
+	/** The location of the class file, which is used in error messages. */
+	private final String location;
+
+	/** The structure of all methods with at least one reported instruction. */
+	private final MethodStructure[] methods;
+
+	/** Constructor. */
+	/* package */ ClassStructure(long id, String name, String signature, String superName, String[] interfaces,
+			String sourceFileName, String location, MethodStructure[] methods) {
+		this.id = id;
+		this.name = name;
+		this.signature = signature;
+		this.superName = superName;
+		this.interfaces = interfaces;
+		this.sourceFileName = sourceFileName;
+		this.location = location;
+		this.methods = methods;
+	}
+
+	/** @see #id */
+	/* package */ long getId() {
+		return id;
+	}
+
+	/** @see #name */
+	/* package */ String getName() {
+		return name;
+	}
+
+	/** @see #location */
+	/* package */ String getLocation() {
+		return location;
+	}
+
+	/**
+	 * Computes the coverage of the class from the given probes. The result is the same as analyzing the class file
+	 * with JaCoCo's {@link org.jacoco.core.analysis.Analyzer}.
+	 *
+	 * @param probes  The probes of the class or null if the class has not been executed.
+	 * @param noMatch Whether there is execution data for a class with the same name but a different ID.
+	 */
+	/* package */ IClassCoverage createCoverage(boolean[] probes, boolean noMatch) {
+		ClassCoverageImpl coverage = new ClassCoverageImpl(name, id, noMatch);
+		coverage.setSignature(signature);
+		coverage.setSuperName(superName);
+		coverage.setInterfaces(interfaces);
+		coverage.setSourceFileName(sourceFileName);
+		for (MethodStructure method : methods) {
+			coverage.addMethod(method.createCoverage(probes));
+		}
+		return coverage;
+	}
+}
@@ -0,0 +1,111 @@
+/*-------------------------------------------------------------------------+
+|                                                                          |
+| Copyright (c) 2009-2018 CQSE GmbH                                        |
+|                                                                          |
++-------------------------------------------------------------------------*/
+package eu.cqse.teamscale.report.jacoco;
+
+import org.jacoco.core.internal.analysis.StringPool;
+import org.jacoco.core.internal.flow.ClassProbesVisitor;
+import org.jacoco.core.internal.flow.MethodProbesVisitor;
+import org.jacoco.core.internal.instr.InstrSupport;
+import org.objectweb.asm.FieldVisitor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Analyzes a class to build its {@link ClassStructure}.
+ * <p>
+ * It's core is a copy of {@link org.jacoco.core.internal.analysis.ClassAnalyzer} of JaCoCo 0.8.1. The structure of
+ * the methods is built by {@link MethodStructureAnalyzer}.
+ */
+/* package */ class ClassStructureAnalyzer extends ClassProbesVisitor {
+
+	/** The ID of the class. */
+	private final long classId;
+
+	/** The location of the class file. */
+	private final String location;
+
+	/** Pool for the names and signatures of the classes and methods. */
+	private final StringPool stringPool;
+
+	/** The analyzers of all methods of the class. */
+	private final List<MethodStructureAnalyzer> methodAnalyzers = new ArrayList<>();
+
+	/** The VM name of the class. */
+	private String name;
+
+	/** The generic signature of the class or null. */
+	private String signature;
+
+	/** The VM name of the super class or null. */
+	private String superName;
+
+	/** The VM names of the implemented interfaces. */
+	private String[] interfaces;
+
+	/** The name of the source file or null. */
+	private String sourceFileName;
+
+	/** Constructor. */
+	/* package */ ClassStructureAnalyzer(long classId, String location, StringPool stringPool) {
+		this.classId = classId;
+		this.location = location;
+		this.stringPool = stringPool;
+	}
+
+	/** Returns the structure of the class. Must only be called after the class has been visited. */
+	/* package */ ClassStructure getStructure() {
+		List<MethodStructure> methods = new ArrayList<>(methodAnalyzers.size());
+		for (MethodStructureAnalyzer methodAnalyzer : methodAnalyzers) {
+			MethodStructure method = methodAnalyzer.getStructure();
+			if (method != null) {
+				methods.add(method);
+			}
+		}
+		return new ClassStructure(classId, name, signature, superName, interfaces, sourceFileName, location,
+				methods.toArray(new MethodStructure[0]));
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void visit(int version, int access, String name, String signature, String superName,
+			String[] interfaces) {
+		this.name = stringPool.get(name);
+		this.signature = stringPool.get(signature);
+		this.superName = stringPool.get(superName);
+		this.interfaces = stringPool.get(interfaces);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void visitSource(String source, String debug) {
+		this.sourceFileName = stringPool.get(source);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public MethodProbesVisitor visitMethod(int access, String name, String desc, String signature,
+			String[] exceptions) {
+		InstrSupport.assertNotInstrumented(name, this.name);
+		MethodStructureAnalyzer methodAnalyzer = new MethodStructureAnalyzer(this.name, superName,
+				stringPool.get(name), stringPool.get(desc), stringPool.get(signature));
+		methodAnalyzers.add(methodAnalyzer);
+		return methodAnalyzer;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
+		InstrSupport.assertNotInstrumented(name, this.name);
+		return super.visitField(access, name, desc, signature, value);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void visitTotalProbeCount(int count) {
+		// Nothing to do
+	}
+}
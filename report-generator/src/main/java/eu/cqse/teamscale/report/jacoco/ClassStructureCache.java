@@ -0,0 +1,189 @@
+/*-------------------------------------------------------------------------+
+|                                                                          |
+| Copyright (c) 2009-2018 CQSE GmbH                                        |
+|                                                                          |
++-------------------------------------------------------------------------*/
+package eu.cqse.teamscale.report.jacoco;
+
+import eu.cqse.teamscale.report.util.ILogger;
+import org.jacoco.core.analysis.ICoverageVisitor;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.internal.BytecodeVersion;
+import org.jacoco.core.internal.analysis.StringPool;
+import org.jacoco.core.internal.data.CRC64;
+import org.jacoco.core.internal.flow.ClassProbesAdapter;
+import org.objectweb.asm.ClassReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Holds the {@link ClassStructure} of all analyzed class files, from which the coverage of the classes is computed for
+ * every dump without reading or analyzing the class files again.
+ * <p>
+ * Every file in the analyzed directories is identified by its path, size and modification timestamp. Only files
+ * that are new or changed since the last dump are read and analyzed again, e.g. after a redeployment. The structures
+ * of files that no longer exist are dropped.
+ */
+/* package */ class ClassStructureCache {
+
+	/** The directories and zip files that contain the class files. */
+	private final List<File> codeDirectoriesOrArchives;
+
+	/** The filter for the analyzed class files. */
+	private final Predicate<String> locationIncludeFilter;
+
+	/** The logger. */
+	private final ILogger logger;
+
+	/** Pool for the names and signatures of all classes and methods. */
+	private final StringPool stringPool = new StringPool();
+
+	/** The analyzed class files and archives by their path. */
+	private Map<String, AnalyzedFile> analyzedFiles = new HashMap<>();
+
+	/** Constructor. */
+	/* package */ ClassStructureCache(List<File> codeDirectoriesOrArchives, Predicate<String> locationIncludeFilter,
+			ILogger logger) {
+		this.codeDirectoriesOrArchives = codeDirectoriesOrArchives;
+		this.locationIncludeFilter = locationIncludeFilter;
+		this.logger = logger;
+	}
+
+	/**
+	 * Passes the coverage of all class files with the execution data from the given store to the visitor. The result
+	 * is the same as analyzing all class files again with a {@link FilteringAnalyzer}.
+	 *
+	 * @param onlyExecutedClasses Whether to skip the classes for which the store contains no execution data.
+	 */
+	/* package */ synchronized void annotateCoverage(ExecutionDataStore store, ICoverageVisitor coverageVisitor,
+			boolean onlyExecutedClasses) throws IOException {
+		Map<String, AnalyzedFile> currentFiles = new HashMap<>();
+		for (File file : codeDirectoriesOrArchives) {
+			annotateCoverage(file, currentFiles, store, coverageVisitor, onlyExecutedClasses);
+		}
+		// Drops the files that no longer exist
+		analyzedFiles = currentFiles;
+	}
+
+	/**
+	 * Passes the coverage of all class files in the given directory, archive or class file to the visitor. The file is
+	 * only analyzed if it is new or has changed. All visited files are added to the given map.
+	 */
+	private void annotateCoverage(File file, Map<String, AnalyzedFile> currentFiles, ExecutionDataStore store,
+			ICoverageVisitor coverageVisitor, boolean onlyExecutedClasses) throws IOException {
+		if (file.isDirectory()) {
+			// Same order as JaCoCo's Analyzer, which matters for duplicate classes
+			for (File child : file.listFiles()) {
+				annotateCoverage(child, currentFiles, store, coverageVisitor, onlyExecutedClasses);
+			}
+			return;
+		}
+
+		AnalyzedFile analyzedFile = analyzedFiles.get(file.getPath());
+		if (analyzedFile == null || analyzedFile.hasChanged(file)) {
+			analyzedFile = analyze(file);
+		}
+		currentFiles.put(file.getPath(), analyzedFile);
+
+		for (ClassStructure classStructure : analyzedFile.classes) {
+			ExecutionData executionData = store.get(classStructure.getId());
+			if (executionData == null && onlyExecutedClasses) {
+				continue;
+			}
+			try {
+				if (executionData == null) {
+					coverageVisitor.visitCoverage(classStructure.createCoverage(null,
+							store.contains(classStructure.getName())));
+				} else {
+					coverageVisitor.visitCoverage(classStructure.createCoverage(executionData.getProbes(), false));
+				}
+			} catch (RuntimeException e) {
+				// Same error as the one reported by the Analyzer
+				throw new IOException(String.format("Error while analyzing %s.", classStructure.getLocation()), e);
+			}
+		}
+	}
+
+	/** Reads and analyzes all class files in the given class file or archive. */
+	private AnalyzedFile analyze(File file) throws IOException {
+		// The timestamp and size are taken before reading the file so that changes during the analysis are detected
+		AnalyzedFile analyzedFile = new AnalyzedFile(file);
+		new StructureAnalyzer(analyzedFile.classes).analyzeAll(file);
+		return analyzedFile;
+	}
+
+	/** The structure of all classes in a single class file or archive. */
+	private static class AnalyzedFile {
+
+		/** The size of the file at the time of the analysis. */
+		private final long length;
+
+		/** The modification timestamp of the file at the time of the analysis. */
+		private final long lastModified;
+
+		/** The structure of all classes in the file. */
+		private final List<ClassStructure> classes = new ArrayList<>();
+
+		/** Constructor. */
+		private AnalyzedFile(File file) {
+			this.length = file.length();
+			this.lastModified = file.lastModified();
+		}
+
+		/** Returns whether the given file differs from the analyzed one. */
+		private boolean hasChanged(File file) {
+			return file.length() != length || file.lastModified() != lastModified;
+		}
+	}
+
+	/**
+	 * Builds the {@link ClassStructure} of all analyzed class files instead of their coverage.
+	 * <p>
+	 * Like in the {@link eu.cqse.teamscale.report.testwise.jacoco.cache.AnalyzerCache}, both public methods that call
+	 * the private {@link org.jacoco.core.analysis.Analyzer#analyzeClass(byte[])} method are overridden.
+	 */
+	private class StructureAnalyzer extends FilteringAnalyzer {
+
+		/** Receives the structure of all analyzed classes. */
+		private final List<ClassStructure> classes;
+
+		/** Constructor. */
+		private StructureAnalyzer(List<ClassStructure> classes) {
+			super(null, null, locationIncludeFilter, logger);
+			this.classes = classes;
+		}
+
+		/** Analyzes the given class file like {@link org.jacoco.core.analysis.Analyzer#analyzeClass(byte[])}. */
+		private void analyzeStructure(byte[] source, String location) {
+			long classId = CRC64.classId(source);
+			ClassReader reader = new ClassReader(BytecodeVersion.downgradeIfNeeded(BytecodeVersion.get(source),
+					source));
+			ClassStructureAnalyzer analyzer = new ClassStructureAnalyzer(classId, location, stringPool);
+			reader.accept(new ClassProbesAdapter(analyzer, false), 0);
+			classes.add(analyzer.getStructure());
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public void analyzeClass(ClassReader reader) {
+			analyzeStructure(reader.b, reader.getClassName());
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public void analyzeClass(byte[] buffer, String location) throws IOException {
+			try {
+				analyzeStructure(buffer, location);
+			} catch (RuntimeException e) {
+				throw new IOException(String.format("Error while analyzing %s.", location), e);
+			}
+		}
+	}
+}
@@ -8,18 +8,26 @@ import org.jacoco.core.analysis.CoverageBuilder;
 import org.jacoco.core.analysis.IBundleCoverage;
 import org.jacoco.core.data.ExecutionDataStore;
 import org.jacoco.core.data.SessionInfo;
+import org.jacoco.core.internal.data.CRC64;
 import org.jacoco.report.IReportVisitor;
 import org.jacoco.report.xml.XMLFormatter;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.Collections;
 import java.util.List;
 import java.util.function.Predicate;
 
-/** Creates an XML report from binary execution data. */
+/**
+ * Creates an XML report from binary execution data.
+ * <p>
+ * If enabled, the structure of the analyzed classes is kept in memory after the first conversion. Later conversions
+ * compute the coverage from the execution data and the cached structure and only read the class files and archives
+ * that changed in the meantime.
+ */
 public class JaCoCoXmlReportGenerator {
 
 	/** The logger. */
@@ -36,13 +44,52 @@ public class JaCoCoXmlReportGenerator {
 	/** Whether to ignore non-identical duplicates of class files. */
 	private final boolean ignoreNonidenticalDuplicateClassFiles;
 
+	/** Whether the report only contains the classes with execution data instead of all analyzed classes. */
+	private final boolean onlyExecutedClasses;
+
+	/** The analyzed class files or null if every conversion should analyze all class files again. */
+	private final ClassStructureCache classStructureCache;
+
 	/** Constructor. */
 	public JaCoCoXmlReportGenerator(List<File> codeDirectoriesOrArchives, Predicate<String> locationIncludeFilter,
 									boolean ignoreDuplicates, ILogger logger) {
+		this(codeDirectoriesOrArchives, locationIncludeFilter, ignoreDuplicates, false, logger);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param onlyExecutedClasses Whether the report should only contain the classes with execution data in the dump.
+	 *                            Use this if the reports are merged later on anyway and contain only the coverage that
+	 *                            changed.
+	 */
+	public JaCoCoXmlReportGenerator(List<File> codeDirectoriesOrArchives, Predicate<String> locationIncludeFilter,
+									boolean ignoreDuplicates, boolean onlyExecutedClasses, ILogger logger) {
+		this(codeDirectoriesOrArchives, locationIncludeFilter, ignoreDuplicates, onlyExecutedClasses, true, logger);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param onlyExecutedClasses Whether the report should only contain the classes with execution data in the dump.
+	 *                            Use this if the reports are merged later on anyway and contain only the coverage that
+	 *                            changed.
+	 * @param cacheClassStructure Whether to keep the structure of the analyzed classes in memory between conversions
+	 *                            instead of reading and analyzing all class files for every conversion.
+	 */
+	public JaCoCoXmlReportGenerator(List<File> codeDirectoriesOrArchives, Predicate<String> locationIncludeFilter,
+									boolean ignoreDuplicates, boolean onlyExecutedClasses,
+									boolean cacheClassStructure, ILogger logger) {
 		this.codeDirectoriesOrArchives = codeDirectoriesOrArchives;
 		this.ignoreNonidenticalDuplicateClassFiles = ignoreDuplicates;
+		this.onlyExecutedClasses = onlyExecutedClasses;
 		this.locationIncludeFilter = locationIncludeFilter;
 		this.logger = logger;
+		if (cacheClassStructure) {
+			this.classStructureCache = new ClassStructureCache(codeDirectoriesOrArchives, locationIncludeFilter, logger);
+		} else {
+			this.classStructureCache = null;
+		}
 	}
 
 	/** Creates the report. */
@@ -52,11 +99,22 @@ public class JaCoCoXmlReportGenerator {
 		return output.toString(FileSystemUtils.UTF8_ENCODING);
 	}
 
-	/** Creates the report. */
+	/** Creates the report and writes it to the given stream. The stream is flushed but not closed. */
 	public void convertToReport(OutputStream output, Dump dump) throws IOException {
 		ExecutionDataStore mergedStore = dump.store;
 		IBundleCoverage bundleCoverage = analyzeStructureAndAnnotateCoverage(mergedStore);
-		createReport(output, bundleCoverage, dump.info, mergedStore);
+		// JaCoCo's XML formatter closes the stream at the end of the report
+		createReport(new FilterOutputStream(output) {
+			@Override
+			public void write(byte[] buffer, int offset, int length) throws IOException {
+				out.write(buffer, offset, length);
+			}
+
+			@Override
+			public void close() throws IOException {
+				flush();
+			}
+		}, bundleCoverage, dump.info, mergedStore);
 	}
 
 	/** Creates an XML report based on the given session and coverage data. */
@@ -80,8 +138,20 @@ public class JaCoCoXmlReportGenerator {
 			coverageBuilder = new DuplicateIgnoringCoverageBuilder(this.logger);
 		}
 
-		Analyzer analyzer = new FilteringAnalyzer(store, coverageBuilder, locationIncludeFilter, logger);
+		if (classStructureCache != null) {
+			classStructureCache.annotateCoverage(store, coverageBuilder, onlyExecutedClasses);
+			return coverageBuilder.getBundle("dummybundle");
+		}
 
+		Analyzer analyzer = new FilteringAnalyzer(store, coverageBuilder, locationIncludeFilter, logger) {
+			@Override
+			public void analyzeClass(byte[] buffer, String location) throws IOException {
+				if (onlyExecutedClasses && store.get(CRC64.classId(buffer)) == null) {
+					return;
+				}
+				super.analyzeClass(buffer, location);
+			}
+		};
 		for (File file : codeDirectoriesOrArchives) {
 			analyzer.analyzeAll(file);
 		}
@@ -0,0 +1,194 @@
+/*-------------------------------------------------------------------------+
+|                                                                          |
+| Copyright (c) 2009-2018 CQSE GmbH                                        |
+|                                                                          |
++-------------------------------------------------------------------------*/
+package eu.cqse.teamscale.report.jacoco;
+
+import eu.cqse.teamscale.report.jacoco.MethodStructureAnalyzer.IndexedInstruction;
+import org.jacoco.core.analysis.ICounter;
+import org.jacoco.core.analysis.IMethodCoverage;
+import org.jacoco.core.internal.analysis.CounterImpl;
+import org.jacoco.core.internal.analysis.MethodCoverageImpl;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * The control flow of a method as far as it is needed to compute its coverage from a probe array, i.e. the
+ * instructions with their lines, branches and predecessors and the instruction and branch of every probe.
+ * <p>
+ * {@link #createCoverage(boolean[])} does the same computation as the end of
+ * {@link org.jacoco.core.internal.analysis.MethodAnalyzer} in JaCoCo 0.8.1. Since a structure is kept for every
+ * method of the analyzed application, everything is stored in packed int arrays.
+ */
+/* package */ class MethodStructure {
+
+	/** Marks instructions without predecessor. */
+	/* package */ static final int NO_PREDECESSOR = -1;
+
+	/** The name of the method. */
+	private final String name;
+
+	/** The descriptor of the method. */
+	private final String desc;
+
+	/** The generic signature of the method or null. */
+	private final String signature;
+
+	/** The first line of the method. */
+	private final int firstLine;
+
+	/** The last line of the method. */
+	private final int lastLine;
+
+	/** The line of each instruction. */
+	private final int[] lines;
+
+	/** The number of branches of each instruction. */
+	private final int[] branches;
+
+	/** The index of the predecessor of each instruction or {@link #NO_PREDECESSOR}. */
+	private final int[] predecessors;
+
+	/** The branch of the predecessor that leads to each instruction. */
+	private final int[] predecessorBranches;
+
+	/** The instruction into which each instruction is merged or the instruction itself. */
+	private final int[] representatives;
+
+	/** Whether each instruction is reported, i.e. neither ignored by a filter nor merged into another one. */
+	private final BitSet reported;
+
+	/** The instruction of each probe. */
+	private final int[] probeInstructions;
+
+	/** The branch of the instruction of each probe. */
+	private final int[] probeBranches;
+
+	/** The ID of each probe. */
+	private final int[] probeIds;
+
+	/** Constructor. */
+	private MethodStructure(String name, String desc, String signature, int firstLine, int lastLine, int[] lines,
+			int[] branches, int[] predecessors, int[] predecessorBranches, int[] representatives, BitSet reported,
+			int[] probeInstructions, int[] probeBranches, int[] probeIds) {
+		this.name = name;
+		this.desc = desc;
+		this.signature = signature;
+		this.firstLine = firstLine;
+		this.lastLine = lastLine;
+		this.lines = lines;
+		this.branches = branches;
+		this.predecessors = predecessors;
+		this.predecessorBranches = predecessorBranches;
+		this.representatives = representatives;
+		this.reported = reported;
+		this.probeInstructions = probeInstructions;
+		this.probeBranches = probeBranches;
+		this.probeIds = probeIds;
+	}
+
+	/**
+	 * Creates the structure from the analyzed instructions. Returns null if no instruction is reported, since JaCoCo
+	 * omits such methods.
+	 *
+	 * @param isIgnored       Whether an instruction is ignored, including the instructions merged into others.
+	 * @param representatives The instruction into which each instruction is merged or the instruction itself.
+	 * @param probes          The instruction, branch and ID of each probe.
+	 */
+	/* package */ static MethodStructure create(String name, String desc, String signature, int firstLine,
+			int lastLine, List<IndexedInstruction> instructions, Predicate<IndexedInstruction> isIgnored,
+			int[] representatives, List<int[]> probes) {
+		int count = instructions.size();
+		int[] lines = new int[count];
+		int[] branches = new int[count];
+		int[] predecessors = new int[count];
+		int[] predecessorBranches = new int[count];
+		BitSet reported = new BitSet(count);
+		for (IndexedInstruction instruction : instructions) {
+			int i = instruction.index;
+			lines[i] = instruction.getLine();
+			branches[i] = instruction.getBranches();
+			predecessors[i] = instruction.predecessor;
+			predecessorBranches[i] = instruction.predecessorBranch;
+			if (!isIgnored.test(instruction)) {
+				reported.set(i);
+			}
+		}
+		if (reported.isEmpty()) {
+			return null;
+		}
+
+		int[] probeInstructions = new int[probes.size()];
+		int[] probeBranches = new int[probes.size()];
+		int[] probeIds = new int[probes.size()];
+		for (int i = 0; i < probes.size(); i++) {
+			probeInstructions[i] = probes.get(i)[0];
+			probeBranches[i] = probes.get(i)[1];
+			probeIds[i] = probes.get(i)[2];
+		}
+		return new MethodStructure(name, desc, signature, firstLine, lastLine, lines, branches, predecessors,
+				predecessorBranches, representatives, reported, probeInstructions, probeBranches, probeIds);
+	}
+
+	/**
+	 * Computes the coverage of the method from the given probes of its class.
+	 *
+	 * @param probes The probes of the class or null if the class has not been executed.
+	 */
+	/* package */ IMethodCoverage createCoverage(boolean[] probes) {
+		BitSet[] coveredBranches = new BitSet[lines.length];
+		if (probes != null) {
+			for (int i = 0; i < probeIds.length; i++) {
+				if (probes[probeIds[i]]) {
+					setCovered(coveredBranches, probeInstructions[i], probeBranches[i]);
+				}
+			}
+			for (int i = 0; i < lines.length; i++) {
+				if (representatives[i] != i && coveredBranches[i] != null) {
+					getCoveredBranches(coveredBranches, representatives[i]).or(coveredBranches[i]);
+				}
+			}
+		}
+
+		MethodCoverageImpl coverage = new MethodCoverageImpl(name, desc, signature);
+		coverage.ensureCapacity(firstLine, lastLine);
+		for (int i = reported.nextSetBit(0); i >= 0; i = reported.nextSetBit(i + 1)) {
+			int total = branches[i];
+			int covered = coveredBranches[i] == null ? 0 : coveredBranches[i].cardinality();
+			ICounter instructionCounter = covered == 0 ? CounterImpl.COUNTER_1_0 : CounterImpl.COUNTER_0_1;
+			ICounter branchCounter = total > 1 ? CounterImpl.getInstance(total - covered, covered) :
+					CounterImpl.COUNTER_0_0;
+			coverage.increment(instructionCounter, branchCounter, lines[i]);
+		}
+		coverage.incrementMethodCounter();
+		return coverage;
+	}
+
+	/**
+	 * Marks the given branch of the instruction as covered and propagates the coverage to its predecessors like
+	 * {@link org.jacoco.core.internal.flow.Instruction#setCovered(int)}.
+	 */
+	private void setCovered(BitSet[] coveredBranches, int instruction, int branch) {
+		while (instruction != NO_PREDECESSOR) {
+			BitSet covered = getCoveredBranches(coveredBranches, instruction);
+			if (!covered.isEmpty()) {
+				covered.set(branch);
+				return;
+			}
+			covered.set(branch);
+			branch = predecessorBranches[instruction];
+			instruction = predecessors[instruction];
+		}
+	}
+
+	/** Returns the covered branches of the given instruction and creates them if necessary. */
+	private static BitSet getCoveredBranches(BitSet[] coveredBranches, int instruction) {
+		if (coveredBranches[instruction] == null) {
+			coveredBranches[instruction] = new BitSet();
+		}
+		return coveredBranches[instruction];
+	}
+}
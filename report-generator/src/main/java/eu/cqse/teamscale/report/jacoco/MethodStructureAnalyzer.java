@@ -0,0 +1,424 @@
+/*-------------------------------------------------------------------------+
+|                                                                          |
+| Copyright (c) 2009-2018 CQSE GmbH                                        |
+|                                                                          |
++-------------------------------------------------------------------------*/
+package eu.cqse.teamscale.report.jacoco;
+
+import org.jacoco.core.analysis.ISourceNode;
+import org.jacoco.core.internal.analysis.filter.Filters;
+import org.jacoco.core.internal.analysis.filter.IFilterOutput;
+import org.jacoco.core.internal.flow.IFrame;
+import org.jacoco.core.internal.flow.Instruction;
+import org.jacoco.core.internal.flow.LabelInfo;
+import org.jacoco.core.internal.flow.MethodProbesVisitor;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TryCatchBlockNode;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Analyzes the control flow of a method to build its {@link MethodStructure}.
+ * <p>
+ * It's core is a copy of {@link org.jacoco.core.internal.analysis.MethodAnalyzer} of JaCoCo 0.8.1, which however
+ * evaluates the probes right away. Instead, this analyzer records the instructions, their predecessors and the
+ * position of every probe, so that {@link MethodStructure#createCoverage(boolean[])} can later do the same evaluation
+ * for any probe array. The filters are applied as well and their results are recorded, too.
+ */
+/* package */ class MethodStructureAnalyzer extends MethodProbesVisitor implements IFilterOutput {
+
+	/** The name of the analyzed class. */
+	private final String className;
+
+	/** The name of the super class of the analyzed class. */
+	private final String superClassName;
+
+	/** The name of the method. */
+	private final String name;
+
+	/** The descriptor of the method. */
+	private final String desc;
+
+	/** The generic signature of the method or null. */
+	private final String signature;
+
+	/** The line of the instructions that are visited next. */
+	private int currentLine = ISourceNode.UNKNOWN_LINE;
+
+	/** The first line of the method. */
+	private int firstLine = ISourceNode.UNKNOWN_LINE;
+
+	/** The last line of the method. */
+	private int lastLine = ISourceNode.UNKNOWN_LINE;
+
+	/** The labels that mark the next instruction. */
+	private final List<Label> currentLabel = new ArrayList<>(2);
+
+	/** All instructions of the method in the order of their occurrence. */
+	private final List<IndexedInstruction> instructions = new ArrayList<>();
+
+	/** The instruction, branch and ID of all probes. */
+	private final List<int[]> probes = new ArrayList<>();
+
+	/** The jumps of the method that are resolved at the end of the method. */
+	private final List<Jump> jumps = new ArrayList<>();
+
+	/** The last visited instruction or null if the next instruction is not a successor. */
+	private IndexedInstruction lastInsn;
+
+	/** The instructions ignored by the filters. */
+	private final Set<AbstractInsnNode> ignored = new HashSet<>();
+
+	/** The instructions merged by the filters, mapped to the instruction they are merged into. */
+	private final Map<AbstractInsnNode, AbstractInsnNode> merged = new HashMap<>();
+
+	/** The instruction for each instruction node. */
+	private final Map<AbstractInsnNode, IndexedInstruction> nodeToInstruction = new HashMap<>();
+
+	/** The currently visited instruction node. */
+	private AbstractInsnNode currentNode;
+
+	/** The structure of the method, which is available after the method has been visited. */
+	private MethodStructure structure;
+
+	/** Constructor. */
+	/* package */ MethodStructureAnalyzer(String className, String superClassName, String name, String desc,
+			String signature) {
+		this.className = className;
+		this.superClassName = superClassName;
+		this.name = name;
+		this.desc = desc;
+		this.signature = signature;
+	}
+
+	/** Returns the structure of the method or null if all of its instructions are filtered. */
+	/* package */ MethodStructure getStructure() {
+		return structure;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void accept(MethodNode methodNode, MethodVisitor methodVisitor) {
+		Filters.ALL.filter(className, superClassName, methodNode, this);
+
+		methodVisitor.visitCode();
+		for (TryCatchBlockNode n : methodNode.tryCatchBlocks) {
+			n.accept(methodVisitor);
+		}
+		currentNode = methodNode.instructions.getFirst();
+		while (currentNode != null) {
+			currentNode.accept(methodVisitor);
+			currentNode = currentNode.getNext();
+		}
+		methodVisitor.visitEnd();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void ignore(AbstractInsnNode fromInclusive, AbstractInsnNode toInclusive) {
+		for (AbstractInsnNode i = fromInclusive; i != toInclusive; i = i.getNext()) {
+			ignored.add(i);
+		}
+		ignored.add(toInclusive);
+	}
+
+	/** Returns the instruction node into which the given node is merged or the node itself. */
+	private AbstractInsnNode findRepresentative(AbstractInsnNode i) {
+		AbstractInsnNode r = merged.get(i);
+		while (r != null) {
+			i = r;
+			r = merged.get(i);
+		}
+		return i;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void merge(AbstractInsnNode i1, AbstractInsnNode i2) {
+		i1 = findRepresentative(i1);
+		i2 = findRepresentative(i2);
+		if (i1 != i2) {
+			merged.put(i2, i1);
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void visitLabel(Label label) {
+		currentLabel.add(label);
+		if (!LabelInfo.isSuccessor(label)) {
+			lastInsn = null;
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void visitLineNumber(int line, Label start) {
+		currentLine = line;
+		if (firstLine > line || lastLine == ISourceNode.UNKNOWN_LINE) {
+			firstLine = line;
+		}
+		if (lastLine < line) {
+			lastLine = line;
+		}
+	}
+
+	/** Adds an instruction for the current instruction node. */
+	private void visitInsn() {
+		IndexedInstruction insn = new IndexedInstruction(currentNode, currentLine, instructions.size());
+		nodeToInstruction.put(currentNode, insn);
+		instructions.add(insn);
+		if (lastInsn != null) {
+			insn.setPredecessor(lastInsn, 0);
+		}
+		int labelCount = currentLabel.size();
+		if (labelCount > 0) {
+			for (int i = labelCount; --i >= 0; ) {
+				LabelInfo.setInstruction(currentLabel.get(i), insn);
+			}
+			currentLabel.clear();
+		}
+		lastInsn = insn;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void visitInsn(int opcode) {
+		visitInsn();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void visitIntInsn(int opcode, int operand) {
+		visitInsn();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void visitVarInsn(int opcode, int var) {
+		visitInsn();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void visitTypeInsn(int opcode, String type) {
+		visitInsn();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void visitFieldInsn(int opcode, String owner, String name, String desc) {
+		visitInsn();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void visitMethodInsn(int opcode, String owner, String name, String desc, boolean itf) {
+		visitInsn();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void visitInvokeDynamicInsn(String name, String desc, Handle bsm, Object... bsmArgs) {
+		visitInsn();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void visitJumpInsn(int opcode, Label label) {
+		visitInsn();
+		jumps.add(new Jump(lastInsn, label, 1));
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void visitLdcInsn(Object cst) {
+		visitInsn();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void visitIincInsn(int var, int increment) {
+		visitInsn();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void visitTableSwitchInsn(int min, int max, Label dflt, Label... labels) {
+		visitSwitchInsn(dflt, labels);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void visitLookupSwitchInsn(Label dflt, int[] keys, Label[] labels) {
+		visitSwitchInsn(dflt, labels);
+	}
+
+	/** Adds a switch instruction without probes. */
+	private void visitSwitchInsn(Label dflt, Label[] labels) {
+		visitInsn();
+		LabelInfo.resetDone(labels);
+		int branch = 0;
+		jumps.add(new Jump(lastInsn, dflt, branch));
+		LabelInfo.setDone(dflt);
+		for (Label l : labels) {
+			if (!LabelInfo.isDone(l)) {
+				branch++;
+				jumps.add(new Jump(lastInsn, l, branch));
+				LabelInfo.setDone(l);
+			}
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void visitMultiANewArrayInsn(String desc, int dims) {
+		visitInsn();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void visitProbe(int probeId) {
+		addProbe(probeId, 0);
+		lastInsn = null;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void visitJumpInsnWithProbe(int opcode, Label label, int probeId, IFrame frame) {
+		visitInsn();
+		addProbe(probeId, 1);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void visitInsnWithProbe(int opcode, int probeId) {
+		visitInsn();
+		addProbe(probeId, 0);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void visitTableSwitchInsnWithProbes(int min, int max, Label dflt, Label[] labels, IFrame frame) {
+		visitSwitchInsnWithProbes(dflt, labels);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void visitLookupSwitchInsnWithProbes(Label dflt, int[] keys, Label[] labels, IFrame frame) {
+		visitSwitchInsnWithProbes(dflt, labels);
+	}
+
+	/** Adds a switch instruction with probes. */
+	private void visitSwitchInsnWithProbes(Label dflt, Label[] labels) {
+		visitInsn();
+		LabelInfo.resetDone(dflt);
+		LabelInfo.resetDone(labels);
+		int branch = 0;
+		visitSwitchTarget(dflt, branch);
+		for (Label l : labels) {
+			branch++;
+			visitSwitchTarget(l, branch);
+		}
+	}
+
+	/** Adds a jump or probe for the given target of a switch instruction. */
+	private void visitSwitchTarget(Label label, int branch) {
+		int id = LabelInfo.getProbeId(label);
+		if (!LabelInfo.isDone(label)) {
+			if (id == LabelInfo.NO_PROBE) {
+				jumps.add(new Jump(lastInsn, label, branch));
+			} else {
+				addProbe(id, branch);
+			}
+			LabelInfo.setDone(label);
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void visitEnd() {
+		// Wire jumps:
+		for (Jump j : jumps) {
+			LabelInfo.getInstruction(j.target).setPredecessor(j.source, j.branch);
+		}
+
+		// Merge:
+		int[] representatives = new int[instructions.size()];
+		for (IndexedInstruction i : instructions) {
+			AbstractInsnNode m = i.getNode();
+			AbstractInsnNode r = findRepresentative(m);
+			if (r != m) {
+				ignored.add(m);
+				representatives[i.index] = nodeToInstruction.get(r).index;
+			} else {
+				representatives[i.index] = i.index;
+			}
+		}
+
+		structure = MethodStructure.create(name, desc, signature, firstLine, lastLine, instructions,
+				i -> ignored.contains(i.getNode()), representatives, probes);
+	}
+
+	/** Records a probe at the given branch of the last instruction. */
+	private void addProbe(int probeId, int branch) {
+		lastInsn.addBranch();
+		probes.add(new int[]{lastInsn.index, branch, probeId});
+	}
+
+	/** An {@link Instruction} that knows its position in the method and its predecessor. */
+	/* package */ static class IndexedInstruction extends Instruction {
+
+		/** The index of the instruction in the method. */
+		/* package */ final int index;
+
+		/** The index of the predecessor or {@link MethodStructure#NO_PREDECESSOR}. */
+		/* package */ int predecessor = MethodStructure.NO_PREDECESSOR;
+
+		/** The branch of the predecessor that leads to this instruction. */
+		/* package */ int predecessorBranch;
+
+		/** Constructor. */
+		private IndexedInstruction(AbstractInsnNode node, int line, int index) {
+			super(node, line);
+			this.index = index;
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public void setPredecessor(Instruction predecessor, int branch) {
+			super.setPredecessor(predecessor, branch);
+			this.predecessor = ((IndexedInstruction) predecessor).index;
+			this.predecessorBranch = branch;
+		}
+	}
+
+	/** A jump that is resolved at the end of the method, when all target labels are known. */
+	private static class Jump {
+
+		/** The jumping instruction. */
+		private final IndexedInstruction source;
+
+		/** The target of the jump. */
+		private final Label target;
+
+		/** The branch of the source instruction. */
+		private final int branch;
+
+		/** Constructor. */
+		private Jump(IndexedInstruction source, Label target, int branch) {
+			this.source = source;
+			this.target = target;
+			this.branch = branch;
+		}
+	}
+}
@@ -0,0 +1,172 @@
+package eu.cqse.teamscale.report.testwise.binary;
+
+import eu.cqse.teamscale.report.testwise.model.FileCoverage;
+import eu.cqse.teamscale.report.testwise.model.TestCoverage;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import static eu.cqse.teamscale.report.testwise.binary.TestwiseBinaryReportWriter.END_OF_REPORT;
+import static eu.cqse.teamscale.report.testwise.binary.TestwiseBinaryReportWriter.FLAG_DEFLATE;
+import static eu.cqse.teamscale.report.testwise.binary.TestwiseBinaryReportWriter.MAGIC;
+import static eu.cqse.teamscale.report.testwise.binary.TestwiseBinaryReportWriter.SHARED_TEST;
+import static eu.cqse.teamscale.report.testwise.binary.TestwiseBinaryReportWriter.TEST;
+import static eu.cqse.teamscale.report.testwise.binary.TestwiseBinaryReportWriter.TEST_REFERENCE;
+import static eu.cqse.teamscale.report.testwise.binary.TestwiseBinaryReportWriter.VERSION;
+
+/**
+ * Reads a report written by the {@link TestwiseBinaryReportWriter} test by test. See there for a description of the
+ * format. The underlying stream is not closed.
+ */
+public class TestwiseBinaryReportReader {
+
+	/** The stream from which the (decompressed) content is read. */
+	private final InputStream input;
+
+	/** The inflater if the report is compressed or null otherwise. */
+	private final Inflater inflater;
+
+	/** The path and file names in the order of their first occurrence. */
+	private final List<String> dictionary = new ArrayList<>();
+
+	/** The tests whose coverage may be referenced by later tests. */
+	private final List<TestCoverage> sharedTests = new ArrayList<>();
+
+	/** Whether the end of the report has been read. */
+	private boolean finished = false;
+
+	/** Constructor. Reads and validates the header of the report. */
+	public TestwiseBinaryReportReader(InputStream input) throws IOException {
+		byte[] magic = new byte[MAGIC.length];
+		for (int i = 0; i < magic.length; i++) {
+			magic[i] = (byte) readByte(input);
+		}
+		if (!Arrays.equals(magic, MAGIC)) {
+			throw new IOException("Not a binary testwise coverage report");
+		}
+		int version = readByte(input);
+		if (version != VERSION) {
+			throw new IOException("Unsupported version " + version + " of the binary testwise coverage format");
+		}
+		if ((readByte(input) & FLAG_DEFLATE) != 0) {
+			this.inflater = new Inflater();
+			this.input = new BufferedInputStream(new InflaterInputStream(input, inflater, 64 * 1024), 64 * 1024);
+		} else {
+			this.inflater = null;
+			this.input = new BufferedInputStream(input, 64 * 1024);
+		}
+	}
+
+	/** Returns the coverage of the next test or null if all tests have been read. */
+	public TestCoverage readTestCoverage() throws IOException {
+		if (finished) {
+			return null;
+		}
+		int marker = readVarInt();
+		if (marker == END_OF_REPORT) {
+			finished = true;
+			if (inflater != null) {
+				inflater.end();
+			}
+			return null;
+		}
+		if (marker == TEST_REFERENCE) {
+			String externalId = readString();
+			int sharedTestIndex = readVarInt();
+			if (sharedTestIndex >= sharedTests.size()) {
+				throw new IOException("Invalid shared test index " + sharedTestIndex +
+						" in binary testwise coverage report");
+			}
+			return new TestCoverage(externalId, sharedTests.get(sharedTestIndex));
+		}
+		if (marker != TEST && marker != SHARED_TEST) {
+			throw new IOException("Invalid marker " + marker + " in binary testwise coverage report");
+		}
+
+		TestCoverage testCoverage = new TestCoverage(readString());
+		int pathCount = readVarInt();
+		for (int i = 0; i < pathCount; i++) {
+			String path = readDictionaryString();
+			int fileCount = readVarInt();
+			for (int j = 0; j < fileCount; j++) {
+				testCoverage.add(readFileCoverage(path));
+			}
+		}
+		if (marker == SHARED_TEST) {
+			sharedTests.add(testCoverage);
+		}
+		return testCoverage;
+	}
+
+	/** Reads the name and line ranges of a file. */
+	private FileCoverage readFileCoverage(String path) throws IOException {
+		FileCoverage fileCoverage = new FileCoverage(path, readDictionaryString());
+		int rangeCount = readVarInt();
+		int previousEnd = 0;
+		for (int i = 0; i < rangeCount; i++) {
+			int start = previousEnd + readVarInt();
+			int end = start + readVarInt();
+			fileCoverage.addLineRange(start, end);
+			previousEnd = end;
+		}
+		return fileCoverage;
+	}
+
+	/** Reads a string from the dictionary or a new string that is added to the dictionary. */
+	private String readDictionaryString() throws IOException {
+		int index = readVarInt();
+		if (index < dictionary.size()) {
+			return dictionary.get(index);
+		}
+		if (index != dictionary.size()) {
+			throw new IOException("Invalid dictionary index " + index + " in binary testwise coverage report");
+		}
+		String value = readString();
+		dictionary.add(value);
+		return value;
+	}
+
+	/** Reads a string prefixed with its UTF-8 byte length. */
+	private String readString() throws IOException {
+		byte[] bytes = new byte[readVarInt()];
+		int offset = 0;
+		while (offset < bytes.length) {
+			int read = input.read(bytes, offset, bytes.length - offset);
+			if (read < 0) {
+				throw new EOFException("Unexpected end of binary testwise coverage report");
+			}
+			offset += read;
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/** Reads an unsigned LEB128 varint. */
+	private int readVarInt() throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			int b = readByte(input);
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed varint in binary testwise coverage report");
+	}
+
+	/** Reads a single byte and fails at the end of the stream. */
+	private static int readByte(InputStream input) throws IOException {
+		int b = input.read();
+		if (b < 0) {
+			throw new EOFException("Unexpected end of binary testwise coverage report");
+		}
+		return b;
+	}
+}
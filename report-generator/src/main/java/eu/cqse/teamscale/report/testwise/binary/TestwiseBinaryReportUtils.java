@@ -0,0 +1,63 @@
+package eu.cqse.teamscale.report.testwise.binary;
+
+import eu.cqse.teamscale.report.testwise.jacoco.TestwiseXmlReportReader;
+import eu.cqse.teamscale.report.testwise.jacoco.TestwiseXmlReportWriter;
+import eu.cqse.teamscale.report.testwise.model.TestCoverage;
+import eu.cqse.teamscale.report.testwise.model.TestwiseCoverage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Utilities for binary testwise coverage reports and their conversion from and to XML reports. The conversions work
+ * test by test, so only the coverage of a single test is held in memory at a time. They are lossless: the tests keep
+ * their order, and a report written by the {@link TestwiseXmlReportWriter} that is converted to binary and back is
+ * identical to the original. Streams are flushed but not closed.
+ */
+public class TestwiseBinaryReportUtils {
+
+	/** Writes the given testwise coverage as binary report to the given output stream. */
+	public static void writeReportToStream(OutputStream output, TestwiseCoverage testwiseCoverage,
+										   boolean compress) throws IOException {
+		TestwiseBinaryReportWriter writer = new TestwiseBinaryReportWriter(output, compress);
+		for (TestCoverage testCoverage : testwiseCoverage.getTests()) {
+			writer.writeTestCoverage(testCoverage);
+		}
+		writer.finish();
+	}
+
+	/** Reads a binary report from the given input stream. */
+	public static TestwiseCoverage readReport(InputStream input) throws IOException {
+		TestwiseBinaryReportReader reader = new TestwiseBinaryReportReader(input);
+		TestwiseCoverage testwiseCoverage = new TestwiseCoverage();
+		TestCoverage testCoverage;
+		while ((testCoverage = reader.readTestCoverage()) != null) {
+			testwiseCoverage.add(testCoverage);
+		}
+		return testwiseCoverage;
+	}
+
+	/** Converts the XML report from the given input stream to a binary report. */
+	public static void convertXmlToBinary(InputStream xmlInput, OutputStream binaryOutput,
+										  boolean compress) throws IOException {
+		TestwiseXmlReportReader reader = new TestwiseXmlReportReader(xmlInput);
+		TestwiseBinaryReportWriter writer = new TestwiseBinaryReportWriter(binaryOutput, compress);
+		TestCoverage testCoverage;
+		while ((testCoverage = reader.readTestCoverage()) != null) {
+			writer.writeTestCoverage(testCoverage);
+		}
+		writer.finish();
+	}
+
+	/** Converts the binary report from the given input stream to an XML report. */
+	public static void convertBinaryToXml(InputStream binaryInput, OutputStream xmlOutput) throws IOException {
+		TestwiseBinaryReportReader reader = new TestwiseBinaryReportReader(binaryInput);
+		TestwiseXmlReportWriter writer = new TestwiseXmlReportWriter(xmlOutput);
+		TestCoverage testCoverage;
+		while ((testCoverage = reader.readTestCoverage()) != null) {
+			writer.writeTestCoverage(testCoverage);
+		}
+		writer.finish();
+	}
+}
@@ -0,0 +1,182 @@
+package eu.cqse.teamscale.report.testwise.binary;
+
+import eu.cqse.teamscale.report.testwise.model.FileCoverage;
+import eu.cqse.teamscale.report.testwise.model.LineRange;
+import eu.cqse.teamscale.report.testwise.model.PathCoverage;
+import eu.cqse.teamscale.report.testwise.model.TestCoverage;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes testwise coverage test by test in a compact binary format without building the whole report in memory.
+ * <p>
+ * The file starts with the {@link #MAGIC} bytes, the {@link #VERSION} and a flags byte. If {@link #FLAG_DEFLATE} is
+ * set, the remaining content is deflate compressed. The content is a sequence of tests terminated by
+ * {@link #END_OF_REPORT}:
+ * <pre>
+ * test  := TEST externalId:string coverage
+ *        | SHARED_TEST externalId:string coverage
+ *        | TEST_REFERENCE externalId:string sharedTestIndex:varint
+ * coverage := pathCount:varint path*
+ * path  := name:dictString fileCount:varint file*
+ * file  := name:dictString rangeCount:varint (startDelta:varint length:varint)*
+ * </pre>
+ * Line ranges are sorted and disjoint. startDelta is the start line minus the end line of the previous range of the
+ * same file (0 for the first range) and length is the end line minus the start line. All numbers are unsigned
+ * LEB128 varints and strings are prefixed with their UTF-8 byte length. Path and file names are stored in a
+ * dictionary: a dictString is the index in the dictionary; if it equals the current size of the dictionary, the
+ * string follows inline and is added to the dictionary.
+ * <p>
+ * Tests whose coverage is shared with other tests (see {@link TestCoverage#getSharedCoverageKey()}) are written as
+ * SHARED_TEST the first time. Further tests with the same coverage only reference it by the index of the shared
+ * test among all SHARED_TESTs.
+ * <p>
+ * Call {@link #writeTestCoverage(TestCoverage)} for every test and {@link #finish()} at the end. The underlying
+ * stream is flushed but not closed.
+ */
+public class TestwiseBinaryReportWriter {
+
+	/** The bytes at the beginning of every binary testwise coverage report. */
+	/* package */ static final byte[] MAGIC = {'T', 'W', 'C', 'B'};
+
+	/** The version of the format. */
+	/* package */ static final int VERSION = 1;
+
+	/** Flag that marks the content after the header as deflate compressed. */
+	/* package */ static final int FLAG_DEFLATE = 1;
+
+	/** Marks the end of the report. */
+	/* package */ static final int END_OF_REPORT = 0;
+
+	/** Marks the beginning of a test. */
+	/* package */ static final int TEST = 1;
+
+	/** Marks the beginning of a test whose coverage may be referenced by later tests. */
+	/* package */ static final int SHARED_TEST = 2;
+
+	/** Marks the beginning of a test with the same coverage as an earlier shared test. */
+	/* package */ static final int TEST_REFERENCE = 3;
+
+	/** The compressing stream if the report is compressed or null otherwise. */
+	private final DeflaterOutputStream deflaterOutput;
+
+	/** The deflater of {@link #deflaterOutput}. */
+	private final Deflater deflater;
+
+	/** The buffered stream to which the content is written. */
+	private final OutputStream output;
+
+	/** Maps path and file names to their index in the dictionary. */
+	private final Map<String, Integer> dictionary = new HashMap<>();
+
+	/** Maps the keys of the shared coverages that have already been written to the index of their shared test. */
+	private final Map<Object, Integer> sharedTestIndices = new IdentityHashMap<>();
+
+	/** Constructor. If compress is true, the content after the header is deflate compressed. */
+	public TestwiseBinaryReportWriter(OutputStream output, boolean compress) throws IOException {
+		output.write(MAGIC);
+		output.write(VERSION);
+		output.write(compress ? FLAG_DEFLATE : 0);
+		if (compress) {
+			this.deflater = new Deflater();
+			this.deflaterOutput = new DeflaterOutputStream(output, deflater, 64 * 1024);
+			this.output = new BufferedOutputStream(deflaterOutput, 64 * 1024);
+		} else {
+			this.deflater = null;
+			this.deflaterOutput = null;
+			this.output = new BufferedOutputStream(output, 64 * 1024);
+		}
+	}
+
+	/** Appends the coverage of a single test to the report. */
+	public void writeTestCoverage(TestCoverage testCoverage) throws IOException {
+		Object sharedCoverageKey = testCoverage.getSharedCoverageKey();
+		if (sharedCoverageKey == null) {
+			writeVarInt(TEST);
+		} else {
+			Integer sharedTestIndex = sharedTestIndices.get(sharedCoverageKey);
+			if (sharedTestIndex != null) {
+				writeVarInt(TEST_REFERENCE);
+				writeString(testCoverage.externalId);
+				writeVarInt(sharedTestIndex);
+				return;
+			}
+			sharedTestIndices.put(sharedCoverageKey, sharedTestIndices.size());
+			writeVarInt(SHARED_TEST);
+		}
+		writeString(testCoverage.externalId);
+		writeVarInt(testCoverage.getPaths().size());
+		for (PathCoverage pathCoverage : testCoverage.getPaths()) {
+			writeDictionaryString(pathCoverage.path);
+			writeVarInt(pathCoverage.getFiles().size());
+			for (FileCoverage fileCoverage : pathCoverage.getFiles()) {
+				writeFileCoverage(fileCoverage);
+			}
+		}
+	}
+
+	/** Writes the name and the delta encoded line ranges of the given file. */
+	private void writeFileCoverage(FileCoverage fileCoverage) throws IOException {
+		writeDictionaryString(fileCoverage.fileName);
+		List<LineRange> ranges = fileCoverage.getCoveredRanges();
+		writeVarInt(ranges.size());
+		int previousEnd = 0;
+		for (LineRange range : ranges) {
+			writeVarInt(range.getStart() - previousEnd);
+			writeVarInt(range.getEnd() - range.getStart());
+			previousEnd = range.getEnd();
+		}
+	}
+
+	/** Writes the index of the given string in the dictionary and the string itself if it is new. */
+	private void writeDictionaryString(String value) throws IOException {
+		Integer index = dictionary.get(value);
+		if (index != null) {
+			writeVarInt(index);
+			return;
+		}
+		int newIndex = dictionary.size();
+		dictionary.put(value, newIndex);
+		writeVarInt(newIndex);
+		writeString(value);
+	}
+
+	/** Writes the UTF-8 bytes of the given string prefixed with their length. */
+	private void writeString(String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		writeVarInt(bytes.length);
+		output.write(bytes);
+	}
+
+	/** Writes the given non-negative number as unsigned LEB128 varint. */
+	private void writeVarInt(int value) throws IOException {
+		if (value < 0) {
+			throw new IOException("Cannot encode negative number " + value + " in a testwise coverage report");
+		}
+		while ((value & ~0x7F) != 0) {
+			output.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		output.write(value);
+	}
+
+	/** Completes the report and flushes the underlying stream. */
+	public void finish() throws IOException {
+		writeVarInt(END_OF_REPORT);
+		output.flush();
+		if (deflaterOutput != null) {
+			deflaterOutput.finish();
+			deflaterOutput.flush();
+			deflater.end();
+		}
+	}
+}
@@ -1,33 +1,37 @@
 package eu.cqse.teamscale.report.testwise.closure;
 
-import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import eu.cqse.teamscale.report.testwise.closure.model.ClosureCoverage;
 import eu.cqse.teamscale.report.testwise.model.FileCoverage;
 import eu.cqse.teamscale.report.testwise.model.TestCoverage;
 import eu.cqse.teamscale.report.testwise.model.TestwiseCoverage;
-import org.conqat.lib.commons.collections.Pair;
-import org.conqat.lib.commons.collections.PairList;
 import org.conqat.lib.commons.filesystem.FileSystemUtils;
 import org.conqat.lib.commons.string.StringUtils;
 
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.FileReader;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.function.Predicate;
 
-import static eu.cqse.teamscale.report.testwise.jacoco.TestwiseXmlReportUtils.getReportAsString;
-import static eu.cqse.teamscale.report.testwise.jacoco.TestwiseXmlReportUtils.writeReportToStream;
-
 /**
  * Creates {@link TestwiseCoverage} from Google closure coverage files. The given {@link ClosureCoverage} files must be
  * augmented with the {@link ClosureCoverage#externalId} field, which is not part of the Google closure coverage
  * specification.
+ * <p>
+ * The files are parsed with a streaming JSON reader, which converts the executed lines of each file directly to line
+ * ranges. Lines of files that are excluded by the filter are skipped if the file names precede the executed lines in
+ * the JSON file, which is the case for the files written by the closure instrumentation.
  */
 public class ClosureTestwiseCoverageGenerator {
 
@@ -37,6 +41,9 @@ public class ClosureTestwiseCoverageGenerator {
 	/** Include filter to apply to all js files contained in the original Closure coverage report. */
 	private Predicate<String> locationIncludeFilter;
 
+	/** The number of threads used to parse the coverage files. */
+	private final int parallelism;
+
 	/**
 	 * Create a new generator with a collection of report files.
 	 *
@@ -44,8 +51,21 @@ public class ClosureTestwiseCoverageGenerator {
 	 * @param locationIncludeFilter      Filter for js files
 	 */
 	public ClosureTestwiseCoverageGenerator(Collection<File> closureCoverageDirectories, Predicate<String> locationIncludeFilter) {
+		this(closureCoverageDirectories, locationIncludeFilter, 1);
+	}
+
+	/**
+	 * Create a new generator with a collection of report files.
+	 *
+	 * @param closureCoverageDirectories Root directory that contains the Google closure coverage reports.
+	 * @param locationIncludeFilter      Filter for js files
+	 * @param parallelism                The number of threads used to parse the coverage files. 1 parses all files
+	 *                                   sequentially on the calling thread.
+	 */
+	public ClosureTestwiseCoverageGenerator(Collection<File> closureCoverageDirectories, Predicate<String> locationIncludeFilter, int parallelism) {
 		this.closureCoverageDirectories = closureCoverageDirectories;
 		this.locationIncludeFilter = locationIncludeFilter;
+		this.parallelism = parallelism;
 	}
 
 	/**
@@ -53,13 +73,32 @@ public class ClosureTestwiseCoverageGenerator {
 	 * and takes care of merging coverage distributed over multiple files.
 	 */
 	public TestwiseCoverage readTestCoverage() {
-		TestwiseCoverage testwiseCoverage = new TestwiseCoverage();
+		List<File> coverageFiles = new ArrayList<>();
 		for (File closureCoverageDirectory : closureCoverageDirectories) {
-			List<File> coverageFiles = FileSystemUtils.listFilesRecursively(closureCoverageDirectory,
-					file -> "json".equals(FileSystemUtils.getFileExtension(file)));
+			coverageFiles.addAll(FileSystemUtils.listFilesRecursively(closureCoverageDirectory,
+					file -> "json".equals(FileSystemUtils.getFileExtension(file))));
+		}
+
+		TestwiseCoverage testwiseCoverage = new TestwiseCoverage();
+		if (parallelism <= 1 || coverageFiles.size() <= 1) {
 			for (File coverageReportFile : coverageFiles) {
 				testwiseCoverage.add(readTestCoverage(coverageReportFile));
 			}
+			return testwiseCoverage;
+		}
+
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			List<ForkJoinTask<TestCoverage>> tasks = new ArrayList<>(coverageFiles.size());
+			for (File coverageReportFile : coverageFiles) {
+				tasks.add(pool.submit(() -> readTestCoverage(coverageReportFile)));
+			}
+			// Tests are added in the order of the files, as the order of the report depends on the insertion order
+			for (ForkJoinTask<TestCoverage> task : tasks) {
+				testwiseCoverage.add(task.join());
+			}
+		} finally {
+			pool.shutdown();
 		}
 		return testwiseCoverage;
 	}
@@ -69,39 +108,161 @@ public class ClosureTestwiseCoverageGenerator {
 	 * If this fails for some reason the method returns null.
 	 */
 	private TestCoverage readTestCoverage(File file) {
-		try {
-			FileReader fileReader = new FileReader(file);
-			ClosureCoverage coverage = new Gson().fromJson(fileReader, ClosureCoverage.class);
-			return convertToTestCoverage(coverage);
-		} catch (FileNotFoundException e) {
+		try (JsonReader reader = new JsonReader(new BufferedReader(
+				new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)))) {
+			// Gson parsed the files leniently before
+			reader.setLenient(true);
+			return readTestCoverage(reader);
+		} catch (IOException | IllegalStateException | NumberFormatException e) {
 			e.printStackTrace();
 		}
 		return null;
 	}
 
-	/** Converts the given {@link ClosureCoverage} to {@link TestCoverage}. */
-	private TestCoverage convertToTestCoverage(ClosureCoverage coverage) {
-		if (StringUtils.isEmpty(coverage.externalId)) {
+	/** Reads a {@link ClosureCoverage} object and converts it to {@link TestCoverage}. */
+	private TestCoverage readTestCoverage(JsonReader reader) throws IOException {
+		String externalId = null;
+		List<String> fileNames = null;
+		List<int[]> executedLines = null;
+
+		reader.beginObject();
+		while (reader.hasNext()) {
+			switch (reader.nextName()) {
+				case "externalId":
+					externalId = readNullableString(reader);
+					break;
+				case "fileNames":
+					fileNames = readFileNames(reader);
+					break;
+				case "executedLines":
+					executedLines = readExecutedLines(reader, fileNames);
+					break;
+				default:
+					reader.skipValue();
+					break;
+			}
+		}
+		reader.endObject();
+
+		if (StringUtils.isEmpty(externalId) || fileNames == null || executedLines == null) {
+			return null;
+		}
+		return convertToTestCoverage(externalId, fileNames, executedLines);
+	}
+
+	/** Reads the array of file names. */
+	private static List<String> readFileNames(JsonReader reader) throws IOException {
+		List<String> fileNames = new ArrayList<>();
+		reader.beginArray();
+		while (reader.hasNext()) {
+			fileNames.add(readNullableString(reader));
+		}
+		reader.endArray();
+		return fileNames;
+	}
+
+	/**
+	 * Reads the executed lines of all files. The executed lines of a file are stored as sorted, disjoint line ranges
+	 * in the layout of {@link #readExecutedLines(JsonReader)}. If the file names are already known, files that are
+	 * not included are skipped and stored as null.
+	 */
+	private List<int[]> readExecutedLines(JsonReader reader, List<String> fileNames) throws IOException {
+		List<int[]> executedLines = new ArrayList<>();
+		reader.beginArray();
+		while (reader.hasNext()) {
+			int fileIndex = executedLines.size();
+			if (fileNames != null && fileIndex < fileNames.size() && !isIncluded(fileNames.get(fileIndex))) {
+				reader.skipValue();
+				executedLines.add(null);
+			} else {
+				executedLines.add(readExecutedLines(reader));
+			}
+		}
+		reader.endArray();
+		return executedLines;
+	}
+
+	/**
+	 * Reads the executed lines of a single file, i.e. an array that holds true for each executed line and null or
+	 * false otherwise. Returns the executed lines as run-length encoded ranges: the first element is the number of
+	 * ranges and the i-th range spans from the elements 2*i+1 to 2*i+2 (both inclusive).
+	 */
+	private static int[] readExecutedLines(JsonReader reader) throws IOException {
+		int[] ranges = new int[9];
+		int rangeCount = 0;
+		int line = 0;
+		int rangeStart = 0;
+		if (reader.peek() == JsonToken.NULL) {
+			reader.nextNull();
+			return new int[]{0};
+		}
+		reader.beginArray();
+		while (reader.hasNext()) {
+			line++;
+			boolean executed = false;
+			if (reader.peek() == JsonToken.NULL) {
+				reader.nextNull();
+			} else {
+				executed = reader.nextBoolean();
+			}
+			if (executed && rangeStart == 0) {
+				rangeStart = line;
+			} else if (!executed && rangeStart != 0) {
+				ranges = addRange(ranges, rangeCount++, rangeStart, line - 1);
+				rangeStart = 0;
+			}
+		}
+		reader.endArray();
+		if (rangeStart != 0) {
+			ranges = addRange(ranges, rangeCount++, rangeStart, line);
+		}
+		ranges[0] = rangeCount;
+		return ranges;
+	}
+
+	/** Stores the range at the given index and grows the array if necessary. */
+	private static int[] addRange(int[] ranges, int index, int start, int end) {
+		if (2 * index + 2 >= ranges.length) {
+			ranges = Arrays.copyOf(ranges, 2 * ranges.length + 1);
+		}
+		ranges[2 * index + 1] = start;
+		ranges[2 * index + 2] = end;
+		return ranges;
+	}
+
+	/** Reads a string value that may be null. */
+	private static String readNullableString(JsonReader reader) throws IOException {
+		if (reader.peek() == JsonToken.NULL) {
+			reader.nextNull();
 			return null;
 		}
-		TestCoverage testCoverage = new TestCoverage(coverage.externalId);
-		PairList<String, List<Boolean>> executedLines = PairList.zip(coverage.fileNames, coverage.executedLines);
-		for (Pair<String, List<Boolean>> fileNameAndExecutedLines : executedLines) {
-			if (!locationIncludeFilter.test(fileNameAndExecutedLines.getFirst())) {
+		return reader.nextString();
+	}
+
+	/** Returns whether the given js file is included by the {@link #locationIncludeFilter}. */
+	private boolean isIncluded(String fileName) {
+		return fileName != null && locationIncludeFilter.test(fileName);
+	}
+
+	/** Converts the file names and executed line ranges of a closure coverage file to {@link TestCoverage}. */
+	private TestCoverage convertToTestCoverage(String externalId, List<String> fileNames, List<int[]> executedLines) {
+		TestCoverage testCoverage = new TestCoverage(externalId);
+		int fileCount = Math.min(fileNames.size(), executedLines.size());
+		for (int i = 0; i < fileCount; i++) {
+			String fileName = fileNames.get(i);
+			int[] ranges = executedLines.get(i);
+			if (ranges == null || !isIncluded(fileName)) {
 				continue;
 			}
 
-			File coveredFile = new File(fileNameAndExecutedLines.getFirst());
-			List<Boolean> coveredLines = fileNameAndExecutedLines.getSecond();
+			File coveredFile = new File(fileName);
 			String path = Optional.ofNullable(coveredFile.getParent()).orElse("");
 			FileCoverage fileCoverage = new FileCoverage(path, coveredFile.getName());
-			for (int i = 0; i < coveredLines.size(); i++) {
-				if (coveredLines.get(i) != null && coveredLines.get(i)) {
-					fileCoverage.addLine(i + 1);
-				}
+			for (int range = 0; range < ranges[0]; range++) {
+				fileCoverage.addLineRange(ranges[2 * range + 1], ranges[2 * range + 2]);
 			}
 			testCoverage.add(fileCoverage);
 		}
 		return testCoverage;
 	}
-}
\ No newline at end of file
+}
@@ -2,7 +2,9 @@ package eu.cqse.teamscale.report.testwise.jacoco;
 
 import eu.cqse.teamscale.report.testwise.jacoco.cache.AnalyzerCache;
 import eu.cqse.teamscale.report.testwise.jacoco.cache.CoverageGenerationException;
+import eu.cqse.teamscale.report.testwise.jacoco.cache.ParallelAnalyzerCache;
 import eu.cqse.teamscale.report.testwise.jacoco.cache.ProbesCache;
+import eu.cqse.teamscale.report.testwise.jacoco.cache.ProbesIndex;
 import eu.cqse.teamscale.report.jacoco.dump.Dump;
 import eu.cqse.teamscale.report.testwise.model.TestCoverage;
 import eu.cqse.teamscale.report.testwise.model.TestwiseCoverage;
@@ -13,7 +15,12 @@ import org.jacoco.core.data.ExecutionDataStore;
 import java.io.File;
 import java.io.IOException;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
@@ -35,53 +42,145 @@ class CachingExecutionDataReader {
 
 	/**
 	 * Analyzes the given class/jar/war/... files and creates a lookup of which probes belong to which method.
+	 *
+	 * @param probesIndexFile File in which the analysis results are persisted between runs, so that unchanged class
+	 *                        directories and archives need not be analyzed again. May be null to disable the index.
+	 * @param parallelism     The number of threads used for the analysis. 1 analyzes all class files sequentially on
+	 *                        the calling thread.
 	 */
-	public void analyzeClassDirs(Collection<File> classesDirectories, Predicate<String> locationIncludeFilter, boolean ignoreNonidenticalDuplicateClassFiles) throws CoverageGenerationException {
+	public void analyzeClassDirs(Collection<File> classesDirectories, Predicate<String> locationIncludeFilter, boolean ignoreNonidenticalDuplicateClassFiles, File probesIndexFile, int parallelism) throws CoverageGenerationException {
 		if (probesCache != null) {
 			return;
 		}
 		probesCache = new ProbesCache(logger, ignoreNonidenticalDuplicateClassFiles);
-		AnalyzerCache analyzer = new AnalyzerCache(probesCache, locationIncludeFilter, logger);
+		ProbesIndex probesIndex = null;
+		if (probesIndexFile != null) {
+			probesIndex = ProbesIndex.open(probesIndexFile, String.valueOf(locationIncludeFilter), classesDirectories, logger);
+		}
+
+		Map<File, AnalyzerCache> analyzers = new LinkedHashMap<>();
+		ForkJoinPool pool = null;
+		if (parallelism > 1) {
+			pool = new ForkJoinPool(parallelism);
+		}
 		for (File classDir : classesDirectories) {
-			if (classDir.exists()) {
-				try {
-					analyzer.analyzeAll(classDir);
-				} catch (IOException e) {
-					logger.error("Failed to analyze class files in " + classDir + "! " +
-							"Maybe the folder contains incompatible class files. " +
-							"Coverage for class files in this folder will be ignored.", e);
-				}
+			if (!classDir.exists() || probesIndex != null && probesIndex.restoreArchive(classDir, probesCache)) {
+				continue;
+			}
+			if (pool == null) {
+				analyzers.put(classDir, new AnalyzerCache(probesCache, locationIncludeFilter, logger));
+			} else {
+				analyzers.put(classDir, new ParallelAnalyzerCache(probesCache, locationIncludeFilter, logger, pool));
 			}
 		}
+		Map<File, Boolean> results = analyze(analyzers, pool);
+
 		if (probesCache.isEmpty()) {
 			String directoryList = classesDirectories.stream().map(File::getPath).collect(Collectors.joining(","));
 			throw new CoverageGenerationException("No class files found in the given directories! " + directoryList);
 		}
+		if (probesIndex != null) {
+			for (Map.Entry<File, AnalyzerCache> entry : analyzers.entrySet()) {
+				if (results.get(entry.getKey())) {
+					probesIndex.updateArchive(entry.getKey(), entry.getValue().getAnalyzedClassIds());
+				}
+			}
+			probesIndex.write(probesCache);
+		}
+	}
+
+	/**
+	 * Runs the given analyzers on their class directory or archive. If a pool is given, all directories and
+	 * archives are analyzed in parallel.
+	 *
+	 * @return Whether the analysis succeeded for each directory or archive.
+	 */
+	private Map<File, Boolean> analyze(Map<File, AnalyzerCache> analyzers, ForkJoinPool pool) {
+		Map<File, Boolean> results = new LinkedHashMap<>();
+		if (pool == null) {
+			analyzers.forEach((classDir, analyzer) -> results.put(classDir, analyze(classDir, analyzer)));
+			return results;
+		}
+		try {
+			Map<File, ForkJoinTask<Boolean>> tasks = new LinkedHashMap<>();
+			analyzers.forEach((classDir, analyzer) -> tasks.put(classDir, pool.submit(() -> analyze(classDir, analyzer))));
+			tasks.forEach((classDir, task) -> results.put(classDir, task.join()));
+		} finally {
+			pool.shutdown();
+		}
+		return results;
+	}
+
+	/** Analyzes a single class directory or archive and returns whether this succeeded. */
+	private boolean analyze(File classDir, AnalyzerCache analyzer) {
+		try {
+			analyzer.analyzeAll(classDir);
+			return true;
+		} catch (IOException e) {
+			logger.error("Failed to analyze class files in " + classDir + "! " +
+					"Maybe the folder contains incompatible class files. " +
+					"Coverage for class files in this folder will be ignored.", e);
+			return false;
+		}
 	}
 
 	/**
 	 * Converts the given store to coverage data. The coverage will only contain line range coverage information.
 	 */
 	public TestwiseCoverage buildCoverage(List<Dump> dumps) {
-		TestwiseCoverage testwiseCoverage = new TestwiseCoverage();
-		for (Dump dump : dumps) {
-			String testId = dump.info.getId();
-			if (testId.isEmpty()) {
-				// Ignore intermediate coverage that does not belong to any specific test
-				logger.debug("Found a session with empty name! This could indicate that coverage is dumped also for " +
-						"coverage in between tests or that the given test name was empty");
-				continue;
-			}
+		return buildCoverage(dumps, 1);
+	}
+
+	/**
+	 * Converts the given dumps to coverage data using the given number of threads. The result is the same as for the
+	 * sequential conversion.
+	 *
+	 * @param parallelism The number of threads used for the conversion. 1 converts all dumps sequentially on the
+	 *                    calling thread.
+	 */
+	public TestwiseCoverage buildCoverage(List<Dump> dumps, int parallelism) {
+		TestCoverage[] testCoverages = new TestCoverage[dumps.size()];
+		if (parallelism > 1 && dumps.size() > 1) {
+			ForkJoinPool pool = new ForkJoinPool(parallelism);
 			try {
-				TestCoverage testCoverage = buildCoverage(testId, dump.store);
-				testwiseCoverage.add(testCoverage);
-			} catch (CoverageGenerationException e) {
-				logger.error("Failed to generate coverage for test " + testId + "! Skipping to the next test.", e);
+				pool.invoke(new ConversionTask(dumps, testCoverages, 0, dumps.size()));
+			} finally {
+				pool.shutdown();
 			}
+		} else {
+			for (int i = 0; i < testCoverages.length; i++) {
+				testCoverages[i] = buildCoverage(dumps.get(i));
+			}
+		}
+
+		// Tests are added in the order of the dumps, as the order of the report depends on the insertion order
+		TestwiseCoverage testwiseCoverage = new TestwiseCoverage();
+		for (TestCoverage testCoverage : testCoverages) {
+			testwiseCoverage.add(testCoverage);
 		}
 		return testwiseCoverage;
 	}
 
+	/**
+	 * Converts the given dump to the coverage of a single test or returns null if the dump does not belong to a test
+	 * or the conversion failed.
+	 */
+	public TestCoverage buildCoverage(Dump dump) {
+		String testId = dump.info.getId();
+		if (testId.isEmpty()) {
+			// Ignore intermediate coverage that does not belong to any specific test
+			logger.debug("Found a session with empty name! This could indicate that coverage is dumped also for " +
+					"coverage in between tests or that the given test name was empty");
+			return null;
+		}
+		try {
+			return buildCoverage(testId, dump.store);
+		} catch (CoverageGenerationException e) {
+			logger.error("Failed to generate coverage for test " + testId + "! Skipping to the next test.", e);
+			return null;
+		}
+	}
+
 	/**
 	 * Converts the given store to coverage data. The coverage will only contain line range coverage information.
 	 */
@@ -92,4 +191,48 @@ class CachingExecutionDataReader {
 		}
 		return testCoverage;
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Converts a range of dumps and stores the coverage at the same index in the result array. Ranges are split in
+	 * halves until they contain at most {@link #SEQUENTIAL_THRESHOLD} dumps.
+	 */
+	private class ConversionTask extends RecursiveAction {
+
+		/** The maximal number of dumps that are converted by a single task without splitting it further. */
+		private static final int SEQUENTIAL_THRESHOLD = 16;
+
+		/** All dumps. */
+		private final List<Dump> dumps;
+
+		/** The converted coverage of all dumps. */
+		private final TestCoverage[] testCoverages;
+
+		/** The first index of the range (inclusive). */
+		private final int from;
+
+		/** The last index of the range (exclusive). */
+		private final int to;
+
+		/** Constructor. */
+		private ConversionTask(List<Dump> dumps, TestCoverage[] testCoverages, int from, int to) {
+			this.dumps = dumps;
+			this.testCoverages = testCoverages;
+			this.from = from;
+			this.to = to;
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		protected void compute() {
+			if (to - from <= SEQUENTIAL_THRESHOLD) {
+				for (int i = from; i < to; i++) {
+					testCoverages[i] = buildCoverage(dumps.get(i));
+				}
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new ConversionTask(dumps, testCoverages, from, middle),
+					new ConversionTask(dumps, testCoverages, middle, to));
+		}
+	}
+}
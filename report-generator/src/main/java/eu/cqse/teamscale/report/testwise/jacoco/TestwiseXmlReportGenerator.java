@@ -2,6 +2,7 @@ package eu.cqse.teamscale.report.testwise.jacoco;
 
 import eu.cqse.teamscale.report.jacoco.dump.Dump;
 import eu.cqse.teamscale.report.testwise.jacoco.cache.CoverageGenerationException;
+import eu.cqse.teamscale.report.testwise.model.TestCoverage;
 import eu.cqse.teamscale.report.testwise.model.TestwiseCoverage;
 import eu.cqse.teamscale.report.util.ILogger;
 import org.jacoco.core.data.ExecutionData;
@@ -11,13 +12,16 @@ import org.jacoco.core.data.IExecutionDataVisitor;
 import org.jacoco.core.data.ISessionInfoVisitor;
 import org.jacoco.core.data.SessionInfo;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.Collection;
 import java.util.List;
-import java.util.Set;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 
 import static eu.cqse.teamscale.report.testwise.jacoco.TestwiseXmlReportUtils.getReportAsString;
@@ -32,6 +36,9 @@ public class TestwiseXmlReportGenerator {
 	/** The execution data reader and converter. */
 	private CachingExecutionDataReader executionDataReader;
 
+	/** The number of threads used to analyze the class files and to convert lists of dumps. */
+	private final int parallelism;
+
 	/**
 	 * Create a new generator with a collection of class directories.
 	 *
@@ -40,8 +47,24 @@ public class TestwiseXmlReportGenerator {
 	 * @param logger                    The logger
 	 */
 	public TestwiseXmlReportGenerator(Collection<File> codeDirectoriesOrArchives, Predicate<String> locationIncludeFilter, boolean ignoreNonidenticalDuplicateClassFiles, ILogger logger) throws CoverageGenerationException {
+		this(codeDirectoriesOrArchives, locationIncludeFilter, ignoreNonidenticalDuplicateClassFiles, null, 1, logger);
+	}
+
+	/**
+	 * Create a new generator with a collection of class directories.
+	 *
+	 * @param codeDirectoriesOrArchives Root directory that contains the projects class files.
+	 * @param locationIncludeFilter     Filter for class files
+	 * @param probesIndexFile           File in which the analysis results of the class files are persisted between
+	 *                                  runs or null to always analyze all class files.
+	 * @param analysisParallelism       The number of threads used to analyze the class files and to convert lists
+	 *                                  of dumps.
+	 * @param logger                    The logger
+	 */
+	public TestwiseXmlReportGenerator(Collection<File> codeDirectoriesOrArchives, Predicate<String> locationIncludeFilter, boolean ignoreNonidenticalDuplicateClassFiles, File probesIndexFile, int analysisParallelism, ILogger logger) throws CoverageGenerationException {
+		this.parallelism = analysisParallelism;
 		this.executionDataReader = new CachingExecutionDataReader(logger);
-		this.executionDataReader.analyzeClassDirs(codeDirectoriesOrArchives, locationIncludeFilter, ignoreNonidenticalDuplicateClassFiles);
+		this.executionDataReader.analyzeClassDirs(codeDirectoriesOrArchives, locationIncludeFilter, ignoreNonidenticalDuplicateClassFiles, probesIndexFile, analysisParallelism);
 	}
 
 	/** Converts the given *.exec file to a XML report. */
@@ -58,43 +81,125 @@ public class TestwiseXmlReportGenerator {
 
 	/** Converts the given dumps to a report. */
 	public TestwiseCoverage convert(List<Dump> dumps) {
-		return executionDataReader.buildCoverage(dumps);
+		return executionDataReader.buildCoverage(dumps, parallelism);
 	}
 
-	/** Converts the given dumps to a report. */
+	/**
+	 * Converts a single dump to the coverage of the test it belongs to. Returns null if the dump does not belong to a
+	 * test or the conversion failed.
+	 */
+	public TestCoverage convert(Dump dump) {
+		return executionDataReader.buildCoverage(dump);
+	}
+
+	/**
+	 * Converts the given *.exec file to a report. The sessions are read one after another and each session is
+	 * converted as soon as all of its execution data has been read, so only the resulting coverage is kept in memory.
+	 */
 	public TestwiseCoverage convert(File executionDataFile) throws IOException {
-		return executionDataReader.buildCoverage(readDumps(executionDataFile));
+		TestwiseCoverage testwiseCoverage = new TestwiseCoverage();
+		readTestCoverage(executionDataFile, testwiseCoverage::add);
+		return testwiseCoverage;
 	}
 
-	/** Reads the dumps from the given *.exec file. */
-	private List<Dump> readDumps(File executionDataFile) throws IOException {
-		FileInputStream input = new FileInputStream(executionDataFile);
-		ExecutionDataReader executionDataReader = new ExecutionDataReader(input);
-		DumpCollector dumpCollector = new DumpCollector();
-		executionDataReader.setExecutionDataVisitor(dumpCollector);
-		executionDataReader.setSessionInfoVisitor(dumpCollector);
-		executionDataReader.read();
-		return dumpCollector.dumps;
+	/**
+	 * Converts the given *.exec file to a XML report and writes it test by test to the given output stream. The
+	 * stream is flushed but not closed.
+	 * <p>
+	 * In contrast to {@link #convert(File)} neither the execution data nor the coverage of more than one test is held
+	 * in memory at any time, so the memory consumption does not depend on the number of tests in the file. The tests
+	 * are written in the order in which they occur in the file. Consecutive sessions of the same test are merged,
+	 * but a test that reappears after another test is written as a separate test element.
+	 */
+	public void convert(File executionDataFile, OutputStream output) throws IOException {
+		TestwiseXmlReportWriter writer = new TestwiseXmlReportWriter(output);
+		TestCoverage[] pendingTestCoverage = new TestCoverage[1];
+		readTestCoverage(executionDataFile, testCoverage -> {
+			if (testCoverage == null || testCoverage.isEmpty()) {
+				return;
+			}
+			TestCoverage pending = pendingTestCoverage[0];
+			if (pending != null && pending.externalId.equals(testCoverage.externalId)) {
+				pending.addAll(testCoverage.getFiles());
+				return;
+			}
+			if (pending != null) {
+				writeTestCoverage(writer, pending);
+			}
+			pendingTestCoverage[0] = testCoverage;
+		});
+		if (pendingTestCoverage[0] != null) {
+			writer.writeTestCoverage(pendingTestCoverage[0]);
+		}
+		writer.finish();
 	}
 
-	/** Collects dumps per session. */
-	private class DumpCollector implements IExecutionDataVisitor, ISessionInfoVisitor {
+	/** Writes the given test coverage and rethrows I/O errors unchecked, so they can pass the JaCoCo visitors. */
+	private static void writeTestCoverage(TestwiseXmlReportWriter writer, TestCoverage testCoverage) {
+		try {
+			writer.writeTestCoverage(testCoverage);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
 
-		/** List of dumps. */
-		public final List<Dump> dumps = new ArrayList<>();
+	/**
+	 * Reads the given *.exec file session by session and passes the coverage of each session to the given consumer
+	 * as soon as the session ends. The consumer is called with null for sessions that do not belong to a test.
+	 */
+	private void readTestCoverage(File executionDataFile, Consumer<TestCoverage> consumer) throws IOException {
+		try (InputStream input = new BufferedInputStream(new FileInputStream(executionDataFile))) {
+			ExecutionDataReader executionDataReader = new ExecutionDataReader(input);
+			SessionConverter sessionConverter = new SessionConverter(consumer);
+			executionDataReader.setExecutionDataVisitor(sessionConverter);
+			executionDataReader.setSessionInfoVisitor(sessionConverter);
+			executionDataReader.read();
+			sessionConverter.convertCurrentSession();
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
 
-		/** The store to which coverage is currently written to. */
+	/**
+	 * Collects the execution data of the current session and converts it once the next session starts. The
+	 * execution data of a session is released after its conversion.
+	 */
+	private class SessionConverter implements IExecutionDataVisitor, ISessionInfoVisitor {
+
+		/** Receives the coverage of each converted session. */
+		private final Consumer<TestCoverage> consumer;
+
+		/** The session that is currently read or null before the first session. */
+		private SessionInfo sessionInfo;
+
+		/** The store to which coverage of the current session is written to. */
 		private ExecutionDataStore store;
 
+		/** Constructor. */
+		private SessionConverter(Consumer<TestCoverage> consumer) {
+			this.consumer = consumer;
+		}
+
 		@Override
 		public void visitSessionInfo(SessionInfo info) {
+			convertCurrentSession();
+			sessionInfo = info;
 			store = new ExecutionDataStore();
-			dumps.add(new Dump(info, store));
 		}
 
 		@Override
 		public void visitClassExecution(ExecutionData data) {
 			store.put(data);
 		}
+
+		/** Converts the current session, if any, and hands the result to the consumer. */
+		private void convertCurrentSession() {
+			if (sessionInfo == null) {
+				return;
+			}
+			consumer.accept(executionDataReader.buildCoverage(new Dump(sessionInfo, store)));
+			sessionInfo = null;
+			store = null;
+		}
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,97 @@
+package eu.cqse.teamscale.report.testwise.jacoco;
+
+import eu.cqse.teamscale.report.testwise.model.FileCoverage;
+import eu.cqse.teamscale.report.testwise.model.TestCoverage;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads a testwise coverage XML report test by test without loading the whole document into memory. This is the
+ * counterpart of the {@link TestwiseXmlReportWriter}. The underlying stream is not closed.
+ */
+public class TestwiseXmlReportReader {
+
+	/** The StAX reader of the report. */
+	private final XMLStreamReader reader;
+
+	/** Constructor. */
+	public TestwiseXmlReportReader(InputStream input) throws IOException {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		try {
+			this.reader = factory.createXMLStreamReader(input);
+		} catch (XMLStreamException e) {
+			throw new IOException("Failed to read testwise coverage report", e);
+		}
+	}
+
+	/** Returns the coverage of the next test or null if all tests have been read. */
+	public TestCoverage readTestCoverage() throws IOException {
+		try {
+			while (reader.hasNext()) {
+				if (reader.next() == XMLStreamConstants.START_ELEMENT && "test".equals(reader.getLocalName())) {
+					return readTest();
+				}
+			}
+			return null;
+		} catch (XMLStreamException | NumberFormatException e) {
+			throw new IOException("Failed to read testwise coverage report", e);
+		}
+	}
+
+	/** Reads the test element at the current position including all of its paths and files. */
+	private TestCoverage readTest() throws XMLStreamException {
+		TestCoverage testCoverage = new TestCoverage(reader.getAttributeValue(null, "externalId"));
+		String path = null;
+		FileCoverage fileCoverage = null;
+		while (reader.hasNext()) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.END_ELEMENT && "test".equals(reader.getLocalName())) {
+				break;
+			}
+			if (event != XMLStreamConstants.START_ELEMENT) {
+				continue;
+			}
+			switch (reader.getLocalName()) {
+				case "path":
+					path = reader.getAttributeValue(null, "name");
+					break;
+				case "file":
+					fileCoverage = new FileCoverage(path, reader.getAttributeValue(null, "name"));
+					break;
+				case "lines":
+					if (fileCoverage != null) {
+						addLineRanges(fileCoverage, reader.getAttributeValue(null, "nr"));
+						testCoverage.add(fileCoverage);
+						fileCoverage = null;
+					}
+					break;
+				default:
+					break;
+			}
+		}
+		return testCoverage;
+	}
+
+	/** Adds the line ranges in the format written by {@link FileCoverage#computeCompactifiedRangesAsString()}. */
+	private static void addLineRanges(FileCoverage fileCoverage, String ranges) {
+		if (ranges == null || ranges.isEmpty()) {
+			return;
+		}
+		for (String range : ranges.split(",")) {
+			int separator = range.indexOf('-');
+			if (separator < 0) {
+				fileCoverage.addLine(Integer.parseInt(range.trim()));
+			} else {
+				fileCoverage.addLineRange(Integer.parseInt(range.substring(0, separator).trim()),
+						Integer.parseInt(range.substring(separator + 1).trim()));
+			}
+		}
+	}
+}
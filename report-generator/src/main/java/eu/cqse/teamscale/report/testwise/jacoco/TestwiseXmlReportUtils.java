@@ -1,11 +1,9 @@
 package eu.cqse.teamscale.report.testwise.jacoco;
 
+import eu.cqse.teamscale.report.testwise.model.TestCoverage;
 import eu.cqse.teamscale.report.testwise.model.TestwiseCoverage;
 import org.conqat.lib.commons.filesystem.FileSystemUtils;
 
-import javax.xml.bind.JAXBContext;
-import javax.xml.bind.JAXBException;
-import javax.xml.bind.Marshaller;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
@@ -33,18 +31,15 @@ public class TestwiseXmlReportUtils {
 		return output.toString(FileSystemUtils.UTF8_ENCODING);
 	}
 
-	/** Converts to given testwise coverage to an XML report and writes it to the given output stream. */
+	/**
+	 * Converts to given testwise coverage to an XML report and writes it to the given output stream. The stream is
+	 * flushed but not closed.
+	 */
 	public static void writeReportToStream(OutputStream output, TestwiseCoverage testwiseCoverage) throws IOException {
-		try {
-			JAXBContext jaxbContext = JAXBContext.newInstance(TestwiseCoverage.class);
-			Marshaller jaxbMarshaller = jaxbContext.createMarshaller();
-
-			// output pretty printed
-			jaxbMarshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
-
-			jaxbMarshaller.marshal(testwiseCoverage, output);
-		} catch (JAXBException e) {
-			throw new IOException("Converting testwise coverage to XML failed!", e);
+		TestwiseXmlReportWriter writer = new TestwiseXmlReportWriter(output);
+		for (TestCoverage testCoverage : testwiseCoverage.getTests()) {
+			writer.writeTestCoverage(testCoverage);
 		}
+		writer.finish();
 	}
 }
@@ -0,0 +1,137 @@
+package eu.cqse.teamscale.report.testwise.jacoco;
+
+import eu.cqse.teamscale.report.testwise.model.FileCoverage;
+import eu.cqse.teamscale.report.testwise.model.PathCoverage;
+import eu.cqse.teamscale.report.testwise.model.TestCoverage;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes a testwise coverage XML report test by test to an output stream without building the whole document in
+ * memory.
+ * <p>
+ * The output is byte-for-byte identical to the pretty printed JAXB marshalling of the
+ * {@link eu.cqse.teamscale.report.testwise.model.TestwiseCoverage} model, i.e. the same XML declaration, an
+ * indentation of four spaces and the same escaping of attribute values.
+ * <p>
+ * Call {@link #writeTestCoverage(TestCoverage)} for every test and {@link #finish()} at the end. The underlying
+ * stream is flushed but not closed.
+ */
+public class TestwiseXmlReportWriter {
+
+	/** The writer for the underlying output stream. */
+	private final Writer writer;
+
+	/** Whether the opening report tag has already been written. */
+	private boolean hasWrittenTests = false;
+
+	/** Constructor. */
+	public TestwiseXmlReportWriter(OutputStream output) throws IOException {
+		this.writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+		writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n");
+	}
+
+	/** Appends the coverage of a single test to the report. */
+	public void writeTestCoverage(TestCoverage testCoverage) throws IOException {
+		if (!hasWrittenTests) {
+			writer.write("<report>\n");
+			hasWrittenTests = true;
+		}
+		writer.write("    <test");
+		writeAttribute("externalId", testCoverage.externalId);
+		if (testCoverage.getPaths().isEmpty()) {
+			writer.write("/>\n");
+			return;
+		}
+		writer.write(">\n");
+		for (PathCoverage pathCoverage : testCoverage.getPaths()) {
+			writePathCoverage(pathCoverage);
+		}
+		writer.write("    </test>\n");
+	}
+
+	/** Writes the path element with all of its files. */
+	private void writePathCoverage(PathCoverage pathCoverage) throws IOException {
+		writer.write("        <path");
+		writeAttribute("name", pathCoverage.path);
+		if (pathCoverage.getFiles().isEmpty()) {
+			writer.write("/>\n");
+			return;
+		}
+		writer.write(">\n");
+		for (FileCoverage fileCoverage : pathCoverage.getFiles()) {
+			writer.write("            <file");
+			writeAttribute("name", fileCoverage.fileName);
+			writer.write(">\n                <lines");
+			writeAttribute("nr", fileCoverage.computeCompactifiedRangesAsString());
+			writer.write("/>\n            </file>\n");
+		}
+		writer.write("        </path>\n");
+	}
+
+	/** Writes an attribute with a leading space. Attributes with a null value are omitted. */
+	private void writeAttribute(String name, String value) throws IOException {
+		if (value == null) {
+			return;
+		}
+		writer.write(' ');
+		writer.write(name);
+		writer.write("=\"");
+		writeEscaped(value);
+		writer.write('"');
+	}
+
+	/** Writes the given attribute value with the same escaping as the JAXB reference implementation. */
+	private void writeEscaped(String value) throws IOException {
+		int start = 0;
+		for (int i = 0; i < value.length(); i++) {
+			String replacement;
+			switch (value.charAt(i)) {
+				case '&':
+					replacement = "&amp;";
+					break;
+				case '<':
+					replacement = "&lt;";
+					break;
+				case '>':
+					replacement = "&gt;";
+					break;
+				case '"':
+					replacement = "&quot;";
+					break;
+				// Whitespace other than spaces would be normalized to spaces when the attribute is parsed. JAXB
+				// escapes line breaks the same way, but writes tabs unescaped.
+				case '\t':
+					replacement = "&#9;";
+					break;
+				case '\n':
+					replacement = "&#10;";
+					break;
+				case '\r':
+					replacement = "&#13;";
+					break;
+				default:
+					continue;
+			}
+			writer.write(value, start, i - start);
+			writer.write(replacement);
+			start = i + 1;
+		}
+		writer.write(value, start, value.length() - start);
+	}
+
+	/** Completes the report and flushes the underlying stream. */
+	public void finish() throws IOException {
+		if (hasWrittenTests) {
+			writer.write("</report>\n");
+		} else {
+			writer.write("<report/>\n");
+		}
+		writer.flush();
+	}
+}
@@ -9,6 +9,9 @@ import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.function.Predicate;
 
 /**
@@ -31,12 +34,23 @@ public class AnalyzerCache extends FilteringAnalyzer {
 	/** The probes cache. */
 	private final ProbesCache probesCache;
 
+	/**
+	 * The IDs of all classes that have been passed to this analyzer, including classes that were already contained in
+	 * the {@link #probesCache}.
+	 */
+	private final List<Long> analyzedClassIds = Collections.synchronizedList(new ArrayList<>());
+
 	/** Creates a new analyzer filling the given cache. */
 	public AnalyzerCache(ProbesCache probesCache, Predicate<String> locationIncludeFilter, ILogger logger) {
 		super(null, null, locationIncludeFilter, logger);
 		this.probesCache = probesCache;
 	}
 
+	/** Returns the IDs of all classes that have been analyzed by this analyzer so far. */
+	public List<Long> getAnalyzedClassIds() {
+		return analyzedClassIds;
+	}
+
 	/**
 	 * Analyses the given class. Instead of the original implementation in
 	 * {@link org.jacoco.core.analysis.Analyzer#analyzeClass(byte[])} we don't use concrete execution data, but
@@ -44,11 +58,16 @@ public class AnalyzerCache extends FilteringAnalyzer {
 	 */
 	private void analyzeClass(final byte[] source) {
 		long classId = CRC64.classId(source);
+		analyzedClassIds.add(classId);
 		if (probesCache.containsClassId(classId)) {
 			return;
 		}
 		final ClassReader reader = new ClassReader(source);
 		ClassCoverageLookup classCoverageLookup = probesCache.createClass(classId, reader.getClassName());
+		if (classCoverageLookup == null) {
+			// An identical class file has been analyzed concurrently
+			return;
+		}
 		CachingClassAnalyzer classAnalyzer = new CachingClassAnalyzer(classCoverageLookup);
 		final ClassVisitor visitor = new ClassProbesAdapter(classAnalyzer, false);
 		reader.accept(visitor, 0);
@@ -1,13 +1,12 @@
 package eu.cqse.teamscale.report.testwise.jacoco.cache;
 
 import eu.cqse.teamscale.report.testwise.model.FileCoverage;
-import eu.cqse.teamscale.report.testwise.model.LineRange;
 import eu.cqse.teamscale.report.util.ILogger;
 import org.conqat.lib.commons.string.StringUtils;
 import org.jacoco.core.data.ExecutionData;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 /**
  * Holds information about a class' probes and to which line ranges they refer.
@@ -16,30 +15,58 @@ import java.util.List;
  * - Set the file name of the java source file from which the class has been created.
  * - Then call for every method in the class {@link #addLine(int)} and {@link #addProbe(int)} for all probes and lines
  * that belong to the method and call {@link #finishMethod()} to signal that the next calls belong to another method.
+ * - Finally call {@link #setTotalProbeCount(int)} to signal that the analysis of the class is complete.
  * - Afterwards call {@link #getFileCoverage(ExecutionData, ILogger)} to transform probes ({@link ExecutionData}) for
  * this class into covered lines ({@link FileCoverage}).
+ * <p>
+ * Since a lookup is kept for every class of the profiled application, the method line ranges and the probe to method
+ * mapping are stored in packed int arrays instead of object lists.
  */
 public class ClassCoverageLookup {
 
+	/** Marks probes that are not contained in any method. */
+	/* package */ static final int NO_METHOD = -1;
+
+	/** Indicates that no specific line has been set yet. */
+	private static final int UNKNOWN_LINE = -1;
+
+	/** Shared empty array. */
+	private static final int[] EMPTY = new int[0];
+
 	/** Fully qualified name of the class (with / as separators). */
-	private String className;
+	private final String className;
 
-	/** Name of the java source file. */
+	/** Name of the package of the class (with / as separators). Interned as it is shared by many classes. */
+	private final String packageName;
+
+	/** Name of the java source file. Interned as it is shared with the inner classes. */
 	private String sourceFileName;
 
 	/**
-	 * List of method's line ranges. The index in this list corresponds to the probe ID.
-	 * So the same {@link LineRange}s can appear multiple times in the list if a method contains more than one probe.
+	 * Start and end line of all methods that contain at least one probe. The lines of the i-th method are stored at
+	 * index 2*i and 2*i+1.
+	 */
+	private int[] methodLines = EMPTY;
+
+	/**
+	 * The index of the method (see {@link #methodLines}) for each probe ID or {@link #NO_METHOD} if the probe does not
+	 * belong to any method.
 	 */
-	private final List<LineRange> probes = new ArrayList<>();
+	private int[] probeMethods = EMPTY;
+
+	/** Collects the probes and lines while the class is analyzed or null if the analysis is complete. */
+	private Builder builder;
 
 	/**
-	 * Holds the line range of the currently analyzed method.
-	 * <p>
-	 * By convention all calls to {@link #addProbe(int)} and {@link #addLine(int)}
-	 * belong to one method until {@link #finishMethod()} is called.
+	 * The content of the {@link ProbesIndex} from which the probes are restored on first access or null if the probes
+	 * are already present.
+	 *
+	 * @see #restoreLazily(ByteBuffer, int)
 	 */
-	private LineRange currentMethod = new LineRange();
+	private ByteBuffer probesIndex = null;
+
+	/** The position of the probe table in {@link #probesIndex}. */
+	private int probesIndexPosition;
 
 	/**
 	 * Constructor.
@@ -48,42 +75,96 @@ public class ClassCoverageLookup {
 	 */
 	ClassCoverageLookup(String className) {
 		this.className = className;
+		this.packageName = StringUtils.removeLastPart(className, '/').intern();
 	}
 
 	/** Sets the file name of the currently analyzed class (without path). */
 	public void setSourceFileName(String sourceFileName) {
+		if (sourceFileName != null) {
+			sourceFileName = sourceFileName.intern();
+		}
 		this.sourceFileName = sourceFileName;
 	}
 
-	/** Adjusts the size of the probes list to the total probes count. */
-	public void setTotalProbeCount(int count) {
-		ensureArraySize(count - 1);
+	/** Returns the fully qualified name of the class (with / as separators). */
+	/* package */ String getClassName() {
+		return className;
 	}
 
-	/** Adds the probe with the given id to the method. */
-	public void addProbe(int probeId) {
-		ensureArraySize(probeId);
-		probes.set(probeId, currentMethod);
+	/** Returns the name of the java source file or null if the class has no debug information. */
+	/* package */ String getSourceFileName() {
+		return sourceFileName;
 	}
 
-	/** Adds the given line to the method. */
-	public void addLine(int line) {
-		currentMethod.adjustToContain(line);
+	/** @see #methodLines */
+	/* package */ int[] getMethodLines() {
+		ensureProbesAvailable();
+		return methodLines;
+	}
+
+	/** @see #probeMethods */
+	/* package */ int[] getProbeMethods() {
+		ensureProbesAvailable();
+		return probeMethods;
+	}
+
+	/** Sets the probe table of this class as read from a {@link ProbesIndex}. */
+	/* package */ void setProbes(int[] methodLines, int[] probeMethods) {
+		this.methodLines = methodLines;
+		this.probeMethods = probeMethods;
+	}
+
+	/**
+	 * Marks the probes of this class to be read from the given index file content on first access instead of being
+	 * filled via {@link #addProbe(int)} and {@link #addLine(int)}.
+	 */
+	/* package */ void restoreLazily(ByteBuffer probesIndex, int position) {
+		this.probesIndex = probesIndex;
+		this.probesIndexPosition = position;
 	}
 
 	/**
-	 * Ensures that the probes list is big enough to allow access to the given index.
-	 * Intermediate list entries are filled with null.
+	 * Reads the probes from the {@link ProbesIndex} if this has not been done yet or completes the analysis if it has
+	 * not been completed via {@link #setTotalProbeCount(int)}.
 	 */
-	private void ensureArraySize(int index) {
-		while (index >= probes.size()) {
-			probes.add(null);
+	private synchronized void ensureProbesAvailable() {
+		if (probesIndex != null) {
+			ProbesIndex.readProbes(probesIndex, probesIndexPosition, this);
+			probesIndex = null;
+		}
+		if (builder != null) {
+			builder.build(0);
+		}
+	}
+
+	/** Returns the builder for the probe table. */
+	private Builder getBuilder() {
+		if (builder == null) {
+			builder = new Builder();
 		}
+		return builder;
+	}
+
+	/**
+	 * Adjusts the size of the probes list to the total probes count. This completes the analysis of the class.
+	 */
+	public void setTotalProbeCount(int count) {
+		getBuilder().build(count);
+	}
+
+	/** Adds the probe with the given id to the method. */
+	public void addProbe(int probeId) {
+		getBuilder().addProbe(probeId);
+	}
+
+	/** Adds the given line to the method. */
+	public void addLine(int line) {
+		getBuilder().addLine(line);
 	}
 
 	/** Indicates that the method analysis is finished. */
 	public void finishMethod() {
-		currentMethod = new LineRange();
+		getBuilder().finishMethod();
 	}
 
 	/**
@@ -94,10 +175,11 @@ public class ClassCoverageLookup {
 	 */
 	public FileCoverage getFileCoverage(ExecutionData executionData, ILogger logger) throws CoverageGenerationException {
 		boolean[] executedProbes = executionData.getProbes();
+		ensureProbesAvailable();
 
 		if (checkProbeInvariant(executedProbes)) {
 			throw new CoverageGenerationException("Probe lookup does not match with actual probe size for " +
-					sourceFileName + " " + className + " (" + probes.size() + " vs " + executedProbes.length + ")! " +
+					sourceFileName + " " + className + " (" + probeMethods.length + " vs " + executedProbes.length + ")! " +
 					"This is a bug in the profiler tooling. Please report it back to CQSE.");
 		}
 		if (sourceFileName == null) {
@@ -107,20 +189,22 @@ public class ClassCoverageLookup {
 			return null;
 		}
 
-		String packageName = StringUtils.removeLastPart(className, '/');
 		final FileCoverage fileCoverage = new FileCoverage(packageName, sourceFileName);
-		for (int i = 0; i < probes.size(); i++) {
-			LineRange lineRange = probes.get(i);
-			// lineRange is null if the probe is outside of a method
-			if (executedProbes[i])
-				if (lineRange != null) {
-					fileCoverage.addLineRange(lineRange);
-				} else {
-					logger.debug(sourceFileName + " " + className + " did contain a covered probe " + i + "(of " +
-							executedProbes.length + ") that could not be " +
-							"matched to any method. This could be a bug in the profiler tooling. Please report it back " +
-							"to CQSE.");
-				}
+		boolean[] coveredMethods = new boolean[methodLines.length / 2];
+		for (int i = 0; i < probeMethods.length; i++) {
+			if (!executedProbes[i]) {
+				continue;
+			}
+			int method = probeMethods[i];
+			if (method == NO_METHOD) {
+				logger.debug(sourceFileName + " " + className + " did contain a covered probe " + i + "(of " +
+						executedProbes.length + ") that could not be " +
+						"matched to any method. This could be a bug in the profiler tooling. Please report it back " +
+						"to CQSE.");
+			} else if (!coveredMethods[method]) {
+				coveredMethods[method] = true;
+				fileCoverage.addLineRange(methodLines[2 * method], methodLines[2 * method + 1]);
+			}
 		}
 
 		return fileCoverage;
@@ -128,6 +212,83 @@ public class ClassCoverageLookup {
 
 	/** Checks that the executed probes is not smaller than the cached probes. */
 	private boolean checkProbeInvariant(boolean[] executedProbes) {
-		return probes.size() > executedProbes.length;
+		return probeMethods.length > executedProbes.length;
+	}
+
+	/** Collects the probe table while the class is analyzed in growable arrays. */
+	private class Builder {
+
+		/** The method lines collected so far. */
+		private int[] methodLines = new int[8];
+
+		/** The number of methods collected so far. */
+		private int methodCount = 0;
+
+		/** The probe to method mapping collected so far. */
+		private int[] probeMethods = EMPTY;
+
+		/** The number of probes, i.e. the highest probe ID plus one. */
+		private int probeCount = 0;
+
+		/** The index of the currently analyzed method or {@link #NO_METHOD} if it does not contain probes yet. */
+		private int currentMethod = NO_METHOD;
+
+		/** The first line of the currently analyzed method. */
+		private int currentStart = UNKNOWN_LINE;
+
+		/** The last line of the currently analyzed method. */
+		private int currentEnd = UNKNOWN_LINE;
+
+		/** @see ClassCoverageLookup#addProbe(int) */
+		private void addProbe(int probeId) {
+			if (currentMethod == NO_METHOD) {
+				currentMethod = methodCount++;
+				if (2 * methodCount > methodLines.length) {
+					methodLines = Arrays.copyOf(methodLines, 4 * methodCount);
+				}
+			}
+			ensureProbeCount(probeId + 1);
+			probeMethods[probeId] = currentMethod;
+		}
+
+		/** @see ClassCoverageLookup#addLine(int) */
+		private void addLine(int line) {
+			if (currentStart > line || currentStart == UNKNOWN_LINE) {
+				currentStart = line;
+			}
+			if (currentEnd < line || currentEnd == UNKNOWN_LINE) {
+				currentEnd = line;
+			}
+		}
+
+		/** @see ClassCoverageLookup#finishMethod() */
+		private void finishMethod() {
+			if (currentMethod != NO_METHOD) {
+				methodLines[2 * currentMethod] = currentStart;
+				methodLines[2 * currentMethod + 1] = currentEnd;
+			}
+			currentMethod = NO_METHOD;
+			currentStart = UNKNOWN_LINE;
+			currentEnd = UNKNOWN_LINE;
+		}
+
+		/** Ensures that the probe mapping has room for the given number of probes. */
+		private void ensureProbeCount(int count) {
+			if (count > probeMethods.length) {
+				int oldLength = probeMethods.length;
+				probeMethods = Arrays.copyOf(probeMethods, Math.max(count, 2 * oldLength));
+				Arrays.fill(probeMethods, oldLength, probeMethods.length, NO_METHOD);
+			}
+			probeCount = Math.max(probeCount, count);
+		}
+
+		/** Stores the collected probe table with exactly fitting arrays in the enclosing lookup. */
+		private void build(int totalProbeCount) {
+			finishMethod();
+			ensureProbeCount(totalProbeCount);
+			ClassCoverageLookup.this.methodLines = Arrays.copyOf(methodLines, 2 * methodCount);
+			ClassCoverageLookup.this.probeMethods = Arrays.copyOf(probeMethods, probeCount);
+			builder = null;
+		}
 	}
 }
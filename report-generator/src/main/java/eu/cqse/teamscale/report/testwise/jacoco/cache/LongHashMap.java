@@ -0,0 +1,112 @@
+package eu.cqse.teamscale.report.testwise.jacoco.cache;
+
+/**
+ * Hash map from primitive long keys to non-null object values using open addressing with linear probing. In contrast
+ * to a {@link java.util.HashMap} this neither boxes the keys nor allocates an entry object per mapping, which matters
+ * for the class ID lookups of applications with tens of thousands of classes.
+ * <p>
+ * This class is not thread-safe.
+ */
+/* package */ class LongHashMap<V> {
+
+	/** The maximal ratio of used slots before the table is enlarged. */
+	private static final double MAX_LOAD_FACTOR = 0.6;
+
+	/** The keys of the mappings. A slot is free if the value at the same index is null. */
+	private long[] keys;
+
+	/** The values of the mappings. */
+	private Object[] values;
+
+	/** The number of mappings. */
+	private int size = 0;
+
+	/** Constructor. */
+	/* package */ LongHashMap() {
+		this(16);
+	}
+
+	/** Constructor with the expected number of mappings. */
+	/* package */ LongHashMap(int expectedSize) {
+		int capacity = Integer.highestOneBit((int) (Math.max(expectedSize, 8) / MAX_LOAD_FACTOR)) * 2;
+		keys = new long[capacity];
+		values = new Object[capacity];
+	}
+
+	/** Returns the value for the given key or null if there is no mapping. */
+	@SuppressWarnings("unchecked")
+	/* package */ V get(long key) {
+		int index = findSlot(keys, values, key);
+		return (V) values[index];
+	}
+
+	/** Returns whether a mapping for the given key exists. */
+	/* package */ boolean containsKey(long key) {
+		return get(key) != null;
+	}
+
+	/** Adds or replaces the mapping for the given key and returns the previous value or null. */
+	@SuppressWarnings("unchecked")
+	/* package */ V put(long key, V value) {
+		if (value == null) {
+			throw new IllegalArgumentException("Null values are not supported.");
+		}
+		int index = findSlot(keys, values, key);
+		V previous = (V) values[index];
+		keys[index] = key;
+		values[index] = value;
+		if (previous == null) {
+			size++;
+			if (size > values.length * MAX_LOAD_FACTOR) {
+				resize();
+			}
+		}
+		return previous;
+	}
+
+	/** Returns the number of mappings. */
+	/* package */ int size() {
+		return size;
+	}
+
+	/** Returns whether the map is empty. */
+	/* package */ boolean isEmpty() {
+		return size == 0;
+	}
+
+	/** Doubles the size of the table and reinserts all mappings. */
+	private void resize() {
+		long[] newKeys = new long[keys.length * 2];
+		Object[] newValues = new Object[values.length * 2];
+		for (int i = 0; i < values.length; i++) {
+			if (values[i] != null) {
+				int index = findSlot(newKeys, newValues, keys[i]);
+				newKeys[index] = keys[i];
+				newValues[index] = values[i];
+			}
+		}
+		keys = newKeys;
+		values = newValues;
+	}
+
+	/** Returns the slot that contains the given key or the free slot where it should be inserted. */
+	private static int findSlot(long[] keys, Object[] values, long key) {
+		int mask = values.length - 1;
+		int index = mix(key) & mask;
+		while (values[index] != null && keys[index] != key) {
+			index = (index + 1) & mask;
+		}
+		return index;
+	}
+
+	/**
+	 * Spreads the bits of the key. Class IDs are CRC64 checksums and thus already well distributed, but other keys
+	 * may not be.
+	 */
+	private static int mix(long key) {
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		return (int) key;
+	}
+}
@@ -0,0 +1,168 @@
+package eu.cqse.teamscale.report.testwise.jacoco.cache;
+
+import eu.cqse.teamscale.report.util.ILogger;
+import org.jacoco.core.internal.ContentTypeDetector;
+import org.jacoco.core.internal.InputStreams;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Predicate;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * {@link AnalyzerCache} that analyzes the files of class directories and the entries of (nested) archives in parallel
+ * on a {@link ForkJoinPool}.
+ * <p>
+ * Zip archives can only be read sequentially, so the entries are read into memory and then analyzed by separate
+ * tasks. To bound the memory consumption for huge archives, the reading thread waits for the already forked tasks as
+ * soon as more than {@link #MAX_PENDING_BYTES} have been read. Gzip and Pack200 compressed files are rare and are
+ * therefore analyzed sequentially as in the base class.
+ */
+public class ParallelAnalyzerCache extends AnalyzerCache {
+
+	/** The maximal number of bytes read from an archive that may wait for their analysis. */
+	private static final int MAX_PENDING_BYTES = 64 * 1024 * 1024;
+
+	/** The pool that executes the analysis tasks. */
+	private final ForkJoinPool pool;
+
+	/** Creates a new analyzer filling the given cache using the given pool. */
+	public ParallelAnalyzerCache(ProbesCache probesCache, Predicate<String> locationIncludeFilter, ILogger logger,
+								 ForkJoinPool pool) {
+		super(probesCache, locationIncludeFilter, logger);
+		this.pool = pool;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int analyzeAll(File file) throws IOException {
+		if (!file.isDirectory()) {
+			return super.analyzeAll(file);
+		}
+		List<AnalysisTask> tasks = new ArrayList<>();
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				tasks.add(new AnalysisTask(() -> analyzeAll(child)));
+			}
+		}
+		return run(tasks);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int analyzeAll(InputStream input, String location) throws IOException {
+		if (location.endsWith(".class")) {
+			return super.analyzeAll(input, location);
+		}
+		ContentTypeDetector detector;
+		try {
+			detector = new ContentTypeDetector(input);
+		} catch (IOException e) {
+			throw new IOException(String.format("Error while analyzing %s.", location), e);
+		}
+		if (detector.getType() != ContentTypeDetector.ZIPFILE) {
+			return super.analyzeAll(detector.getInputStream(), location);
+		}
+		return analyzeZip(detector.getInputStream(), location);
+	}
+
+	/** Reads the entries of the given zip archive and analyzes them in parallel. */
+	private int analyzeZip(InputStream input, String location) throws IOException {
+		ZipInputStream zip = new ZipInputStream(input);
+		List<AnalysisTask> tasks = new ArrayList<>();
+		int count = 0;
+		long pendingBytes = 0;
+		while (true) {
+			ZipEntry entry;
+			byte[] content;
+			try {
+				entry = zip.getNextEntry();
+				if (entry == null) {
+					break;
+				}
+				if (entry.isDirectory()) {
+					continue;
+				}
+				content = InputStreams.readFully(zip);
+			} catch (IOException e) {
+				throw new IOException(String.format("Error while analyzing %s.", location), e);
+			}
+			String entryLocation = location + "@" + entry.getName();
+			tasks.add(new AnalysisTask(() -> analyzeAll(new ByteArrayInputStream(content), entryLocation)));
+			pendingBytes += content.length;
+			if (pendingBytes > MAX_PENDING_BYTES) {
+				count += run(tasks);
+				tasks.clear();
+				pendingBytes = 0;
+			}
+		}
+		return count + run(tasks);
+	}
+
+	/**
+	 * Executes the given tasks and returns the sum of their results. Must be called either from within {@link #pool}
+	 * or from an external thread, in which case the tasks are submitted to the pool.
+	 */
+	private int run(List<AnalysisTask> tasks) throws IOException {
+		try {
+			if (ForkJoinTask.inForkJoinPool()) {
+				ForkJoinTask.invokeAll(tasks);
+			} else {
+				pool.invoke(new RecursiveTask<Void>() {
+					@Override
+					protected Void compute() {
+						invokeAll(tasks);
+						return null;
+					}
+				});
+			}
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		int count = 0;
+		for (AnalysisTask task : tasks) {
+			count += task.getRawResult();
+		}
+		return count;
+	}
+
+	/** An analysis step that may throw an {@link IOException}. */
+	@FunctionalInterface
+	private interface IAnalysis {
+
+		/** Runs the analysis and returns the number of analyzed classes. */
+		int analyze() throws IOException;
+	}
+
+	/** Task that executes an {@link IAnalysis}. */
+	private static class AnalysisTask extends RecursiveTask<Integer> {
+
+		/** The analysis to run. */
+		private final IAnalysis analysis;
+
+		/** Constructor. */
+		private AnalysisTask(IAnalysis analysis) {
+			this.analysis = analysis;
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		protected Integer compute() {
+			try {
+				return analysis.analyze();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+}
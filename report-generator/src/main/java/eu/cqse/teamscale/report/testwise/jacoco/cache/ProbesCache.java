@@ -5,12 +5,12 @@ import eu.cqse.teamscale.report.util.ILogger;
 import org.jacoco.core.data.ExecutionData;
 
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Set;
 
 /**
  * Holds {@link ClassCoverageLookup}s for all analyzed classes.
+ * <p>
+ * The cache may be filled from multiple threads concurrently. All accesses to the lookup tables are guarded by the
+ * cache's monitor.
  */
 public class ProbesCache {
 
@@ -18,10 +18,10 @@ public class ProbesCache {
 	private final ILogger logger;
 
 	/** A mapping from class ID (CRC64 of the class file) to {@link ClassCoverageLookup}. */
-	private final HashMap<Long, ClassCoverageLookup> classCoverageLookups = new HashMap<>();
+	private final LongHashMap<ClassCoverageLookup> classCoverageLookups = new LongHashMap<>();
 
 	/** Holds all fully-qualified class names that are already contained in the cache. */
-	private final Set<String> containedClasses = new HashSet<>();
+	private final StringHashSet containedClasses = new StringHashSet();
 
 	/** Whether to ignore non-identical duplicates of class files. */
 	private final boolean ignoreNonidenticalDuplicateClassFiles;
@@ -32,8 +32,15 @@ public class ProbesCache {
 		this.ignoreNonidenticalDuplicateClassFiles = ignoreNonidenticalDuplicateClassFiles;
 	}
 
-	/** Adds a new class entry to the cache and returns its {@link ClassCoverageLookup}. */
-	public ClassCoverageLookup createClass(long classId, String className) {
+	/**
+	 * Adds a new class entry to the cache and returns its {@link ClassCoverageLookup}. Returns null if a class with
+	 * the same class ID has already been added, e.g. by another thread that analyzed an identical copy of the class
+	 * file.
+	 */
+	public synchronized ClassCoverageLookup createClass(long classId, String className) {
+		if (classCoverageLookups.containsKey(classId)) {
+			return null;
+		}
 		if (containedClasses.contains(className)) {
 			logger.warn("Non-identical class file for class " + className + "."
 					+ " This happens when a class with the same fully-qualified name is loaded twice but the two loaded class files are not identical."
@@ -52,17 +59,23 @@ public class ProbesCache {
 	}
 
 	/** Returns whether a class with the given class ID has already been analyzed. */
-	public boolean containsClassId(long classId) {
+	public synchronized boolean containsClassId(long classId) {
 		return classCoverageLookups.containsKey(classId);
 	}
 
+	/** Returns the {@link ClassCoverageLookup} for the given class ID or null if the class has not been analyzed. */
+	/* package */ synchronized ClassCoverageLookup getClassCoverageLookup(long classId) {
+		return classCoverageLookups.get(classId);
+	}
+
 	/**
 	 * Converts the given {@link ExecutionData} to {@link FileCoverage} using the cached lookups or null if the class
 	 * file of this class has not been included in the analysis or was not covered.
 	 */
 	public FileCoverage getCoverage(ExecutionData executionData) throws CoverageGenerationException {
 		long classId = executionData.getId();
-		if (!containsClassId(classId)) {
+		ClassCoverageLookup classCoverageLookup = getClassCoverageLookup(classId);
+		if (classCoverageLookup == null) {
 			logger.debug(
 					"Found coverage for a class " + classId + " that was not provided. Either you did not provide " +
 							"all relevant class files or you did not adjust the include/exclude filters on the agent to exclude " +
@@ -73,11 +86,11 @@ public class ProbesCache {
 			return null;
 		}
 
-		return classCoverageLookups.get(classId).getFileCoverage(executionData, logger);
+		return classCoverageLookup.getFileCoverage(executionData, logger);
 	}
 
 	/** Returns true if the cache does not contains coverage for any class. */
-	public boolean isEmpty() {
+	public synchronized boolean isEmpty() {
 		return classCoverageLookups.isEmpty();
 	}
 }
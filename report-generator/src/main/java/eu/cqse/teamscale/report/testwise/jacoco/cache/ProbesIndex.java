@@ -0,0 +1,391 @@
+package eu.cqse.teamscale.report.testwise.jacoco.cache;
+
+import eu.cqse.teamscale.report.util.ILogger;
+import org.jacoco.core.JaCoCo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Persists the content of a {@link ProbesCache} to an index file, so that the class files of unchanged
+ * class directories and archives do not need to be analyzed again on the next start.
+ * <p>
+ * Every analyzed directory or archive is identified by its absolute path and a fingerprint over the paths, sizes and
+ * modification timestamps of all contained files. Classes are identified by their class ID (CRC64 of the class file).
+ * If all archives are unchanged, the index file is memory-mapped and the probe tables of the single classes are only
+ * decoded when coverage for the class is converted for the first time.
+ * <p>
+ * The file has the following layout (all numbers are big-endian):
+ * <pre>
+ * int magic, int version, string configurationKey
+ * int archiveCount, archiveCount * (string path, long fingerprint, int classCount, classCount * long classId)
+ * int classCount, classCount * (long classId, string className, string sourceFileName, int probesOffset)
+ * int probesLength, probe tables
+ * </pre>
+ * Strings are stored as their UTF-8 byte length followed by the bytes (length -1 encodes null). A probe table consists
+ * of the number of methods, the start and end line of every method, the number of probes and for every probe the index
+ * of the method it belongs to (-1 if the probe does not belong to any method), i.e. the packed arrays of the
+ * {@link ClassCoverageLookup}.
+ */
+public class ProbesIndex {
+
+	/** Magic number at the start of every index file. */
+	private static final int MAGIC_NUMBER = 0x54534958;
+
+	/** Version of the file format. Must be increased whenever the layout changes. */
+	private static final int FORMAT_VERSION = 1;
+
+	/** The file the index is read from and written to. */
+	private final File indexFile;
+
+	/**
+	 * Describes the configuration the index has been built with. The index is discarded if it has been written with a
+	 * different configuration, e.g. different include filters or another JaCoCo version.
+	 */
+	private final String configurationKey;
+
+	/** The logger. */
+	private final ILogger logger;
+
+	/** The archives from the index file mapped by their absolute path. */
+	private final Map<String, IndexedArchive> indexedArchives = new HashMap<>();
+
+	/** The offsets of the classes' probe tables in {@link #buffer} mapped by class ID. */
+	private final Map<Long, IndexedClass> indexedClasses = new HashMap<>();
+
+	/** The archives that have been analyzed or restored during this run mapped by their absolute path. */
+	private final Map<String, IndexedArchive> currentArchives = new LinkedHashMap<>();
+
+	/** The content of the index file or null if no valid index exists. */
+	private ByteBuffer buffer;
+
+	/** The position in {@link #buffer} at which the probe tables start. */
+	private int probesStart;
+
+	/** Whether the index needs to be written because any archive had to be (re-)analyzed. */
+	private boolean isDirty = false;
+
+	/** Constructor. */
+	private ProbesIndex(File indexFile, String configurationKey, ILogger logger) {
+		this.indexFile = indexFile;
+		this.configurationKey = configurationKey + "@" + JaCoCo.VERSION;
+		this.logger = logger;
+	}
+
+	/**
+	 * Opens the given index file. If the file does not exist or is not readable an empty index is returned, which
+	 * leads to the analysis of all archives.
+	 *
+	 * @param indexFile        The file that holds the index.
+	 * @param configurationKey Describes the configuration of the analysis, e.g. the include filters.
+	 * @param archives         The class directories and archives that are going to be analyzed.
+	 * @param logger           The logger.
+	 */
+	public static ProbesIndex open(File indexFile, String configurationKey, Collection<File> archives, ILogger logger) {
+		ProbesIndex index = new ProbesIndex(indexFile, configurationKey, logger);
+		if (indexFile.isFile()) {
+			try {
+				index.read(archives);
+			} catch (IOException | RuntimeException e) {
+				logger.warn("Failed to read probes index " + indexFile + ". All class files will be analyzed again.", e);
+				index.indexedArchives.clear();
+				index.indexedClasses.clear();
+				index.buffer = null;
+			}
+		}
+		return index;
+	}
+
+	/** Reads the header and class table of the index file. */
+	private void read(Collection<File> archives) throws IOException {
+		try (FileChannel channel = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ)) {
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		if (buffer.getInt() != MAGIC_NUMBER || buffer.getInt() != FORMAT_VERSION) {
+			throw new IOException("Not a probes index file or written by an incompatible version.");
+		}
+		if (!configurationKey.equals(readString(buffer))) {
+			logger.debug("Discarding probes index " + indexFile + ", because it has been created with a different configuration.");
+			buffer = null;
+			return;
+		}
+
+		int archiveCount = buffer.getInt();
+		for (int i = 0; i < archiveCount; i++) {
+			IndexedArchive archive = new IndexedArchive(readString(buffer), buffer.getLong());
+			int classCount = buffer.getInt();
+			for (int j = 0; j < classCount; j++) {
+				archive.classIds.add(buffer.getLong());
+			}
+			indexedArchives.put(archive.path, archive);
+		}
+
+		int classCount = buffer.getInt();
+		for (int i = 0; i < classCount; i++) {
+			long classId = buffer.getLong();
+			indexedClasses.put(classId, new IndexedClass(readString(buffer), readString(buffer), buffer.getInt()));
+		}
+		buffer.getInt();
+		probesStart = buffer.position();
+
+		// The index file is replaced at the end of the analysis if any archive changed or the set of archives differs
+		// (see write). Some platforms do not allow replacing a file that is still mapped, so we only keep the mapping
+		// if we know that it stays valid.
+		if (willBeRewritten(archives)) {
+			ByteBuffer heapBuffer = ByteBuffer.allocate(buffer.capacity());
+			buffer.rewind();
+			heapBuffer.put(buffer);
+			buffer = heapBuffer;
+		}
+	}
+
+	/**
+	 * Returns whether {@link #write(ProbesCache)} is going to replace the index file if the given archives are
+	 * analyzed, i.e. whether any of them changed or the archives differ from the ones in the index.
+	 */
+	private boolean willBeRewritten(Collection<File> archives) {
+		Set<String> paths = new HashSet<>();
+		for (File archive : archives) {
+			IndexedArchive indexedArchive = indexedArchives.get(archive.getAbsolutePath());
+			if (indexedArchive == null || indexedArchive.fingerprint != computeFingerprint(archive)) {
+				return true;
+			}
+			paths.add(indexedArchive.path);
+		}
+		return !paths.equals(indexedArchives.keySet());
+	}
+
+	/**
+	 * Restores the classes of the given archive into the cache if the archive did not change since the index has
+	 * been written.
+	 *
+	 * @return Whether the archive has been restored. If false, the archive must be analyzed and then be passed to
+	 * {@link #updateArchive(File, Collection)}.
+	 */
+	public boolean restoreArchive(File archive, ProbesCache probesCache) {
+		String path = archive.getAbsolutePath();
+		IndexedArchive indexedArchive = indexedArchives.get(path);
+		if (buffer == null || indexedArchive == null || indexedArchive.fingerprint != computeFingerprint(archive)) {
+			return false;
+		}
+		for (long classId : indexedArchive.classIds) {
+			IndexedClass indexedClass = indexedClasses.get(classId);
+			if (indexedClass == null) {
+				continue;
+			}
+			ClassCoverageLookup classCoverageLookup = probesCache.createClass(classId, indexedClass.className);
+			if (classCoverageLookup == null) {
+				continue;
+			}
+			classCoverageLookup.setSourceFileName(indexedClass.sourceFileName);
+			classCoverageLookup.restoreLazily(buffer, probesStart + indexedClass.probesOffset);
+		}
+		currentArchives.put(path, indexedArchive);
+		return true;
+	}
+
+	/** Records the IDs of the classes that have been found while analyzing the given archive. */
+	public void updateArchive(File archive, Collection<Long> classIds) {
+		IndexedArchive indexedArchive = new IndexedArchive(archive.getAbsolutePath(), computeFingerprint(archive));
+		indexedArchive.classIds.addAll(classIds);
+		currentArchives.put(indexedArchive.path, indexedArchive);
+		isDirty = true;
+	}
+
+	/**
+	 * Writes the index to disk if any archive has been analyzed during this run. Failures are only logged, since
+	 * they just lead to another analysis on the next start.
+	 */
+	public void write(ProbesCache probesCache) {
+		if (!isDirty && currentArchives.keySet().equals(indexedArchives.keySet())) {
+			return;
+		}
+		File tempFile = new File(indexFile.getPath() + ".tmp");
+		try {
+			Files.write(tempFile.toPath(), serialize(probesCache));
+			Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			logger.debug("Wrote probes index for " + currentArchives.size() + " class directories and archives to " + indexFile);
+		} catch (IOException e) {
+			logger.warn("Failed to write probes index " + indexFile + ". All class files will be analyzed again on the next start.", e);
+		}
+	}
+
+	/** Serializes all archives and classes of this run. */
+	private byte[] serialize(ProbesCache probesCache) throws IOException {
+		ByteArrayOutputStream probesBytes = new ByteArrayOutputStream();
+		DataOutputStream probesOutput = new DataOutputStream(probesBytes);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream output = new DataOutputStream(bytes);
+
+		output.writeInt(MAGIC_NUMBER);
+		output.writeInt(FORMAT_VERSION);
+		writeString(output, configurationKey);
+
+		output.writeInt(currentArchives.size());
+		Map<Long, ClassCoverageLookup> classes = new LinkedHashMap<>();
+		for (IndexedArchive archive : currentArchives.values()) {
+			writeString(output, archive.path);
+			output.writeLong(archive.fingerprint);
+			output.writeInt(archive.classIds.size());
+			for (long classId : archive.classIds) {
+				output.writeLong(classId);
+				ClassCoverageLookup classCoverageLookup = probesCache.getClassCoverageLookup(classId);
+				if (classCoverageLookup != null) {
+					classes.put(classId, classCoverageLookup);
+				}
+			}
+		}
+
+		output.writeInt(classes.size());
+		for (Map.Entry<Long, ClassCoverageLookup> entry : classes.entrySet()) {
+			ClassCoverageLookup classCoverageLookup = entry.getValue();
+			output.writeLong(entry.getKey());
+			writeString(output, classCoverageLookup.getClassName());
+			writeString(output, classCoverageLookup.getSourceFileName());
+			output.writeInt(probesOutput.size());
+			writeProbes(probesOutput, classCoverageLookup.getMethodLines(), classCoverageLookup.getProbeMethods());
+		}
+
+		output.writeInt(probesOutput.size());
+		probesOutput.flush();
+		probesBytes.writeTo(output);
+		output.flush();
+		return bytes.toByteArray();
+	}
+
+	/** Writes the probe table of a single class. */
+	private static void writeProbes(DataOutputStream output, int[] methodLines, int[] probeMethods) throws IOException {
+		output.writeInt(methodLines.length / 2);
+		for (int line : methodLines) {
+			output.writeInt(line);
+		}
+		output.writeInt(probeMethods.length);
+		for (int method : probeMethods) {
+			output.writeInt(method);
+		}
+	}
+
+	/**
+	 * Reads the probe table at the given position of the index file content into the given lookup. This is static so
+	 * that the lazily restored lookups only keep the file content and not the whole index alive.
+	 */
+	/* package */ static void readProbes(ByteBuffer buffer, int position, ClassCoverageLookup classCoverageLookup) {
+		ByteBuffer input = buffer.duplicate();
+		input.position(position);
+		int[] methodLines = new int[2 * input.getInt()];
+		input.asIntBuffer().get(methodLines);
+		input.position(input.position() + 4 * methodLines.length);
+		int[] probeMethods = new int[input.getInt()];
+		input.asIntBuffer().get(probeMethods);
+		classCoverageLookup.setProbes(methodLines, probeMethods);
+	}
+
+	/** Writes the given string (which may be null) as length and UTF-8 bytes. */
+	private static void writeString(DataOutputStream output, String value) throws IOException {
+		if (value == null) {
+			output.writeInt(-1);
+			return;
+		}
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		output.writeInt(bytes.length);
+		output.write(bytes);
+	}
+
+	/** Reads a string written by {@link #writeString(DataOutputStream, String)}. */
+	private static String readString(ByteBuffer input) {
+		int length = input.getInt();
+		if (length == -1) {
+			return null;
+		}
+		if (length < 0 || length > input.remaining()) {
+			throw new BufferUnderflowException();
+		}
+		byte[] bytes = new byte[length];
+		input.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Computes a fingerprint over the relative paths, sizes and modification timestamps of all files in the given
+	 * class directory or archive. The content is not read, since hashing a several hundred megabytes large archive
+	 * would take almost as long as analyzing it.
+	 */
+	private static long computeFingerprint(File archive) {
+		return updateFingerprint(17, archive, "");
+	}
+
+	/** Recursively adds the given file to the fingerprint. */
+	private static long updateFingerprint(long fingerprint, File file, String relativePath) {
+		fingerprint = 31 * fingerprint + relativePath.hashCode();
+		if (!file.isDirectory()) {
+			fingerprint = 31 * fingerprint + file.length();
+			return 31 * fingerprint + file.lastModified();
+		}
+		String[] children = file.list();
+		if (children == null) {
+			return fingerprint;
+		}
+		Arrays.sort(children);
+		for (String child : children) {
+			fingerprint = updateFingerprint(fingerprint, new File(file, child), relativePath + "/" + child);
+		}
+		return fingerprint;
+	}
+
+	/** An analyzed directory or archive as stored in the index. */
+	private static class IndexedArchive {
+
+		/** The absolute path of the directory or archive. */
+		private final String path;
+
+		/** The fingerprint of the directory or archive at the time of the analysis. */
+		private final long fingerprint;
+
+		/** The IDs of all classes contained in the archive, including identical duplicates of other archives. */
+		private final List<Long> classIds = new ArrayList<>();
+
+		/** Constructor. */
+		private IndexedArchive(String path, long fingerprint) {
+			this.path = path;
+			this.fingerprint = fingerprint;
+		}
+	}
+
+	/** A class as stored in the index. */
+	private static class IndexedClass {
+
+		/** Fully qualified name of the class (with / as separators). */
+		private final String className;
+
+		/** Name of the java source file or null. */
+		private final String sourceFileName;
+
+		/** The offset of the class' probe table relative to the start of all probe tables. */
+		private final int probesOffset;
+
+		/** Constructor. */
+		private IndexedClass(String className, String sourceFileName, int probesOffset) {
+			this.className = className;
+			this.sourceFileName = sourceFileName;
+			this.probesOffset = probesOffset;
+		}
+	}
+}
@@ -0,0 +1,55 @@
+package eu.cqse.teamscale.report.testwise.jacoco.cache;
+
+/**
+ * Set of strings using open addressing with linear probing. It only stores one reference per element instead of an
+ * entry object as {@link java.util.HashSet} does.
+ * <p>
+ * This class is not thread-safe.
+ */
+/* package */ class StringHashSet {
+
+	/** The maximal ratio of used slots before the table is enlarged. */
+	private static final double MAX_LOAD_FACTOR = 0.6;
+
+	/** The elements. Free slots are null. */
+	private String[] elements = new String[16];
+
+	/** The number of elements. */
+	private int size = 0;
+
+	/** Returns whether the set contains the given string. */
+	/* package */ boolean contains(String element) {
+		return elements[findSlot(elements, element)] != null;
+	}
+
+	/** Adds the given string and returns whether it was not contained before. */
+	/* package */ boolean add(String element) {
+		int index = findSlot(elements, element);
+		if (elements[index] != null) {
+			return false;
+		}
+		elements[index] = element;
+		size++;
+		if (size > elements.length * MAX_LOAD_FACTOR) {
+			String[] newElements = new String[elements.length * 2];
+			for (String existing : elements) {
+				if (existing != null) {
+					newElements[findSlot(newElements, existing)] = existing;
+				}
+			}
+			elements = newElements;
+		}
+		return true;
+	}
+
+	/** Returns the slot that contains the given string or the free slot where it should be inserted. */
+	private static int findSlot(String[] elements, String element) {
+		int mask = elements.length - 1;
+		int hash = element.hashCode();
+		int index = (hash ^ (hash >>> 16)) & mask;
+		while (elements[index] != null && !elements[index].equals(element)) {
+			index = (index + 1) & mask;
+		}
+		return index;
+	}
+}
@@ -6,13 +6,17 @@ import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlTransient;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Objects;
 
 /** Holds coverage of a single file. */
 public class FileCoverage {
 
+	/** Shared empty array. */
+	private static final int[] EMPTY = new int[0];
+
 	/** The file system path of the file not including the file itself. */
 	@XmlTransient
 	public final String path;
@@ -21,8 +25,15 @@ public class FileCoverage {
 	@XmlAttribute(name = "name")
 	public final String fileName;
 
-	/** A list of line ranges that have been covered. */
-	private List<LineRange> coveredRanges = new ArrayList<>();
+	/**
+	 * The covered lines as sorted, disjoint and non-adjacent ranges, i.e. a run-length encoded line set. The i-th
+	 * range spans from coveredRanges[2*i] to coveredRanges[2*i+1] (both inclusive). Only the first
+	 * {@link #rangeCount} ranges are valid.
+	 */
+	private int[] coveredRanges = EMPTY;
+
+	/** The number of ranges in {@link #coveredRanges}. */
+	private int rangeCount = 0;
 
 	/** Constructor. */
 	public FileCoverage(String path, String file) {
@@ -32,24 +43,118 @@ public class FileCoverage {
 
 	/** Adds a line as covered. */
 	public void addLine(int line) {
-		coveredRanges.add(new LineRange(line, line));
+		addLineRange(line, line);
 	}
 
 	/** Adds a line range as covered. */
+	public void addLineRange(LineRange range) {
+		addLineRange(range.getStart(), range.getEnd());
+	}
+
+	/**
+	 * Adds a line range as covered. Overlapping and directly neighboring ranges are merged immediately, so adding the
+	 * same range multiple times does not consume additional memory.
+	 */
 	public void addLineRange(int start, int end) {
-		coveredRanges.add(new LineRange(start, end));
+		if (rangeCount == 0 || start > coveredRanges[2 * rangeCount - 1] + 1) {
+			// Fast path for ranges that are added in ascending order
+			ensureCapacity(rangeCount + 1);
+			coveredRanges[2 * rangeCount] = start;
+			coveredRanges[2 * rangeCount + 1] = end;
+			rangeCount++;
+			return;
+		}
+
+		// First range that ends at or after the line before the new range
+		int first = 0;
+		int last = rangeCount;
+		while (first < last) {
+			int middle = (first + last) >>> 1;
+			if (coveredRanges[2 * middle + 1] + 1 < start) {
+				first = middle + 1;
+			} else {
+				last = middle;
+			}
+		}
+		// Last range that starts at or before the line after the new range
+		last = first - 1;
+		while (last + 1 < rangeCount && coveredRanges[2 * (last + 1)] <= end + 1) {
+			last++;
+		}
+
+		if (last < first) {
+			// No overlap, so we need to insert a new range
+			ensureCapacity(rangeCount + 1);
+			System.arraycopy(coveredRanges, 2 * first, coveredRanges, 2 * first + 2, 2 * (rangeCount - first));
+			coveredRanges[2 * first] = start;
+			coveredRanges[2 * first + 1] = end;
+			rangeCount++;
+			return;
+		}
+
+		coveredRanges[2 * first] = Math.min(start, coveredRanges[2 * first]);
+		coveredRanges[2 * first + 1] = Math.max(end, coveredRanges[2 * last + 1]);
+		int removed = last - first;
+		if (removed > 0) {
+			System.arraycopy(coveredRanges, 2 * (last + 1), coveredRanges, 2 * (first + 1),
+					2 * (rangeCount - last - 1));
+			rangeCount -= removed;
+		}
 	}
 
-	/** Adds a line range as covered. */
-	public void addLineRange(LineRange range) {
-		coveredRanges.add(range);
+	/** Ensures that the range array can hold the given number of ranges. */
+	private void ensureCapacity(int ranges) {
+		if (2 * ranges > coveredRanges.length) {
+			coveredRanges = Arrays.copyOf(coveredRanges, Math.max(4, 2 * ranges + rangeCount));
+		}
 	}
 
-	/** Merges the list of ranges into the current list. */
+	/** Merges the list of ranges into the current list. Both range lists are sorted, so this is a linear merge. */
 	public void merge(FileCoverage other) {
 		CCSMAssert.isTrue(other.fileName.equals(fileName) && other.path.equals(path),
 				"Cannot merge coverage of two different files! This is a bug!");
-		coveredRanges.addAll(other.coveredRanges);
+		if (other.rangeCount == 0) {
+			return;
+		}
+		int[] merged = new int[2 * (rangeCount + other.rangeCount)];
+		int mergedCount = 0;
+		int i = 0;
+		int j = 0;
+		while (i < rangeCount || j < other.rangeCount) {
+			int start;
+			int end;
+			if (j >= other.rangeCount || i < rangeCount && coveredRanges[2 * i] <= other.coveredRanges[2 * j]) {
+				start = coveredRanges[2 * i];
+				end = coveredRanges[2 * i + 1];
+				i++;
+			} else {
+				start = other.coveredRanges[2 * j];
+				end = other.coveredRanges[2 * j + 1];
+				j++;
+			}
+			if (mergedCount > 0 && start <= merged[2 * mergedCount - 1] + 1) {
+				merged[2 * mergedCount - 1] = Math.max(end, merged[2 * mergedCount - 1]);
+			} else {
+				merged[2 * mergedCount] = start;
+				merged[2 * mergedCount + 1] = end;
+				mergedCount++;
+			}
+		}
+		coveredRanges = merged;
+		rangeCount = mergedCount;
+	}
+
+	/**
+	 * Returns a new {@link FileCoverage} with the covered lines of this and the given file. In contrast to
+	 * {@link #merge(FileCoverage)} this does not modify this object, so it can be used for coverage that is shared
+	 * between tests.
+	 */
+	/* package */ FileCoverage mergedWith(FileCoverage other) {
+		FileCoverage merged = new FileCoverage(path, fileName);
+		merged.coveredRanges = Arrays.copyOf(coveredRanges, 2 * rangeCount);
+		merged.rangeCount = rangeCount;
+		merged.merge(other);
+		return merged;
 	}
 
 	/**
@@ -89,11 +194,31 @@ public class FileCoverage {
 	 * Returns a compact string representation of the covered line ranges.
 	 * Overlapping and directly neighboring ranges are merged and ranges sorted by start line.
 	 * Individual ranges are separated by commas. E.g. 1-5,7,9-11.
-	 * This also updates the {@link #coveredRanges} to the compactified format.
 	 */
 	public String computeCompactifiedRangesAsString() {
-		coveredRanges = compactifyRanges(coveredRanges);
-		return coveredRanges.stream().map(LineRange::toReportString).collect(Collectors.joining(","));
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < rangeCount; i++) {
+			if (i > 0) {
+				builder.append(',');
+			}
+			int start = coveredRanges[2 * i];
+			int end = coveredRanges[2 * i + 1];
+			builder.append(start);
+			if (start != end) {
+				builder.append('-').append(end);
+			}
+		}
+		return builder.toString();
+	}
+
+	/** Returns the covered line ranges sorted by start line with overlapping and neighboring ranges merged. */
+	@XmlTransient
+	public List<LineRange> getCoveredRanges() {
+		List<LineRange> ranges = new ArrayList<>(rangeCount);
+		for (int i = 0; i < rangeCount; i++) {
+			ranges.add(new LineRange(coveredRanges[2 * i], coveredRanges[2 * i + 1]));
+		}
+		return ranges;
 	}
 
 	/** Returns a lines element used for XML serialization containing all ranges in the compactified format. */
@@ -104,7 +229,39 @@ public class FileCoverage {
 
 	/** Returns true if there is no coverage for the file yet. */
 	public boolean isEmpty() {
-		return coveredRanges.isEmpty();
+		return rangeCount == 0;
+	}
+
+	/** Two file coverages are equal if they belong to the same file and cover the same lines. */
+	@Override
+	public boolean equals(Object other) {
+		if (this == other) {
+			return true;
+		}
+		if (!(other instanceof FileCoverage)) {
+			return false;
+		}
+		FileCoverage otherCoverage = (FileCoverage) other;
+		if (rangeCount != otherCoverage.rangeCount || !Objects.equals(path, otherCoverage.path)
+				|| !Objects.equals(fileName, otherCoverage.fileName)) {
+			return false;
+		}
+		for (int i = 0; i < 2 * rangeCount; i++) {
+			if (coveredRanges[i] != otherCoverage.coveredRanges[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int hashCode() {
+		int hash = Objects.hash(path, fileName);
+		for (int i = 0; i < 2 * rangeCount; i++) {
+			hash = 31 * hash + coveredRanges[i];
+		}
+		return hash;
 	}
 
 	/** Container for the "lines" xml tag. */
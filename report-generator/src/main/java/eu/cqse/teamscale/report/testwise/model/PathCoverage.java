@@ -5,6 +5,7 @@ import javax.xml.bind.annotation.XmlElement;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
 
 /** Container for {@link FileCoverage}s of the same path. */
 public class PathCoverage {
@@ -23,12 +24,13 @@ public class PathCoverage {
 
 	/**
 	 * Adds the given {@link FileCoverage} to the container.
-	 * If coverage for the same file already exists it gets merged.
+	 * If coverage for the same file already exists it gets merged. The existing {@link FileCoverage} is replaced
+	 * rather than modified, as it may be shared with other tests.
 	 */
 	public void add(FileCoverage fileCoverage) {
-		if (fileCoverageList.containsKey(fileCoverage.fileName)) {
-			FileCoverage existingFile = fileCoverageList.get(fileCoverage.fileName);
-			existingFile.merge(fileCoverage);
+		FileCoverage existingFile = fileCoverageList.get(fileCoverage.fileName);
+		if (existingFile != null) {
+			fileCoverageList.put(fileCoverage.fileName, existingFile.mergedWith(fileCoverage));
 		} else {
 			fileCoverageList.put(fileCoverage.fileName, fileCoverage);
 		}
@@ -39,4 +41,35 @@ public class PathCoverage {
 	public Collection<FileCoverage> getFiles() {
 		return fileCoverageList.values();
 	}
+
+	/** Returns a copy of this path that shares the {@link FileCoverage}s but can be modified independently. */
+	/* package */ PathCoverage copy() {
+		PathCoverage copy = new PathCoverage(path);
+		copy.fileCoverageList.putAll(fileCoverageList);
+		return copy;
+	}
+
+	/** Replaces all {@link FileCoverage}s with equal ones from the given pool or adds them to the pool. */
+	/* package */ void internFiles(Map<FileCoverage, FileCoverage> pool) {
+		fileCoverageList.replaceAll((fileName, fileCoverage) -> pool.computeIfAbsent(fileCoverage, key -> key));
+	}
+
+	/** Two path coverages are equal if they have the same path and equal files. */
+	@Override
+	public boolean equals(Object other) {
+		if (this == other) {
+			return true;
+		}
+		if (!(other instanceof PathCoverage)) {
+			return false;
+		}
+		PathCoverage otherCoverage = (PathCoverage) other;
+		return Objects.equals(path, otherCoverage.path) && fileCoverageList.equals(otherCoverage.fileCoverageList);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int hashCode() {
+		return 31 * Objects.hashCode(path) + fileCoverageList.hashCode();
+	}
 }
@@ -2,6 +2,7 @@ package eu.cqse.teamscale.report.testwise.model;
 
 import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlTransient;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
@@ -16,19 +17,40 @@ public class TestCoverage {
 	public final String externalId;
 
 	/** Mapping from path names to all files on this path. */
-	private final Map<String, PathCoverage> pathCoverageList = new HashMap<>();
+	private Map<String, PathCoverage> pathCoverageList = new HashMap<>();
+
+	/**
+	 * Whether {@link #pathCoverageList} is shared with other tests that have identical coverage. Shared coverage is
+	 * copied before it is modified.
+	 */
+	private boolean coverageShared = false;
 
 	/** Constructor. */
 	public TestCoverage(String externalId) {
 		this.externalId = externalId;
 	}
 
+	/**
+	 * Creates a test with the same coverage as the given test. The coverage is stored only once until one of the
+	 * tests is modified.
+	 */
+	public TestCoverage(String externalId, TestCoverage sameCoverage) {
+		this.externalId = externalId;
+		shareCoverageOf(sameCoverage);
+	}
+
 	/** Adds the {@link FileCoverage} to into the map, but filters out file coverage that is null or empty. */
 	public void add(FileCoverage fileCoverage) {
 		if (fileCoverage == null || fileCoverage.isEmpty()
 				|| fileCoverage.fileName == null || fileCoverage.path == null) {
 			return;
 		}
+		if (coverageShared) {
+			Map<String, PathCoverage> copy = new HashMap<>();
+			pathCoverageList.forEach((path, pathCoverage) -> copy.put(path, pathCoverage.copy()));
+			pathCoverageList = copy;
+			coverageShared = false;
+		}
 		PathCoverage pathCoverage = pathCoverageList.computeIfAbsent(fileCoverage.path, PathCoverage::new);
 		pathCoverage.add(fileCoverage);
 	}
@@ -57,4 +79,28 @@ public class TestCoverage {
 	public boolean isEmpty() {
 		return pathCoverageList.isEmpty();
 	}
+
+	/**
+	 * Returns an object that identifies the coverage of this test if it is shared with other tests or null otherwise.
+	 * Tests with the identical key have the same coverage.
+	 */
+	@XmlTransient
+	public Object getSharedCoverageKey() {
+		if (coverageShared) {
+			return pathCoverageList;
+		}
+		return null;
+	}
+
+	/** Returns the mapping from path names to all files on this path. */
+	/* package */ Map<String, PathCoverage> getPathCoverageMap() {
+		return pathCoverageList;
+	}
+
+	/** Replaces the coverage of this test with the identical coverage of the given test and marks it as shared. */
+	/* package */ void shareCoverageOf(TestCoverage sameCoverage) {
+		sameCoverage.coverageShared = true;
+		pathCoverageList = sameCoverage.pathCoverageList;
+		coverageShared = true;
+	}
 }
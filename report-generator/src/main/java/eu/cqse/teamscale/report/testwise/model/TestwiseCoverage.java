@@ -6,13 +6,28 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
-/** Container for coverage produced by multiple tests. */
+/**
+ * Container for coverage produced by multiple tests.
+ * <p>
+ * Identical coverage is stored only once: equal {@link FileCoverage}s of different tests are replaced by the same
+ * instance and tests with identical coverage share all of it. {@link TestCoverage} copies shared coverage before it
+ * is modified, but the {@link FileCoverage}s of added tests must not be modified anymore.
+ */
 @XmlRootElement(name = "report")
 public class TestwiseCoverage {
 
 	/** A mapping from test ID to {@link TestCoverage}. */
 	private final Map<String, TestCoverage> tests = new HashMap<>();
 
+	/** Pool of all distinct {@link FileCoverage}s of the tests. */
+	private final Map<FileCoverage, FileCoverage> fileCoverages = new HashMap<>();
+
+	/**
+	 * Pool of all distinct coverages of the tests, i.e. mappings from paths to {@link PathCoverage}s, mapped to the
+	 * first test with that coverage.
+	 */
+	private final Map<Map<String, PathCoverage>, TestCoverage> testCoverages = new HashMap<>();
+
 	/**
 	 * Adds the {@link TestCoverage} to the map.
 	 * If there is already a test with the same ID the coverage is merged.
@@ -23,18 +38,45 @@ public class TestwiseCoverage {
 		}
 		if (tests.containsKey(coverage.externalId)) {
 			TestCoverage testCoverage = tests.get(coverage.externalId);
+			// The coverage is about to change, so other tests must not be given it anymore
+			testCoverages.remove(testCoverage.getPathCoverageMap(), testCoverage);
 			testCoverage.addAll(coverage.getFiles());
+			intern(testCoverage);
 		} else {
+			intern(coverage);
 			tests.put(coverage.externalId, coverage);
 		}
 	}
 
+	/**
+	 * Replaces the coverage of the given test with identical coverage of another test that is already stored, if
+	 * any. Only then both tests are marked as sharing their coverage.
+	 */
+	private void intern(TestCoverage testCoverage) {
+		Map<String, PathCoverage> pathCoverages = testCoverage.getPathCoverageMap();
+		if (testCoverage.getSharedCoverageKey() == null) {
+			// Shared coverage has already been interned by the test it was copied from or another container
+			for (PathCoverage pathCoverage : pathCoverages.values()) {
+				pathCoverage.internFiles(fileCoverages);
+			}
+		}
+		TestCoverage firstTest = testCoverages.putIfAbsent(pathCoverages, testCoverage);
+		if (firstTest != null && firstTest != testCoverage) {
+			testCoverage.shareCoverageOf(firstTest);
+		}
+	}
+
 	/** Returns a collection of all tests contained in this container. */
 	@XmlElement(name = "test")
 	public Collection<TestCoverage> getTests() {
 		return tests.values();
 	}
 
+	/** Returns true if the container does not contain coverage of any test. */
+	public boolean isEmpty() {
+		return tests.isEmpty();
+	}
+
 	/**
 	 * Merges the given {@link TestwiseCoverage} with this one.
 	 *
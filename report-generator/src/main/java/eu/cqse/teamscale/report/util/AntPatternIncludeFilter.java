@@ -40,6 +40,12 @@ public class AntPatternIncludeFilter implements Predicate<String> {
 		return !isFiltered(FileSystemUtils.normalizeSeparators(path));
 	}
 
+	/** Returns the include and exclude patterns. */
+	@Override
+	public String toString() {
+		return "includes=" + locationIncludeFilters + ";excludes=" + locationExcludeFilters;
+	}
+
 	/**
 	 * Returns <code>true</code> if the given class file location (normalized to
 	 * forward slashes as path separators) should not be analyzed.
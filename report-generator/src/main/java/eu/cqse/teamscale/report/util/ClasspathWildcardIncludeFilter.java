@@ -25,6 +25,9 @@ public class ClasspathWildcardIncludeFilter implements Predicate<String> {
 	 */
 	private WildcardMatcher locationExcludeFilters = null;
 
+	/** Textual description of the include and exclude patterns. */
+	private final String description;
+
 	/**
 	 * Constructor.
 	 *
@@ -32,6 +35,7 @@ public class ClasspathWildcardIncludeFilter implements Predicate<String> {
 	 * @param locationExcludeFilters Colon separated list of wildcard exclude patterns or null for no excludes.
 	 */
 	public ClasspathWildcardIncludeFilter(String locationIncludeFilters, String locationExcludeFilters) {
+		this.description = "includes=" + locationIncludeFilters + ";excludes=" + locationExcludeFilters;
 		if (locationIncludeFilters != null) {
 			this.locationIncludeFilters = new WildcardMatcher(locationIncludeFilters);
 		}
@@ -51,6 +55,12 @@ public class ClasspathWildcardIncludeFilter implements Predicate<String> {
 		return locationExcludeFilters == null || !locationExcludeFilters.matches(className);
 	}
 
+	/** Returns the include and exclude patterns. */
+	@Override
+	public String toString() {
+		return description;
+	}
+
 	/**
 	 * Returns the normalized class name of the given class file's path.
 	 */
@@ -4,15 +4,22 @@ import eu.cqse.teamscale.report.jacoco.dump.Dump;
 import eu.cqse.teamscale.report.util.AntPatternIncludeFilter;
 import eu.cqse.teamscale.report.util.ILogger;
 import org.conqat.lib.commons.collections.CollectionUtils;
+import org.conqat.lib.commons.filesystem.FileSystemUtils;
 import org.conqat.lib.commons.test.CCSMTestCaseBase;
 import org.jacoco.core.data.ExecutionData;
 import org.jacoco.core.data.ExecutionDataStore;
 import org.jacoco.core.data.SessionInfo;
+import org.jacoco.core.internal.data.CRC64;
+import org.jacoco.core.tools.ExecFileLoader;
 import org.junit.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.Random;
 
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.Mockito.mock;
@@ -20,6 +27,10 @@ import static org.mockito.Mockito.mock;
 /** Tests report generation with and without duplicate classes. */
 public class JaCoCoXmlReportGeneratorTest extends CCSMTestCaseBase {
 
+	/** The classes and execution data of a real application, which are shared with the testwise coverage tests. */
+	private static final File CQDDL_TEST_DATA = new File(
+			"test-data/eu.cqse.teamscale.report.testwise.jacoco/jacoco/cqddl");
+
 	/** Ensures that the normal case runs without exceptions. */
 	@Test
 	public void testNormalCaseThrowsNoException() throws Exception {
@@ -51,6 +62,120 @@ public class JaCoCoXmlReportGeneratorTest extends CCSMTestCaseBase {
 		runGenerator("different-duplicate-classes", true);
 	}
 
+	/**
+	 * Ensures that converting several dumps with the same generator, which reuses the analyzed class files, yields
+	 * the same reports as a new generator for each dump.
+	 */
+	@Test
+	public void testRepeatedConversionsMatchFreshGenerator() throws Exception {
+		File classFileFolder = useTestFile("no-duplicates");
+		long classId = CRC64.classId(FileSystemUtils.readFileBinary(new File(classFileFolder, "TestClass.class")));
+		List<Dump> dumps = Arrays.asList(createDump(classId, new boolean[]{true, true, false}), createDummyDump(),
+				createDump(classId, new boolean[]{false, true, true}));
+
+		JaCoCoXmlReportGenerator generator = createGenerator(classFileFolder, false);
+		for (Dump dump : dumps) {
+			assertEquals(createGenerator(classFileFolder, false).convert(dump), generator.convert(dump));
+		}
+	}
+
+	/** Ensures that a class file that is replaced between two conversions is analyzed again. */
+	@Test
+	public void testChangedClassFileIsAnalyzedAgain() throws Exception {
+		File classFileFolder = new File(getTmpDirectory(), "classes");
+		File classFile = new File(classFileFolder, "TestClass.class");
+		FileSystemUtils.copyFile(new File(useTestFile("different-duplicate-classes"), "a/TestClass.class"), classFile);
+		JaCoCoXmlReportGenerator generator = createGenerator(classFileFolder, false);
+		generator.convert(createDummyDump());
+
+		FileSystemUtils.copyFile(new File(useTestFile("different-duplicate-classes"), "b/TestClass.class"), classFile);
+		long classId = CRC64.classId(FileSystemUtils.readFileBinary(classFile));
+		for (Dump dump : Arrays.asList(createDummyDump(), createDump(classId, new boolean[]{true, false, true}))) {
+			assertEquals(createGenerator(classFileFolder, false).convert(dump), generator.convert(dump));
+		}
+	}
+
+	/** Ensures that the reports without the class structure cache are the same as with it. */
+	@Test
+	public void testReportsWithoutCacheMatchCachedReports() throws Exception {
+		File classFileFolder = useTestFile("no-duplicates");
+		long classId = CRC64.classId(FileSystemUtils.readFileBinary(new File(classFileFolder, "TestClass.class")));
+		AntPatternIncludeFilter includeFilter = new AntPatternIncludeFilter(CollectionUtils.emptyList(),
+				CollectionUtils.emptyList());
+		for (boolean onlyExecutedClasses : new boolean[]{false, true}) {
+			JaCoCoXmlReportGenerator cachingGenerator = new JaCoCoXmlReportGenerator(
+					Collections.singletonList(classFileFolder), includeFilter, false, onlyExecutedClasses, true,
+					mock(ILogger.class));
+			JaCoCoXmlReportGenerator generator = new JaCoCoXmlReportGenerator(
+					Collections.singletonList(classFileFolder), includeFilter, false, onlyExecutedClasses, false,
+					mock(ILogger.class));
+			for (Dump dump : Arrays.asList(createDummyDump(), createDump(classId, new boolean[]{true, true, false}))) {
+				assertEquals(cachingGenerator.convert(dump), generator.convert(dump));
+			}
+		}
+	}
+
+	/**
+	 * Ensures that the coverage computed from the cached class structure is the same as the coverage of a full
+	 * analysis, both for real execution data and for random probes of the same classes.
+	 */
+	@Test
+	public void testCachedStructureMatchesFullAnalysis() throws Exception {
+		File classesArchive = new File(CQDDL_TEST_DATA, "classes.zip");
+		ExecFileLoader loader = new ExecFileLoader();
+		loader.load(new File(CQDDL_TEST_DATA, "coverage.exec"));
+		List<Dump> dumps = new ArrayList<>();
+		dumps.add(new Dump(new SessionInfo("session-id", 124L, 125L), loader.getExecutionDataStore()));
+		Random random = new Random(42);
+		for (int i = 0; i < 3; i++) {
+			ExecutionDataStore store = new ExecutionDataStore();
+			for (ExecutionData data : loader.getExecutionDataStore().getContents()) {
+				if (random.nextInt(4) == 0) {
+					// Execution data of another version of the class
+					store.put(new ExecutionData(random.nextLong(), data.getName(), new boolean[0]));
+				} else if (random.nextInt(3) > 0) {
+					boolean[] probes = new boolean[data.getProbes().length];
+					for (int probe = 0; probe < probes.length; probe++) {
+						probes[probe] = random.nextInt(i + 2) == 0;
+					}
+					store.put(new ExecutionData(data.getId(), data.getName(), probes));
+				}
+			}
+			dumps.add(new Dump(new SessionInfo("session-id", 124L, 125L), store));
+		}
+
+		AntPatternIncludeFilter includeFilter = new AntPatternIncludeFilter(CollectionUtils.emptyList(),
+				CollectionUtils.emptyList());
+		JaCoCoXmlReportGenerator cachingGenerator = new JaCoCoXmlReportGenerator(
+				Collections.singletonList(classesArchive), includeFilter, true, false, true, mock(ILogger.class));
+		JaCoCoXmlReportGenerator generator = new JaCoCoXmlReportGenerator(Collections.singletonList(classesArchive),
+				includeFilter, true, false, false, mock(ILogger.class));
+		for (Dump dump : dumps) {
+			assertEquals(generator.convert(dump), cachingGenerator.convert(dump));
+		}
+	}
+
+	/** Ensures that only classes with execution data are reported if requested. */
+	@Test
+	public void testOnlyExecutedClasses() throws Exception {
+		File classFileFolder = useTestFile("no-duplicates");
+		long classId = CRC64.classId(FileSystemUtils.readFileBinary(new File(classFileFolder, "TestClass.class")));
+		JaCoCoXmlReportGenerator generator = new JaCoCoXmlReportGenerator(Collections.singletonList(classFileFolder),
+				new AntPatternIncludeFilter(CollectionUtils.emptyList(), CollectionUtils.emptyList()), false, true,
+				mock(ILogger.class));
+
+		assertFalse(generator.convert(createDummyDump()).contains("TestClass"));
+		assertTrue(generator.convert(createDump(classId, new boolean[]{true, false, false})).contains("TestClass"));
+	}
+
+	/** Creates a dump with the given probes for the class with the given ID. */
+	private static Dump createDump(long classId, boolean[] probes) {
+		ExecutionDataStore store = new ExecutionDataStore();
+		store.put(new ExecutionData(classId, "TestClass", probes));
+		SessionInfo info = new SessionInfo("session-id", 124L, 125L);
+		return new Dump(info, store);
+	}
+
 	/** Creates a dummy dump. */
 	private static Dump createDummyDump() {
 		ExecutionDataStore store = new ExecutionDataStore();
@@ -61,11 +186,15 @@ public class JaCoCoXmlReportGeneratorTest extends CCSMTestCaseBase {
 
 	/** Runs the report generator. */
 	private void runGenerator(String testDataFolder, boolean shouldIgnoreDuplicates) throws IOException {
-		File classFileFolder = useTestFile(testDataFolder);
+		createGenerator(useTestFile(testDataFolder), shouldIgnoreDuplicates).convert(createDummyDump());
+	}
+
+	/** Creates a report generator for the given class file folder. */
+	private static JaCoCoXmlReportGenerator createGenerator(File classFileFolder, boolean shouldIgnoreDuplicates) {
 		AntPatternIncludeFilter includeFilter = new AntPatternIncludeFilter(CollectionUtils.emptyList(),
 				CollectionUtils.emptyList());
-		new JaCoCoXmlReportGenerator(Collections.singletonList(classFileFolder), includeFilter, shouldIgnoreDuplicates,
-				mock(ILogger.class)).convert(createDummyDump());
+		return new JaCoCoXmlReportGenerator(Collections.singletonList(classFileFolder), includeFilter,
+				shouldIgnoreDuplicates, mock(ILogger.class));
 	}
 
 }
@@ -0,0 +1,156 @@
+package eu.cqse.teamscale.report.testwise.binary;
+
+import eu.cqse.teamscale.report.testwise.jacoco.TestwiseXmlReportReader;
+import eu.cqse.teamscale.report.testwise.jacoco.TestwiseXmlReportWriter;
+import eu.cqse.teamscale.report.testwise.model.TestCoverage;
+import eu.cqse.teamscale.report.testwise.model.TestwiseCoverage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compares the size as well as the write and read throughput of XML, gzip compressed XML and the binary testwise
+ * coverage format with and without compression. The tests of the cqddl test data are replicated to
+ * {@link #TEST_COUNT} tests with distinct IDs. The binary format is measured once more with the tests added to a
+ * {@link TestwiseCoverage}, so that tests with identical coverage only reference each other.
+ * <p>
+ * This is not a unit test. Run the main method from the report-generator directory or pass the path of a testwise
+ * coverage XML report as the first argument.
+ */
+public class TestwiseBinaryReportBenchmark {
+
+	/** The default report relative to the report-generator directory. */
+	private static final String DEFAULT_REPORT = "test-data/eu.cqse.teamscale.report.testwise.jacoco/jacoco/cqddl/"
+			+ "expected.xml";
+
+	/** The number of tests in the benchmark report. */
+	private static final int TEST_COUNT = 20_000;
+
+	/** The number of measured runs per format. The best run is reported. */
+	private static final int RUNS = 5;
+
+	/** Runs the benchmark. */
+	public static void main(String[] args) throws Exception {
+		File report = new File(args.length > 0 ? args[0] : DEFAULT_REPORT);
+		List<TestCoverage> testCoverages = createTests(report);
+		TestwiseCoverage testwiseCoverage = new TestwiseCoverage();
+		createTests(report).forEach(testwiseCoverage::add);
+		List<TestCoverage> sharedTestCoverages = new ArrayList<>(testwiseCoverage.getTests());
+		for (int round = 0; round < 2; round++) {
+			// The first round only warms up the JIT
+			boolean print = round == 1;
+			measure("XML", testCoverages, Format.XML, print);
+			measure("XML gzip", testCoverages, Format.XML_GZIP, print);
+			measure("Binary", testCoverages, Format.BINARY, print);
+			measure("Binary deflate", testCoverages, Format.BINARY_DEFLATE, print);
+			measure("Binary shared", sharedTestCoverages, Format.BINARY, print);
+		}
+	}
+
+	/** The measured formats. */
+	private enum Format {
+		XML, XML_GZIP, BINARY, BINARY_DEFLATE
+	}
+
+	/** Writes and reads the tests in the given format and prints the size and the best times. */
+	private static void measure(String name, List<TestCoverage> testCoverages, Format format,
+								boolean print) throws IOException {
+		long bestWrite = Long.MAX_VALUE;
+		long bestRead = Long.MAX_VALUE;
+		byte[] report = null;
+		for (int run = 0; run < RUNS; run++) {
+			long start = System.nanoTime();
+			report = write(testCoverages, format);
+			bestWrite = Math.min(bestWrite, System.nanoTime() - start);
+
+			start = System.nanoTime();
+			int count = read(report, format);
+			bestRead = Math.min(bestRead, System.nanoTime() - start);
+			if (count != testCoverages.size()) {
+				throw new AssertionError("Read " + count + " instead of " + testCoverages.size() + " tests");
+			}
+		}
+		if (print) {
+			System.out.printf("%-15s %12d bytes  write %6d ms  read %6d ms%n", name, report.length,
+					bestWrite / 1_000_000, bestRead / 1_000_000);
+		}
+	}
+
+	/** Writes the tests in the given format. */
+	private static byte[] write(List<TestCoverage> testCoverages, Format format) throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		switch (format) {
+			case XML:
+			case XML_GZIP:
+				GZIPOutputStream gzipOutput = format == Format.XML_GZIP ? new GZIPOutputStream(output) : null;
+				TestwiseXmlReportWriter xmlWriter = new TestwiseXmlReportWriter(
+						gzipOutput != null ? gzipOutput : output);
+				for (TestCoverage testCoverage : testCoverages) {
+					xmlWriter.writeTestCoverage(testCoverage);
+				}
+				xmlWriter.finish();
+				if (gzipOutput != null) {
+					gzipOutput.finish();
+				}
+				break;
+			default:
+				TestwiseBinaryReportWriter binaryWriter = new TestwiseBinaryReportWriter(output,
+						format == Format.BINARY_DEFLATE);
+				for (TestCoverage testCoverage : testCoverages) {
+					binaryWriter.writeTestCoverage(testCoverage);
+				}
+				binaryWriter.finish();
+		}
+		return output.toByteArray();
+	}
+
+	/** Reads the given report and returns the number of tests. */
+	private static int read(byte[] report, Format format) throws IOException {
+		InputStream input = new ByteArrayInputStream(report);
+		int count = 0;
+		switch (format) {
+			case XML:
+			case XML_GZIP:
+				TestwiseXmlReportReader xmlReader = new TestwiseXmlReportReader(
+						format == Format.XML_GZIP ? new GZIPInputStream(input) : input);
+				while (xmlReader.readTestCoverage() != null) {
+					count++;
+				}
+				break;
+			default:
+				TestwiseBinaryReportReader binaryReader = new TestwiseBinaryReportReader(input);
+				while (binaryReader.readTestCoverage() != null) {
+					count++;
+				}
+		}
+		return count;
+	}
+
+	/** Replicates the tests of the given report with distinct IDs. */
+	private static List<TestCoverage> createTests(File report) throws IOException {
+		List<TestCoverage> original = new ArrayList<>();
+		try (InputStream input = new FileInputStream(report)) {
+			TestwiseXmlReportReader reader = new TestwiseXmlReportReader(input);
+			TestCoverage testCoverage;
+			while ((testCoverage = reader.readTestCoverage()) != null) {
+				original.add(testCoverage);
+			}
+		}
+		List<TestCoverage> testCoverages = new ArrayList<>(TEST_COUNT);
+		for (int i = 0; i < TEST_COUNT; i++) {
+			TestCoverage template = original.get(i % original.size());
+			TestCoverage testCoverage = new TestCoverage(template.externalId + "#" + i);
+			testCoverage.addAll(template.getFiles());
+			testCoverages.add(testCoverage);
+		}
+		return testCoverages;
+	}
+}
@@ -0,0 +1,155 @@
+package eu.cqse.teamscale.report.testwise.binary;
+
+import eu.cqse.teamscale.report.testwise.jacoco.TestwiseXmlReportUtils;
+import eu.cqse.teamscale.report.testwise.model.FileCoverage;
+import eu.cqse.teamscale.report.testwise.model.TestCoverage;
+import eu.cqse.teamscale.report.testwise.model.TestwiseCoverage;
+import org.conqat.lib.commons.filesystem.FileSystemUtils;
+import org.conqat.lib.commons.test.CCSMTestCaseBase;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/** Tests the binary testwise coverage format and its conversion from and to XML. */
+public class TestwiseBinaryReportUtilsTest extends CCSMTestCaseBase {
+
+	/** The expected report of the testwise XML report generator test. */
+	private static final File GENERATED_REPORT = new File(
+			"test-data/eu.cqse.teamscale.report.testwise.jacoco/jacoco/cqddl/expected.xml");
+
+	/** Tests that a real world report survives the conversion to binary and back unchanged. */
+	@Test
+	public void testLosslessConversionOfGeneratedReport() throws Exception {
+		String expected = FileSystemUtils.readFileUTF8(GENERATED_REPORT);
+		byte[] xml = expected.getBytes(StandardCharsets.UTF_8);
+
+		for (boolean compress : new boolean[]{false, true}) {
+			byte[] binary = toBinary(xml, compress);
+			assertTrue(binary.length < xml.length);
+			assertEquals(expected, toXml(binary));
+		}
+	}
+
+	/** Tests special and non-ASCII characters, shared paths and files and a test without coverage. */
+	@Test
+	public void testLosslessConversionOfSpecialCases() throws Exception {
+		TestwiseCoverage testwiseCoverage = new TestwiseCoverage();
+		for (int i = 0; i < 3; i++) {
+			TestCoverage testCoverage = new TestCoverage("[engine:junit]/[test:a<b> & \"c\" äöü€ " + i + "]");
+			FileCoverage fileCoverage = new FileCoverage("src/<main>&\"x\"", "Füß \"1\" & <2>.java");
+			fileCoverage.addLineRange(3, 7);
+			fileCoverage.addLine(9 + i);
+			fileCoverage.addLineRange(1000, 100_000);
+			testCoverage.add(fileCoverage);
+			FileCoverage otherFileCoverage = new FileCoverage("src/main", "Other.java");
+			otherFileCoverage.addLine(1);
+			testCoverage.add(otherFileCoverage);
+			testwiseCoverage.add(testCoverage);
+		}
+		String expected = TestwiseXmlReportUtils.getReportAsString(testwiseCoverage);
+		assertEquals(expected, toXml(toBinary(expected.getBytes(StandardCharsets.UTF_8), false)));
+
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		TestwiseBinaryReportUtils.writeReportToStream(output, testwiseCoverage, true);
+		TestwiseCoverage readCoverage = TestwiseBinaryReportUtils.readReport(
+				new ByteArrayInputStream(output.toByteArray()));
+		assertEquals(expected, TestwiseXmlReportUtils.getReportAsString(readCoverage));
+
+		String emptyTest = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n<report>\n" +
+				"    <test externalId=\"empty\"/>\n</report>\n";
+		assertEquals(emptyTest, toXml(toBinary(emptyTest.getBytes(StandardCharsets.UTF_8), true)));
+	}
+
+	/** Tests that tests with identical coverage are written only once and read back as shared coverage. */
+	@Test
+	public void testSharedCoverage() throws Exception {
+		TestwiseCoverage testwiseCoverage = new TestwiseCoverage();
+		for (int i = 0; i < 10; i++) {
+			TestCoverage testCoverage = new TestCoverage("test" + i);
+			FileCoverage fileCoverage = new FileCoverage("src/main", "A.java");
+			fileCoverage.addLineRange(1, 10 + i % 2);
+			testCoverage.add(fileCoverage);
+			testwiseCoverage.add(testCoverage);
+		}
+		String expected = TestwiseXmlReportUtils.getReportAsString(testwiseCoverage);
+
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		TestwiseBinaryReportUtils.writeReportToStream(output, testwiseCoverage, false);
+		byte[] binary = output.toByteArray();
+		assertEquals(expected, toXml(binary));
+
+		byte[] binaryWithoutSharing = toBinary(expected.getBytes(StandardCharsets.UTF_8), false);
+		assertTrue(binary.length < binaryWithoutSharing.length);
+		assertEquals(expected, toXml(binaryWithoutSharing));
+	}
+
+	/**
+	 * Tests that a container with distinct tests writes all of them as plain tests and that tests are only written
+	 * as shared tests once another test with the same coverage is added.
+	 */
+	@Test
+	public void testDistinctCoverageIsNotShared() throws Exception {
+		TestwiseCoverage testwiseCoverage = new TestwiseCoverage();
+		for (int i = 0; i < 3; i++) {
+			testwiseCoverage.add(createTestCoverage("test" + i, 10 + i));
+		}
+		for (TestCoverage testCoverage : testwiseCoverage.getTests()) {
+			assertEquals(TestwiseBinaryReportWriter.TEST, getMarker(testCoverage));
+		}
+
+		testwiseCoverage.add(createTestCoverage("test3", 10));
+		for (TestCoverage testCoverage : testwiseCoverage.getTests()) {
+			boolean isShared = testCoverage.externalId.equals("test0") || testCoverage.externalId.equals("test3");
+			assertEquals(isShared ? TestwiseBinaryReportWriter.SHARED_TEST : TestwiseBinaryReportWriter.TEST,
+					getMarker(testCoverage));
+		}
+	}
+
+	/** Tests that other files are rejected. */
+	@Test
+	public void testInvalidHeader() {
+		try {
+			TestwiseBinaryReportUtils.readReport(new ByteArrayInputStream("<?xml".getBytes(StandardCharsets.UTF_8)));
+			fail("Expected an IOException");
+		} catch (IOException e) {
+			// Expected
+		}
+	}
+
+	/** Creates a test that covers the lines from 1 to the given line in A.java. */
+	private static TestCoverage createTestCoverage(String externalId, int lastLine) {
+		TestCoverage testCoverage = new TestCoverage(externalId);
+		FileCoverage fileCoverage = new FileCoverage("src/main", "A.java");
+		fileCoverage.addLineRange(1, lastLine);
+		testCoverage.add(fileCoverage);
+		return testCoverage;
+	}
+
+	/** Returns the marker with which the given test is written to an uncompressed report. */
+	private static int getMarker(TestCoverage testCoverage) throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		TestwiseBinaryReportWriter writer = new TestwiseBinaryReportWriter(output, false);
+		writer.writeTestCoverage(testCoverage);
+		writer.finish();
+		// The marker follows the magic bytes, the version and the flags
+		return output.toByteArray()[TestwiseBinaryReportWriter.MAGIC.length + 2];
+	}
+
+	/** Converts the given XML report to a binary report. */
+	private static byte[] toBinary(byte[] xml, boolean compress) throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		TestwiseBinaryReportUtils.convertXmlToBinary(new ByteArrayInputStream(xml), output, compress);
+		return output.toByteArray();
+	}
+
+	/** Converts the given binary report to an XML report. */
+	private static String toXml(byte[] binary) throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		TestwiseBinaryReportUtils.convertBinaryToXml(new ByteArrayInputStream(binary), output);
+		return output.toString(FileSystemUtils.UTF8_ENCODING);
+	}
+}
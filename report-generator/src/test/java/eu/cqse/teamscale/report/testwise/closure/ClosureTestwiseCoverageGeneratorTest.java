@@ -30,13 +30,26 @@ public class ClosureTestwiseCoverageGeneratorTest extends CCSMTestCaseBase {
 		assertEquals(expected, actual);
 	}
 
+	/** Tests that parsing the JSON reports in parallel produces the same result as parsing them sequentially. */
+	@Test
+	public void testParallelReportGeneration() throws IOException {
+		String expected = runGenerator("closure", 1);
+		assertTrue(expected.contains("<test "));
+		assertEquals(expected, runGenerator("closure", 4));
+	}
+
 	/** Runs the report generator. */
 	private String runGenerator(String closureCoverageFolder) throws IOException {
+		return runGenerator(closureCoverageFolder, 1);
+	}
+
+	/** Runs the report generator with the given number of threads. */
+	private String runGenerator(String closureCoverageFolder, int parallelism) throws IOException {
 		File coverageFolder = useTestFile(closureCoverageFolder);
 		AntPatternIncludeFilter includeFilter = new AntPatternIncludeFilter(CollectionUtils.emptyList(),
 				Arrays.asList("**/google-closure-library/**", "**.soy.generated.js", "soyutils_usegoog.js"));
 		TestwiseCoverage testwiseCoverage = new ClosureTestwiseCoverageGenerator(
-				Collections.singletonList(coverageFolder), includeFilter)
+				Collections.singletonList(coverageFolder), includeFilter, parallelism)
 				.readTestCoverage();
 		return getReportAsString(testwiseCoverage);
 	}
@@ -0,0 +1,82 @@
+package eu.cqse.teamscale.report.testwise.jacoco;
+
+import eu.cqse.teamscale.report.jacoco.dump.Dump;
+import eu.cqse.teamscale.report.util.AntPatternIncludeFilter;
+import eu.cqse.teamscale.report.util.ILogger;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.SessionInfo;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.conqat.lib.commons.collections.CollectionUtils.emptyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Compares the sequential and the parallel conversion of dumps to testwise coverage. The sessions of the cqddl test
+ * data are replicated to {@link #SESSION_COUNT} sessions with distinct test IDs.
+ * <p>
+ * This is not a unit test. Run the main method from the report-generator directory with a fixed heap size, e.g.
+ * -Xmx2g, to get stable numbers.
+ */
+public class ParallelConversionBenchmark {
+
+	/** The directory with the test data. */
+	private static final File TEST_DATA = new File("test-data/eu.cqse.teamscale.report.testwise.jacoco/jacoco/cqddl");
+
+	/** The number of sessions to convert. */
+	private static final int SESSION_COUNT = 20_000;
+
+	/** The number of measured runs per mode. */
+	private static final int RUNS = 5;
+
+	/** Runs the benchmark. */
+	public static void main(String[] args) throws Exception {
+		List<Dump> dumps = createDumps();
+		AntPatternIncludeFilter includeFilter = new AntPatternIncludeFilter(emptyList(), emptyList());
+		// A regular mock would record every debug message of the conversion and run out of memory
+		CachingExecutionDataReader reader = new CachingExecutionDataReader(
+				mock(ILogger.class, withSettings().stubOnly()));
+		reader.analyzeClassDirs(Collections.singletonList(new File(TEST_DATA, "classes.zip")), includeFilter, true,
+				null, 1);
+
+		int processors = Runtime.getRuntime().availableProcessors();
+		String sequentialReport = TestwiseXmlReportUtils.getReportAsString(reader.buildCoverage(dumps, 1));
+		String parallelReport = TestwiseXmlReportUtils.getReportAsString(reader.buildCoverage(dumps, processors));
+		if (!sequentialReport.equals(parallelReport)) {
+			throw new AssertionError("Parallel conversion produced a different report!");
+		}
+
+		for (int parallelism : new int[]{1, 2, 4, processors}) {
+			long best = Long.MAX_VALUE;
+			for (int run = 0; run < RUNS; run++) {
+				long start = System.nanoTime();
+				reader.buildCoverage(dumps, parallelism);
+				best = Math.min(best, System.nanoTime() - start);
+			}
+			System.out.printf("Parallelism %2d: %6d ms for %d sessions%n", parallelism, best / 1_000_000,
+					dumps.size());
+		}
+	}
+
+	/** Replicates the sessions of the test data with distinct test IDs. */
+	private static List<Dump> createDumps() throws Exception {
+		List<Dump> original = TestwiseXmlReportGeneratorTest.readDumps(new File(TEST_DATA, "coverage.exec"));
+		List<Dump> dumps = new ArrayList<>(SESSION_COUNT);
+		for (int i = 0; i < SESSION_COUNT; i++) {
+			Dump dump = original.get(i % original.size());
+			SessionInfo info = new SessionInfo(dump.info.getId() + "#" + i, dump.info.getStartTimeStamp(),
+					dump.info.getDumpTimeStamp());
+			ExecutionDataStore store = new ExecutionDataStore();
+			for (ExecutionData data : dump.store.getContents()) {
+				store.put(new ExecutionData(data.getId(), data.getName(), data.getProbes().clone()));
+			}
+			dumps.add(new Dump(info, store));
+		}
+		return dumps;
+	}
+}
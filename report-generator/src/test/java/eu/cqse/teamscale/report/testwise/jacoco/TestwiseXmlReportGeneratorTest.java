@@ -1,13 +1,26 @@
 package eu.cqse.teamscale.report.testwise.jacoco;
 
+import eu.cqse.teamscale.report.jacoco.dump.Dump;
 import eu.cqse.teamscale.report.util.AntPatternIncludeFilter;
 import eu.cqse.teamscale.report.util.ILogger;
 import org.conqat.lib.commons.filesystem.FileSystemUtils;
 import org.conqat.lib.commons.test.CCSMTestCaseBase;
+import org.jacoco.core.data.ExecutionDataReader;
+import org.jacoco.core.data.ExecutionDataStore;
 import org.junit.Test;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 import static org.conqat.lib.commons.collections.CollectionUtils.emptyList;
 import static org.mockito.Mockito.mock;
@@ -23,12 +36,117 @@ public class TestwiseXmlReportGeneratorTest extends CCSMTestCaseBase {
 		assertEquals(expected, report);
 	}
 
+	/**
+	 * Tests that the report is the same when the analysis results are written to and restored from a probes index
+	 * file.
+	 */
+	@Test
+	public void testTestwiseReportGenerationWithProbesIndex() throws Exception {
+		File probesIndexFile = new File(getTmpDirectory(), "probes.idx");
+		String expected = FileSystemUtils.readFileUTF8(useTestFile("jacoco/cqddl/expected.xml"));
+
+		assertEquals(expected, runGenerator("jacoco/cqddl/classes.zip", "jacoco/cqddl/coverage.exec", probesIndexFile, 1));
+		assertTrue(probesIndexFile.exists());
+		assertEquals(expected, runGenerator("jacoco/cqddl/classes.zip", "jacoco/cqddl/coverage.exec", probesIndexFile, 1));
+	}
+
+	/**
+	 * Tests that the probes index is rewritten and still yields the same report if a class directory has been removed
+	 * from the configuration since the index was written.
+	 */
+	@Test
+	public void testProbesIndexWithRemovedClassDirectory() throws Exception {
+		File probesIndexFile = new File(getTmpDirectory(), "probes-removed.idx");
+		File classFileFolder = useTestFile("jacoco/cqddl/classes.zip");
+		File removedFolder = new File(getTmpDirectory(), "removed-classes");
+		FileSystemUtils.ensureDirectoryExists(removedFolder);
+		AntPatternIncludeFilter includeFilter = new AntPatternIncludeFilter(emptyList(), emptyList());
+		String expected = FileSystemUtils.readFileUTF8(useTestFile("jacoco/cqddl/expected.xml"));
+
+		new TestwiseXmlReportGenerator(Arrays.asList(classFileFolder, removedFolder), includeFilter, true,
+				probesIndexFile, 1, mock(ILogger.class)).convertToString(useTestFile("jacoco/cqddl/coverage.exec"));
+		long writtenIndexSize = probesIndexFile.length();
+
+		for (int run = 0; run < 2; run++) {
+			assertEquals(expected, new TestwiseXmlReportGenerator(Collections.singletonList(classFileFolder),
+					includeFilter, true, probesIndexFile, 1, mock(ILogger.class))
+					.convertToString(useTestFile("jacoco/cqddl/coverage.exec")));
+		}
+		assertTrue(probesIndexFile.length() < writtenIndexSize);
+	}
+
+	/** Tests that the parallel analysis of the class files leads to the same report. */
+	@Test
+	public void testTestwiseReportGenerationWithParallelAnalysis() throws Exception {
+		String report = runGenerator("jacoco/cqddl/classes.zip", "jacoco/cqddl/coverage.exec", null, 4);
+		String expected = FileSystemUtils.readFileUTF8(useTestFile("jacoco/cqddl/expected.xml"));
+		assertEquals(expected, report);
+	}
+
+	/**
+	 * Tests that the streamed report contains the same tests as the report built in memory. Only the order of the
+	 * tests may differ.
+	 */
+	@Test
+	public void testStreamingTestwiseReportGeneration() throws Exception {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		createGenerator("jacoco/cqddl/classes.zip").convert(useTestFile("jacoco/cqddl/coverage.exec"), output);
+		String report = output.toString(FileSystemUtils.UTF8_ENCODING);
+		String expected = FileSystemUtils.readFileUTF8(useTestFile("jacoco/cqddl/expected.xml"));
+
+		assertEquals(expected.length(), report.length());
+		assertEquals(splitIntoTests(expected), splitIntoTests(report));
+	}
+
+	/** Tests that the parallel conversion of dumps leads to the same report as the sequential one. */
+	@Test
+	public void testParallelDumpConversion() throws Exception {
+		List<Dump> dumps = readDumps(useTestFile("jacoco/cqddl/coverage.exec"));
+		File classFileFolder = useTestFile("jacoco/cqddl/classes.zip");
+		AntPatternIncludeFilter includeFilter = new AntPatternIncludeFilter(emptyList(), emptyList());
+		String expected = FileSystemUtils.readFileUTF8(useTestFile("jacoco/cqddl/expected.xml"));
+
+		assertEquals(expected, new TestwiseXmlReportGenerator(Collections.singletonList(classFileFolder),
+				includeFilter, true, null, 1, mock(ILogger.class)).convertToString(dumps));
+		assertEquals(expected, new TestwiseXmlReportGenerator(Collections.singletonList(classFileFolder),
+				includeFilter, true, null, 4, mock(ILogger.class)).convertToString(dumps));
+	}
+
+	/** Reads all sessions of the given *.exec file as dumps. */
+	/* package */ static List<Dump> readDumps(File executionDataFile) throws IOException {
+		List<Dump> dumps = new ArrayList<>();
+		try (InputStream input = new BufferedInputStream(new FileInputStream(executionDataFile))) {
+			ExecutionDataReader reader = new ExecutionDataReader(input);
+			reader.setSessionInfoVisitor(info -> dumps.add(new Dump(info, new ExecutionDataStore())));
+			reader.setExecutionDataVisitor(data -> dumps.get(dumps.size() - 1).store.put(data));
+			reader.read();
+		}
+		return dumps;
+	}
+
+	/** Returns the set of test elements of the given report. */
+	private static Set<String> splitIntoTests(String report) {
+		return new HashSet<>(Arrays.asList(report.split("(?=    <test|</report>)")));
+	}
+
 	/** Runs the report generator. */
 	private String runGenerator(String testDataFolder, String execFileName) throws Exception {
+		return runGenerator(testDataFolder, execFileName, null, 1);
+	}
+
+	/** Runs the report generator with the given probes index file and analysis parallelism. */
+	private String runGenerator(String testDataFolder, String execFileName, File probesIndexFile, int parallelism) throws Exception {
 		File classFileFolder = useTestFile(testDataFolder);
 		AntPatternIncludeFilter includeFilter = new AntPatternIncludeFilter(emptyList(), emptyList());
 		return new TestwiseXmlReportGenerator(Collections.singletonList(classFileFolder), includeFilter, true,
-				mock(ILogger.class))
+				probesIndexFile, parallelism, mock(ILogger.class))
 				.convertToString(useTestFile(execFileName));
 	}
+
+	/** Creates a report generator for the given class files. */
+	private TestwiseXmlReportGenerator createGenerator(String testDataFolder) throws Exception {
+		AntPatternIncludeFilter includeFilter = new AntPatternIncludeFilter(emptyList(), emptyList());
+		return new TestwiseXmlReportGenerator(Collections.singletonList(useTestFile(testDataFolder)), includeFilter,
+				true, mock(ILogger.class));
+	}
 }
\ No newline at end of file
@@ -0,0 +1,81 @@
+package eu.cqse.teamscale.report.testwise.jacoco;
+
+import eu.cqse.teamscale.report.testwise.model.FileCoverage;
+import eu.cqse.teamscale.report.testwise.model.TestCoverage;
+import eu.cqse.teamscale.report.testwise.model.TestwiseCoverage;
+import eu.cqse.teamscale.report.util.AntPatternIncludeFilter;
+import eu.cqse.teamscale.report.util.ILogger;
+import org.conqat.lib.commons.filesystem.FileSystemUtils;
+import org.conqat.lib.commons.test.CCSMTestCaseBase;
+import org.junit.Test;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.Marshaller;
+import java.io.ByteArrayOutputStream;
+import java.util.Collections;
+
+import static org.conqat.lib.commons.collections.CollectionUtils.emptyList;
+import static org.mockito.Mockito.mock;
+
+/** Tests that the {@link TestwiseXmlReportWriter} produces the same output as the JAXB marshalling of the model. */
+public class TestwiseXmlReportWriterTest extends CCSMTestCaseBase {
+
+	/** Tests a real world report. */
+	@Test
+	public void testCompatibilityForGeneratedReport() throws Exception {
+		AntPatternIncludeFilter includeFilter = new AntPatternIncludeFilter(emptyList(), emptyList());
+		TestwiseCoverage testwiseCoverage = new TestwiseXmlReportGenerator(
+				Collections.singletonList(useTestFile("jacoco/cqddl/classes.zip")), includeFilter, true,
+				mock(ILogger.class)).convert(useTestFile("jacoco/cqddl/coverage.exec"));
+
+		String expected = FileSystemUtils.readFileUTF8(useTestFile("jacoco/cqddl/expected.xml"));
+		assertEquals(expected, marshalWithJaxb(testwiseCoverage));
+		assertEquals(expected, TestwiseXmlReportUtils.getReportAsString(testwiseCoverage));
+	}
+
+	/** Tests the escaping of special and non-ASCII characters in test IDs, paths and file names. */
+	@Test
+	public void testCompatibilityForSpecialCharacters() throws Exception {
+		TestwiseCoverage testwiseCoverage = new TestwiseCoverage();
+		TestCoverage testCoverage = new TestCoverage("[engine:junit]/[test:a<b> & \"c\" 'd' äöü€]");
+		FileCoverage fileCoverage = new FileCoverage("src/<main>&\"x\"", "Füß \"1\" & <2>.java");
+		fileCoverage.addLineRange(3, 7);
+		fileCoverage.addLine(9);
+		testCoverage.add(fileCoverage);
+		testwiseCoverage.add(testCoverage);
+
+		assertEquals(marshalWithJaxb(testwiseCoverage), TestwiseXmlReportUtils.getReportAsString(testwiseCoverage));
+	}
+
+	/** Tests the escaping of tabs and line breaks, which must survive the attribute value normalization. */
+	@Test
+	public void testCompatibilityForWhitespace() throws Exception {
+		TestwiseCoverage testwiseCoverage = new TestwiseCoverage();
+		TestCoverage testCoverage = new TestCoverage("[engine:junit]/[test:a\tb\nc\rd\r\ne]");
+		FileCoverage fileCoverage = new FileCoverage("src/\tmain\n", "File\r\n1.java");
+		fileCoverage.addLineRange(3, 7);
+		testCoverage.add(fileCoverage);
+		testwiseCoverage.add(testCoverage);
+
+		String report = TestwiseXmlReportUtils.getReportAsString(testwiseCoverage);
+		assertTrue(report.contains("externalId=\"[engine:junit]/[test:a&#9;b&#10;c&#13;d&#13;&#10;e]\""));
+		// JAXB writes tabs unescaped, which would turn them into spaces when the report is parsed
+		assertEquals(marshalWithJaxb(testwiseCoverage).replace("\t", "&#9;"), report);
+	}
+
+	/** Tests a report without any test. */
+	@Test
+	public void testCompatibilityForEmptyReport() throws Exception {
+		TestwiseCoverage testwiseCoverage = new TestwiseCoverage();
+		assertEquals(marshalWithJaxb(testwiseCoverage), TestwiseXmlReportUtils.getReportAsString(testwiseCoverage));
+	}
+
+	/** Marshals the report with JAXB as it was done before the introduction of the {@link TestwiseXmlReportWriter}. */
+	private static String marshalWithJaxb(TestwiseCoverage testwiseCoverage) throws Exception {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		Marshaller marshaller = JAXBContext.newInstance(TestwiseCoverage.class).createMarshaller();
+		marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
+		marshaller.marshal(testwiseCoverage, output);
+		return output.toString(FileSystemUtils.UTF8_ENCODING);
+	}
+}
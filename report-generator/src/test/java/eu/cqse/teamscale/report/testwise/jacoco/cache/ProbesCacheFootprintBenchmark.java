@@ -0,0 +1,116 @@
+package eu.cqse.teamscale.report.testwise.jacoco.cache;
+
+import eu.cqse.teamscale.report.testwise.model.LineRange;
+import eu.cqse.teamscale.report.util.ILogger;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Compares the heap footprint of the {@link ProbesCache} with the previous layout, which used a
+ * {@link HashMap} with boxed class IDs, a {@link HashSet} of class names and a list with one {@link LineRange}
+ * reference per probe.
+ * <p>
+ * This is not a unit test. Run the main method with a fixed heap size, e.g. -Xmx2g, to get stable numbers.
+ */
+public class ProbesCacheFootprintBenchmark {
+
+	/** The number of synthetic classes. */
+	private static final int CLASS_COUNT = 60_000;
+
+	/** The number of methods per synthetic class. */
+	private static final int METHODS_PER_CLASS = 12;
+
+	/** The number of probes per synthetic method. */
+	private static final int PROBES_PER_METHOD = 4;
+
+	/** Runs the benchmark. */
+	public static void main(String[] args) {
+		long baseline = usedHeap();
+		Object legacy = buildLegacyLayout();
+		long legacyBytes = usedHeap() - baseline;
+		System.out.println("Previous layout:  " + legacyBytes / 1024 + " KB for " + CLASS_COUNT + " classes");
+		legacy.hashCode();
+		legacy = null;
+
+		baseline = usedHeap();
+		ProbesCache probesCache = buildProbesCache();
+		long compactBytes = usedHeap() - baseline;
+		System.out.println("ProbesCache:      " + compactBytes / 1024 + " KB for " + CLASS_COUNT + " classes");
+		System.out.printf("Ratio:            %.2f%n", (double) compactBytes / legacyBytes);
+		probesCache.hashCode();
+	}
+
+	/** Fills a {@link ProbesCache} with the synthetic classes. */
+	private static ProbesCache buildProbesCache() {
+		ProbesCache probesCache = new ProbesCache(mock(ILogger.class, withSettings().stubOnly()), true);
+		Random random = new Random(0);
+		for (int i = 0; i < CLASS_COUNT; i++) {
+			ClassCoverageLookup classCoverageLookup = probesCache.createClass(random.nextLong(), getClassName(i));
+			classCoverageLookup.setSourceFileName(getSourceFileName(i));
+			int probeId = 0;
+			for (int method = 0; method < METHODS_PER_CLASS; method++) {
+				for (int probe = 0; probe < PROBES_PER_METHOD; probe++) {
+					classCoverageLookup.addLine(method * 10 + probe);
+					classCoverageLookup.addProbe(probeId++);
+				}
+				classCoverageLookup.finishMethod();
+			}
+			classCoverageLookup.setTotalProbeCount(probeId);
+		}
+		return probesCache;
+	}
+
+	/** Builds the previous layout with the synthetic classes. */
+	private static Object buildLegacyLayout() {
+		Map<Long, List<Object>> lookups = new HashMap<>();
+		Set<String> classNames = new HashSet<>();
+		Random random = new Random(0);
+		for (int i = 0; i < CLASS_COUNT; i++) {
+			String className = getClassName(i);
+			classNames.add(className);
+			// Class name, source file name and the probes list as held by the previous ClassCoverageLookup
+			List<Object> lookup = new ArrayList<>();
+			lookup.add(className);
+			lookup.add(getSourceFileName(i));
+			List<LineRange> probes = new ArrayList<>();
+			for (int method = 0; method < METHODS_PER_CLASS; method++) {
+				LineRange lineRange = new LineRange();
+				for (int probe = 0; probe < PROBES_PER_METHOD; probe++) {
+					lineRange.adjustToContain(method * 10 + probe);
+					probes.add(lineRange);
+				}
+			}
+			lookup.add(probes);
+			lookups.put(random.nextLong(), lookup);
+		}
+		return new Object[]{lookups, classNames};
+	}
+
+	/** Returns the name of the i-th synthetic class. Inner classes share the package and source file. */
+	private static String getClassName(int i) {
+		return "com/company/product/module" + (i / 200) + "/Class" + (i / 4) + "$" + (i % 4);
+	}
+
+	/** Returns the source file name of the i-th synthetic class. */
+	private static String getSourceFileName(int i) {
+		return "Class" + (i / 4) + ".java";
+	}
+
+	/** Returns the used heap after garbage collection. */
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 5; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
@@ -2,8 +2,10 @@ package eu.cqse.teamscale.report.testwise.model;
 
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 
 import static org.junit.Assert.assertEquals;
 
@@ -58,4 +60,31 @@ public class FileCoverageTest {
 		fileCoverage.addLineRange(6, 10);
 		assertEquals("1,3-4,6-10", fileCoverage.computeCompactifiedRangesAsString());
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Tests that adding ranges in arbitrary order and merging files yields the same ranges as
+	 * {@link FileCoverage#compactifyRanges(List)}.
+	 */
+	@Test
+	public void addAndMergeMatchCompactification() {
+		Random random = new Random(42);
+		for (int run = 0; run < 100; run++) {
+			List<LineRange> allRanges = new ArrayList<>();
+			FileCoverage fileCoverage = new FileCoverage("path", "file");
+			FileCoverage otherFileCoverage = new FileCoverage("path", "file");
+			for (int i = 0; i < 50; i++) {
+				int start = 1 + random.nextInt(300);
+				LineRange range = new LineRange(start, start + random.nextInt(10));
+				allRanges.add(range);
+				if (random.nextBoolean()) {
+					fileCoverage.addLineRange(range);
+				} else {
+					otherFileCoverage.addLineRange(range);
+				}
+			}
+			fileCoverage.merge(otherFileCoverage);
+			assertEquals(FileCoverage.compactifyRanges(allRanges).toString(),
+					fileCoverage.getCoveredRanges().toString());
+		}
+	}
+}
@@ -0,0 +1,77 @@
+package eu.cqse.teamscale.report.testwise.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/** Tests the {@link TestwiseCoverage} class. */
+public class TestwiseCoverageTest {
+
+	/** Tests that equal file coverages and identical test coverages are stored only once. */
+	@Test
+	public void identicalCoverageIsShared() {
+		TestwiseCoverage testwiseCoverage = new TestwiseCoverage();
+		TestCoverage first = createTestCoverage("first", 1, 5);
+		TestCoverage second = createTestCoverage("second", 1, 5);
+		TestCoverage third = createTestCoverage("third", 1, 6);
+		testwiseCoverage.add(first);
+		testwiseCoverage.add(second);
+		testwiseCoverage.add(third);
+
+		assertSame(first.getSharedCoverageKey(), second.getSharedCoverageKey());
+		assertNotSame(first.getSharedCoverageKey(), third.getSharedCoverageKey());
+		assertSame(getFile(first, "B.java"), getFile(third, "B.java"));
+	}
+
+	/** Tests that modifying a test with shared coverage does not affect the other tests. */
+	@Test
+	public void sharedCoverageIsCopiedOnModification() {
+		TestwiseCoverage testwiseCoverage = new TestwiseCoverage();
+		TestCoverage first = createTestCoverage("first", 1, 5);
+		TestCoverage second = createTestCoverage("second", 1, 5);
+		testwiseCoverage.add(first);
+		testwiseCoverage.add(second);
+		testwiseCoverage.add(createTestCoverage("first", 7, 9));
+
+		assertEquals("1-5,7-9", getFile(first, "A.java").computeCompactifiedRangesAsString());
+		assertEquals("1-5", getFile(second, "A.java").computeCompactifiedRangesAsString());
+		assertNotSame(first.getSharedCoverageKey(), second.getSharedCoverageKey());
+	}
+
+	/** Tests that tests created with the coverage of another test share it until they are modified. */
+	@Test
+	public void testCoverageCopyConstructorSharesCoverage() {
+		TestCoverage first = createTestCoverage("first", 1, 5);
+		assertNull(first.getSharedCoverageKey());
+
+		TestCoverage second = new TestCoverage("second", first);
+		assertSame(first.getSharedCoverageKey(), second.getSharedCoverageKey());
+
+		FileCoverage fileCoverage = new FileCoverage("src", "C.java");
+		fileCoverage.addLine(3);
+		second.add(fileCoverage);
+		assertEquals(2, first.getFiles().size());
+		assertEquals(3, second.getFiles().size());
+	}
+
+	/** Creates a test that covers the given lines in A.java and line 1 in B.java. */
+	private static TestCoverage createTestCoverage(String externalId, int start, int end) {
+		TestCoverage testCoverage = new TestCoverage(externalId);
+		FileCoverage fileCoverage = new FileCoverage("src", "A.java");
+		fileCoverage.addLineRange(start, end);
+		testCoverage.add(fileCoverage);
+		FileCoverage otherFileCoverage = new FileCoverage("src", "B.java");
+		otherFileCoverage.addLine(1);
+		testCoverage.add(otherFileCoverage);
+		return testCoverage;
+	}
+
+	/** Returns the coverage of the given file of the test. */
+	private static FileCoverage getFile(TestCoverage testCoverage, String fileName) {
+		return testCoverage.getFiles().stream().filter(file -> file.fileName.equals(fileName)).findFirst()
+				.orElseThrow(AssertionError::new);
+	}
+}
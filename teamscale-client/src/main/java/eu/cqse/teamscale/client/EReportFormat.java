@@ -4,6 +4,11 @@ package eu.cqse.teamscale.client;
 public enum EReportFormat {
 	JACOCO("JaCoCo Coverage", "", "jacoco-coverage", "xml"),
 	TESTWISE_COVERAGE("Testwise Coverage", "/Tests", "testwise-coverage", "xml"),
+	/**
+	 * Compact binary encoding of {@link #TESTWISE_COVERAGE}. Teamscale does not accept this format, so it has to be
+	 * converted to XML with the TestwiseBinaryReportUtils of the report generator before uploading.
+	 */
+	TESTWISE_COVERAGE_BINARY("Testwise Coverage (binary)", "/Tests", "testwise-coverage", "twcb"),
 	JUNIT("JUnit Test Results", "/Test Results", "junit", "xml"),
 	TEST_LIST("Test List", "/Tests", "test-list", "json");
 
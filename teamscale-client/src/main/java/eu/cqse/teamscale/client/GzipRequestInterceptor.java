@@ -0,0 +1,60 @@
+package eu.cqse.teamscale.client;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.Okio;
+
+import java.io.IOException;
+
+/**
+ * Compresses request bodies with gzip and sets the Content-Encoding header accordingly. The compressed body is
+ * streamed, i.e. sent with chunked transfer encoding.
+ */
+/* package */ class GzipRequestInterceptor implements Interceptor {
+
+	/** The name of the Content-Encoding header. */
+	private static final String CONTENT_ENCODING = "Content-Encoding";
+
+	/** {@inheritDoc} */
+	@Override
+	public Response intercept(Chain chain) throws IOException {
+		Request original = chain.request();
+		if (original.body() == null || original.header(CONTENT_ENCODING) != null) {
+			return chain.proceed(original);
+		}
+
+		Request compressed = original.newBuilder()
+				.header(CONTENT_ENCODING, "gzip")
+				.method(original.method(), gzip(original.body()))
+				.build();
+		return chain.proceed(compressed);
+	}
+
+	/** Returns a body that writes the given body compressed with gzip. */
+	private static RequestBody gzip(RequestBody body) {
+		return new RequestBody() {
+			@Override
+			public MediaType contentType() {
+				return body.contentType();
+			}
+
+			@Override
+			public long contentLength() {
+				// Unknown in advance
+				return -1;
+			}
+
+			@Override
+			public void writeTo(BufferedSink sink) throws IOException {
+				BufferedSink gzipSink = Okio.buffer(new GzipSink(sink));
+				body.writeTo(gzipSink);
+				gzipSink.close();
+			}
+		};
+	}
+}
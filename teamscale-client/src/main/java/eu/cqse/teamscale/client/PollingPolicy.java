@@ -0,0 +1,55 @@
+package eu.cqse.teamscale.client;
+
+import java.time.Duration;
+
+/**
+ * Determines how often Teamscale is polled for a result that is still being computed. The delay between two requests
+ * starts at the initial delay and doubles after each request up to the maximal delay. Polling stops once the deadline,
+ * measured from the first request, has passed.
+ */
+public class PollingPolicy {
+
+	/** The default policy, which waits at most two minutes for the result. */
+	public static final PollingPolicy DEFAULT = new PollingPolicy(Duration.ofMillis(100), Duration.ofSeconds(5),
+			Duration.ofMinutes(2));
+
+	/** The delay before the second request. */
+	private final Duration initialDelay;
+
+	/** The maximal delay between two requests. */
+	private final Duration maxDelay;
+
+	/** The maximal time to wait for the result. */
+	private final Duration deadline;
+
+	/** Constructor. */
+	public PollingPolicy(Duration initialDelay, Duration maxDelay, Duration deadline) {
+		this.initialDelay = initialDelay;
+		this.maxDelay = maxDelay;
+		this.deadline = deadline;
+	}
+
+	/** @see #initialDelay */
+	public Duration getInitialDelay() {
+		return initialDelay;
+	}
+
+	/** Returns the delay that follows the given delay. */
+	public Duration getNextDelay(Duration delay) {
+		Duration nextDelay = delay.multipliedBy(2);
+		if (nextDelay.compareTo(maxDelay) > 0) {
+			return maxDelay;
+		}
+		return nextDelay;
+	}
+
+	/** @see #deadline */
+	public Duration getDeadline() {
+		return deadline;
+	}
+
+	/** Returns a policy with the same delays as this one, but the given deadline. */
+	public PollingPolicy withDeadline(Duration deadline) {
+		return new PollingPolicy(initialDelay, maxDelay, deadline);
+	}
+}
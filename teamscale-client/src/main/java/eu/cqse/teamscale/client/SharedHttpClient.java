@@ -0,0 +1,53 @@
+package eu.cqse.teamscale.client;
+
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds the {@link OkHttpClient} on which all HTTP clients are based. Clients derived via {@link #newBuilder(boolean)}
+ * share its connection pool and dispatcher, so connections to the same server are kept alive and reused across all
+ * services and no additional threads are started per service.
+ */
+public class SharedHttpClient {
+
+	/** The time in seconds to wait for a connection to be established. */
+	private static final int CONNECT_TIMEOUT_SECONDS = 10;
+
+	/**
+	 * The time in seconds to wait for data while reading the response or writing the request. This is higher than the
+	 * default, since Teamscale may take a while to process a large upload before it answers.
+	 */
+	private static final int READ_WRITE_TIMEOUT_SECONDS = 60;
+
+	/** The maximal number of idle connections that are kept open. */
+	private static final int MAX_IDLE_CONNECTIONS = 5;
+
+	/** The time in minutes after which idle connections are closed. */
+	private static final int KEEP_ALIVE_DURATION_MINUTES = 5;
+
+	/** The shared client. */
+	private static final OkHttpClient CLIENT = new OkHttpClient.Builder()
+			.connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_DURATION_MINUTES, TimeUnit.MINUTES))
+			// HTTP/2 is negotiated via ALPN for HTTPS connections to servers that support it
+			.protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+			.connectTimeout(CONNECT_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+			.readTimeout(READ_WRITE_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+			.writeTimeout(READ_WRITE_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+			.build();
+
+	/**
+	 * Returns a builder for a client that shares the connection pool and dispatcher of the shared client. If
+	 * compressRequests is <code>true</code>, request bodies are compressed with gzip.
+	 */
+	public static OkHttpClient.Builder newBuilder(boolean compressRequests) {
+		OkHttpClient.Builder builder = CLIENT.newBuilder();
+		if (compressRequests) {
+			builder.addInterceptor(new GzipRequestInterceptor());
+		}
+		return builder;
+	}
+}
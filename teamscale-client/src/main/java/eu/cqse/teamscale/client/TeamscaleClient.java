@@ -5,20 +5,33 @@ import okhttp3.HttpUrl;
 import okhttp3.MultipartBody;
 import okhttp3.RequestBody;
 import okhttp3.ResponseBody;
+import retrofit2.Call;
+import retrofit2.Callback;
 import retrofit2.Response;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.time.Duration;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /** Helper class to interact with Teamscale. */
 public class TeamscaleClient {
 
-	/** Maximum number of times to retry getting the impacted tests from Teamscale. */
-	private static final int MAX_RETRY = 100;
+	/** Schedules the delayed requests while polling Teamscale for a result. */
+	private static final ScheduledExecutorService POLLING_SCHEDULER = Executors
+			.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "Teamscale polling");
+				thread.setDaemon(true);
+				return thread;
+			});
 
 	/** Teamscale service implementation. */
 	private final ITeamscaleService service;
@@ -50,38 +63,117 @@ public class TeamscaleClient {
 
 	/** Uploads the given test details to Teamscale. */
 	public void uploadTestList(List<TestDetails> list, CommitDescriptor commitDescriptor, String partition, String message) throws IOException {
+		await(uploadTestListAsync(list, commitDescriptor, partition, message));
+	}
+
+	/**
+	 * Asynchronously uploads the given test details to Teamscale. The returned future completes once Teamscale has
+	 * accepted the upload or completes exceptionally with an {@link IOException} if the upload failed.
+	 */
+	public CompletableFuture<Void> uploadTestListAsync(List<TestDetails> list, CommitDescriptor commitDescriptor, String partition, String message) {
 		Gson gson = new Gson();
 		RequestBody requestFile = RequestBody.create(MultipartBody.FORM, gson.toJson(list));
-		service.uploadReport(projectId, commitDescriptor, partition, EReportFormat.TEST_LIST, message, requestFile);
+		CompletableFuture<Void> result = new CompletableFuture<>();
+		service.uploadExternalReport(projectId, EReportFormat.TEST_LIST, commitDescriptor, true, false, partition,
+				message, requestFile).enqueue(new Callback<ResponseBody>() {
+			@Override
+			public void onResponse(Call<ResponseBody> call, Response<ResponseBody> response) {
+				if (response.isSuccessful()) {
+					result.complete(null);
+					return;
+				}
+				try {
+					ResponseBody errorBody = response.errorBody();
+					String bodyString = errorBody == null ? "<no body>" : errorBody.string();
+					result.completeExceptionally(new IOException(
+							"Request failed with error code " + response.code() + ". Response body:\n" + bodyString));
+				} catch (IOException e) {
+					result.completeExceptionally(e);
+				}
+			}
+
+			@Override
+			public void onFailure(Call<ResponseBody> call, Throwable throwable) {
+				result.completeExceptionally(throwable);
+			}
+		});
+		return result;
 	}
 
 	/**
-	 * Tries to retrieve the impacted tests from Teamscale.
+	 * Tries to retrieve the impacted tests from Teamscale and blocks until they are available.
 	 *
 	 * @return A list of external IDs to execute or null in case Teamscale did not find a test details upload for the given commit.
+	 * @see #getImpactedTestsAsync(CommitDescriptor, CommitDescriptor, String, PollingPolicy)
 	 */
 	public Response<List<String>> getImpactedTests(CommitDescriptor baseline, CommitDescriptor endCommit, String partition, PrintWriter out) throws IOException {
-		out.print("Getting impacted tests");
-		Response<List<String>> impactedTests;
-		int attempts = 0;
-		do {
-			if (attempts > 1) {
-				out.print(".");
-				try {
-					Thread.sleep(1000);
-				} catch (InterruptedException e) {
-					e.printStackTrace();
+		out.println("Getting impacted tests");
+		return await(getImpactedTestsAsync(baseline, endCommit, partition, PollingPolicy.DEFAULT));
+	}
+
+	/**
+	 * Asynchronously retrieves the impacted tests from Teamscale. While Teamscale is still computing them, it is polled
+	 * according to the given policy. The requests are sent from background threads, so the caller can do other work in
+	 * the meantime. Cancelling the returned future stops the polling.
+	 *
+	 * @return A future that completes with the response of the last request. Its body is a list of external IDs to
+	 * execute or null in case Teamscale did not find a test details upload for the given commit or did not finish
+	 * computing the impacted tests before the deadline of the policy.
+	 */
+	public CompletableFuture<Response<List<String>>> getImpactedTestsAsync(CommitDescriptor baseline, CommitDescriptor endCommit, String partition, PollingPolicy pollingPolicy) {
+		CompletableFuture<Response<List<String>>> result = new CompletableFuture<>();
+		long deadline = System.nanoTime() + pollingPolicy.getDeadline().toNanos();
+		requestImpactedTests(baseline, endCommit, partition, pollingPolicy, pollingPolicy.getInitialDelay(), deadline,
+				result);
+		return result;
+	}
+
+	/**
+	 * Sends a single request for the impacted tests and schedules the next one in case Teamscale is still computing
+	 * them.
+	 *
+	 * @param delay    the delay before the next request.
+	 * @param deadline the value of {@link System#nanoTime()} after which no more requests are sent.
+	 */
+	private void requestImpactedTests(CommitDescriptor baseline, CommitDescriptor endCommit, String partition, PollingPolicy pollingPolicy, Duration delay, long deadline, CompletableFuture<Response<List<String>>> result) {
+		if (result.isDone()) {
+			// Cancelled by the caller
+			return;
+		}
+		service.getImpactedTests(projectId, "", baseline, endCommit, partition).enqueue(new Callback<List<String>>() {
+			@Override
+			public void onResponse(Call<List<String>> call, Response<List<String>> response) {
+				long remainingNanos = deadline - System.nanoTime();
+				if (!response.isSuccessful() || response.body() != null || remainingNanos <= 0) {
+					result.complete(response);
+					return;
 				}
+				POLLING_SCHEDULER.schedule(
+						() -> requestImpactedTests(baseline, endCommit, partition, pollingPolicy,
+								pollingPolicy.getNextDelay(delay), deadline, result),
+						Math.min(delay.toNanos(), remainingNanos), TimeUnit.NANOSECONDS);
+			}
+
+			@Override
+			public void onFailure(Call<List<String>> call, Throwable throwable) {
+				result.completeExceptionally(throwable);
 			}
-			impactedTests = service
-					.getImpactedTests(projectId, "", baseline, endCommit, partition)
-					.execute();
-			attempts++;
-			if (attempts > MAX_RETRY) {
-				return impactedTests;
+		});
+	}
+
+	/** Waits for the given future and rethrows its failure as an {@link IOException}. */
+	private static <T> T await(CompletableFuture<T> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			future.cancel(false);
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for Teamscale", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
 			}
-		} while (impactedTests.isSuccessful() && impactedTests.body() == null);
-		out.println();
-		return impactedTests;
+			throw new IOException(e.getCause());
+		}
 	}
 }
@@ -17,7 +17,18 @@ public class TeamscaleServiceGenerator {
 	 * service, which uses basic auth to authenticate against the server and which sets the accept header to json.
 	 */
 	public static <S> S createService(Class<S> serviceClass, HttpUrl baseUrl, String username, String password) {
-		OkHttpClient.Builder httpClient = new OkHttpClient.Builder();
+		return createService(serviceClass, baseUrl, username, password, false);
+	}
+
+	/**
+	 * Generates a {@link Retrofit} instance for the given
+	 * service, which uses basic auth to authenticate against the server and which sets the accept header to json.
+	 * The service is based on the {@link SharedHttpClient}. If compressRequests is <code>true</code>, request bodies
+	 * are compressed with gzip.
+	 */
+	public static <S> S createService(Class<S> serviceClass, HttpUrl baseUrl, String username, String password,
+									  boolean compressRequests) {
+		OkHttpClient.Builder httpClient = SharedHttpClient.newBuilder(compressRequests);
 
 		httpClient.addInterceptor(TeamscaleServiceGenerator.getBasicAuthInterceptor(username, password));
 		httpClient.addInterceptor(chain -> chain.proceed(chain.request().newBuilder()
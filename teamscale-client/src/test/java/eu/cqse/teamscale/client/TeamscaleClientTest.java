@@ -0,0 +1,121 @@
+package eu.cqse.teamscale.client;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import retrofit2.Response;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/** Tests the {@link TeamscaleClient} against a stub server that simulates Teamscale. */
+public class TeamscaleClientTest {
+
+	/** Polls quickly, so the tests do not take long. */
+	private static final PollingPolicy FAST_POLLING = new PollingPolicy(Duration.ofMillis(10), Duration.ofMillis(40),
+			Duration.ofSeconds(10));
+
+	/** The baseline commit. */
+	private static final CommitDescriptor BASELINE = new CommitDescriptor("master", 1000);
+
+	/** The end commit. */
+	private static final CommitDescriptor END_COMMIT = new CommitDescriptor("master", 2000);
+
+	/** The stub server. */
+	private MockWebServer server;
+
+	/** The client under test. */
+	private TeamscaleClient client;
+
+	/** Starts the server. */
+	@Before
+	public void setUp() throws IOException {
+		server = new MockWebServer();
+		server.start();
+		client = new TeamscaleClient(server.url("/").toString(), "build", "token", "project");
+	}
+
+	/** Stops the server. */
+	@After
+	public void tearDown() throws IOException {
+		server.shutdown();
+	}
+
+	/** Tests that Teamscale is polled until it has computed the impacted tests. */
+	@Test
+	public void testPollsUntilImpactedTestsAreAvailable() throws Exception {
+		server.enqueue(stillComputing());
+		server.enqueue(stillComputing());
+		server.enqueue(new MockResponse().setBody("[\"test/A\",\"test/B\"]").setBodyDelay(200, TimeUnit.MILLISECONDS));
+
+		CompletableFuture<Response<List<String>>> future = client
+				.getImpactedTestsAsync(BASELINE, END_COMMIT, "Unit Tests", FAST_POLLING);
+		assertThat(future).isNotDone();
+
+		Response<List<String>> response = future.get(10, TimeUnit.SECONDS);
+		assertThat(response.body()).containsExactly("test/A", "test/B");
+		assertThat(server.getRequestCount()).isEqualTo(3);
+		assertThat(server.takeRequest().getPath()).startsWith("/p/project/test-impact/")
+				.contains("partitions=Unit%20Tests");
+	}
+
+	/** Tests that the polling stops after the deadline. */
+	@Test
+	public void testStopsPollingAfterDeadline() throws Exception {
+		for (int i = 0; i < 100; i++) {
+			server.enqueue(stillComputing());
+		}
+
+		long start = System.nanoTime();
+		Response<List<String>> response = client.getImpactedTestsAsync(BASELINE, END_COMMIT, "Unit Tests",
+				new PollingPolicy(Duration.ofMillis(10), Duration.ofMillis(20), Duration.ofMillis(300)))
+				.get(10, TimeUnit.SECONDS);
+
+		assertThat(response.isSuccessful()).isTrue();
+		assertThat(response.body()).isNull();
+		assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(300));
+		assertThat(server.getRequestCount()).isBetween(2, 50);
+	}
+
+	/** Tests that errors are returned immediately without polling again. */
+	@Test
+	public void testDoesNotRetryErrors() throws Exception {
+		server.enqueue(new MockResponse().setResponseCode(404));
+
+		Response<List<String>> response = client.getImpactedTestsAsync(BASELINE, END_COMMIT, "Unit Tests",
+				FAST_POLLING).get(10, TimeUnit.SECONDS);
+
+		assertThat(response.code()).isEqualTo(404);
+		assertThat(server.getRequestCount()).isEqualTo(1);
+	}
+
+	/** Tests that the upload of the test list completes once Teamscale accepted it. */
+	@Test
+	public void testUploadTestList() throws Exception {
+		server.enqueue(new MockResponse().setResponseCode(200));
+		server.enqueue(new MockResponse().setResponseCode(403).setBody("Missing permission"));
+		List<TestDetails> testDetails = Collections.singletonList(
+				new TestDetails("test/A", "com/example/A/test", "com/example/A", "test", null));
+
+		client.uploadTestListAsync(testDetails, END_COMMIT, "Unit Tests", "message").get(10, TimeUnit.SECONDS);
+		assertThat(server.takeRequest().getBody().readUtf8()).contains("com/example/A/test");
+
+		assertThatThrownBy(() -> client.uploadTestListAsync(testDetails, END_COMMIT, "Unit Tests", "message")
+				.get(10, TimeUnit.SECONDS)).hasCauseInstanceOf(IOException.class)
+				.hasMessageContaining("Missing permission");
+	}
+
+	/** Returns the response of Teamscale while it is still computing the impacted tests. */
+	private static MockResponse stillComputing() {
+		return new MockResponse().setResponseCode(204);
+	}
+}
@@ -138,18 +138,23 @@ open class ImpactedTestsExecutorTask : JavaExec() {
             true,
             project.logger.wrapInILogger()
         )
-        val testwiseCoverage = generator.convert(executionData)
+        val reportFile = configuration.report.testwiseCoverage.getDestinationOrDefault(project, testTask)
         val jsCoverageData = configuration.report.googleClosureCoverage.destination ?: emptySet()
-        if (!jsCoverageData.isEmpty()) {
-            val closureTestwiseCoverage = ClosureTestwiseCoverageGenerator(
-                jsCoverageData,
-                configuration.report.googleClosureCoverage.getFilter()
-            ).readTestCoverage()
-            testwiseCoverage.merge(closureTestwiseCoverage)
+        if (jsCoverageData.isEmpty()) {
+            // Without closure coverage to merge, the report can be streamed directly from the execution data
+            reportFile.parentFile.mkdirs()
+            reportFile.outputStream().use { generator.convert(executionData, it) }
+            return
         }
-        TestwiseXmlReportUtils.writeReportToFile(
-            configuration.report.testwiseCoverage.getDestinationOrDefault(project, testTask), testwiseCoverage
-        )
+
+        val testwiseCoverage = generator.convert(executionData)
+        val closureTestwiseCoverage = ClosureTestwiseCoverageGenerator(
+            jsCoverageData,
+            configuration.report.googleClosureCoverage.getFilter(),
+            Runtime.getRuntime().availableProcessors()
+        ).readTestCoverage()
+        testwiseCoverage.merge(closureTestwiseCoverage)
+        TestwiseXmlReportUtils.writeReportToFile(reportFile, testwiseCoverage)
     }
 
     private fun getImpactedTestExecutorProgramArguments(): List<String> {